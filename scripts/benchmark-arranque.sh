@@ -0,0 +1,132 @@
+#!/usr/bin/env bash
+#
+# Benchmark de arranque del Service Facade
+#
+# Mide, para cada modo de ejecución, el tiempo hasta la primera respuesta
+# correcta de /api/v1/envios/info y la memoria residente (RSS) del proceso
+# en ese momento. Cada modo se arranca REPETICIONES veces y se informa la
+# mediana y el mínimo.
+#
+# Modos:
+#   jvm      jar ejecutable sin AOT (referencia)
+#   aot      jar fino con Spring AOT
+#   aot-cds  jar fino con Spring AOT y el archivo AppCDS
+#   native   imagen nativa de GraalVM
+#
+# Compilación previa (los modos sin artefacto se omiten):
+#   mvn -Parranque-rapido package          -> jvm, aot, aot-cds
+#   mvn -Pnative native:compile            -> native
+#
+# Uso: scripts/benchmark-arranque.sh [modo...]
+# Variables: REPETICIONES (5), PUERTO (18080), TIMEOUT_SEGUNDOS (120),
+#            ARGS_APP (argumentos extra para la aplicación)
+#
+# Eureka y los sistemas TMS/ACMS/SMCS influyen en el arranque: para comparar
+# modos, hay que ejecutarlos todos en las mismas condiciones.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+REPETICIONES="${REPETICIONES:-5}"
+PUERTO="${PUERTO:-18080}"
+TIMEOUT_SEGUNDOS="${TIMEOUT_SEGUNDOS:-120}"
+ARGS_APP="${ARGS_APP:-}"
+
+ARTEFACTO="logiservices-service-facade-0.0.1-SNAPSHOT"
+JAR_EXEC="target/${ARTEFACTO}-exec.jar"
+JAR_FINO="target/${ARTEFACTO}.jar"
+ARCHIVO_CDS="target/app-cds.jsa"
+NATIVO="target/logiservices-service-facade"
+URL="http://localhost:${PUERTO}/api/v1/envios/info"
+
+# Comando de cada modo (vacío si falta el artefacto)
+comando() {
+    case "$1" in
+        jvm)
+            [[ -f "$JAR_EXEC" ]] && echo "java -jar $JAR_EXEC" ;;
+        aot)
+            [[ -f "$JAR_FINO" ]] && echo "java -Dspring.aot.enabled=true -jar $JAR_FINO" ;;
+        aot-cds)
+            [[ -f "$JAR_FINO" && -f "$ARCHIVO_CDS" ]] \
+                && echo "java -XX:SharedArchiveFile=$ARCHIVO_CDS -Dspring.aot.enabled=true -jar $JAR_FINO" ;;
+        native)
+            [[ -x "$NATIVO" ]] && echo "$NATIVO" ;;
+        *)
+            echo "Modo desconocido: $1" >&2
+            exit 2 ;;
+    esac
+}
+
+# RSS de un proceso en MB
+rss_mb() {
+    ps -o rss= -p "$1" | awk '{ printf "%.1f", $1 / 1024 }'
+}
+
+# Mediana de una lista de números (uno por línea)
+mediana() {
+    sort -n | awk '{ v[NR] = $1 } END { if (NR % 2) print v[(NR + 1) / 2]; else print (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+# Arranca una vez y escribe "<ms> <rss_mb>" (o nada si no llegó a responder)
+medir() {
+    local cmd="$1" inicio pid ms
+    inicio=$(date +%s%N)
+    # shellcheck disable=SC2086
+    $cmd --server.port="$PUERTO" $ARGS_APP > "target/benchmark-arranque.log" 2>&1 &
+    pid=$!
+
+    local limite=$((inicio + TIMEOUT_SEGUNDOS * 1000000000))
+    while ! curl -sf -o /dev/null "$URL"; do
+        if ! kill -0 "$pid" 2>/dev/null || (( $(date +%s%N) > limite )); then
+            kill "$pid" 2>/dev/null || true
+            wait "$pid" 2>/dev/null || true
+            echo "  sin respuesta (ver target/benchmark-arranque.log)" >&2
+            return
+        fi
+        sleep 0.01
+    done
+    ms=$(( ($(date +%s%N) - inicio) / 1000000 ))
+    echo "$ms $(rss_mb "$pid")"
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+if (( $# > 0 )); then
+    MODOS=("$@")
+else
+    MODOS=(jvm aot aot-cds native)
+fi
+
+if curl -sf -o /dev/null "$URL"; then
+    echo "El puerto ${PUERTO} ya está en uso; cambiar PUERTO" >&2
+    exit 1
+fi
+
+printf '%-8s %6s %14s %12s %14s\n' "modo" "runs" "mediana (ms)" "mínimo (ms)" "RSS (MB)"
+for modo in "${MODOS[@]}"; do
+    cmd=$(comando "$modo" || true)
+    if [[ -z "$cmd" ]]; then
+        printf '%-8s %s\n' "$modo" "omitido: falta el artefacto"
+        continue
+    fi
+
+    tiempos=()
+    memorias=()
+    for ((i = 1; i <= REPETICIONES; i++)); do
+        resultado=$(medir "$cmd")
+        [[ -z "$resultado" ]] && continue
+        tiempos+=("${resultado% *}")
+        memorias+=("${resultado#* }")
+    done
+
+    if (( ${#tiempos[@]} == 0 )); then
+        printf '%-8s %s\n' "$modo" "sin arranques correctos"
+        continue
+    fi
+    printf '%-8s %6d %14s %12s %14s\n' "$modo" "${#tiempos[@]}" \
+        "$(printf '%s\n' "${tiempos[@]}" | mediana)" \
+        "$(printf '%s\n' "${tiempos[@]}" | sort -n | head -1)" \
+        "$(printf '%s\n' "${memorias[@]}" | mediana)"
+done
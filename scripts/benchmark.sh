@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+#
+# Benchmarks de componentes del Service Facade
+#
+# Ejecuta una de las clases de src/benchmark/java (programas con main, sin
+# arrancar la aplicación salvo que el benchmark lo necesite) con las clases
+# del proyecto y sus dependencias en el classpath.
+#
+# Uso: scripts/benchmark.sh <Clase> [argumentos...]
+#   scripts/benchmark.sh BenchmarkFormatos             (JSON vs CBOR vs Smile)
+#
+# La clase se busca por su nombre simple en src/benchmark/java. Cada
+# benchmark documenta sus argumentos en su Javadoc.
+#
+# Variables: JAVA_OPTS (opciones de la JVM, p. ej. -Xmx4g),
+#            SIN_COMPILAR=1 (no recompila el proyecto)
+#
+# El classpath de dependencias se guarda en target/classpath.txt la primera
+# vez (mvn dependency:build-classpath); borrarlo si cambia el pom.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+if (( $# == 0 )); then
+    echo "Uso: $0 <Clase> [argumentos...]" >&2
+    exit 2
+fi
+CLASE="$1"
+shift
+
+FUENTE=$(find src/benchmark/java -name "${CLASE}.java" | head -1)
+if [[ -z "$FUENTE" ]]; then
+    echo "No existe el benchmark ${CLASE} en src/benchmark/java" >&2
+    exit 2
+fi
+NOMBRE_COMPLETO=$(echo "${FUENTE#src/benchmark/java/}" | sed 's#\.java$##; s#/#.#g')
+
+if [[ -z "${SIN_COMPILAR:-}" ]]; then
+    mvn -q -B compile
+fi
+if [[ ! -f target/classpath.txt ]]; then
+    mvn -q -B dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+fi
+CLASSPATH_DEPS=$(cat target/classpath.txt)
+
+# Mismo paquete que las clases que mide: puede usar las de visibilidad de paquete
+rm -rf target/benchmark-classes
+mkdir -p target/benchmark-classes
+# shellcheck disable=SC2046
+javac -nowarn -encoding UTF-8 -d target/benchmark-classes -cp "target/classes:${CLASSPATH_DEPS}" \
+    $(find src/benchmark/java -name '*.java')
+
+# shellcheck disable=SC2086
+exec java ${JAVA_OPTS:-} -cp "target/benchmark-classes:target/classes:${CLASSPATH_DEPS}" "$NOMBRE_COMPLETO" "$@"
@@ -0,0 +1,115 @@
+package com.logiservices.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.logiservices.dto.EnvioDto;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark de formatos de respuesta: JSON frente a CBOR y Smile
+ *
+ * Para listas de EnvioDto de cada tamaño mide el tamaño del cuerpo
+ * ({"envios": [...], "total": N}, como /api/v1/envios) y el rendimiento de
+ * serialización y deserialización, con los ObjectMapper construidos igual
+ * que en FormatosBinariosConfig.
+ *
+ * Uso: scripts/benchmark.sh BenchmarkFormatos [tamaño...]
+ * (por defecto 1000 10000 100000 1000000; con 1M conviene JAVA_OPTS=-Xmx2g)
+ */
+public class BenchmarkFormatos {
+
+    private static final String[] LUGARES = {"Bogotá", "Medellín", "Cali", "Barranquilla", "Cartagena",
+            "Bucaramanga", "Pereira", "Santa Marta", "Cúcuta", "Manizales", "Ibagué", "Villavicencio"};
+    private static final String[] ESTADOS = {"Pendiente", "En tránsito", "En aduana", "Entregado", "Cancelado"};
+    private static final String[] SISTEMAS = {"TMS", "ACMS", "SMCS"};
+
+    /** Tiempo mínimo de medición por formato y tamaño */
+    private static final long MEDICION_NS = 2_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int[] tamanos = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000, 1_000_000};
+
+        Map<String, ObjectMapper> formatos = new LinkedHashMap<>();
+        formatos.put("json", new Jackson2ObjectMapperBuilder().build());
+        formatos.put("cbor", new Jackson2ObjectMapperBuilder().factory(new CBORFactory()).build());
+        formatos.put("smile", new Jackson2ObjectMapperBuilder().factory(new SmileFactory()).build());
+
+        System.out.printf("%-6s %9s %14s %8s %16s %16s%n",
+                "formato", "envíos", "bytes", "vs json", "serializar/s", "deserializar/s");
+        for (int tamano : tamanos) {
+            Cuerpo cuerpo = new Cuerpo(crearEnvios(tamano));
+            long bytesJson = 0;
+            for (Map.Entry<String, ObjectMapper> formato : formatos.entrySet()) {
+                ObjectMapper mapper = formato.getValue();
+                byte[] bytes = mapper.writeValueAsBytes(cuerpo);
+                if (bytesJson == 0) {
+                    bytesJson = bytes.length;
+                }
+                double serializados = medir(() -> mapper.writeValueAsBytes(cuerpo)) * tamano;
+                double deserializados = medir(() -> mapper.readValue(bytes, Cuerpo.class)) * tamano;
+                System.out.printf("%-6s %9d %14d %7.0f%% %16.0f %16.0f%n", formato.getKey(), tamano, bytes.length,
+                        100.0 * bytes.length / bytesJson, serializados, deserializados);
+            }
+        }
+    }
+
+    /**
+     * Repeticiones por segundo de la operación, tras calentar
+     */
+    private static double medir(Operacion operacion) throws Exception {
+        long inicio = System.nanoTime();
+        while (System.nanoTime() - inicio < MEDICION_NS / 2) {
+            operacion.ejecutar();
+        }
+        int repeticiones = 0;
+        inicio = System.nanoTime();
+        long transcurrido;
+        do {
+            operacion.ejecutar();
+            repeticiones++;
+            transcurrido = System.nanoTime() - inicio;
+        } while (transcurrido < MEDICION_NS);
+        return repeticiones * 1e9 / transcurrido;
+    }
+
+    static List<EnvioDto> crearEnvios(int tamano) {
+        List<EnvioDto> envios = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            envios.add(new EnvioDto((long) i + 1, LUGARES[i % LUGARES.length],
+                    LUGARES[(i * 7 + 3) % LUGARES.length], ESTADOS[i % ESTADOS.length],
+                    SISTEMAS[i % SISTEMAS.length], 1L + i % 4));
+        }
+        return envios;
+    }
+
+    /**
+     * Cuerpo de un listado: {"envios": [...], "total": N}
+     */
+    public static class Cuerpo {
+
+        public List<EnvioDto> envios;
+        public int total;
+
+        public Cuerpo() {
+        }
+
+        Cuerpo(List<EnvioDto> envios) {
+            this.envios = envios;
+            this.total = envios.size();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operacion {
+        Object ejecutar() throws Exception;
+    }
+}
@@ -0,0 +1,142 @@
+package com.logiservices.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logiservices.dto.EnvioSistemaResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark de asignación de memoria del listado de envíos de los sistemas
+ *
+ * Para una respuesta de listarEnvios de cada tamaño mide los bytes
+ * asignados por el hilo (ThreadMXBean) y el tiempo de:
+ * - mapa: el camino anterior, que decodificaba el cuerpo entero a un árbol
+ *   de Map/List y devolvía esos mapas al cliente
+ * - tipado: el de EnvioService.copiarEnvios, que lee cada envío como
+ *   EnvioSistemaResponse del flujo y escribe su EnvioDto al generador
+ *
+ * Los dos caminos leen el mismo cuerpo y escriben la respuesta a un flujo
+ * que la descarta, así que se compara todo el trabajo por petición.
+ *
+ * Uso: scripts/benchmark.sh BenchmarkListadoSistemas [envíos...]
+ * (por defecto 1000 10000 100000)
+ */
+public class BenchmarkListadoSistemas {
+
+    private static final String[] LUGARES = {"Bogotá", "Medellín", "Cali", "Barranquilla", "Cartagena",
+            "Bucaramanga", "Pereira", "Santa Marta", "Cúcuta", "Manizales", "Ibagué", "Villavicencio"};
+    private static final String[] ESTADOS = {"Pendiente", "En tránsito", "En aduana", "Entregado", "Cancelado"};
+
+    private static final int REPETICIONES = 20;
+
+    private static final ObjectMapper MAPPER = new Jackson2ObjectMapperBuilder().build();
+
+    public static void main(String[] args) throws Exception {
+        int[] tamanos = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000};
+        com.sun.management.ThreadMXBean hilos =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%-7s %9s %16s %14s %10s%n", "camino", "envíos", "bytes/petición", "bytes/envío", "ms");
+        for (int tamano : tamanos) {
+            byte[] cuerpo = cuerpoSistema(tamano);
+            for (String camino : List.of("mapa", "tipado")) {
+                for (int i = 0; i < REPETICIONES; i++) {
+                    ejecutar(camino, cuerpo); // Calentamiento
+                }
+                long asignadosAntes = hilos.getCurrentThreadAllocatedBytes();
+                long inicio = System.nanoTime();
+                long copiados = 0;
+                for (int i = 0; i < REPETICIONES; i++) {
+                    copiados += ejecutar(camino, cuerpo);
+                }
+                double ms = (System.nanoTime() - inicio) / 1e6 / REPETICIONES;
+                long asignados = (hilos.getCurrentThreadAllocatedBytes() - asignadosAntes) / REPETICIONES;
+                if (copiados != (long) tamano * REPETICIONES) {
+                    throw new IllegalStateException(camino + ": copiados " + copiados / REPETICIONES);
+                }
+                System.out.printf("%-7s %9d %16d %14.1f %10.2f%n", camino, tamano, asignados,
+                        (double) asignados / tamano, ms);
+            }
+        }
+    }
+
+    private static long ejecutar(String camino, byte[] cuerpo) throws IOException {
+        return "mapa".equals(camino) ? porMapa(cuerpo) : tipado(cuerpo);
+    }
+
+    /**
+     * Camino anterior: Map del cuerpo entero y los mapas de envíos tal cual
+     */
+    @SuppressWarnings("unchecked")
+    private static long porMapa(byte[] cuerpo) throws IOException {
+        Map<String, Object> respuesta = MAPPER.readValue(cuerpo, Map.class);
+        List<Map<String, Object>> envios = new ArrayList<>((List<Map<String, Object>>) respuesta.get("envios"));
+        Map<String, Object> resultado = Map.of("total", envios.size(), "envios", envios);
+        MAPPER.writeValue(OutputStream.nullOutputStream(), resultado);
+        return envios.size();
+    }
+
+    /**
+     * Camino actual, como EnvioService.copiarEnvios
+     */
+    private static long tipado(byte[] cuerpo) throws IOException {
+        long copiados = 0;
+        try (JsonGenerator generador = MAPPER.getFactory().createGenerator(OutputStream.nullOutputStream());
+             JsonParser parser = MAPPER.getFactory().createParser(new ByteArrayInputStream(cuerpo))) {
+            generador.writeStartObject();
+            generador.writeArrayFieldStart("envios");
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "envios".equals(campo)) {
+                    break;
+                }
+                parser.skipChildren();
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                EnvioSistemaResponse envio = MAPPER.readValue(parser, EnvioSistemaResponse.class);
+                generador.writeObject(envio.aEnvioDto("TMS"));
+                copiados++;
+            }
+            generador.writeEndArray();
+            generador.writeNumberField("total", copiados);
+            generador.writeEndObject();
+        }
+        return copiados;
+    }
+
+    /**
+     * Cuerpo de GET /api/tms/envios con campos que el Service Facade no usa
+     */
+    private static byte[] cuerpoSistema(int tamano) throws IOException {
+        List<Map<String, Object>> envios = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            Map<String, Object> envio = new LinkedHashMap<>();
+            envio.put("id", (long) i + 1);
+            envio.put("origen", LUGARES[i % LUGARES.length]);
+            envio.put("destino", LUGARES[(i * 7 + 3) % LUGARES.length]);
+            envio.put("estado", ESTADOS[i % ESTADOS.length]);
+            envio.put("fechaCreacion", "2024-03-" + (10 + i % 18) + "T08:30:00");
+            envio.put("pesoKg", 12.5 + i % 40);
+            envios.add(envio);
+        }
+        Map<String, Object> cuerpo = new LinkedHashMap<>();
+        cuerpo.put("envios", envios);
+        cuerpo.put("total", tamano);
+        return MAPPER.writeValueAsBytes(cuerpo);
+    }
+}
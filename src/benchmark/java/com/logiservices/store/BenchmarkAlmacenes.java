@@ -0,0 +1,131 @@
+package com.logiservices.store;
+
+import com.logiservices.LogiServicesApplication;
+import com.logiservices.dto.EnvioDto;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmark de los almacenes de envíos: memoria, offheap y jpa (H2)
+ *
+ * Arranca la aplicación una vez por almacén (sin Eureka, en un puerto
+ * libre y con el WAL en un directorio temporal) y mide a través de
+ * EnvioStore, como lo usa EnvioService:
+ * - altas en lotes de 1000 (crearLote)
+ * - lecturas por ID aleatorio (buscarPorId)
+ * - modificaciones sin versión esperada (actualizar)
+ * - búsqueda por estado sin distinguir mayúsculas (buscarPorEstado)
+ * - conteo por estado (contarPorEstado)
+ *
+ * Uso: scripts/benchmark.sh BenchmarkAlmacenes [envíos] [almacén...]
+ * (por defecto 100000 envíos y los tres almacenes)
+ */
+public class BenchmarkAlmacenes {
+
+    private static final String[] LUGARES = {"Bogotá", "Medellín", "Cali", "Barranquilla", "Cartagena",
+            "Bucaramanga", "Pereira", "Santa Marta", "Cúcuta", "Manizales", "Ibagué", "Villavicencio"};
+    private static final String[] ESTADOS = {"Pendiente", "En tránsito", "Entregado", "Cancelado", "Devuelto"};
+    private static final String[] SISTEMAS = {"TMS", "ACMS", "SMCS"};
+
+    private static final int LOTE = 1000;
+    private static final int LECTURAS = 200_000;
+    private static final int MODIFICACIONES = 20_000;
+    private static final int CONSULTAS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<String> almacenes = args.length > 1 ? List.of(args).subList(1, args.length)
+                : List.of("memoria", "offheap", "jpa");
+
+        List<String> filas = new ArrayList<>();
+        for (String almacen : almacenes) {
+            Path directorio = Files.createTempDirectory("benchmark-almacen-" + almacen);
+            try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(LogiServicesApplication.class)
+                    .logStartupInfo(false)
+                    .properties(
+                            "envios.almacen=" + almacen,
+                            "envios.persistencia.directorio=" + directorio,
+                            "server.port=0",
+                            "eureka.client.enabled=false",
+                            "spring.jpa.show-sql=false",
+                            "logging.level.root=WARN")
+                    .run()) {
+                filas.add(medir(almacen, contexto.getBean(EnvioStore.class), total));
+            }
+        }
+
+        System.out.printf("%-8s %9s %12s %12s %14s %16s %16s%n", "almacén", "envíos", "altas/s",
+                "lecturas/s", "modific./s", "porEstado (ms)", "contarEstado (ms)");
+        filas.forEach(System.out::println);
+    }
+
+    private static String medir(String almacen, EnvioStore store, int total) {
+        SplittableRandom aleatorio = new SplittableRandom(42);
+
+        long inicio = System.nanoTime();
+        List<Long> ids = new ArrayList<>(total);
+        for (int creados = 0; creados < total; creados += LOTE) {
+            List<EnvioDto> lote = new ArrayList<>(LOTE);
+            for (int i = creados; i < Math.min(total, creados + LOTE); i++) {
+                lote.add(envio(i));
+            }
+            for (EnvioDto creado : store.crearLote(lote)) {
+                ids.add(creado.getId());
+            }
+        }
+        double altas = total * 1e9 / (System.nanoTime() - inicio);
+
+        inicio = System.nanoTime();
+        long encontrados = 0;
+        for (int i = 0; i < LECTURAS; i++) {
+            if (store.buscarPorId(ids.get(aleatorio.nextInt(ids.size()))) != null) {
+                encontrados++;
+            }
+        }
+        double lecturas = LECTURAS * 1e9 / (System.nanoTime() - inicio);
+        if (encontrados != LECTURAS) {
+            throw new IllegalStateException("Lecturas sin resultado: " + (LECTURAS - encontrados));
+        }
+
+        int modificaciones = Math.min(MODIFICACIONES, total);
+        inicio = System.nanoTime();
+        for (int i = 0; i < modificaciones; i++) {
+            store.actualizar(ids.get(aleatorio.nextInt(ids.size())), envio(aleatorio.nextInt(total)), null);
+        }
+        double modificados = modificaciones * 1e9 / (System.nanoTime() - inicio);
+
+        long resultados = 0;
+        for (int i = 0; i < CONSULTAS / 2; i++) {
+            resultados += store.buscarPorEstado("en TRÁNSITO").size();
+        }
+        inicio = System.nanoTime();
+        for (int i = 0; i < CONSULTAS; i++) {
+            resultados += store.buscarPorEstado("en TRÁNSITO").size();
+        }
+        double porEstadoMs = (System.nanoTime() - inicio) / 1e6 / CONSULTAS;
+
+        store.contarPorEstado();
+        inicio = System.nanoTime();
+        for (int i = 0; i < CONSULTAS; i++) {
+            resultados += store.contarPorEstado().size();
+        }
+        double contarMs = (System.nanoTime() - inicio) / 1e6 / CONSULTAS;
+        if (resultados == 0) {
+            throw new IllegalStateException("La búsqueda por estado no devolvió envíos");
+        }
+
+        return String.format("%-8s %9d %12.0f %12.0f %14.0f %16.2f %16.2f", almacen, store.contar(), altas,
+                lecturas, modificados, porEstadoMs, contarMs);
+    }
+
+    private static EnvioDto envio(int i) {
+        return new EnvioDto(null, LUGARES[i % LUGARES.length], LUGARES[(i * 7 + 3) % LUGARES.length],
+                ESTADOS[i % ESTADOS.length], SISTEMAS[i % SISTEMAS.length]);
+    }
+}
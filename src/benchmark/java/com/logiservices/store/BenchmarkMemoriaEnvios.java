@@ -0,0 +1,82 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Benchmark de memoria del almacén en memoria: EnvioDto frente a EnvioCompacto
+ *
+ * Llena un ConcurrentHashMap<Long, ...> como el de MemoriaEnvioStore con el
+ * mismo número de envíos en las dos representaciones y mide el heap
+ * ocupado tras varias recolecciones:
+ * - dto: EnvioDto con sus propias instancias de String, como llegan al
+ *   deserializar cada petición (la representación anterior)
+ * - compacto: EnvioCompacto codificado con CodificadorEnvios (la actual)
+ *
+ * El resultado incluye las entradas del mapa y los Long de las claves, que
+ * son iguales en los dos casos.
+ *
+ * Uso: scripts/benchmark.sh BenchmarkMemoriaEnvios [envíos]
+ * (por defecto 10000000; con 10M conviene JAVA_OPTS=-Xmx6g)
+ */
+public class BenchmarkMemoriaEnvios {
+
+    private static final String[] LUGARES = {"Bogotá", "Medellín", "Cali", "Barranquilla", "Cartagena",
+            "Bucaramanga", "Pereira", "Santa Marta", "Cúcuta", "Manizales", "Ibagué", "Villavicencio"};
+    private static final String[] ESTADOS = {"Pendiente", "En tránsito", "En aduana", "Entregado", "Cancelado"};
+    private static final String[] SISTEMAS = {"TMS", "ACMS", "SMCS"};
+
+    public static void main(String[] args) {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        long base = heapUsado();
+        Map<Long, EnvioDto> dtos = new ConcurrentHashMap<>();
+        for (int i = 0; i < total; i++) {
+            dtos.put((long) i + 1, envio(i));
+        }
+        long bytesDto = heapUsado() - base;
+        imprimir("dto", dtos.size(), bytesDto, bytesDto);
+        dtos = null;
+
+        base = heapUsado();
+        CodificadorEnvios codificador = new CodificadorEnvios();
+        Map<Long, EnvioCompacto> compactos = new ConcurrentHashMap<>();
+        for (int i = 0; i < total; i++) {
+            long id = (long) i + 1;
+            compactos.put(id, codificador.codificar(id, envio(i), 1L));
+        }
+        long bytesCompacto = heapUsado() - base;
+        imprimir("compacto", compactos.size(), bytesCompacto, bytesDto);
+    }
+
+    /**
+     * Envío con Strings propios, no compartidos con los demás envíos
+     */
+    private static EnvioDto envio(int i) {
+        return new EnvioDto(null, new String(LUGARES[i % LUGARES.length]),
+                new String(LUGARES[(i * 7 + 3) % LUGARES.length]), new String(ESTADOS[i % ESTADOS.length]),
+                new String(SISTEMAS[i % SISTEMAS.length]), 1L);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        long usado = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            usado = Math.min(usado, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return usado;
+    }
+
+    private static void imprimir(String representacion, int envios, long bytes, long bytesDto) {
+        System.out.printf("%-9s %10d envíos %8.1f MB %7.1f bytes/envío %5.0f%% de dto%n", representacion, envios,
+                bytes / 1048576.0, (double) bytes / envios, 100.0 * bytes / bytesDto);
+    }
+}
@@ -0,0 +1,210 @@
+package com.logiservices.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Arranque en caliente: conserva las caches entre despliegues
+ *
+ * Al cerrar la aplicación de forma ordenada se vuelcan las entradas
+ * vigentes de cada CacheVolcable a un archivo local (Smile + gzip). Al
+ * arrancar, una vez lista la aplicación, el archivo se carga en segundo
+ * plano: las peticiones no esperan a la carga, y las que llegan antes
+ * simplemente no encuentran la entrada y la consultan como siempre.
+ *
+ * Cada entrada conserva su antigüedad (más el tiempo que el nodo estuvo
+ * parado), así que expira cuando le tocaba y se revalida en el siguiente
+ * uso. Un volcado más antiguo que envios.arranque-caliente.max-edad-segundos
+ * se descarta entero.
+ */
+@Component
+public class ArranqueEnCaliente {
+
+    private static final Logger log = LoggerFactory.getLogger(ArranqueEnCaliente.class);
+
+    private static final int FORMATO = 1;
+
+    @Autowired
+    private List<CacheVolcable> caches;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Value("${envios.arranque-caliente.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${envios.arranque-caliente.archivo:data/cache-caliente.smile.gz}")
+    private String archivo;
+
+    @Value("${envios.arranque-caliente.max-edad-segundos:3600}")
+    private long maxEdadSegundos;
+
+    private final Map<String, Object> ultimaCarga = new LinkedHashMap<>();
+
+    /**
+     * Carga el volcado anterior sin retrasar el arranque
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (!habilitado || !Files.exists(Paths.get(archivo))) {
+            return;
+        }
+        CompletableFuture.runAsync(this::cargar, runnable -> {
+            Thread hilo = new Thread(runnable, "arranque-caliente");
+            hilo.setDaemon(true);
+            hilo.start();
+        });
+    }
+
+    /**
+     * Vuelca las caches al empezar el cierre, antes de que se destruya ningún bean
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void alCerrar() {
+        if (habilitado) {
+            volcar();
+        }
+    }
+
+    void volcar() {
+        long inicio = System.nanoTime();
+        Map<String, Object> secciones = new LinkedHashMap<>();
+        int total = 0;
+        for (CacheVolcable cache : caches) {
+            try {
+                List<List<Object>> entradas = cache.volcar();
+                secciones.put(cache.getNombreVolcado(), entradas);
+                total += entradas.size();
+            } catch (Exception e) {
+                log.warn("No se pudo volcar la cache {}: {}", cache.getNombreVolcado(), e.getMessage());
+            }
+        }
+
+        Map<String, Object> volcado = new LinkedHashMap<>();
+        volcado.put("formato", FORMATO);
+        volcado.put("volcadoEn", System.currentTimeMillis());
+        volcado.put("secciones", secciones);
+
+        Path destino = Paths.get(archivo);
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            if (destino.getParent() != null) {
+                Files.createDirectories(destino.getParent());
+            }
+            try (OutputStream salida = new GZIPOutputStream(Files.newOutputStream(temporal))) {
+                mapper().writeValue(salida, volcado);
+            }
+            // Renombrado atómico: un cierre interrumpido nunca deja un archivo a medias
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Caches volcadas en {}: {} entradas ({} bytes) en {} ms", destino, total, Files.size(destino),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (IOException e) {
+            log.warn("No se pudieron volcar las caches en {}: {}", destino, e.getMessage());
+        }
+    }
+
+    void cargar() {
+        long inicio = System.nanoTime();
+        Path origen = Paths.get(archivo);
+        Map<String, Object> volcado;
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(origen))) {
+            volcado = mapper().readValue(entrada, new TypeReference<Map<String, Object>>() { });
+        } catch (IOException e) {
+            log.warn("Volcado de caches ilegible en {}: {}", origen, e.getMessage());
+            return;
+        }
+
+        if (!Integer.valueOf(FORMATO).equals(volcado.get("formato")) || !(volcado.get("volcadoEn") instanceof Number)) {
+            log.warn("Volcado de caches con formato desconocido en {}; se ignora", origen);
+            return;
+        }
+        long parado = Math.max(0, System.currentTimeMillis() - ((Number) volcado.get("volcadoEn")).longValue());
+        if (parado > TimeUnit.SECONDS.toMillis(maxEdadSegundos)) {
+            log.info("Volcado de caches de hace {} s descartado (máximo {} s)", parado / 1000, maxEdadSegundos);
+            return;
+        }
+
+        Map<?, ?> secciones = (Map<?, ?>) volcado.getOrDefault("secciones", Map.of());
+        Map<String, Object> cargadas = new LinkedHashMap<>();
+        for (CacheVolcable cache : caches) {
+            Object seccion = secciones.get(cache.getNombreVolcado());
+            if (!(seccion instanceof List)) {
+                continue;
+            }
+            try {
+                cargadas.put(cache.getNombreVolcado(), cache.cargar(envejecer((List<?>) seccion, parado)));
+            } catch (Exception e) {
+                log.warn("No se pudo cargar la cache {}: {}", cache.getNombreVolcado(), e.getMessage());
+            }
+        }
+
+        long duracion = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        synchronized (ultimaCarga) {
+            ultimaCarga.put("paradoSegundos", parado / 1000);
+            ultimaCarga.put("entradasCargadas", cargadas);
+            ultimaCarga.put("duracionMs", duracion);
+        }
+        log.info("Caches cargadas del volcado anterior (parado {} s): {} en {} ms", parado / 1000, cargadas, duracion);
+    }
+
+    /**
+     * Suma a la edad de cada entrada el tiempo que el nodo estuvo parado
+     */
+    private static List<List<Object>> envejecer(List<?> entradas, long parado) {
+        List<List<Object>> resultado = new ArrayList<>(entradas.size());
+        for (Object entrada : entradas) {
+            if (entrada instanceof List && ((List<?>) entrada).size() == 3
+                    && ((List<?>) entrada).get(1) instanceof Number) {
+                List<?> campos = (List<?>) entrada;
+                List<Object> envejecida = new ArrayList<>(3);
+                envejecida.add(campos.get(0));
+                envejecida.add(((Number) campos.get(1)).longValue() + parado);
+                envejecida.add(campos.get(2));
+                resultado.add(envejecida);
+            }
+        }
+        return resultado;
+    }
+
+    private ObjectMapper mapper() {
+        return smileConverter.getObjectMapper();
+    }
+
+    /**
+     * Resultado de la última carga (vacío si no hubo volcado que cargar)
+     */
+    public Map<String, Object> obtenerMetricas() {
+        synchronized (ultimaCarga) {
+            Map<String, Object> metricas = new LinkedHashMap<>();
+            metricas.put("habilitado", habilitado);
+            metricas.put("archivo", archivo);
+            metricas.putAll(ultimaCarga);
+            return metricas;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.logiservices.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logiservices.config.FormatosBinariosConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache de respuestas ya serializadas para los endpoints de lectura más usados
+ *
+ * Cada entrada guarda los bytes de la respuesta en un formato (JSON, CBOR o
+ * Smile) y, si superan un tamaño mínimo, también su versión comprimida con
+ * gzip. Una entrada es válida mientras la versión de los datos con la que
+ * se generó coincida con la actual (EnvioService.getVersionCambios), así
+ * que no hay TTL ni invalidación explícita.
+ *
+ * En un acierto no se construyen mapas ni se ejecuta Jackson: los bytes se
+ * copian directamente a la respuesta (ByteArrayHttpMessageConverter).
+ */
+@Component
+public class CacheRespuestas {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Value("${envios.respuestas.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${envios.respuestas.gzip:true}")
+    private boolean gzip;
+
+    @Value("${envios.respuestas.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    @Value("${envios.respuestas.max-bytes:16777216}")
+    private int maxBytes;
+
+    @Value("${envios.respuestas.max-entradas:256}")
+    private int maxEntradas;
+
+    /** Distingue los ETags de distintos arranques (la versión empieza en 0 en cada uno) */
+    private final String arranque = Long.toHexString(System.currentTimeMillis());
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder noModificadas = new LongAdder();
+
+    /**
+     * Responde con los bytes cacheados o, si no están vigentes, serializa el contenido y los guarda
+     *
+     * @param request Petición (headers Accept, Accept-Encoding e If-None-Match)
+     * @param clave Identifica la respuesta (endpoint y parámetros)
+     * @param version Versión actual de los datos de la respuesta
+     * @param contenido Construye el cuerpo de la respuesta en un fallo
+     * @return 200 con los bytes o 304 si el ETag del cliente coincide
+     */
+    public ResponseEntity<byte[]> responder(HttpServletRequest request, String clave, long version,
+                                            Supplier<Object> contenido) {
+        MediaType formato = FormatosBinariosConfig.negociar(request.getHeader(HttpHeaders.ACCEPT));
+        String claveFormato = clave + "|" + formato.getSubtype();
+
+        Entrada entrada = habilitada ? entradas.get(claveFormato) : null;
+        if (entrada != null && entrada.version == version) {
+            aciertos.increment();
+        } else {
+            fallos.increment();
+            entrada = crearEntrada(version, formato, contenido.get());
+            if (habilitada && entrada.cuerpo.length <= maxBytes) {
+                if (entradas.size() >= maxEntradas && !entradas.containsKey(claveFormato)) {
+                    // Claves de parámetros arbitrarios (p. ej. estados): se reinicia la cache
+                    entradas.clear();
+                }
+                entradas.put(claveFormato, entrada);
+            }
+        }
+
+        boolean comprimida = entrada.gzip != null && aceptaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = "\"" + entrada.etag + (comprimida ? "-gz" : "") + "\"";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+        headers.setETag(etag);
+        if (coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            noModificadas.increment();
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(entrada.formato);
+        if (comprimida) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new ResponseEntity<>(comprimida ? entrada.gzip : entrada.cuerpo, headers, HttpStatus.OK);
+    }
+
+    private Entrada crearEntrada(long version, MediaType formato, Object contenido) {
+        try {
+            byte[] cuerpo = mapperPara(formato).writeValueAsBytes(contenido);
+            byte[] comprimido = gzip && cuerpo.length >= gzipMinBytes ? comprimir(cuerpo) : null;
+            MediaType tipo = MediaType.APPLICATION_JSON.equals(formato)
+                    ? new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.UTF_8)
+                    : formato;
+            String etag = arranque + "-" + version + "-" + formato.getSubtype();
+            return new Entrada(version, tipo, cuerpo, comprimido, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+
+    private ObjectMapper mapperPara(MediaType formato) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(formato)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (FormatosBinariosConfig.APPLICATION_SMILE.equalsTypeAndSubtype(formato)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] comprimido = salida.toByteArray();
+        // Si no reduce el tamaño no compensa enviarlo comprimido
+        return comprimido.length < datos.length ? comprimido : null;
+    }
+
+    private static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                return partes.length == 1 || !partes[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solo coincide el ETag exacto: "*" no se acepta, porque validaría
+     * cualquier versión cacheada por el cliente
+     */
+    private static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Métricas de la cache de respuestas
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("entradas", entradas.size());
+        metricas.put("aciertos", aciertos.sum());
+        metricas.put("fallos", fallos.sum());
+        metricas.put("noModificadas", noModificadas.sum());
+        long bytes = 0;
+        for (Entrada entrada : entradas.values()) {
+            bytes += entrada.cuerpo.length + (entrada.gzip != null ? entrada.gzip.length : 0);
+        }
+        metricas.put("bytes", bytes);
+        return metricas;
+    }
+
+    /**
+     * Respuesta serializada para una versión de los datos y un formato
+     */
+    private static final class Entrada {
+
+        final long version;
+        final MediaType formato;
+        final byte[] cuerpo;
+        final byte[] gzip;
+        final String etag;
+
+        Entrada(long version, MediaType formato, byte[] cuerpo, byte[] gzip, String etag) {
+            this.version = version;
+            this.formato = formato;
+            this.cuerpo = cuerpo;
+            this.gzip = gzip;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.logiservices.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache en memoria con expiración (TTL), tamaño máximo y carga coalescida
+ *
+ * - Los aciertos son una lectura de ConcurrentHashMap, sin locks.
+ * - Si varias peticiones piden la misma clave ausente a la vez, solo una
+ *   ejecuta el cargador; el resto espera el mismo resultado.
+ * - Al superar el tamaño máximo se eliminan primero las entradas expiradas
+ *   y después las de acceso más antiguo (aprox. LRU), en lotes.
+ *
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del valor
+ */
+public class CacheTtl<K, V> {
+
+    private final long ttlNanos;
+    private final int tamanoMaximo;
+    private final ConcurrentHashMap<K, Entrada<V>> entradas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enVuelo = new ConcurrentHashMap<>();
+    private final ReentrantLock desalojo = new ReentrantLock();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    /**
+     * @param ttlMillis Tiempo de vida de cada entrada en milisegundos
+     * @param tamanoMaximo Número máximo de entradas
+     */
+    public CacheTtl(long ttlMillis, int tamanoMaximo) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.tamanoMaximo = Math.max(1, tamanoMaximo);
+    }
+
+    /**
+     * Obtiene un valor vigente, o null si no está o expiró
+     */
+    public V obtenerSiPresente(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            return null;
+        }
+        long ahora = System.nanoTime();
+        if (ahora - entrada.creadaEn > ttlNanos) {
+            entradas.remove(clave, entrada);
+            return null;
+        }
+        entrada.ultimoAcceso = ahora;
+        return entrada.valor;
+    }
+
+    /**
+     * Obtiene el valor de la clave, cargándolo si no está en cache
+     *
+     * @param clave Clave a buscar
+     * @param cargador Función que obtiene el valor en caso de fallo
+     * @param cachear Indica si el valor cargado debe guardarse (p. ej. no guardar errores)
+     * @return Valor en cache o recién cargado
+     */
+    public V obtener(K clave, Function<K, V> cargador, Predicate<V> cachear) {
+        V valor = obtenerSiPresente(clave);
+        if (valor != null) {
+            aciertos.incrementAndGet();
+            return valor;
+        }
+        fallos.incrementAndGet();
+        return cargar(clave, cargador, cachear).join();
+    }
+
+    /**
+     * Variante asíncrona: devuelve un futuro ya completado si hay acierto
+     */
+    public CompletableFuture<V> obtenerAsync(K clave, Function<K, CompletableFuture<V>> cargador, Predicate<V> cachear) {
+        V valor = obtenerSiPresente(clave);
+        if (valor != null) {
+            aciertos.incrementAndGet();
+            return CompletableFuture.completedFuture(valor);
+        }
+        fallos.incrementAndGet();
+
+        CompletableFuture<V> nuevo = new CompletableFuture<>();
+        CompletableFuture<V> existente = enVuelo.putIfAbsent(clave, nuevo);
+        if (existente != null) {
+            return existente;
+        }
+        cargador.apply(clave).whenComplete((resultado, error) -> completar(clave, nuevo, resultado, error, cachear));
+        return nuevo;
+    }
+
+    private CompletableFuture<V> cargar(K clave, Function<K, V> cargador, Predicate<V> cachear) {
+        CompletableFuture<V> nuevo = new CompletableFuture<>();
+        CompletableFuture<V> existente = enVuelo.putIfAbsent(clave, nuevo);
+        if (existente != null) {
+            return existente;
+        }
+        try {
+            completar(clave, nuevo, cargador.apply(clave), null, cachear);
+        } catch (RuntimeException e) {
+            completar(clave, nuevo, null, e, cachear);
+        }
+        return nuevo;
+    }
+
+    private void completar(K clave, CompletableFuture<V> futuro, V resultado, Throwable error, Predicate<V> cachear) {
+        if (error == null && resultado != null && cachear.test(resultado)) {
+            poner(clave, resultado);
+        }
+        enVuelo.remove(clave, futuro);
+        if (error != null) {
+            futuro.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+        } else {
+            futuro.complete(resultado);
+        }
+    }
+
+    /**
+     * Guarda un valor en la cache
+     */
+    public void poner(K clave, V valor) {
+        entradas.put(clave, new Entrada<>(valor, System.nanoTime()));
+        if (entradas.size() > tamanoMaximo) {
+            desalojar();
+        }
+    }
+
+    /**
+     * Guarda un valor que ya tiene cierta antigüedad (p. ej. recuperado de un
+     * volcado): expira cuando le corresponde por su edad, no por la carga
+     *
+     * @param edadMillis Antigüedad del valor en milisegundos
+     */
+    public void poner(K clave, V valor, long edadMillis) {
+        long edadNanos = edadMillis * 1_000_000L;
+        if (edadNanos >= ttlNanos) {
+            return;
+        }
+        entradas.putIfAbsent(clave, new Entrada<>(valor, System.nanoTime() - Math.max(0, edadNanos)));
+        if (entradas.size() > tamanoMaximo) {
+            desalojar();
+        }
+    }
+
+    /**
+     * Elimina una clave de la cache
+     */
+    public void invalidar(K clave) {
+        entradas.remove(clave);
+    }
+
+    /**
+     * Vacía la cache
+     */
+    public void invalidarTodo() {
+        entradas.clear();
+    }
+
+    public int getTamano() {
+        return entradas.size();
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    /**
+     * Recorre las entradas vigentes con su antigüedad (para volcarlas a disco)
+     */
+    public void recorrerVigentes(Visitante<K, V> visitante) {
+        long ahora = System.nanoTime();
+        entradas.forEach((clave, entrada) -> {
+            long edad = ahora - entrada.creadaEn;
+            if (edad <= ttlNanos) {
+                visitante.visitar(clave, entrada.valor, edad / 1_000_000L);
+            }
+        });
+    }
+
+    /**
+     * Recibe cada entrada vigente con su antigüedad en milisegundos
+     */
+    @FunctionalInterface
+    public interface Visitante<K, V> {
+
+        void visitar(K clave, V valor, long edadMillis);
+    }
+
+    /**
+     * Reduce la cache a ~90% de su tamaño máximo
+     */
+    private void desalojar() {
+        if (!desalojo.tryLock()) {
+            return; // Otro hilo ya está desalojando
+        }
+        try {
+            long ahora = System.nanoTime();
+            entradas.entrySet().removeIf(e -> ahora - e.getValue().creadaEn > ttlNanos);
+
+            int exceso = entradas.size() - (tamanoMaximo - tamanoMaximo / 10);
+            if (exceso <= 0) {
+                return;
+            }
+            List<Map.Entry<K, Entrada<V>>> candidatas = new ArrayList<>(entradas.entrySet());
+            candidatas.sort(Comparator.comparingLong(e -> e.getValue().ultimoAcceso));
+            for (int i = 0; i < exceso && i < candidatas.size(); i++) {
+                Map.Entry<K, Entrada<V>> candidata = candidatas.get(i);
+                entradas.remove(candidata.getKey(), candidata.getValue());
+            }
+        } finally {
+            desalojo.unlock();
+        }
+    }
+
+    private static final class Entrada<V> {
+
+        final V valor;
+        final long creadaEn;
+        volatile long ultimoAcceso;
+
+        Entrada(V valor, long creadaEn) {
+            this.valor = valor;
+            this.creadaEn = creadaEn;
+            this.ultimoAcceso = creadaEn;
+        }
+    }
+}
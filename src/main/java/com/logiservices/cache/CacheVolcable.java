@@ -0,0 +1,33 @@
+package com.logiservices.cache;
+
+import java.util.List;
+
+/**
+ * Cache cuyo contenido sobrevive a un reinicio (ver ArranqueEnCaliente)
+ *
+ * Cada entrada se vuelca como [clave, edadMillis, valor], con claves y
+ * valores serializables por Jackson (textos, números, mapas y listas).
+ * Al cargarlas, la edad ya incluye el tiempo que el nodo estuvo parado,
+ * de modo que cada entrada expira cuando le habría tocado y se revalida
+ * en el siguiente uso, como cualquier otra.
+ */
+public interface CacheVolcable {
+
+    /**
+     * Nombre de la sección en el archivo de volcado
+     */
+    String getNombreVolcado();
+
+    /**
+     * Entradas vigentes, como [clave, edadMillis, valor]
+     */
+    List<List<Object>> volcar();
+
+    /**
+     * Carga entradas de un volcado anterior sin pisar las ya presentes
+     *
+     * @param entradas Entradas como [clave, edadMillis, valor]
+     * @return Número de entradas cargadas
+     */
+    int cargar(List<List<Object>> entradas);
+}
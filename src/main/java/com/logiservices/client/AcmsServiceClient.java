@@ -1,5 +1,9 @@
 package com.logiservices.client;
 
+import com.logiservices.dto.EnvioSistemaResponse;
+import com.logiservices.dto.EstadoSistemaResponse;
+import feign.Request;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,22 +26,25 @@ public interface AcmsServiceClient {
      * Consulta un envío específico en ACMS
      */
     @GetMapping("/api/acms/envios/{id}")
-    Map<String, Object> consultarEnvio(@PathVariable("id") Long id);
+    EnvioSistemaResponse consultarEnvio(@PathVariable("id") Long id);
 
     /**
      * GET /api/acms/envios
      * Lista todos los envíos ACMS
+     *
+     * Devuelve la respuesta sin decodificar para leer el cuerpo como flujo;
+     * quien la recibe debe cerrarla.
      */
     @GetMapping("/api/acms/envios")
-    Map<String, Object> listarEnvios();
+    Response listarEnvios();
 
     /**
      * PUT /api/acms/envios/{id}/estado
      * Actualiza el estado de un envío
      */
     @PutMapping("/api/acms/envios/{id}/estado")
-    Map<String, Object> actualizarEstado(@PathVariable("id") Long id,
-                                        @RequestBody Map<String, String> request);
+    EstadoSistemaResponse actualizarEstado(@PathVariable("id") Long id,
+                                          @RequestBody Map<String, String> request);
 
     /**
      * GET /api/acms/vuelos/{origen}/{destino}
@@ -50,8 +57,10 @@ public interface AcmsServiceClient {
     /**
      * GET /api/acms/info
      * Información del servicio ACMS
+     *
+     * @param opciones Tiempos de espera de esta llamada (sustituyen a los de Feign)
      */
     @GetMapping("/api/acms/info")
-    Map<String, Object> obtenerInfo();
+    Map<String, Object> obtenerInfo(Request.Options opciones);
 }
 
@@ -1,5 +1,9 @@
 package com.logiservices.client;
 
+import com.logiservices.dto.EnvioSistemaResponse;
+import com.logiservices.dto.EstadoSistemaResponse;
+import feign.Request;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,22 +26,25 @@ public interface SmcsServiceClient {
      * Consulta un envío específico en SMCS
      */
     @GetMapping("/api/smcs/envios/{id}")
-    Map<String, Object> consultarEnvio(@PathVariable("id") Long id);
+    EnvioSistemaResponse consultarEnvio(@PathVariable("id") Long id);
 
     /**
      * GET /api/smcs/envios
      * Lista todos los envíos SMCS
+     *
+     * Devuelve la respuesta sin decodificar para leer el cuerpo como flujo;
+     * quien la recibe debe cerrarla.
      */
     @GetMapping("/api/smcs/envios")
-    Map<String, Object> listarEnvios();
+    Response listarEnvios();
 
     /**
      * PUT /api/smcs/envios/{id}/estado
      * Actualiza el estado de un envío
      */
     @PutMapping("/api/smcs/envios/{id}/estado")
-    Map<String, Object> actualizarEstado(@PathVariable("id") Long id,
-                                        @RequestBody Map<String, String> request);
+    EstadoSistemaResponse actualizarEstado(@PathVariable("id") Long id,
+                                          @RequestBody Map<String, String> request);
 
     /**
      * GET /api/smcs/buques/{origen}/{destino}
@@ -57,8 +64,10 @@ public interface SmcsServiceClient {
     /**
      * GET /api/smcs/info
      * Información del servicio SMCS
+     *
+     * @param opciones Tiempos de espera de esta llamada (sustituyen a los de Feign)
      */
     @GetMapping("/api/smcs/info")
-    Map<String, Object> obtenerInfo();
+    Map<String, Object> obtenerInfo(Request.Options opciones);
 }
 
@@ -1,5 +1,9 @@
 package com.logiservices.client;
 
+import com.logiservices.dto.EnvioSistemaResponse;
+import com.logiservices.dto.EstadoSistemaResponse;
+import feign.Request;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,22 +26,25 @@ public interface TmsServiceClient {
      * Consulta un envío específico en TMS
      */
     @GetMapping("/api/tms/envios/{id}")
-    Map<String, Object> consultarEnvio(@PathVariable("id") Long id);
+    EnvioSistemaResponse consultarEnvio(@PathVariable("id") Long id);
 
     /**
      * GET /api/tms/envios
      * Lista todos los envíos TMS
+     *
+     * Devuelve la respuesta sin decodificar para leer el cuerpo como flujo;
+     * quien la recibe debe cerrarla.
      */
     @GetMapping("/api/tms/envios")
-    Map<String, Object> listarEnvios();
+    Response listarEnvios();
 
     /**
      * PUT /api/tms/envios/{id}/estado
      * Actualiza el estado de un envío
      */
     @PutMapping("/api/tms/envios/{id}/estado")
-    Map<String, Object> actualizarEstado(@PathVariable("id") Long id,
-                                        @RequestBody Map<String, String> request);
+    EstadoSistemaResponse actualizarEstado(@PathVariable("id") Long id,
+                                          @RequestBody Map<String, String> request);
 
     /**
      * GET /api/tms/rutas/{origen}/{destino}
@@ -50,8 +57,10 @@ public interface TmsServiceClient {
     /**
      * GET /api/tms/info
      * Información del servicio TMS
+     *
+     * @param opciones Tiempos de espera de esta llamada (sustituyen a los de Feign)
      */
     @GetMapping("/api/tms/info")
-    Map<String, Object> obtenerInfo();
+    Map<String, Object> obtenerInfo(Request.Options opciones);
 }
 
@@ -0,0 +1,101 @@
+package com.logiservices.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Anillo de hashing consistente con nodos virtuales (inmutable)
+ *
+ * Cada nodo ocupa varios puntos del anillo (nodos virtuales) para que el
+ * reparto de claves sea uniforme. Una clave pertenece al primer punto
+ * igual o mayor que su hash. Al entrar o salir un nodo solo cambian de
+ * dueño las claves de los arcos que ganó o perdió (≈ 1/N del total).
+ *
+ * Los puntos se guardan en dos arrays paralelos ordenados; la búsqueda es
+ * binaria, sin objetos por consulta.
+ */
+final class AnilloConsistente {
+
+    private final long[] puntos;
+    private final String[] duenos;
+    private final List<String> nodos;
+
+    AnilloConsistente(Collection<String> nodos, int nodosVirtuales) {
+        this.nodos = List.copyOf(nodos);
+        int total = this.nodos.size() * nodosVirtuales;
+        long[][] pares = new long[total][];
+        int i = 0;
+        for (int n = 0; n < this.nodos.size(); n++) {
+            for (int v = 0; v < nodosVirtuales; v++) {
+                pares[i++] = new long[] { hash(this.nodos.get(n) + "#" + v), n };
+            }
+        }
+        // Empates (improbables) se resuelven por índice de nodo, igual en todas las instancias
+        Arrays.sort(pares, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        puntos = new long[total];
+        duenos = new String[total];
+        for (i = 0; i < total; i++) {
+            puntos[i] = pares[i][0];
+            duenos[i] = this.nodos.get((int) pares[i][1]);
+        }
+    }
+
+    /**
+     * ID del nodo dueño de la clave
+     */
+    String propietario(long clave) {
+        int posicion = Arrays.binarySearch(puntos, mezclar(clave));
+        if (posicion < 0) {
+            posicion = -posicion - 1;
+        }
+        return duenos[posicion == puntos.length ? 0 : posicion];
+    }
+
+    List<String> getNodos() {
+        return nodos;
+    }
+
+    /**
+     * Fracción del anillo que corresponde a cada nodo, en el orden de {@link #getNodos()}
+     */
+    double[] reparto() {
+        double[] fracciones = new double[nodos.size()];
+        if (puntos.length == 1) {
+            fracciones[0] = 1;
+            return fracciones;
+        }
+        for (int i = 0; i < puntos.length; i++) {
+            // El arco (punto anterior, punto actual] pertenece al dueño del punto actual
+            long arco = puntos[i] - (i == 0 ? puntos[puntos.length - 1] : puntos[i - 1]);
+            double longitud = arco >= 0 ? arco : arco + 0x1p64;
+            fracciones[nodos.indexOf(duenos[i])] += longitud / 0x1p64;
+        }
+        return fracciones;
+    }
+
+    /**
+     * FNV-1a de 64 bits con mezcla final, estable entre instancias y versiones de Java
+     */
+    static long hash(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    /**
+     * Finalizador de MurmurHash3: reparte IDs consecutivos por todo el anillo
+     */
+    static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
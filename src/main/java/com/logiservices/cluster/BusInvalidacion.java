@@ -0,0 +1,313 @@
+package com.logiservices.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.event.InvalidacionRemotaEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bus de invalidación entre instancias del Service Facade
+ *
+ * Cada cambio de envío en este nodo (EnvioCambiadoEvent) deja su ID
+ * pendiente; cada envios.cluster.invalidacion.intervalo-ms los pendientes
+ * se envían en un solo lote a las demás instancias registradas en Eureka
+ * (POST /api/v1/cluster/invalidaciones). Varios cambios del mismo envío
+ * entre dos envíos viajan una sola vez. Quien recibe el lote publica un
+ * InvalidacionRemotaEvent para descartar sus respuestas HTTP cacheadas.
+ *
+ * El bus solo invalida esa cache de respuestas. Los índices (lugares,
+ * filtros, rutas) y el historial de estados se alimentan únicamente de los
+ * EnvioCambiadoEvent del almacén de cada nodo: con almacén en memoria u
+ * off-heap cada nodo guarda sus propios envíos, y un ID recibido de otro
+ * nodo no identifica un envío local. Los ESTADO_SISTEMA no viajan, porque
+ * no cambian ninguna respuesta local.
+ *
+ * Tolerancia a pérdidas: las invalidaciones no se reintentan una a una.
+ * Si un lote no llega a un par, o el receptor detecta un salto en la
+ * secuencia del emisor (p. ej. estuvo marcado como perdido), el siguiente
+ * mensaje se trata como invalidación completa. Lo mismo ocurre si se
+ * acumulan más IDs de los que caben en un lote.
+ */
+@Component
+public class BusInvalidacion {
+
+    private static final Logger log = LoggerFactory.getLogger(BusInvalidacion.class);
+
+    public static final String RUTA = "/api/v1/cluster/invalidaciones";
+
+    @Autowired
+    private NodosCluster nodosCluster;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${envios.cluster.invalidacion.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${envios.cluster.invalidacion.intervalo-ms:100}")
+    private long intervaloMs;
+
+    @Value("${envios.cluster.invalidacion.max-ids-lote:10000}")
+    private int maxIdsLote;
+
+    @Value("${envios.cluster.invalidacion.timeout-ms:1000}")
+    private long timeoutMs;
+
+    private HttpClient cliente;
+    private ScheduledExecutorService programador;
+
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendienteTodo = new AtomicBoolean();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    /** Pares a los que no llegó el último lote: reciben una invalidación completa */
+    private final Set<String> paresDesfasados = ConcurrentHashMap.newKeySet();
+
+    /** Última secuencia recibida de cada emisor */
+    private final ConcurrentHashMap<String, Long> ultimaSecuencia = new ConcurrentHashMap<>();
+
+    private final LongAdder lotesEnviados = new LongAdder();
+    private final LongAdder idsEnviados = new LongAdder();
+    private final LongAdder enviosFallidos = new LongAdder();
+    private final LongAdder lotesRecibidos = new LongAdder();
+    private final LongAdder invalidacionesCompletas = new LongAdder();
+
+    @PostConstruct
+    void iniciar() {
+        if (!habilitada) {
+            return;
+        }
+        if (!nodosCluster.isConfigurado()) {
+            log.info("envios.cluster.token sin configurar: el bus de invalidación queda deshabilitado");
+            habilitada = false;
+            return;
+        }
+        cliente = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "cluster-invalidacion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::enviarPendientes, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Anota el envío cambiado para el próximo lote (solo cambios de este nodo:
+     * los recibidos de otros nodos se publican como InvalidacionRemotaEvent)
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (!habilitada || cambio.getId() == null
+                || cambio.getTipo() == EnvioCambiadoEvent.Tipo.ESTADO_SISTEMA) {
+            return;
+        }
+        if (pendientes.size() >= maxIdsLote) {
+            pendienteTodo.set(true);
+            pendientes.clear();
+            return;
+        }
+        pendientes.add(cambio.getId());
+    }
+
+    void enviarPendientes() {
+        try {
+            boolean todo = pendienteTodo.getAndSet(false);
+            Set<Long> ids = new HashSet<>();
+            Iterator<Long> iterador = pendientes.iterator();
+            while (iterador.hasNext()) {
+                ids.add(iterador.next());
+                iterador.remove();
+            }
+            if (!todo && ids.isEmpty() && paresDesfasados.isEmpty()) {
+                return;
+            }
+
+            List<NodosCluster.Nodo> pares = nodosCluster.pares();
+            if (pares.isEmpty()) {
+                paresDesfasados.clear();
+                return;
+            }
+            long numero = secuencia.incrementAndGet();
+            Lote parcial = new Lote(nodosCluster.getIdLocal(), numero, todo, todo ? Set.of() : ids);
+            Lote completo = new Lote(parcial.getOrigen(), numero, true, Set.of());
+            byte[] cuerpoParcial = objectMapper.writeValueAsBytes(parcial);
+            byte[] cuerpoCompleto = objectMapper.writeValueAsBytes(completo);
+
+            // Solo quedan desfasados los pares que siguen registrados
+            Set<String> registrados = new HashSet<>();
+            List<CompletableFuture<Void>> envios = new ArrayList<>(pares.size());
+            for (NodosCluster.Nodo par : pares) {
+                registrados.add(par.getId());
+                boolean desfasado = paresDesfasados.contains(par.getId());
+                envios.add(enviar(par, desfasado ? cuerpoCompleto : cuerpoParcial));
+            }
+            paresDesfasados.retainAll(registrados);
+            CompletableFuture.allOf(envios.toArray(new CompletableFuture[0])).join();
+
+            lotesEnviados.increment();
+            idsEnviados.add(ids.size());
+        } catch (Exception e) {
+            log.warn("Error enviando invalidaciones: {}", e.getMessage());
+            pendienteTodo.set(true);
+        }
+    }
+
+    private CompletableFuture<Void> enviar(NodosCluster.Nodo par, byte[] cuerpo) {
+        HttpRequest peticion = HttpRequest.newBuilder(par.getUri().resolve(RUTA))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(NodosCluster.HEADER_TOKEN, nodosCluster.getToken())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(cuerpo))
+                .build();
+        return cliente.sendAsync(peticion, HttpResponse.BodyHandlers.discarding())
+                .handle((respuesta, error) -> {
+                    if (error == null && respuesta.statusCode() < 300) {
+                        nodosCluster.registrarExito(par.getId());
+                        paresDesfasados.remove(par.getId());
+                    } else {
+                        enviosFallidos.increment();
+                        nodosCluster.registrarFallo(par.getId());
+                        paresDesfasados.add(par.getId());
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Aplica un lote recibido de otra instancia
+     */
+    public void recibir(Lote lote) {
+        if (!habilitada || lote.getOrigen() == null || lote.getOrigen().equals(nodosCluster.getIdLocal())) {
+            return;
+        }
+        Long anterior = ultimaSecuencia.put(lote.getOrigen(), lote.getSecuencia());
+        // Un salto en la secuencia indica lotes perdidos (o que el emisor se reinició)
+        boolean todo = lote.isTodo() || (anterior != null && lote.getSecuencia() != anterior + 1);
+
+        lotesRecibidos.increment();
+        if (todo) {
+            invalidacionesCompletas.increment();
+        }
+        Set<Long> ids = todo || lote.getIds() == null ? Set.of() : lote.getIds();
+        eventPublisher.publishEvent(new InvalidacionRemotaEvent(lote.getOrigen(), ids, todo));
+    }
+
+    /**
+     * Métricas del bus y estado de los pares
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("habilitada", habilitada);
+        metricas.put("nodoLocal", nodosCluster.getIdLocal());
+        metricas.put("lotesEnviados", lotesEnviados.sum());
+        metricas.put("idsEnviados", idsEnviados.sum());
+        metricas.put("enviosFallidos", enviosFallidos.sum());
+        metricas.put("lotesRecibidos", lotesRecibidos.sum());
+        metricas.put("invalidacionesCompletas", invalidacionesCompletas.sum());
+        metricas.put("pendientes", pendientes.size());
+        metricas.put("nodos", nodosCluster.obtenerMetricas());
+        return metricas;
+    }
+
+    @PreDestroy
+    void detener() {
+        if (programador != null) {
+            programador.shutdown();
+            try {
+                programador.awaitTermination(timeoutMs * 2, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Último lote antes de salir, para no dejar a los pares desactualizados
+            enviarPendientes();
+        }
+    }
+
+    /**
+     * Lote de invalidaciones (cuerpo JSON del POST entre instancias)
+     */
+    public static class Lote {
+
+        private String origen;
+        private long secuencia;
+        private boolean todo;
+        private Set<Long> ids;
+
+        public Lote() {
+        }
+
+        Lote(String origen, long secuencia, boolean todo, Set<Long> ids) {
+            this.origen = origen;
+            this.secuencia = secuencia;
+            this.todo = todo;
+            this.ids = ids;
+        }
+
+        public String getOrigen() {
+            return origen;
+        }
+
+        public void setOrigen(String origen) {
+            this.origen = origen;
+        }
+
+        public long getSecuencia() {
+            return secuencia;
+        }
+
+        public void setSecuencia(long secuencia) {
+            this.secuencia = secuencia;
+        }
+
+        public boolean isTodo() {
+            return todo;
+        }
+
+        public void setTodo(boolean todo) {
+            this.todo = todo;
+        }
+
+        public Set<Long> getIds() {
+            return ids;
+        }
+
+        public void setIds(Set<Long> ids) {
+            this.ids = ids;
+        }
+    }
+}
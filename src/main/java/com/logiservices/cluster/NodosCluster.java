@@ -0,0 +1,228 @@
+package com.logiservices.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Instancias del Service Facade registradas en Eureka
+ *
+ * Las instancias se descubren con el mismo spring.application.name con el
+ * que se registra este nodo, así que varias instancias en la misma máquina
+ * (cada una con su server.port) forman un cluster sin más configuración.
+ *
+ * Cada par lleva la cuenta de sus fallos consecutivos: tras
+ * envios.cluster.fallos-max fallos se considera perdido y se deja de
+ * contactar durante envios.cluster.espera-ms; después se vuelve a probar.
+ * Eureka tarda en retirar una instancia caída, de modo que esta marca
+ * evita esperar el timeout en cada llamada mientras tanto.
+ */
+@Component
+public class NodosCluster {
+
+    private static final Logger log = LoggerFactory.getLogger(NodosCluster.class);
+
+    public static final String HEADER_TOKEN = "X-Cluster-Token";
+
+    @Autowired
+    private DiscoveryClient discoveryClient;
+
+    @Autowired
+    private ObjectProvider<Registration> registro;
+
+    @Value("${spring.application.name}")
+    private String nombreAplicacion;
+
+    @Value("${server.port:8080}")
+    private int puerto;
+
+    @Value("${envios.cluster.fallos-max:3}")
+    private int fallosMax;
+
+    @Value("${envios.cluster.espera-ms:10000}")
+    private long esperaMs;
+
+    @Value("${envios.cluster.token:}")
+    private String token;
+
+    private final ConcurrentHashMap<String, Estado> estados = new ConcurrentHashMap<>();
+
+    /**
+     * ID de instancia de este nodo en Eureka
+     */
+    public String getIdLocal() {
+        Registration registration = registro.getIfAvailable();
+        if (registration != null && registration.getInstanceId() != null) {
+            return registration.getInstanceId();
+        }
+        return "localhost:" + nombreAplicacion + ":" + puerto;
+    }
+
+    /**
+     * Token compartido con el que se autentican las llamadas entre instancias
+     * (header X-Cluster-Token); vacío si no está configurado
+     */
+    public String getToken() {
+        return token != null ? token : "";
+    }
+
+    /**
+     * Indica si hay token configurado; sin él no se habla con otras instancias
+     */
+    public boolean isConfigurado() {
+        return !getToken().isBlank();
+    }
+
+    /**
+     * Comprueba el token de una llamada recibida de otra instancia
+     */
+    public boolean tokenValido(String recibido) {
+        return isConfigurado() && recibido != null
+                && MessageDigest.isEqual(getToken().getBytes(StandardCharsets.UTF_8), recibido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Todas las instancias registradas (incluida esta), ordenadas por ID
+     */
+    public List<Nodo> todos() {
+        String idLocal = getIdLocal();
+        List<Nodo> nodos = new ArrayList<>();
+        boolean localIncluido = false;
+        for (ServiceInstance instancia : discoveryClient.getInstances(nombreAplicacion)) {
+            String id = instancia.getInstanceId() != null ? instancia.getInstanceId()
+                    : instancia.getHost() + ":" + instancia.getPort();
+            boolean local = id.equals(idLocal);
+            localIncluido |= local;
+            nodos.add(new Nodo(id, instancia.getUri(), local));
+        }
+        if (!localIncluido) {
+            // Todavía no registrado (o sin Eureka): este nodo siempre forma parte del cluster
+            nodos.add(new Nodo(idLocal, URI.create("http://localhost:" + puerto), true));
+        }
+        nodos.sort(Comparator.comparing(Nodo::getId));
+        return nodos;
+    }
+
+    /**
+     * Las demás instancias, sin las marcadas como perdidas
+     */
+    public List<Nodo> pares() {
+        long ahora = System.currentTimeMillis();
+        List<Nodo> pares = new ArrayList<>();
+        for (Nodo nodo : todos()) {
+            if (nodo.isLocal()) {
+                continue;
+            }
+            Estado estado = estados.get(nodo.getId());
+            if (estado == null || estado.disponibleDesde <= ahora) {
+                pares.add(nodo);
+            }
+        }
+        return pares;
+    }
+
+    /**
+     * Registra una llamada correcta a un par
+     *
+     * @return true si el par estaba perdido y vuelve a responder
+     */
+    public boolean registrarExito(String id) {
+        Estado estado = estados.remove(id);
+        if (estado != null && estado.fallos >= fallosMax) {
+            log.info("Nodo {} recuperado", id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registra una llamada fallida a un par
+     */
+    public void registrarFallo(String id) {
+        estados.compute(id, (clave, estado) -> {
+            Estado nuevo = estado != null ? estado : new Estado();
+            nuevo.fallos++;
+            if (nuevo.fallos >= fallosMax) {
+                if (nuevo.fallos == fallosMax) {
+                    log.warn("Nodo {} no responde; se reintentará en {} ms", id, esperaMs);
+                }
+                nuevo.disponibleDesde = System.currentTimeMillis() + esperaMs;
+            }
+            return nuevo;
+        });
+    }
+
+    /**
+     * Instancias conocidas con su estado
+     */
+    public List<Map<String, Object>> obtenerMetricas() {
+        List<Map<String, Object>> nodos = new ArrayList<>();
+        for (Nodo nodo : todos()) {
+            Estado estado = estados.get(nodo.getId());
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("id", nodo.getId());
+            datos.put("uri", nodo.getUri().toString());
+            datos.put("local", nodo.isLocal());
+            datos.put("fallosConsecutivos", estado != null ? estado.fallos : 0);
+            datos.put("perdido", estado != null && estado.fallos >= fallosMax);
+            nodos.add(datos);
+        }
+        return nodos;
+    }
+
+    /**
+     * Fallos consecutivos de un par
+     */
+    private static final class Estado {
+
+        int fallos;
+        long disponibleDesde;
+    }
+
+    /**
+     * Instancia del Service Facade
+     */
+    public static final class Nodo {
+
+        private final String id;
+        private final URI uri;
+        private final boolean local;
+
+        Nodo(String id, URI uri, boolean local) {
+            this.id = id;
+            this.uri = uri;
+            this.local = local;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * URI base de la instancia (http://host:puerto)
+         */
+        public URI getUri() {
+            return uri;
+        }
+
+        public boolean isLocal() {
+            return local;
+        }
+    }
+}
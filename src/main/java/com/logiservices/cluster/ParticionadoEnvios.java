@@ -0,0 +1,408 @@
+package com.logiservices.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.store.EnvioStore;
+import com.logiservices.store.PropiedadIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Particionado de los envíos locales entre instancias del Service Facade
+ * (modo cluster, envios.cluster.particionado.habilitado=true)
+ *
+ * Cada ID de envío pertenece a un nodo según un anillo de hashing
+ * consistente con nodos virtuales, construido con las instancias
+ * registradas en Eureka. Así la capacidad y las escrituras se reparten
+ * entre los nodos:
+ * - Las altas se hacen en el nodo que las recibe, sin coordinarse con los
+ *   demás. Los bits bajos de cada ID llevan el número del nodo que lo
+ *   asignó (envios.cluster.particionado.numero-nodo, distinto en cada
+ *   nodo), así que dos nodos nunca generan el mismo ID aunque cambie el
+ *   anillo; entre esos IDs, el nodo solo asigna los que le pertenecen.
+ * - Las peticiones por ID de un envío de otro nodo se reenvían a su dueño
+ *   (ReenvioClusterFilter).
+ * - Cuando entra o sale un nodo, cada nodo envía a su nuevo dueño solo los
+ *   envíos cuyo arco cambió, por lotes, y retira los que el dueño confirma
+ *   (evento TRANSFERIDO, no una baja). Mientras un envío no se ha
+ *   transferido lo sigue sirviendo el nodo que lo tiene.
+ *
+ * Los listados, búsquedas y estadísticas devuelven solo la partición del
+ * nodo que atiende la petición. Requiere un almacén con
+ * admiteParticionado() (memoria u offheap). Un nodo que arranca se
+ * considera dueño de todo hasta recibir el registro de Eureka, así que
+ * conviene no enviarle altas hasta que aparece en /api/v1/metricas con
+ * el resto de nodos.
+ */
+@Component
+public class ParticionadoEnvios implements PropiedadIds {
+
+    private static final Logger log = LoggerFactory.getLogger(ParticionadoEnvios.class);
+
+    public static final String RUTA = "/api/v1/cluster/envios";
+
+    /** Bits bajos de cada ID con el número del nodo que lo asignó */
+    static final int BITS_NODO = 10;
+
+    @Autowired
+    private NodosCluster nodosCluster;
+
+    @Autowired
+    private EnvioStore envioStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${envios.cluster.particionado.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${envios.cluster.particionado.numero-nodo:-1}")
+    private int numeroNodo;
+
+    @Value("${envios.cluster.particionado.nodos-virtuales:128}")
+    private int nodosVirtuales;
+
+    @Value("${envios.cluster.particionado.intervalo-ms:5000}")
+    private long intervaloMs;
+
+    @Value("${envios.cluster.particionado.lote-transferencia:500}")
+    private int loteTransferencia;
+
+    @Value("${envios.cluster.particionado.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private HttpClient cliente;
+    private ScheduledExecutorService programador;
+
+    /** Anillo y nodos vigentes (se reemplazan juntos) */
+    private volatile Vista vista;
+
+    private volatile boolean reequilibrioPendiente;
+
+    private final LongAdder reenviadas = new LongAdder();
+    private final LongAdder transferidos = new LongAdder();
+    private final LongAdder recibidos = new LongAdder();
+    private final LongAdder cambiosDeAnillo = new LongAdder();
+
+    @PostConstruct
+    void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        if (!envioStore.admiteParticionado()) {
+            log.warn("El almacén de envíos no admite particionado: el modo cluster queda deshabilitado");
+            habilitado = false;
+            return;
+        }
+        if (!nodosCluster.isConfigurado()) {
+            // Sin token los demás nodos rechazarían las transferencias: no arrancar a medias
+            throw new IllegalStateException(
+                    "El modo cluster requiere envios.cluster.token (variable CLUSTER_TOKEN)");
+        }
+        if (numeroNodo < 0 || numeroNodo >= 1 << BITS_NODO) {
+            throw new IllegalStateException("El modo cluster requiere envios.cluster.particionado.numero-nodo"
+                    + " entre 0 y " + ((1 << BITS_NODO) - 1) + ", distinto en cada nodo");
+        }
+        // Hasta conocer a los demás nodos, todos los IDs son de este
+        NodosCluster.Nodo local = nodosCluster.todos().stream().filter(NodosCluster.Nodo::isLocal).findFirst().orElseThrow();
+        vista = new Vista(List.of(local), nodosVirtuales);
+
+        cliente = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "cluster-particionado");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::actualizarAnillo, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    @Override
+    public boolean esPropio(long id) {
+        Vista actual = vista;
+        return actual == null || actual.local.getId().equals(actual.anillo.propietario(id));
+    }
+
+    /**
+     * IDs del espacio de este nodo (los que terminan en su número), saltando
+     * los que el anillo vigente asigna a otros nodos
+     */
+    @Override
+    public long siguienteId(long ultimo) {
+        if (!habilitado) {
+            return ultimo + 1;
+        }
+        long id = ((ultimo >>> BITS_NODO) << BITS_NODO) | numeroNodo;
+        if (id <= ultimo) {
+            id += 1L << BITS_NODO;
+        }
+        while (!esPropio(id)) {
+            id += 1L << BITS_NODO;
+        }
+        return id;
+    }
+
+    /**
+     * Nodo dueño del envío según el anillo vigente
+     */
+    public NodosCluster.Nodo propietario(long id) {
+        Vista actual = vista;
+        return actual.nodos.get(actual.anillo.propietario(id));
+    }
+
+    /**
+     * Cuenta una petición reenviada a otro nodo
+     */
+    public void registrarReenvio() {
+        reenviadas.increment();
+    }
+
+    /**
+     * Compara los nodos registrados con los del anillo y, si cambiaron,
+     * reconstruye el anillo y mueve los envíos que cambiaron de dueño
+     */
+    void actualizarAnillo() {
+        try {
+            List<NodosCluster.Nodo> nodos = nodosCluster.todos();
+            Set<String> ids = nodos.stream().map(NodosCluster.Nodo::getId).collect(Collectors.toSet());
+            if (!ids.equals(vista.nodos.keySet())) {
+                vista = new Vista(nodos, nodosVirtuales);
+                cambiosDeAnillo.increment();
+                reequilibrioPendiente = true;
+                log.info("Anillo del cluster actualizado: {} nodos {}", nodos.size(), vista.anillo.getNodos());
+            }
+            if (reequilibrioPendiente) {
+                reequilibrioPendiente = false;
+                reequilibrar();
+            }
+        } catch (Exception e) {
+            log.warn("Error actualizando el anillo del cluster: {}", e.getMessage());
+            reequilibrioPendiente = true;
+        }
+    }
+
+    /**
+     * Envía a su dueño los envíos locales que ya no pertenecen a este nodo
+     *
+     * Recorre el almacén por tramos y envía cada lote en cuanto reúne
+     * loteTransferencia envíos de un mismo dueño, así que la memoria no crece
+     * con el tamaño de la partición. Solo se mueven los envíos de los arcos
+     * que cambiaron; el resto no se toca. Un envío se retira localmente solo
+     * si su dueño confirma haberlo guardado y no cambió entretanto (si
+     * cambió, se reenvía en la siguiente pasada). Si un lote falla, el resto
+     * de envíos de ese dueño se deja para la siguiente pasada.
+     */
+    private void reequilibrar() {
+        Vista actual = vista;
+        Map<String, List<EnvioDto>> lotes = new HashMap<>();
+        Map<String, Integer> movidos = new HashMap<>();
+        Set<String> fallidos = new HashSet<>();
+
+        envioStore.recorrer(envio -> {
+            if (vista != actual) {
+                return; // El anillo cambió a mitad: la próxima pasada parte del anillo nuevo
+            }
+            String dueno = actual.anillo.propietario(envio.getId());
+            if (dueno.equals(actual.local.getId()) || fallidos.contains(dueno)) {
+                return;
+            }
+            List<EnvioDto> lote = lotes.computeIfAbsent(dueno, k -> new ArrayList<>(loteTransferencia));
+            lote.add(envio);
+            if (lote.size() >= loteTransferencia) {
+                enviarLote(actual.nodos.get(dueno), lote, movidos, fallidos);
+            }
+        });
+        for (Map.Entry<String, List<EnvioDto>> lote : lotes.entrySet()) {
+            if (vista != actual) {
+                return;
+            }
+            if (!lote.getValue().isEmpty() && !fallidos.contains(lote.getKey())) {
+                enviarLote(actual.nodos.get(lote.getKey()), lote.getValue(), movidos, fallidos);
+            }
+        }
+
+        for (Map.Entry<String, Integer> destino : movidos.entrySet()) {
+            transferidos.add(destino.getValue());
+            log.info("Reequilibrio: {} envíos transferidos a {}", destino.getValue(), destino.getKey());
+        }
+    }
+
+    /**
+     * Envía un lote, retira los envíos confirmados y lo vacía
+     */
+    private void enviarLote(NodosCluster.Nodo destino, List<EnvioDto> lote,
+                            Map<String, Integer> movidos, Set<String> fallidos) {
+        Set<Long> confirmados = transferir(destino, lote);
+        if (confirmados == null) {
+            reequilibrioPendiente = true;
+            fallidos.add(destino.getId());
+            lote.clear();
+            return;
+        }
+        int retirados = 0;
+        for (EnvioDto envio : lote) {
+            if (!confirmados.contains(envio.getId())) {
+                reequilibrioPendiente = true;
+                continue;
+            }
+            long version = envio.getVersion() != null ? envio.getVersion() : 1L;
+            if (envioStore.retirarTransferido(envio.getId(), version)) {
+                retirados++;
+            } else if (envioStore.existe(envio.getId())) {
+                reequilibrioPendiente = true;
+            }
+        }
+        movidos.merge(destino.getId(), retirados, Integer::sum);
+        lote.clear();
+    }
+
+    /**
+     * Envía un lote a su dueño
+     *
+     * @return IDs que el dueño confirma tener guardados, o null si el lote no llegó
+     */
+    private Set<Long> transferir(NodosCluster.Nodo destino, List<EnvioDto> lote) {
+        try {
+            HttpRequest peticion = HttpRequest.newBuilder(destino.getUri().resolve(RUTA))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(NodosCluster.HEADER_TOKEN, nodosCluster.getToken())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(lote)))
+                    .build();
+            HttpResponse<byte[]> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.ofByteArray());
+            if (respuesta.statusCode() < 300) {
+                nodosCluster.registrarExito(destino.getId());
+                Set<Long> confirmados = new HashSet<>();
+                for (JsonNode id : objectMapper.readTree(respuesta.body()).path("confirmados")) {
+                    confirmados.add(id.asLong());
+                }
+                return confirmados;
+            }
+            log.warn("El nodo {} rechazó la transferencia de envíos: HTTP {}", destino.getId(), respuesta.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Error transfiriendo envíos a {}: {}", destino.getId(), e.getMessage());
+        }
+        nodosCluster.registrarFallo(destino.getId());
+        return null;
+    }
+
+    /**
+     * Guarda los envíos transferidos por otro nodo
+     *
+     * @return IDs confirmados: los guardados y los que ya estaban con una
+     *         versión igual o mayor. El emisor solo retira esos.
+     */
+    public List<Long> recibir(List<EnvioDto> envios) {
+        if (!habilitado) {
+            throw new IllegalStateException("El modo cluster no está habilitado");
+        }
+        List<Long> confirmados = new ArrayList<>(envios.size());
+        int guardados = 0;
+        for (EnvioDto envio : envios) {
+            if (envio.getId() == null) {
+                continue;
+            }
+            try {
+                if (envioStore.importar(envio)) {
+                    guardados++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("No se pudo guardar el envío {} transferido: {}", envio.getId(), e.getMessage());
+                continue;
+            }
+            confirmados.add(envio.getId());
+            if (!esPropio(envio.getId())) {
+                // Anillos desfasados entre nodos: la próxima pasada lo lleva a su dueño
+                reequilibrioPendiente = true;
+            }
+        }
+        recibidos.add(guardados);
+        return confirmados;
+    }
+
+    /**
+     * Métricas del particionado y reparto del anillo
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("habilitado", habilitado);
+        Vista actual = vista;
+        if (!habilitado || actual == null) {
+            return metricas;
+        }
+        Map<String, Double> reparto = new LinkedHashMap<>();
+        double[] fracciones = actual.anillo.reparto();
+        for (int i = 0; i < fracciones.length; i++) {
+            reparto.put(actual.anillo.getNodos().get(i), Math.round(fracciones[i] * 10000) / 100.0);
+        }
+        metricas.put("nodosVirtuales", nodosVirtuales);
+        metricas.put("repartoPorcentaje", reparto);
+        metricas.put("enviosLocales", envioStore.contar());
+        metricas.put("peticionesReenviadas", reenviadas.sum());
+        metricas.put("enviosTransferidos", transferidos.sum());
+        metricas.put("enviosRecibidos", recibidos.sum());
+        metricas.put("cambiosDeAnillo", cambiosDeAnillo.sum());
+        return metricas;
+    }
+
+    @PreDestroy
+    void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+        }
+    }
+
+    /**
+     * Anillo y nodos con los que se construyó
+     */
+    private static final class Vista {
+
+        final AnilloConsistente anillo;
+        final Map<String, NodosCluster.Nodo> nodos = new LinkedHashMap<>();
+        final NodosCluster.Nodo local;
+
+        Vista(List<NodosCluster.Nodo> lista, int nodosVirtuales) {
+            NodosCluster.Nodo encontrado = null;
+            for (NodosCluster.Nodo nodo : lista) {
+                nodos.put(nodo.getId(), nodo);
+                if (nodo.isLocal()) {
+                    encontrado = nodo;
+                }
+            }
+            this.local = encontrado;
+            this.anillo = new AnilloConsistente(nodos.keySet(), nodosVirtuales);
+        }
+    }
+}
@@ -1,28 +1,204 @@
 package com.logiservices.config;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logiservices.model.Usuario;
 import com.logiservices.service.UsuarioService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Inicializador de datos
  *
- * Se ejecuta al iniciar la aplicación para crear usuarios de ejemplo
+ * Se ejecuta al iniciar la aplicación para crear los usuarios iniciales: los
+ * de ejemplo o, si se indica usuarios.semilla.archivo, los de un archivo JSON
+ * (un array de objetos con username, email, password, nombreCompleto y roles).
+ *
+ * La carga no retrasa el arranque: se hace en segundo plano, encriptando las
+ * contraseñas en paralelo y guardando los usuarios por lotes. Mientras no
+ * termina, la aplicación se declara no preparada (ReadinessState
+ * REFUSING_TRAFFIC) aunque Spring Boot ya la haya marcado como lista, y pasa
+ * a ACCEPTING_TRAFFIC cuando los datos de autenticación están disponibles.
  */
 @Component
 public class DataInitializer implements CommandLineRunner {
 
+    private static final Logger log = LoggerFactory.getLogger(DataInitializer.class);
+
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${usuarios.semilla.archivo:}")
+    private String archivo;
+
+    @Value("${usuarios.semilla.hilos:0}")
+    private int hilos;
+
+    @Value("${usuarios.semilla.tamano-lote:1000}")
+    private int tamanoLote;
+
+    private final Object cerrojo = new Object();
+
+    /** Carga terminada con éxito (protegido por cerrojo) */
+    private boolean completada;
+
+    /** Se retiró la disponibilidad que publicó Spring Boot (protegido por cerrojo) */
+    private boolean retenida;
+
     @Override
     public void run(String... args) throws Exception {
-        System.out.println("🔐 Inicializando usuarios de ejemplo...");
+        System.out.println("🔐 Inicializando usuarios en segundo plano...");
+
+        Thread hilo = new Thread(this::crearUsuarios, "semilla-usuarios");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Retira la disponibilidad que Spring Boot publica al terminar el arranque
+     * si los usuarios aún no están cargados
+     *
+     * Va en último lugar para ejecutarse después de ApplicationAvailabilityBean:
+     * así el REFUSING_TRAFFIC publicado aquí es el último estado registrado.
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onDisponibilidad(AvailabilityChangeEvent<ReadinessState> evento) {
+        if (evento.getState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            return;
+        }
+        synchronized (cerrojo) {
+            if (!completada) {
+                retenida = true;
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
+    }
+
+    private void crearUsuarios() {
+        long inicio = System.nanoTime();
+        int numeroHilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        ExecutorService cifrado = Executors.newFixedThreadPool(numeroHilos, r -> {
+            Thread hilo = new Thread(r, "semilla-usuarios-bcrypt");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        try {
+            if (usuarioService.hayUsuarios()) {
+                log.info("Ya hay usuarios registrados; no se crean los usuarios iniciales");
+            } else if (archivo.isBlank()) {
+                usuarioService.crearUsuariosLote(usuarioService.usuariosEjemplo(), cifrado);
+                imprimirUsuariosEjemplo();
+            } else {
+                cargarArchivo(cifrado);
+            }
+            log.info("Usuarios iniciales disponibles en {} ms ({} hilos de cifrado)",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), numeroHilos);
+            marcarCompletada();
+        } catch (Exception e) {
+            // Sin datos de autenticación la aplicación sigue sin declararse preparada
+            log.error("No se pudieron crear los usuarios iniciales", e);
+        } finally {
+            cifrado.shutdownNow();
+        }
+    }
 
-        // Crear usuarios de ejemplo
-        usuarioService.crearUsuariosEjemplo();
+    /**
+     * Lee el archivo en streaming y crea los usuarios por lotes de tamanoLote
+     *
+     * Los usuarios incompletos o con username/email repetido se descartan
+     * antes de guardar: una violación de restricción abortaría el lote entero.
+     */
+    private void cargarArchivo(ExecutorService cifrado) throws IOException {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<Usuario> lote = new ArrayList<>(tamanoLote);
+        int creados = 0;
+        int descartados = 0;
+
+        try (MappingIterator<Usuario> usuarios = objectMapper.readerFor(Usuario.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValues(new File(archivo))) {
+            while (usuarios.hasNextValue()) {
+                Usuario usuario = usuarios.nextValue();
+                if (!esValido(usuario) || !usernames.add(usuario.getUsername()) || !emails.add(usuario.getEmail())) {
+                    descartados++;
+                    continue;
+                }
+                usuario.setId(null);
+                lote.add(usuario);
+                if (lote.size() >= tamanoLote) {
+                    creados += usuarioService.crearUsuariosLote(lote, cifrado).size();
+                    lote = new ArrayList<>(tamanoLote);
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            creados += usuarioService.crearUsuariosLote(lote, cifrado).size();
+        }
+        log.info("Usuarios cargados de {}: {} creados, {} descartados", archivo, creados, descartados);
+    }
+
+    /**
+     * Comprueba las restricciones de la entidad Usuario antes de intentar guardarlo
+     *
+     * Aplica con el Validator las mismas restricciones que Hibernate comprueba
+     * al persistir, así que un usuario aceptado aquí no provoca una
+     * ConstraintViolationException en el lote. La contraseña se valida en
+     * claro, antes de encriptarla.
+     */
+    private boolean esValido(Usuario usuario) {
+        Set<ConstraintViolation<Usuario>> violaciones = validator.validate(usuario);
+        if (!violaciones.isEmpty()) {
+            log.debug("Usuario {} descartado: {}", usuario.getUsername(),
+                    violaciones.iterator().next().getMessage());
+            return false;
+        }
+        return usuario.getRoles() != null && !usuario.getRoles().isEmpty();
+    }
+
+    private void marcarCompletada() {
+        synchronized (cerrojo) {
+            completada = true;
+            if (retenida) {
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+            }
+        }
+    }
 
+    private static void imprimirUsuariosEjemplo() {
         System.out.println("✅ Usuarios de ejemplo creados:");
         System.out.println("   👤 admin / admin123 (Administrador)");
         System.out.println("   👤 operador / operador123 (Operador)");
@@ -0,0 +1,73 @@
+package com.logiservices.config;
+
+import com.logiservices.cluster.NodosCluster;
+import com.logiservices.cluster.ParticionadoEnvios;
+import com.logiservices.filter.LimitadorAdaptativo;
+import com.logiservices.filter.LimiteConcurrenciaFilter;
+import com.logiservices.filter.ReenvioClusterFilter;
+import com.logiservices.store.EnvioStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración de los filtros servlet propios del Service Facade
+ */
+@Configuration
+public class FiltrosConfig {
+
+    /**
+     * Limitador de concurrencia adaptativo para /api/v1/envios
+     */
+    @Bean
+    public LimiteConcurrenciaFilter limiteConcurrenciaFilter(
+            @Value("${envios.concurrencia.limite-inicial:100}") int limiteInicial,
+            @Value("${envios.concurrencia.limite-minimo:10}") int limiteMinimo,
+            @Value("${envios.concurrencia.limite-maximo:400}") int limiteMaximo,
+            @Value("${envios.concurrencia.tolerancia:2.0}") double tolerancia,
+            @Value("${envios.concurrencia.factor-reduccion:0.9}") double factorReduccion,
+            @Value("${envios.concurrencia.intervalo-reduccion-ms:100}") long intervaloReduccion,
+            @Value("${envios.concurrencia.fraccion-lectura-local:1.0}") double fraccionLecturaLocal,
+            @Value("${envios.concurrencia.fraccion-escritura:0.9}") double fraccionEscritura,
+            @Value("${envios.concurrencia.fraccion-sistemas:0.7}") double fraccionSistemas,
+            @Value("${envios.concurrencia.reintentar-segundos:1}") int reintentarSegundos) {
+        LimitadorAdaptativo limitador = new LimitadorAdaptativo(limiteInicial, limiteMinimo, limiteMaximo,
+                tolerancia, factorReduccion, intervaloReduccion, LimiteConcurrenciaFilter.Clase.values().length);
+        return new LimiteConcurrenciaFilter(limitador,
+                new double[] { fraccionLecturaLocal, fraccionEscritura, fraccionSistemas }, reintentarSegundos);
+    }
+
+    /**
+     * Registra el limitador antes de la cadena de Spring Security, para
+     * descartar carga sin coste de autenticación
+     */
+    @Bean
+    public FilterRegistrationBean<LimiteConcurrenciaFilter> limiteConcurrenciaRegistro(
+            LimiteConcurrenciaFilter limiteConcurrenciaFilter,
+            @Value("${envios.concurrencia.habilitada:true}") boolean habilitada) {
+        FilterRegistrationBean<LimiteConcurrenciaFilter> registro = new FilterRegistrationBean<>(limiteConcurrenciaFilter);
+        registro.addUrlPatterns("/api/v1/envios", "/api/v1/envios/*");
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        registro.setEnabled(habilitada);
+        return registro;
+    }
+
+    /**
+     * Reenvío de peticiones por ID al nodo dueño del envío (modo cluster)
+     *
+     * Va después del limitador y antes de Spring Security: la autenticación
+     * la hace el nodo que atiende la petición.
+     */
+    @Bean
+    public FilterRegistrationBean<ReenvioClusterFilter> reenvioClusterRegistro(
+            ParticionadoEnvios particionado, NodosCluster nodosCluster, EnvioStore envioStore,
+            @Value("${envios.cluster.particionado.timeout-ms:5000}") long timeoutMs) {
+        FilterRegistrationBean<ReenvioClusterFilter> registro = new FilterRegistrationBean<>(
+                new ReenvioClusterFilter(particionado, nodosCluster, envioStore, timeoutMs));
+        registro.addUrlPatterns("/api/v1/envios/*");
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 5);
+        return registro;
+    }
+}
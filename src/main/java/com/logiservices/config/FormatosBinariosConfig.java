@@ -0,0 +1,80 @@
+package com.logiservices.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Formatos binarios de respuesta (CBOR y Smile) además de JSON
+ *
+ * Los clientes internos que descargan listados grandes pueden pedir
+ * Accept: application/cbor o application/x-jackson-smile y reciben los
+ * mismos DTOs sin el coste de codificar y decodificar texto JSON.
+ *
+ * Los convertidores se construyen con el Jackson2ObjectMapperBuilder de
+ * Spring Boot, así que comparten la configuración de Jackson del JSON.
+ * JSON sigue siendo el formato por defecto (sin Accept o con comodines).
+ */
+@Configuration
+public class FormatosBinariosConfig {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * Elige el formato de respuesta según el header Accept
+     *
+     * Para los endpoints que escriben directamente en la respuesta (sin
+     * pasar por los convertidores de Spring MVC).
+     *
+     * @param accept Valor del header Accept (puede ser null)
+     * @return APPLICATION_JSON, APPLICATION_CBOR o APPLICATION_SMILE
+     */
+    public static MediaType negociar(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> aceptados;
+        try {
+            aceptados = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(aceptados);
+        aceptados.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType aceptado : aceptados) {
+            if (aceptado.getQualityValue() == 0) {
+                continue;
+            }
+            if (aceptado.isWildcardType() || aceptado.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (aceptado.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+            if (aceptado.isCompatibleWith(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
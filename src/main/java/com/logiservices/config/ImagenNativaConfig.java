@@ -0,0 +1,57 @@
+package com.logiservices.config;
+
+import com.logiservices.cluster.BusInvalidacion;
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.dto.EnvioSistemaResponse;
+import com.logiservices.dto.EstadoSistemaResponse;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+/**
+ * Pistas de reflexión para la imagen nativa (perfil Maven native)
+ *
+ * Spring AOT registra por su cuenta los tipos de los controllers; aquí van
+ * los que se serializan fuera de ellos (DTOs dentro de Map<String, Object>,
+ * lotes del cluster) y las clases de jjwt, que la API instancia por
+ * nombre. En la JVM no tiene ningún efecto.
+ */
+@Configuration
+@ImportRuntimeHints(ImagenNativaConfig.PistasJjwt.class)
+@RegisterReflectionForBinding({EnvioDto.class, EnvioSistemaResponse.class, EstadoSistemaResponse.class,
+        BusInvalidacion.Lote.class})
+public class ImagenNativaConfig {
+
+    /**
+     * Implementaciones de jjwt que io.jsonwebtoken.Jwts carga con Classes.newInstance
+     */
+    static class PistasJjwt implements RuntimeHintsRegistrar {
+
+        private static final List<String> CLASES = List.of(
+                "io.jsonwebtoken.impl.DefaultJwtBuilder",
+                "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+                "io.jsonwebtoken.impl.DefaultJwtParser",
+                "io.jsonwebtoken.impl.DefaultClaims",
+                "io.jsonwebtoken.impl.DefaultHeader",
+                "io.jsonwebtoken.impl.DefaultJwsHeader",
+                "io.jsonwebtoken.impl.compression.DeflateCompressionCodec",
+                "io.jsonwebtoken.impl.compression.GzipCompressionCodec",
+                "io.jsonwebtoken.jackson.io.JacksonSerializer",
+                "io.jsonwebtoken.jackson.io.JacksonDeserializer");
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (String clase : CLASES) {
+                hints.reflection().registerType(TypeReference.of(clase),
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            }
+            hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.io.*");
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.logiservices.config;
 
 import com.logiservices.security.JwtAuthenticationFilter;
+import com.logiservices.security.LimiteTasaFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -38,6 +41,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private LimiteTasaFilter limiteTasaFilter;
+
     /**
      * Configuración del filtro de seguridad
      *
@@ -59,6 +65,9 @@ public class SecurityConfig {
 
             // Configuración de autorización
             .authorizeHttpRequests(authz -> authz
+                // Despachos internos de respuestas asíncronas (SSE) y de error
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                 // Endpoints públicos (sin autenticación)
                 .requestMatchers("/api/v1/auth/**").permitAll()
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
@@ -69,6 +78,23 @@ public class SecurityConfig {
                 .requestMatchers("/api/v1/envios/info").permitAll()
                 .requestMatchers("/api/v1/envios/sistemas/info").permitAll()
 
+                // Comunicación entre instancias (autenticada con el token de cluster en el controller)
+                .requestMatchers(HttpMethod.POST, "/api/v1/cluster/invalidaciones", "/api/v1/cluster/envios").permitAll()
+
+                // Alta en lote (antes de la regla /{id}, que también la captura)
+                .requestMatchers(HttpMethod.POST, "/api/v1/envios/lote").hasAnyRole("ADMIN", "OPERADOR")
+
+                // Flujo de cambios (antes de la regla /{id}, que también lo captura)
+                .requestMatchers("/api/v1/envios/stream").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+
+                // Búsqueda por lugar y consulta multicriterio (antes de la regla /{id}, que también las captura)
+                .requestMatchers("/api/v1/envios/buscar").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+                .requestMatchers("/api/v1/envios/consulta").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+
+                // Historial de estados y permanencias
+                .requestMatchers("/api/v1/envios/historial/**").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+                .requestMatchers(HttpMethod.GET, "/api/v1/envios/{id}/historial").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+
                 // Endpoints de consulta (requieren autenticación)
                 .requestMatchers("/api/v1/envios/{id}").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR", "CLIENTE")
                 .requestMatchers("/api/v1/envios/sistemas").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
@@ -77,6 +103,21 @@ public class SecurityConfig {
                 .requestMatchers("/api/v1/envios/estadisticas").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
                 .requestMatchers("/api/v1/envios").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
 
+                // Analítica de rutas origen-destino
+                .requestMatchers("/api/v1/rutas/**").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+
+                // Métricas operativas
+                .requestMatchers("/api/v1/metricas/**").hasRole("ADMIN")
+
+                // Cotizaciones multimodales
+                .requestMatchers("/api/v1/cotizaciones/cache").hasRole("ADMIN")
+                .requestMatchers("/api/v1/cotizaciones/**").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR", "CLIENTE")
+
+                // Rastreo de contenedores (/cache y /lote antes de /{numeroContenedor})
+                .requestMatchers("/api/v1/contenedores/cache").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/v1/contenedores/lote").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR")
+                .requestMatchers("/api/v1/contenedores/**").hasAnyRole("ADMIN", "OPERADOR", "CONSULTOR", "CLIENTE")
+
                 // Endpoints de modificación (requieren roles específicos)
                 .requestMatchers("/api/v1/envios", "POST").hasAnyRole("ADMIN", "OPERADOR")
                 .requestMatchers("/api/v1/envios/{id}", "PUT").hasAnyRole("ADMIN", "OPERADOR")
@@ -90,7 +131,10 @@ public class SecurityConfig {
             // Configuración de autenticación se maneja automáticamente
 
             // Agregar el filtro JWT
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+
+            // Limitar la tasa por usuario y rol (requiere el usuario ya autenticado)
+            .addFilterAfter(limiteTasaFilter, JwtAuthenticationFilter.class);
 
         // Configuración especial para H2 Console (desarrollo)
         http.headers(headers -> headers.frameOptions(frameOptions -> frameOptions.disable()));
@@ -155,7 +199,8 @@ public class SecurityConfig {
         configuration.setAllowCredentials(true);
 
         // Headers expuestos
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "ETag", "X-Cache",
+                "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset", "Retry-After"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
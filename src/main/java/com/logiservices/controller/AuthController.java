@@ -14,6 +14,9 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -44,6 +47,9 @@ public class AuthController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
     /**
      * Endpoint para autenticación de usuarios
      *
@@ -59,9 +65,16 @@ public class AuthController {
         @ApiResponse(responseCode = "401", description = "Credenciales inválidas",
                     content = @Content(schema = @Schema(implementation = Map.class))),
         @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos",
+                    content = @Content(schema = @Schema(implementation = Map.class))),
+        @ApiResponse(responseCode = "503", description = "Usuarios aún cargándose",
                     content = @Content(schema = @Schema(implementation = Map.class)))
     })
     public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest) {
+        // Mientras se cargan los usuarios un 401 sería engañoso
+        if (!preparado()) {
+            return noPreparado();
+        }
+
         try {
             // Autenticar al usuario
             Authentication authentication = authenticationManager.authenticate(
@@ -195,6 +208,37 @@ public class AuthController {
         }
     }
 
+    /**
+     * Endpoint de disponibilidad: 200 cuando los datos de autenticación están cargados
+     *
+     * @return Estado de disponibilidad (503 mientras se cargan los usuarios iniciales)
+     */
+    @GetMapping("/preparado")
+    @Operation(summary = "Disponibilidad",
+               description = "Indica si la aplicación está preparada (usuarios iniciales cargados)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Preparada",
+                    content = @Content(schema = @Schema(implementation = Map.class))),
+        @ApiResponse(responseCode = "503", description = "Aún no preparada",
+                    content = @Content(schema = @Schema(implementation = Map.class)))
+    })
+    public ResponseEntity<?> getPreparado() {
+        if (!preparado()) {
+            return noPreparado();
+        }
+        return ResponseEntity.ok(Map.of("preparado", true));
+    }
+
+    private boolean preparado() {
+        return applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+    }
+
+    private static ResponseEntity<?> noPreparado() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of("preparado", false, "error", "Datos de autenticación aún no disponibles"));
+    }
+
     /**
      * Endpoint para obtener información sobre la autenticación
      *
@@ -212,6 +256,7 @@ public class AuthController {
                 "POST /api/v1/auth/login", "Autenticar usuario",
                 "GET /api/v1/auth/me", "Información del usuario actual",
                 "POST /api/v1/auth/validate", "Validar token JWT",
+                "GET /api/v1/auth/preparado", "Disponibilidad (503 mientras se cargan los usuarios)",
                 "GET /api/v1/auth/info", "Información del sistema de autenticación"
             ),
             "usuariosEjemplo", Map.of(
@@ -0,0 +1,80 @@
+package com.logiservices.controller;
+
+import com.logiservices.cluster.BusInvalidacion;
+import com.logiservices.cluster.NodosCluster;
+import com.logiservices.cluster.ParticionadoEnvios;
+import com.logiservices.dto.EnvioDto;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST interno para la comunicación entre instancias del Service Facade
+ *
+ * No usa JWT: las instancias se autentican con el token compartido
+ * envios.cluster.token en el header X-Cluster-Token. Sin token configurado
+ * los endpoints responden 404.
+ */
+@Hidden
+@RestController
+@RequestMapping("/api/v1/cluster")
+public class ClusterController {
+
+    private final BusInvalidacion busInvalidacion;
+
+    private final ParticionadoEnvios particionado;
+
+    private final NodosCluster nodosCluster;
+
+    public ClusterController(BusInvalidacion busInvalidacion, ParticionadoEnvios particionado,
+                             NodosCluster nodosCluster) {
+        this.busInvalidacion = busInvalidacion;
+        this.particionado = particionado;
+        this.nodosCluster = nodosCluster;
+    }
+
+    /**
+     * POST /api/v1/cluster/invalidaciones - Lote de envíos cambiados en otra instancia
+     */
+    @PostMapping("/invalidaciones")
+    public ResponseEntity<?> recibirInvalidaciones(
+            @RequestHeader(value = NodosCluster.HEADER_TOKEN, required = false) String token,
+            @RequestBody BusInvalidacion.Lote lote) {
+        if (!nodosCluster.isConfigurado()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "La comunicación entre instancias no está configurada"));
+        }
+        if (!nodosCluster.tokenValido(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Token de cluster inválido"));
+        }
+        busInvalidacion.recibir(lote);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * POST /api/v1/cluster/envios - Envíos transferidos por otra instancia al reequilibrar (modo cluster)
+     */
+    @PostMapping("/envios")
+    public ResponseEntity<?> recibirEnvios(
+            @RequestHeader(value = NodosCluster.HEADER_TOKEN, required = false) String token,
+            @RequestBody List<EnvioDto> envios) {
+        if (!nodosCluster.isConfigurado()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "La comunicación entre instancias no está configurada"));
+        }
+        if (!nodosCluster.tokenValido(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Token de cluster inválido"));
+        }
+        if (!particionado.isHabilitado()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "El modo cluster no está habilitado en este nodo"));
+        }
+        return ResponseEntity.ok(Map.of("confirmados", particionado.recibir(envios)));
+    }
+}
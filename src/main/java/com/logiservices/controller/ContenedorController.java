@@ -0,0 +1,115 @@
+package com.logiservices.controller;
+
+import com.logiservices.service.ContenedorService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST para el rastreo de contenedores en SMCS
+ */
+@RestController
+@RequestMapping("/api/v1/contenedores")
+@Tag(name = "Contenedores", description = "Rastreo de contenedores marítimos (SMCS)")
+@SecurityRequirement(name = "bearerAuth")
+public class ContenedorController {
+
+    private final ContenedorService contenedorService;
+
+    public ContenedorController(ContenedorService contenedorService) {
+        this.contenedorService = contenedorService;
+    }
+
+    /**
+     * RASTREAR - GET /api/v1/contenedores/{numeroContenedor}
+     *
+     * @param numeroContenedor Número del contenedor
+     * @return ResponseEntity con la información del contenedor, 404 si SMCS
+     *         no lo tiene o 503 si SMCS no respondió
+     */
+    @GetMapping("/{numeroContenedor}")
+    @Operation(summary = "Rastrear contenedor", description = "Consulta un contenedor en SMCS")
+    public ResponseEntity<?> rastrear(
+            @Parameter(description = "Número de contenedor", example = "MSCU1234567")
+            @PathVariable("numeroContenedor") String numeroContenedor) {
+        try {
+            if (numeroContenedor.isBlank()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "El número de contenedor es obligatorio"));
+            }
+
+            Map<String, Object> contenedor = contenedorService.consultar(numeroContenedor);
+            if (ContenedorService.ERROR_NO_DISPONIBLE.equals(contenedor.get("error"))) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(contenedor);
+            }
+            if (contenedor.containsKey("error")) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(contenedor);
+            }
+            return ResponseEntity.ok(contenedor);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * RASTREAR LOTE - POST /api/v1/contenedores/lote
+     * Consulta varios contenedores (por ejemplo, el manifiesto de un buque)
+     *
+     * @param numerosContenedor Lista de números de contenedor
+     * @return ResponseEntity con el resultado de cada contenedor, o 503 si
+     *         SMCS no respondió a ninguno
+     */
+    @PostMapping("/lote")
+    @Operation(summary = "Rastrear contenedores en lote",
+               description = "Consulta en paralelo una lista de contenedores en SMCS")
+    public ResponseEntity<?> rastrearLote(@RequestBody List<String> numerosContenedor) {
+        try {
+            if (numerosContenedor == null || numerosContenedor.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Debe enviar al menos un número de contenedor"));
+            }
+            if (numerosContenedor.size() > contenedorService.getMaxLote()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "El lote no puede superar " + contenedorService.getMaxLote() + " contenedores"));
+            }
+
+            Map<String, Map<String, Object>> resultados = contenedorService.consultarLote(numerosContenedor);
+            long encontrados = resultados.values().stream().filter(r -> !r.containsKey("error")).count();
+            long noDisponibles = resultados.values().stream()
+                    .filter(r -> ContenedorService.ERROR_NO_DISPONIBLE.equals(r.get("error"))).count();
+
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("total", resultados.size());
+            respuesta.put("encontrados", encontrados);
+            respuesta.put("errores", resultados.size() - encontrados);
+            respuesta.put("noDisponibles", noDisponibles);
+            respuesta.put("contenedores", resultados);
+            if (!resultados.isEmpty() && noDisponibles == resultados.size()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(respuesta);
+            }
+            return ResponseEntity.ok(respuesta);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/v1/contenedores/cache - Estadísticas de la cache de contenedores
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(contenedorService.obtenerEstadisticasCache());
+    }
+}
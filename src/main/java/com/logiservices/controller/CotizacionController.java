@@ -0,0 +1,83 @@
+package com.logiservices.controller;
+
+import com.logiservices.service.CotizacionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST para cotizaciones multimodales
+ *
+ * Combina en una sola respuesta las rutas terrestres (TMS), los vuelos
+ * (ACMS) y los buques (SMCS) disponibles entre un origen y un destino.
+ */
+@RestController
+@RequestMapping("/api/v1/cotizaciones")
+@Tag(name = "Cotizaciones", description = "Cotización multimodal de rutas, vuelos y buques")
+@SecurityRequirement(name = "bearerAuth")
+public class CotizacionController {
+
+    private final CotizacionService cotizacionService;
+
+    public CotizacionController(CotizacionService cotizacionService) {
+        this.cotizacionService = cotizacionService;
+    }
+
+    /**
+     * COTIZAR - GET /api/v1/cotizaciones/{origen}/{destino}
+     * Opciones de transporte ordenadas por precio y tiempo estimado
+     *
+     * El header X-Cache indica si la cotización se sirvió desde cache (HIT)
+     * o se consultó a los sistemas (MISS).
+     *
+     * @param origen Ciudad o código de origen
+     * @param destino Ciudad o código de destino
+     * @return ResponseEntity con la cotización combinada
+     */
+    @GetMapping("/{origen}/{destino}")
+    @Operation(summary = "Cotizar origen-destino",
+               description = "Consulta en paralelo TMS, ACMS y SMCS y devuelve las opciones ordenadas")
+    public ResponseEntity<?> cotizar(
+            @Parameter(description = "Origen", example = "Bogotá") @PathVariable("origen") String origen,
+            @Parameter(description = "Destino", example = "Medellín") @PathVariable("destino") String destino) {
+        try {
+            if (origen.isBlank() || destino.isBlank()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "El origen y el destino son obligatorios"));
+            }
+
+            boolean enCache = cotizacionService.enCache(origen, destino);
+            Map<String, Object> cotizacion = cotizacionService.cotizar(origen, destino);
+
+            if (((List<?>) cotizacion.get("opciones")).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("X-Cache", "MISS")
+                        .body(Map.of("error", "Ningún sistema devolvió opciones para la ruta",
+                                     "sistemas", cotizacion.get("sistemas")));
+            }
+
+            return ResponseEntity.ok()
+                    .header("X-Cache", enCache ? "HIT" : "MISS")
+                    .body(cotizacion);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/v1/cotizaciones/cache - Estadísticas de la cache de cotizaciones
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(cotizacionService.obtenerEstadisticasCache());
+    }
+}
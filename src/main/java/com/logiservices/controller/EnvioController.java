@@ -1,7 +1,15 @@
 package com.logiservices.controller;
 
+import com.logiservices.cache.CacheRespuestas;
+import com.logiservices.config.FormatosBinariosConfig;
 import com.logiservices.dto.EnvioDto;
+import com.logiservices.exception.ConflictoVersionException;
+import com.logiservices.exception.PersistenciaException;
+import com.logiservices.exception.ResourceNotFoundException;
+import com.logiservices.indice.IndiceFiltros;
+import com.logiservices.indice.IndiceLugares;
 import com.logiservices.service.EnvioService;
+import com.logiservices.service.EnvioStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,13 +18,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -37,12 +53,52 @@ public class EnvioController {
 
     private final EnvioService envioService;
 
+    private final EnvioStreamService envioStreamService;
+
+    private final CacheRespuestas cacheRespuestas;
+
     /**
      * Constructor con inyección de dependencias
      * Spring Boot inyecta automáticamente el EnvioService
      */
-    public EnvioController(EnvioService envioService) {
+    public EnvioController(EnvioService envioService, EnvioStreamService envioStreamService,
+                           CacheRespuestas cacheRespuestas) {
         this.envioService = envioService;
+        this.envioStreamService = envioStreamService;
+        this.cacheRespuestas = cacheRespuestas;
+    }
+
+    /**
+     * STREAM - GET /api/v1/envios/stream
+     * Suscripción por Server-Sent Events a los cambios de envíos
+     *
+     * Sustituye el polling de /{id} y /estadisticas: el cliente recibe
+     * eventos CREADO, ACTUALIZADO, ELIMINADO y ESTADO_SISTEMA. Para
+     * reanudar tras una desconexión se envía el header Last-Event-ID.
+     *
+     * @param ids IDs de envío a seguir (opcional)
+     * @param estado Estado a seguir (opcional)
+     * @param sistema Sistema a seguir: TMS, ACMS o SMCS (opcional)
+     * @param lastEventId Último ID de evento recibido (opcional)
+     * @return SseEmitter con el flujo de eventos
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Flujo de cambios de envíos",
+               description = "Server-Sent Events con los cambios de envíos, filtrables por IDs, estado o sistema")
+    public SseEmitter streamEnvios(
+            @RequestParam(value = "ids", required = false) List<Long> ids,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "sistema", required = false) String sistema,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long ultimoId = null;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                ultimoId = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // ID inválido: se ignora y se envían solo eventos nuevos
+            }
+        }
+        return envioStreamService.suscribir(ids == null ? null : new HashSet<>(ids), estado, sistema, ultimoId);
     }
 
     /**
@@ -74,21 +130,34 @@ public class EnvioController {
     @PreAuthorize("hasAnyRole('ADMIN', 'OPERADOR', 'CONSULTOR', 'CLIENTE')")
     public ResponseEntity<?> getEnvioById(
             @Parameter(description = "ID del envío", example = "123", required = true)
-            @PathVariable("id") String id) {
+            @PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             // Convertir el ID de String a Long
             Long envioId = Long.parseLong(id);
 
+            // El ETag solo se emite para envíos locales: si el cliente trae el
+            // de la versión local actual, 304 sin consultar los sistemas
+            EnvioDto envio = null;
+            if (ifNoneMatch != null) {
+                envio = envioService.getEnvioById(envioId);
+                if (envio != null && coincideEtag(ifNoneMatch, etagDe(envio))) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagDe(envio)).build();
+                }
+            }
+
             // PRIMERO: Intentar buscar en sistemas integrados (TMS, ACMS, SMCS)
-            Map<String, Object> envioSistema = envioService.consultarEnvioEnSistema(envioId);
-            if (envioSistema != null && !envioSistema.containsKey("error")) {
+            EnvioDto envioSistema = envioService.consultarEnvioEnSistema(envioId);
+            if (envioSistema != null) {
                 return ResponseEntity.ok(envioSistema);
             }
 
             // SEGUNDO: Si no se encuentra en sistemas, buscar en datos locales
-            EnvioDto envio = envioService.getEnvioById(envioId);
+            if (envio == null) {
+                envio = envioService.getEnvioById(envioId);
+            }
             if (envio != null) {
-                return ResponseEntity.ok(envio);
+                return ResponseEntity.ok().eTag(etagDe(envio)).body(envio);
             }
 
             // Si no se encuentra en ningún lado, devolver 404
@@ -155,6 +224,124 @@ public class EnvioController {
         }
     }
 
+    /**
+     * CREAR EN LOTE - POST /api/v1/envios/lote
+     * Crea varios envíos en una sola operación (inserciones agrupadas)
+     *
+     * @param envios Lista de envíos a crear
+     * @return ResponseEntity con los envíos creados o error
+     */
+    @PostMapping("/lote")
+    public ResponseEntity<?> crearEnvios(@RequestBody List<EnvioDto> envios) {
+        try {
+            if (envios == null || envios.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "La lista de envíos no puede estar vacía"));
+            }
+
+            for (int i = 0; i < envios.size(); i++) {
+                String error = validarEnvio(envios.get(i));
+                if (error != null) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", error, "indice", i));
+                }
+            }
+
+            List<EnvioDto> creados = envioService.crearEnvios(envios);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                "total", creados.size(),
+                "envios", creados
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * ETag fuerte de un envío local: "id-version"
+     */
+    private static String etagDe(EnvioDto envio) {
+        return "\"" + envio.getId() + "-" + envio.getVersion() + "\"";
+    }
+
+    /**
+     * Comprueba si alguno de los ETags de If-None-Match coincide (comparación débil)
+     *
+     * "*" no cuenta: el 304 se decide antes de consultar los sistemas y solo
+     * vale para el ETag concreto de la versión local.
+     */
+    private static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extrae la versión de un ETag "id-version" de If-Match
+     *
+     * @return Versión, o null si el ETag es débil, inválido o de otro envío
+     */
+    private static Long versionDeEtag(String ifMatch, Long envioId) {
+        String valor = ifMatch.trim();
+        if (valor.length() < 2 || !valor.startsWith("\"") || !valor.endsWith("\"")) {
+            return null;
+        }
+        valor = valor.substring(1, valor.length() - 1);
+        int separador = valor.lastIndexOf('-');
+        if (separador <= 0 || !valor.substring(0, separador).equals(String.valueOf(envioId))) {
+            return null;
+        }
+        try {
+            return Long.parseLong(valor.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Valida los campos obligatorios de un envío y normaliza el sistema a mayúsculas
+     *
+     * @param envioDto Envío a validar
+     * @return Mensaje de error, o null si es válido
+     */
+    private String validarEnvio(EnvioDto envioDto) {
+        if (envioDto == null) {
+            return "El envío es obligatorio";
+        }
+        if (envioDto.getOrigen() == null || envioDto.getOrigen().trim().isEmpty()) {
+            return "El origen es obligatorio";
+        }
+        if (envioDto.getDestino() == null || envioDto.getDestino().trim().isEmpty()) {
+            return "El destino es obligatorio";
+        }
+        if (envioDto.getEstado() == null || envioDto.getEstado().trim().isEmpty()) {
+            return "El estado es obligatorio";
+        }
+        if (envioDto.getSistemaOrigen() == null || envioDto.getSistemaOrigen().trim().isEmpty()) {
+            return "El sistema de origen es obligatorio";
+        }
+
+        String sistema = envioDto.getSistemaOrigen().toUpperCase();
+        if (!sistema.equals("TMS") && !sistema.equals("ACMS") && !sistema.equals("SMCS")) {
+            return "El sistema de origen debe ser TMS, ACMS o SMCS";
+        }
+        envioDto.setSistemaOrigen(sistema);
+        return null;
+    }
+
     /**
      * ACTUALIZAR - PUT /api/v1/envios/{id}
      * Actualiza un envío existente
@@ -165,7 +352,8 @@ public class EnvioController {
      */
     @PutMapping("/{id}")
     public ResponseEntity<?> actualizarEnvio(@PathVariable("id") String id,
-                                           @RequestBody EnvioDto envioDto) {
+                                           @RequestBody EnvioDto envioDto,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             // Convertir el ID de String a Long
             Long envioId = Long.parseLong(id);
@@ -201,18 +389,39 @@ public class EnvioController {
             // Normalizar el sistema a mayúsculas
             envioDto.setSistemaOrigen(sistema);
 
-            // Actualizar el envío
-            EnvioDto envioActualizado = envioService.actualizarEnvio(envioId, envioDto);
-
-            // Devolver 200 OK con el envío actualizado
-            return ResponseEntity.ok(envioActualizado);
+            // If-Match: actualización condicional sobre la versión (compare-and-set)
+            Long versionEsperada = null;
+            if (ifMatch != null && !ifMatch.trim().equals("*")) {
+                versionEsperada = versionDeEtag(ifMatch, envioId);
+                if (versionEsperada == null) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                            .body(Map.of("error", "If-Match no corresponde a este envío"));
+                }
+            }
 
+            // Actualizar el envío
+            EnvioDto envioActualizado = envioService.actualizarEnvio(envioId, envioDto, versionEsperada);
+
+            // Devolver 200 OK con el envío actualizado y su nuevo ETag
+            return ResponseEntity.ok().eTag(etagDe(envioActualizado)).body(envioActualizado);
+
+        } catch (ConflictoVersionException e) {
+            // Sin If-Match no hay precondición que falle: el conflicto es 409
+            boolean condicional = ifMatch != null && !ifMatch.trim().equals("*");
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            error.put("versionActual", e.getVersionActual());
+            return ResponseEntity.status(condicional ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT)
+                    .body(error);
         } catch (NumberFormatException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "El ID del envío debe ser numérico"));
-        } catch (RuntimeException e) {
+        } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", e.getMessage()));
+        } catch (PersistenciaException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "No se pudo guardar el cambio; inténtelo de nuevo"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
@@ -244,9 +453,12 @@ public class EnvioController {
         } catch (NumberFormatException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "El ID del envío debe ser numérico"));
-        } catch (RuntimeException e) {
+        } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", e.getMessage()));
+        } catch (PersistenciaException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "No se pudo guardar el cambio; inténtelo de nuevo"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
@@ -257,16 +469,20 @@ public class EnvioController {
      * LISTAR TODOS - GET /api/v1/envios
      * Obtiene todos los envíos
      *
+     * La respuesta serializada se cachea hasta el siguiente cambio de envío.
+     *
      * @return ResponseEntity con lista de envíos
      */
     @GetMapping
-    public ResponseEntity<?> obtenerTodosLosEnvios() {
+    public ResponseEntity<?> obtenerTodosLosEnvios(HttpServletRequest request) {
         try {
-            List<EnvioDto> envios = envioService.getAllEnviosList();
-            return ResponseEntity.ok(Map.of(
-                "total", envios.size(),
-                "envios", envios
-            ));
+            return cacheRespuestas.responder(request, "envios", envioService.getVersionCambios(), () -> {
+                List<EnvioDto> envios = envioService.getAllEnviosList();
+                return Map.of(
+                    "total", envios.size(),
+                    "envios", envios
+                );
+            });
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
@@ -281,7 +497,7 @@ public class EnvioController {
      * @return ResponseEntity con lista de envíos del sistema
      */
     @GetMapping("/sistema/{sistema}")
-    public ResponseEntity<?> buscarPorSistema(@PathVariable("sistema") String sistema) {
+    public ResponseEntity<?> buscarPorSistema(@PathVariable("sistema") String sistema, HttpServletRequest request) {
         try {
             String sistemaUpper = sistema.toUpperCase();
 
@@ -291,13 +507,14 @@ public class EnvioController {
                         .body(Map.of("error", "El sistema debe ser TMS, ACMS o SMCS"));
             }
 
-            List<EnvioDto> envios = envioService.buscarPorSistemaOrigen(sistemaUpper);
-
-            return ResponseEntity.ok(Map.of(
-                "sistema", sistemaUpper,
-                "total", envios.size(),
-                "envios", envios
-            ));
+            return cacheRespuestas.responder(request, "sistema|" + sistemaUpper, envioService.getVersionCambios(), () -> {
+                List<EnvioDto> envios = envioService.buscarPorSistemaOrigen(sistemaUpper);
+                return Map.of(
+                    "sistema", sistemaUpper,
+                    "total", envios.size(),
+                    "envios", envios
+                );
+            });
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -313,16 +530,171 @@ public class EnvioController {
      * @return ResponseEntity con lista de envíos con ese estado
      */
     @GetMapping("/estado/{estado}")
-    public ResponseEntity<?> buscarPorEstado(@PathVariable("estado") String estado) {
+    public ResponseEntity<?> buscarPorEstado(@PathVariable("estado") String estado, HttpServletRequest request) {
         try {
-            List<EnvioDto> envios = envioService.buscarPorEstado(estado);
+            return cacheRespuestas.responder(request, "estado|" + estado, envioService.getVersionCambios(), () -> {
+                List<EnvioDto> envios = envioService.buscarPorEstado(estado);
+                return Map.of(
+                    "estado", estado,
+                    "total", envios.size(),
+                    "envios", envios
+                );
+            });
 
-            return ResponseEntity.ok(Map.of(
-                "estado", estado,
-                "total", envios.size(),
-                "envios", envios
-            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * BUSCAR POR LUGAR - GET /api/v1/envios/buscar?q=bogota&campo=ambos
+     * Busca envíos cuyo origen y/o destino empieza por el texto, sin
+     * distinguir acentos ni mayúsculas ("Buenav" encuentra "Buenaventura")
+     *
+     * Paginación por cursor: la respuesta incluye siguienteDesdeId, que se
+     * pasa como desdeId para pedir la página siguiente.
+     *
+     * @param q Prefijo a buscar
+     * @param campo origen, destino o ambos
+     * @param desdeId Primer ID de la página (opcional)
+     * @param limite Tamaño de la página
+     * @return ResponseEntity con los envíos de la página
+     */
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscarPorLugar(@RequestParam("q") String q,
+                                            @RequestParam(value = "campo", defaultValue = "ambos") String campo,
+                                            @RequestParam(value = "desdeId", defaultValue = "0") long desdeId,
+                                            @RequestParam(value = "limite", defaultValue = "50") int limite) {
+        if (q == null || q.isBlank()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El parámetro q es obligatorio"));
+        }
+        IndiceLugares.Campo campoBusqueda;
+        try {
+            campoBusqueda = IndiceLugares.Campo.valueOf(campo.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El campo debe ser origen, destino o ambos"));
+        }
+        if (limite < 1 || limite > envioService.getLimiteMaxBusqueda()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El límite debe estar entre 1 y " + envioService.getLimiteMaxBusqueda()));
+        }
 
+        try {
+            return ResponseEntity.ok(envioService.buscarPorLugar(q, campoBusqueda, desdeId, limite));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * CONSULTA MULTICRITERIO - GET /api/v1/envios/consulta?estado=En tránsito&sistema=ACMS&destino=Miami
+     * Combina filtros por estado, sistema, origen y destino (AND entre
+     * campos; un parámetro repetido acepta cualquiera de sus valores)
+     *
+     * @param estado Estados aceptados (opcional)
+     * @param sistema Sistemas aceptados (opcional)
+     * @param origen Orígenes aceptados (opcional)
+     * @param destino Destinos aceptados (opcional)
+     * @param orden id, estado, sistema, origen o destino; con "-" delante es descendente
+     * @param desplazamiento Resultados a saltar
+     * @param limite Tamaño de la página
+     * @param facetas Incluir conteos por estado y sistema del resultado
+     * @return ResponseEntity con la página, el total y el plan ejecutado
+     */
+    @GetMapping("/consulta")
+    public ResponseEntity<?> consultarEnvios(@RequestParam(value = "estado", required = false) List<String> estado,
+                                             @RequestParam(value = "sistema", required = false) List<String> sistema,
+                                             @RequestParam(value = "origen", required = false) List<String> origen,
+                                             @RequestParam(value = "destino", required = false) List<String> destino,
+                                             @RequestParam(value = "orden", defaultValue = "id") String orden,
+                                             @RequestParam(value = "desplazamiento", defaultValue = "0") long desplazamiento,
+                                             @RequestParam(value = "limite", defaultValue = "50") int limite,
+                                             @RequestParam(value = "facetas", defaultValue = "false") boolean facetas) {
+        if (limite < 1 || limite > envioService.getLimiteMaxBusqueda()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El límite debe estar entre 1 y " + envioService.getLimiteMaxBusqueda()));
+        }
+        if (desplazamiento < 0) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El desplazamiento no puede ser negativo"));
+        }
+
+        boolean descendente = orden.startsWith("-");
+        String campoOrden = (descendente ? orden.substring(1) : orden).trim().toUpperCase();
+        IndiceFiltros.Campo ordenarPor = null;
+        if (!campoOrden.equals("ID")) {
+            try {
+                ordenarPor = IndiceFiltros.Campo.valueOf(campoOrden);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "El orden debe ser id, estado, sistema, origen o destino"));
+            }
+        }
+
+        Map<IndiceFiltros.Campo, List<String>> filtros = new EnumMap<>(IndiceFiltros.Campo.class);
+        if (estado != null && !estado.isEmpty()) {
+            filtros.put(IndiceFiltros.Campo.ESTADO, estado);
+        }
+        if (sistema != null && !sistema.isEmpty()) {
+            filtros.put(IndiceFiltros.Campo.SISTEMA, sistema);
+        }
+        if (origen != null && !origen.isEmpty()) {
+            filtros.put(IndiceFiltros.Campo.ORIGEN, origen);
+        }
+        if (destino != null && !destino.isEmpty()) {
+            filtros.put(IndiceFiltros.Campo.DESTINO, destino);
+        }
+
+        try {
+            return ResponseEntity.ok(envioService.consultar(new IndiceFiltros.Consulta(
+                    filtros, ordenarPor, descendente, desplazamiento, limite, facetas)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * HISTORIAL - GET /api/v1/envios/{id}/historial
+     * Transiciones de estado de un envío con su tiempo de permanencia
+     *
+     * @param id ID del envío
+     * @param sistema TMS, ACMS o SMCS para los cambios confirmados por ese sistema (opcional; por defecto, el envío local)
+     * @return ResponseEntity con las transiciones, de la más antigua a la más reciente
+     */
+    @GetMapping("/{id}/historial")
+    public ResponseEntity<?> obtenerHistorial(@PathVariable("id") String id,
+                                              @RequestParam(value = "sistema", required = false) String sistema) {
+        try {
+            Map<String, Object> historial = envioService.obtenerHistorial(sistema, Long.parseLong(id));
+            if (historial == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "No hay historial del envío con ID " + id));
+            }
+            return ResponseEntity.ok(historial);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "El ID del envío debe ser numérico"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * PERMANENCIAS - GET /api/v1/envios/historial/permanencias
+     * Percentiles (p50, p90, p99) del tiempo que los envíos pasan en cada estado y sistema
+     *
+     * @return ResponseEntity con los percentiles por estado y por sistema
+     */
+    @GetMapping("/historial/permanencias")
+    public ResponseEntity<?> obtenerPermanencias() {
+        try {
+            return ResponseEntity.ok(envioService.obtenerPermanencias());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
@@ -331,15 +703,15 @@ public class EnvioController {
 
     /**
      * ESTADÍSTICAS - GET /api/v1/envios/estadisticas
-     * Obtiene estadísticas de los envíos
+     * Obtiene estadísticas de los envíos (cacheadas hasta el siguiente cambio)
      *
      * @return ResponseEntity con estadísticas
      */
     @GetMapping("/estadisticas")
-    public ResponseEntity<?> obtenerEstadisticas() {
+    public ResponseEntity<?> obtenerEstadisticas(HttpServletRequest request) {
         try {
-            Map<String, Object> estadisticas = envioService.obtenerEstadisticas();
-            return ResponseEntity.ok(estadisticas);
+            return cacheRespuestas.responder(request, "estadisticas", envioService.getVersionCambios(),
+                    envioService::obtenerEstadisticas);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
@@ -353,16 +725,22 @@ public class EnvioController {
 
     /**
      * GET /api/v1/envios/sistemas - Listar envíos de todos los sistemas
+     *
+     * La respuesta se escribe como flujo a medida que llegan los envíos de
+     * cada sistema, sin cargar los listados completos en memoria. Se
+     * escribe en JSON, CBOR o Smile según el header Accept.
      */
     @GetMapping("/sistemas")
-    public ResponseEntity<?> listarEnviosDeSistemas() {
-        try {
-            Map<String, Object> envios = envioService.listarTodosLosEnvios();
-            return ResponseEntity.ok(envios);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Error al consultar sistemas: " + e.getMessage()));
+    public void listarEnviosDeSistemas(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                       HttpServletResponse response) throws IOException {
+        MediaType formato = FormatosBinariosConfig.negociar(accept);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(formato.toString());
+        if (MediaType.APPLICATION_JSON.equals(formato)) {
+            response.setCharacterEncoding("UTF-8");
         }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        envioService.escribirEnviosDeSistemas(response.getOutputStream(), formato);
     }
 
     /**
@@ -416,8 +794,9 @@ public class EnvioController {
      * GET /api/v1/envios/info
      */
     @GetMapping("/info")
-    public ResponseEntity<?> getServiceInfo() {
-        return ResponseEntity.ok(Map.of(
+    public ResponseEntity<?> getServiceInfo(HttpServletRequest request) {
+        // Contenido fijo: se serializa una vez por formato
+        return cacheRespuestas.responder(request, "info", 0, () -> Map.of(
             "servicio", "LogiServices Service Facade",
             "version", "1.0.0",
             "descripcion", "Service Facade que integra TMS, ACMS y SMCS via Eureka",
@@ -426,19 +805,27 @@ public class EnvioController {
                 put("GET /api/v1/envios/{id}", "Obtener envío por ID (sistemas + locales)");
                 put("GET /api/v1/envios/sistemas", "Listar envíos de todos los sistemas");
                 put("POST /api/v1/envios", "Crear nuevo envío local");
-                put("PUT /api/v1/envios/{id}", "Actualizar envío local");
+                put("POST /api/v1/envios/lote", "Crear varios envíos locales en lote");
+                put("PUT /api/v1/envios/{id}", "Actualizar envío local (If-Match para actualización condicional)");
                 put("PUT /api/v1/envios/{id}/estado/sistema", "Actualizar estado en sistema");
                 put("DELETE /api/v1/envios/{id}", "Eliminar envío local");
                 put("GET /api/v1/envios/sistema/{sistema}", "Buscar por sistema local");
                 put("GET /api/v1/envios/estado/{estado}", "Buscar por estado local");
                 put("GET /api/v1/envios/estadisticas", "Obtener estadísticas locales");
+                put("GET /api/v1/envios/{id}/historial", "Transiciones de estado de un envío local");
+                put("GET /api/v1/envios/historial/permanencias", "Percentiles de permanencia por estado y sistema");
+                put("GET /api/v1/envios/buscar", "Buscar por prefijo de origen/destino (q, campo, desdeId, limite)");
+                put("GET /api/v1/envios/consulta", "Consulta multicriterio (estado, sistema, origen, destino, orden, limite)");
                 put("GET /api/v1/envios/sistemas/info", "Información de todos los sistemas");
+                put("GET /api/v1/envios/stream", "Flujo SSE de cambios (filtros: ids, estado, sistema)");
             }},
             "integracion", Map.of(
                 "eurekaServer", "http://localhost:8761",
                 "serviciosRegistrados", Arrays.asList("TMS", "ACMS", "SMCS"),
                 "tecnologia", "Spring Cloud OpenFeign"
-            )
+            ),
+            "formatos", Arrays.asList(MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+                FormatosBinariosConfig.APPLICATION_SMILE.toString())
         ));
     }
 }
@@ -0,0 +1,74 @@
+package com.logiservices.controller;
+
+import com.logiservices.cache.ArranqueEnCaliente;
+import com.logiservices.cache.CacheRespuestas;
+import com.logiservices.cluster.BusInvalidacion;
+import com.logiservices.cluster.ParticionadoEnvios;
+import com.logiservices.filter.LimiteConcurrenciaFilter;
+import com.logiservices.security.LimiteTasaFilter;
+import com.logiservices.service.CoberturaService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller REST con métricas operativas del Service Facade
+ *
+ * El proyecto no incluye Actuator; este endpoint reúne las métricas
+ * internas de los componentes de rendimiento.
+ */
+@RestController
+@RequestMapping("/api/v1/metricas")
+@Tag(name = "Métricas", description = "Métricas operativas del Service Facade")
+@SecurityRequirement(name = "bearerAuth")
+public class MetricasController {
+
+    private final CoberturaService coberturaService;
+
+    private final LimiteConcurrenciaFilter limiteConcurrenciaFilter;
+
+    private final LimiteTasaFilter limiteTasaFilter;
+
+    private final CacheRespuestas cacheRespuestas;
+
+    private final BusInvalidacion busInvalidacion;
+
+    private final ParticionadoEnvios particionado;
+
+    private final ArranqueEnCaliente arranqueEnCaliente;
+
+    public MetricasController(CoberturaService coberturaService, LimiteConcurrenciaFilter limiteConcurrenciaFilter,
+                              LimiteTasaFilter limiteTasaFilter, CacheRespuestas cacheRespuestas,
+                              BusInvalidacion busInvalidacion, ParticionadoEnvios particionado,
+                              ArranqueEnCaliente arranqueEnCaliente) {
+        this.coberturaService = coberturaService;
+        this.limiteConcurrenciaFilter = limiteConcurrenciaFilter;
+        this.limiteTasaFilter = limiteTasaFilter;
+        this.cacheRespuestas = cacheRespuestas;
+        this.busInvalidacion = busInvalidacion;
+        this.particionado = particionado;
+        this.arranqueEnCaliente = arranqueEnCaliente;
+    }
+
+    /**
+     * GET /api/v1/metricas - Métricas de todos los componentes
+     */
+    @GetMapping
+    @Operation(summary = "Métricas operativas", description = "Métricas internas de cobertura, caches y límites")
+    public ResponseEntity<?> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("cobertura", coberturaService.obtenerMetricas());
+        metricas.put("concurrencia", limiteConcurrenciaFilter.obtenerMetricas());
+        metricas.put("limiteTasa", limiteTasaFilter.obtenerMetricas());
+        metricas.put("respuestas", cacheRespuestas.obtenerMetricas());
+        metricas.put("cluster", busInvalidacion.obtenerMetricas());
+        metricas.put("particionado", particionado.obtenerMetricas());
+        metricas.put("arranqueCaliente", arranqueEnCaliente.obtenerMetricas());
+        return ResponseEntity.ok(metricas);
+    }
+}
@@ -0,0 +1,94 @@
+package com.logiservices.controller;
+
+import com.logiservices.service.EnvioService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST con la analítica de rutas (origen -> destino)
+ *
+ * Los conteos se mantienen en cada escritura de envíos locales, así que
+ * ninguna consulta recorre el almacén.
+ */
+@RestController
+@RequestMapping("/api/v1/rutas")
+@Tag(name = "Rutas", description = "Volumen y estado de los envíos por ruta origen-destino")
+@SecurityRequirement(name = "bearerAuth")
+public class RutaController {
+
+    private static final int MAX_TOP = 1000;
+
+    private final EnvioService envioService;
+
+    public RutaController(EnvioService envioService) {
+        this.envioService = envioService;
+    }
+
+    /**
+     * RANKING - GET /api/v1/rutas?top=10
+     * Rutas con más envíos, con sus conteos por estado y sistema
+     *
+     * @param top Número de rutas a devolver
+     * @return ResponseEntity con las rutas ordenadas por volumen
+     */
+    @GetMapping
+    @Operation(summary = "Rutas con más envíos", description = "Las N rutas origen-destino con más envíos locales")
+    public ResponseEntity<?> obtenerRutasPrincipales(@RequestParam(value = "top", defaultValue = "10") int top) {
+        if (top < 1 || top > MAX_TOP) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El parámetro top debe estar entre 1 y " + MAX_TOP));
+        }
+        List<Map<String, Object>> rutas = envioService.obtenerRutasPrincipales(top);
+        return ResponseEntity.ok(Map.of(
+            "total", rutas.size(),
+            "rutas", rutas
+        ));
+    }
+
+    /**
+     * DETALLE - GET /api/v1/rutas/{origen}/{destino}
+     * Conteos por estado y sistema de una ruta
+     *
+     * @return ResponseEntity con los conteos o 404 si la ruta no tiene envíos
+     */
+    @GetMapping("/{origen}/{destino}")
+    @Operation(summary = "Detalle de una ruta", description = "Total y conteos por estado y sistema de una ruta")
+    public ResponseEntity<?> obtenerRuta(
+            @Parameter(description = "Origen", example = "Cali") @PathVariable("origen") String origen,
+            @Parameter(description = "Destino", example = "Cartagena") @PathVariable("destino") String destino) {
+        Map<String, Object> ruta = envioService.obtenerRuta(origen, destino);
+        if (ruta == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "No hay envíos en la ruta " + origen + " -> " + destino));
+        }
+        return ResponseEntity.ok(ruta);
+    }
+
+    /**
+     * ENVÍOS - GET /api/v1/rutas/{origen}/{destino}/envios?desdeId=0&limite=50
+     * Envíos de una ruta, paginados por cursor (siguienteDesdeId)
+     *
+     * @return ResponseEntity con la página de envíos
+     */
+    @GetMapping("/{origen}/{destino}/envios")
+    @Operation(summary = "Envíos de una ruta", description = "Envíos de una ruta en orden de ID, paginados por cursor")
+    public ResponseEntity<?> listarEnviosDeRuta(
+            @PathVariable("origen") String origen,
+            @PathVariable("destino") String destino,
+            @RequestParam(value = "desdeId", defaultValue = "0") long desdeId,
+            @RequestParam(value = "limite", defaultValue = "50") int limite) {
+        if (limite < 1 || limite > envioService.getLimiteMaxBusqueda()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El límite debe estar entre 1 y " + envioService.getLimiteMaxBusqueda()));
+        }
+        return ResponseEntity.ok(envioService.listarEnviosDeRuta(origen, destino, desdeId, limite));
+    }
+}
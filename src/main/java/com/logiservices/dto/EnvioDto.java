@@ -13,6 +13,7 @@ public class EnvioDto {
     private String destino;
     private String estado;
     private String sistemaOrigen; // TMS, ACMS o SMCS
+    private Long version; // Se incrementa en cada modificación (base del ETag)
 
     /**
      * Constructor por defecto (requerido para serialización JSON)
@@ -30,6 +31,14 @@ public class EnvioDto {
         this.sistemaOrigen = sistemaOrigen;
     }
 
+    /**
+     * Constructor con versión
+     */
+    public EnvioDto(Long id, String origen, String destino, String estado, String sistemaOrigen, Long version) {
+        this(id, origen, destino, estado, sistemaOrigen);
+        this.version = version;
+    }
+
     // Getters & Setters
     public Long getId() {
         return id;
@@ -71,6 +80,14 @@ public class EnvioDto {
         this.sistemaOrigen = sistemaOrigen;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "EnvioDto{" +
@@ -79,6 +96,7 @@ public class EnvioDto {
                 ", destino='" + destino + '\'' +
                 ", estado='" + estado + '\'' +
                 ", sistemaOrigen='" + sistemaOrigen + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,99 @@
+package com.logiservices.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Envío tal como lo devuelven TMS, ACMS y SMCS
+ *
+ * Jackson lo decodifica directamente desde la respuesta, sin construir un
+ * árbol de mapas intermedio. Los campos que no se usan se ignoran.
+ * Si el sistema responde con un error ({"error": "..."}), solo se rellena
+ * el campo error.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EnvioSistemaResponse {
+
+    @JsonAlias({"envioId", "idEnvio"})
+    private Long id;
+
+    private String origen;
+
+    private String destino;
+
+    @JsonAlias({"estadoActual", "status"})
+    private String estado;
+
+    private String error;
+
+    public EnvioSistemaResponse() {}
+
+    /**
+     * Indica si la respuesta corresponde a un envío válido
+     */
+    public boolean esValido() {
+        return error == null && id != null;
+    }
+
+    /**
+     * Normaliza el envío al modelo del Service Facade
+     *
+     * @param sistema Sistema que respondió (TMS, ACMS o SMCS)
+     */
+    public EnvioDto aEnvioDto(String sistema) {
+        return new EnvioDto(id, origen, destino, estado, sistema);
+    }
+
+    /**
+     * Algunos sistemas envuelven el envío en {"envio": {...}}
+     */
+    public void setEnvio(EnvioSistemaResponse envio) {
+        if (envio != null) {
+            this.id = envio.id;
+            this.origen = envio.origen;
+            this.destino = envio.destino;
+            this.estado = envio.estado;
+        }
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOrigen() {
+        return origen;
+    }
+
+    public void setOrigen(String origen) {
+        this.origen = origen;
+    }
+
+    public String getDestino() {
+        return destino;
+    }
+
+    public void setDestino(String destino) {
+        this.destino = destino;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,63 @@
+package com.logiservices.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Respuesta de actualizarEstado de TMS, ACMS y SMCS
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EstadoSistemaResponse {
+
+    @JsonAlias({"envioId", "idEnvio"})
+    private Long id;
+
+    @JsonAlias({"estadoActual", "nuevoEstado", "status"})
+    private String estado;
+
+    private String mensaje;
+
+    private String error;
+
+    public EstadoSistemaResponse() {}
+
+    /**
+     * Indica si el sistema aceptó el cambio de estado
+     */
+    public boolean esValido() {
+        return error == null;
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,116 @@
+package com.logiservices.event;
+
+import com.logiservices.dto.EnvioDto;
+
+/**
+ * Evento publicado cada vez que cambia un envío
+ *
+ * Los almacenes lo publican dentro de su sección de escritura, por lo que
+ * los listeners síncronos reciben los cambios en el mismo orden en que se
+ * aplicaron. Los listeners deben ser rápidos y no bloquear.
+ */
+public class EnvioCambiadoEvent {
+
+    /**
+     * Tipo de cambio
+     */
+    public enum Tipo {
+        /** Alta de un envío local */
+        CREADO,
+        /** Modificación de un envío local */
+        ACTUALIZADO,
+        /** Eliminación de un envío local */
+        ELIMINADO,
+        /** Envío local entregado a otro nodo al reequilibrar (modo cluster); no es una baja */
+        TRANSFERIDO,
+        /** Cambio de estado confirmado por un sistema externo (TMS, ACMS, SMCS) */
+        ESTADO_SISTEMA
+    }
+
+    private final Tipo tipo;
+    private final Long id;
+    private final EnvioDto anterior;
+    private final EnvioDto actual;
+    private final String sistema;
+    private final String estado;
+    private final long timestamp;
+
+    private EnvioCambiadoEvent(Tipo tipo, Long id, EnvioDto anterior, EnvioDto actual,
+                               String sistema, String estado) {
+        this.tipo = tipo;
+        this.id = id;
+        this.anterior = anterior;
+        this.actual = actual;
+        this.sistema = sistema;
+        this.estado = estado;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static EnvioCambiadoEvent creado(EnvioDto actual) {
+        return new EnvioCambiadoEvent(Tipo.CREADO, actual.getId(), null, actual,
+                actual.getSistemaOrigen(), actual.getEstado());
+    }
+
+    public static EnvioCambiadoEvent actualizado(EnvioDto anterior, EnvioDto actual) {
+        return new EnvioCambiadoEvent(Tipo.ACTUALIZADO, actual.getId(), anterior, actual,
+                actual.getSistemaOrigen(), actual.getEstado());
+    }
+
+    public static EnvioCambiadoEvent eliminado(EnvioDto anterior) {
+        return new EnvioCambiadoEvent(Tipo.ELIMINADO, anterior.getId(), anterior, null,
+                anterior.getSistemaOrigen(), anterior.getEstado());
+    }
+
+    public static EnvioCambiadoEvent transferido(EnvioDto anterior) {
+        return new EnvioCambiadoEvent(Tipo.TRANSFERIDO, anterior.getId(), anterior, null,
+                anterior.getSistemaOrigen(), anterior.getEstado());
+    }
+
+    public static EnvioCambiadoEvent estadoEnSistema(Long id, String sistema, String estado) {
+        return new EnvioCambiadoEvent(Tipo.ESTADO_SISTEMA, id, null, null, sistema, estado);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Valor previo al cambio (null en altas y cambios de sistema)
+     */
+    public EnvioDto getAnterior() {
+        return anterior;
+    }
+
+    /**
+     * Valor posterior al cambio (null en eliminaciones, transferencias y cambios de sistema)
+     */
+    public EnvioDto getActual() {
+        return actual;
+    }
+
+    public String getSistema() {
+        return sistema;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "EnvioCambiadoEvent{" +
+                "tipo=" + tipo +
+                ", id=" + id +
+                ", sistema='" + sistema + '\'' +
+                ", estado='" + estado + '\'' +
+                '}';
+    }
+}
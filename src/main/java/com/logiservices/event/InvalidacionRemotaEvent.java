@@ -0,0 +1,55 @@
+package com.logiservices.event;
+
+import java.util.Set;
+
+/**
+ * Evento publicado al recibir de otra instancia del Service Facade un lote
+ * de envíos que cambiaron allí
+ *
+ * Solo lo escucha la cache de respuestas HTTP, que descarta lo que tenga
+ * de esos IDs, o todo si {@link #isTodo()} es true. Los índices y el
+ * historial no lo usan: reflejan únicamente el almacén de este nodo.
+ */
+public class InvalidacionRemotaEvent {
+
+    private final String origen;
+    private final Set<Long> ids;
+    private final boolean todo;
+
+    public InvalidacionRemotaEvent(String origen, Set<Long> ids, boolean todo) {
+        this.origen = origen;
+        this.ids = ids;
+        this.todo = todo;
+    }
+
+    /**
+     * ID de la instancia donde se produjeron los cambios
+     */
+    public String getOrigen() {
+        return origen;
+    }
+
+    /**
+     * IDs de los envíos cambiados (vacío si {@link #isTodo()})
+     */
+    public Set<Long> getIds() {
+        return ids;
+    }
+
+    /**
+     * Indica que se deben descartar todos los datos cacheados, porque se
+     * perdieron mensajes o el lote superó el máximo de IDs
+     */
+    public boolean isTodo() {
+        return todo;
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidacionRemotaEvent{" +
+                "origen='" + origen + '\'' +
+                ", ids=" + ids.size() +
+                ", todo=" + todo +
+                '}';
+    }
+}
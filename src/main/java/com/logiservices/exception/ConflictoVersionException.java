@@ -0,0 +1,33 @@
+package com.logiservices.exception;
+
+/**
+ * Excepción personalizada para actualizaciones condicionales fallidas
+ *
+ * Se lanza cuando la versión indicada en If-Match ya no coincide con la
+ * versión actual del envío (otro cliente lo modificó antes), o cuando una
+ * actualización sin If-Match pierde repetidamente la carrera con otras
+ */
+public class ConflictoVersionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long versionActual;
+
+    public ConflictoVersionException(Long id, Long versionEsperada, Long versionActual) {
+        super(String.format("El envío %s fue modificado: versión esperada %s, versión actual %s",
+                id, versionEsperada, versionActual));
+        this.versionActual = versionActual;
+    }
+
+    /**
+     * Actualización no condicional que no pudo aplicarse por escrituras concurrentes
+     */
+    public ConflictoVersionException(Long id) {
+        super(String.format("El envío %s se está modificando de forma concurrente; inténtelo de nuevo", id));
+        this.versionActual = null;
+    }
+
+    public Long getVersionActual() {
+        return versionActual;
+    }
+}
@@ -0,0 +1,16 @@
+package com.logiservices.exception;
+
+/**
+ * Excepción personalizada para cambios que no se pudieron hacer durables
+ *
+ * Se lanza cuando falla la escritura del cambio en el WAL. El almacén ya
+ * deshizo el cambio en memoria antes de lanzarla.
+ */
+public class PersistenciaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PersistenciaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
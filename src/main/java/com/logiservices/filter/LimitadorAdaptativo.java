@@ -0,0 +1,173 @@
+package com.logiservices.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Límite de concurrencia adaptativo (AIMD guiado por latencia)
+ *
+ * - Incremento aditivo: mientras la latencia se mantiene cerca de la
+ *   latencia base, el límite crece ~1 por cada "límite" peticiones
+ *   completadas con el sistema cargado.
+ * - Decremento multiplicativo: si con el sistema cargado la latencia media
+ *   reciente (EWMA) supera tolerancia × latencia base, o una petición
+ *   termina con error 5xx, el límite se multiplica por el factor de
+ *   reducción (como mucho una vez por intervalo).
+ *
+ * La latencia base es la mínima observada en la ventana anterior de
+ * muestras, y se lleva por separado para cada clase de petición: una
+ * lectura local y una consulta a los sistemas tienen latencias muy
+ * distintas y no se comparan entre sí.
+ *
+ * Cada clase puede ocupar solo una fracción del límite; con el sistema
+ * saturado se rechazan primero las clases con menor fracción.
+ *
+ * liberar no toma ningún lock: el límite, la latencia base y la media se
+ * actualizan con atómicos. La media es aproximada (dos actualizaciones
+ * simultáneas pueden perder una muestra), lo que no afecta a una EWMA.
+ */
+public class LimitadorAdaptativo {
+
+    /** Muestras por ventana de latencia base */
+    private static final int VENTANA = 500;
+
+    private final int limiteMinimo;
+    private final int limiteMaximo;
+    private final double tolerancia;
+    private final double factorReduccion;
+    private final long intervaloReduccionNanos;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    /** Límite actual (bits de un double) */
+    private final AtomicLong limite;
+    private final AtomicLong ultimaReduccion = new AtomicLong();
+
+    // Latencia base y media por clase
+    private final AtomicLongArray minimoVentana;
+    private final AtomicLongArray base;
+    private final AtomicLongArray media;
+    private final AtomicIntegerArray muestrasVentana;
+
+    private final AtomicLongArray aceptadas;
+    private final AtomicLongArray rechazadas;
+
+    public LimitadorAdaptativo(int limiteInicial, int limiteMinimo, int limiteMaximo, double tolerancia,
+                               double factorReduccion, long intervaloReduccionMs, int clases) {
+        this.limite = new AtomicLong(Double.doubleToLongBits(limiteInicial));
+        this.limiteMinimo = Math.max(1, limiteMinimo);
+        this.limiteMaximo = Math.max(this.limiteMinimo, limiteMaximo);
+        this.tolerancia = tolerancia;
+        this.factorReduccion = factorReduccion;
+        this.intervaloReduccionNanos = TimeUnit.MILLISECONDS.toNanos(intervaloReduccionMs);
+        this.minimoVentana = new AtomicLongArray(clases);
+        this.base = new AtomicLongArray(clases);
+        this.media = new AtomicLongArray(clases);
+        this.muestrasVentana = new AtomicIntegerArray(clases);
+        this.aceptadas = new AtomicLongArray(clases);
+        this.rechazadas = new AtomicLongArray(clases);
+        for (int i = 0; i < clases; i++) {
+            minimoVentana.set(i, Long.MAX_VALUE);
+            base.set(i, -1);
+        }
+        this.ultimaReduccion.set(System.nanoTime() - intervaloReduccionNanos);
+    }
+
+    /**
+     * Intenta reservar un lugar para una petición
+     *
+     * @param clase Clase de la petición
+     * @param fraccion Fracción del límite que puede ocupar esta clase (0..1]
+     * @return Peticiones en curso al reservar (para el cálculo del límite), o -1 si se rechaza
+     */
+    public int adquirir(int clase, double fraccion) {
+        int permitido = Math.max(1, (int) (limite() * fraccion));
+        while (true) {
+            int actual = enCurso.get();
+            if (actual >= permitido) {
+                rechazadas.incrementAndGet(clase);
+                return -1;
+            }
+            if (enCurso.compareAndSet(actual, actual + 1)) {
+                aceptadas.incrementAndGet(clase);
+                return actual + 1;
+            }
+        }
+    }
+
+    /**
+     * Libera el lugar y registra la latencia de la petición
+     *
+     * @param clase Clase de la petición
+     * @param enCursoAlAdquirir Valor devuelto por adquirir
+     * @param latenciaNanos Duración de la petición
+     * @param error true si la petición terminó con error del servidor
+     */
+    public void liberar(int clase, int enCursoAlAdquirir, long latenciaNanos, boolean error) {
+        enCurso.decrementAndGet();
+        long latenciaBase = actualizarBase(clase, latenciaNanos);
+        double mediaClase = actualizarMedia(clase, latenciaNanos);
+
+        double limiteActual = limite();
+        boolean cargado = enCursoAlAdquirir >= limiteActual / 2;
+        boolean lenta = cargado && latenciaBase > 0 && mediaClase > latenciaBase * tolerancia;
+
+        if (error || lenta) {
+            // Como mucho una reducción por intervalo: la hace quien gana el CAS
+            long ahora = System.nanoTime();
+            long anterior = ultimaReduccion.get();
+            if (ahora - anterior >= intervaloReduccionNanos && ultimaReduccion.compareAndSet(anterior, ahora)) {
+                actualizarLimite(l -> Math.max(limiteMinimo, l * factorReduccion));
+            }
+        } else if (cargado) {
+            // Solo crece si el límite se está usando; con poca carga no aporta información
+            actualizarLimite(l -> Math.min(limiteMaximo, l + 1.0 / l));
+        }
+    }
+
+    private long actualizarBase(int clase, long latenciaNanos) {
+        minimoVentana.accumulateAndGet(clase, latenciaNanos, Math::min);
+        if (muestrasVentana.incrementAndGet(clase) % VENTANA == 0) {
+            // Fin de ventana: la base pasa a ser el mínimo de la ventana que termina
+            long minimo = minimoVentana.getAndSet(clase, Long.MAX_VALUE);
+            base.set(clase, Math.min(minimo, latenciaNanos));
+            return base.get(clase);
+        }
+        return base.accumulateAndGet(clase, latenciaNanos, (b, l) -> b < 0 || l < b ? l : b);
+    }
+
+    private double actualizarMedia(int clase, long latenciaNanos) {
+        double anterior = Double.longBitsToDouble(media.get(clase));
+        double nueva = anterior == 0 ? latenciaNanos : anterior * 0.9 + latenciaNanos * 0.1;
+        media.set(clase, Double.doubleToLongBits(nueva));
+        return nueva;
+    }
+
+    private void actualizarLimite(DoubleUnaryOperator cambio) {
+        limite.getAndUpdate(bits -> Double.doubleToLongBits(cambio.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+    private double limite() {
+        return Double.longBitsToDouble(limite.get());
+    }
+
+    public int getLimite() {
+        return (int) limite();
+    }
+
+    public int getEnCurso() {
+        return enCurso.get();
+    }
+
+    public long getAceptadas(int clase) {
+        return aceptadas.get(clase);
+    }
+
+    public long getRechazadas(int clase) {
+        return rechazadas.get(clase);
+    }
+}
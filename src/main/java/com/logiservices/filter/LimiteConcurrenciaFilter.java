@@ -0,0 +1,144 @@
+package com.logiservices.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Filtro de limitación de concurrencia para /api/v1/envios
+ *
+ * Se ejecuta antes de la cadena de seguridad para rechazar el exceso de
+ * carga lo antes posible (503 + Retry-After), sin validar el JWT. El
+ * filtro corre en un hilo de Tomcat: la petición ya pasó por la cola de
+ * aceptación y por la del pool de hilos, así que no evita esas colas; lo
+ * que acota es el trabajo en curso aguas abajo (seguridad, controllers y
+ * llamadas a TMS/ACMS/SMCS).
+ *
+ * Las peticiones se clasifican por coste:
+ * - LECTURA_LOCAL: consultas al almacén local, pueden usar todo el límite
+ * - ESCRITURA: altas, actualizaciones y bajas locales
+ * - SISTEMAS: peticiones que consultan TMS/ACMS/SMCS, las primeras en descartarse
+ *
+ * El flujo SSE (/stream) no se limita: es una conexión de larga duración
+ * que ocuparía un lugar de forma indefinida.
+ */
+public class LimiteConcurrenciaFilter extends OncePerRequestFilter {
+
+    private static final String PREFIJO = "/api/v1/envios";
+
+    public enum Clase {
+        LECTURA_LOCAL, ESCRITURA, SISTEMAS
+    }
+
+    private final LimitadorAdaptativo limitador;
+    private final double[] fracciones;
+    private final int reintentarSegundos;
+
+    /**
+     * @param limitador Límite adaptativo compartido
+     * @param fracciones Fracción del límite por clase, en el orden de {@link Clase}
+     * @param reintentarSegundos Valor del header Retry-After
+     */
+    public LimiteConcurrenciaFilter(LimitadorAdaptativo limitador, double[] fracciones, int reintentarSegundos) {
+        this.limitador = limitador;
+        this.fracciones = fracciones.clone();
+        this.reintentarSegundos = reintentarSegundos;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return !ruta.startsWith(PREFIJO) || ruta.equals(PREFIJO + "/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Clase clase = clasificar(request.getMethod(),
+                request.getRequestURI().substring(request.getContextPath().length() + PREFIJO.length()));
+
+        int enCurso = limitador.adquirir(clase.ordinal(), fracciones[clase.ordinal()]);
+        if (enCurso < 0) {
+            rechazar(response);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        boolean error = true;
+        try {
+            filterChain.doFilter(request, response);
+            error = response.getStatus() >= 500;
+        } finally {
+            limitador.liberar(clase.ordinal(), enCurso, System.nanoTime() - inicio, error);
+        }
+    }
+
+    /**
+     * Clasifica una petición según el coste de su endpoint
+     *
+     * @param metodo Método HTTP
+     * @param ruta Ruta relativa a /api/v1/envios
+     */
+    static Clase clasificar(String metodo, String ruta) {
+        if (ruta.endsWith("/")) {
+            ruta = ruta.substring(0, ruta.length() - 1);
+        }
+        if ("GET".equals(metodo)) {
+            // GET /{id} consulta primero los sistemas; /sistemas lista los tres sistemas
+            if (ruta.equals("/sistemas") || esId(ruta)) {
+                return Clase.SISTEMAS;
+            }
+            return Clase.LECTURA_LOCAL;
+        }
+        if (ruta.endsWith("/estado/sistema")) {
+            return Clase.SISTEMAS;
+        }
+        return Clase.ESCRITURA;
+    }
+
+    private static boolean esId(String ruta) {
+        if (ruta.length() < 2 || ruta.indexOf('/', 1) >= 0) {
+            return false;
+        }
+        for (int i = 1; i < ruta.length(); i++) {
+            if (!Character.isDigit(ruta.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rechazar(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(reintentarSegundos));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"Servicio saturado, reintente más tarde\"}");
+    }
+
+    /**
+     * Estado actual del limitador
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("limite", limitador.getLimite());
+        metricas.put("enCurso", limitador.getEnCurso());
+        for (Clase clase : Clase.values()) {
+            metricas.put(clase.name(), Map.of(
+                "fraccion", fracciones[clase.ordinal()],
+                "aceptadas", limitador.getAceptadas(clase.ordinal()),
+                "rechazadas", limitador.getRechazadas(clase.ordinal())
+            ));
+        }
+        return metricas;
+    }
+}
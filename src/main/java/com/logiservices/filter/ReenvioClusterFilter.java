@@ -0,0 +1,165 @@
+package com.logiservices.filter;
+
+import com.logiservices.cluster.NodosCluster;
+import com.logiservices.cluster.ParticionadoEnvios;
+import com.logiservices.store.EnvioStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reenvía al nodo dueño las peticiones por ID de envíos de otra partición
+ * (modo cluster)
+ *
+ * Atiende /api/v1/envios/{id} (GET, PUT, DELETE) y /api/v1/envios/{id}/historial.
+ * Si el envío está en este nodo (o le pertenece según el anillo) la
+ * petición sigue su curso; si no, se repite tal cual (método, headers,
+ * cuerpo) contra su dueño y se copia la respuesta. El dueño aplica su
+ * propia autenticación, así que el filtro va antes de Spring Security.
+ * Las peticiones reenviadas llevan X-Cluster-Reenvio y nunca se vuelven a
+ * reenviar.
+ */
+public class ReenvioClusterFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_REENVIO = "X-Cluster-Reenvio";
+
+    private static final String PREFIJO = "/api/v1/envios/";
+
+    /** Headers de conexión que no se copian (o que HttpClient no admite) */
+    private static final Set<String> HEADERS_EXCLUIDOS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade", "keep-alive",
+            "transfer-encoding", "te", "trailer", "proxy-authorization", "proxy-connection");
+
+    private final ParticionadoEnvios particionado;
+    private final NodosCluster nodosCluster;
+    private final EnvioStore envioStore;
+    private final HttpClient cliente;
+    private final Duration timeout;
+
+    public ReenvioClusterFilter(ParticionadoEnvios particionado, NodosCluster nodosCluster,
+                                EnvioStore envioStore, long timeoutMs) {
+        this.particionado = particionado;
+        this.nodosCluster = nodosCluster;
+        this.envioStore = envioStore;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.cliente = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !particionado.isHabilitado() || request.getHeader(HEADER_REENVIO) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Long id = idDeRuta(request.getRequestURI().substring(request.getContextPath().length()));
+        if (id == null || particionado.esPropio(id) || envioStore.existe(id)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        NodosCluster.Nodo dueno = particionado.propietario(id);
+        if (dueno == null || dueno.isLocal()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        particionado.registrarReenvio();
+        reenviar(request, response, dueno);
+    }
+
+    /**
+     * ID de /api/v1/envios/{id} o /api/v1/envios/{id}/historial; null en otras rutas
+     */
+    static Long idDeRuta(String ruta) {
+        if (!ruta.startsWith(PREFIJO)) {
+            return null;
+        }
+        String resto = ruta.substring(PREFIJO.length());
+        if (resto.endsWith("/historial")) {
+            resto = resto.substring(0, resto.length() - "/historial".length());
+        }
+        if (resto.isEmpty() || resto.length() > 18) {
+            return null;
+        }
+        for (int i = 0; i < resto.length(); i++) {
+            if (!Character.isDigit(resto.charAt(i))) {
+                return null;
+            }
+        }
+        return Long.parseLong(resto);
+    }
+
+    private void reenviar(HttpServletRequest request, HttpServletResponse response,
+                          NodosCluster.Nodo dueno) throws IOException {
+        String ruta = request.getRequestURI() + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        byte[] cuerpo = request.getInputStream().readAllBytes();
+
+        HttpRequest.Builder peticion = HttpRequest.newBuilder(dueno.getUri().resolve(URI.create(ruta)))
+                .timeout(timeout)
+                .method(request.getMethod(), cuerpo.length > 0
+                        ? HttpRequest.BodyPublishers.ofByteArray(cuerpo)
+                        : HttpRequest.BodyPublishers.noBody());
+        for (String nombre : Collections.list(request.getHeaderNames())) {
+            if (HEADERS_EXCLUIDOS.contains(nombre.toLowerCase())) {
+                continue;
+            }
+            for (String valor : Collections.list(request.getHeaders(nombre))) {
+                peticion.header(nombre, valor);
+            }
+        }
+        peticion.header(HEADER_REENVIO, nodosCluster.getIdLocal());
+
+        HttpResponse<byte[]> respuesta;
+        try {
+            respuesta = cliente.send(peticion.build(), HttpResponse.BodyHandlers.ofByteArray());
+            nodosCluster.registrarExito(dueno.getId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            noDisponible(response, dueno);
+            return;
+        } catch (IOException e) {
+            nodosCluster.registrarFallo(dueno.getId());
+            noDisponible(response, dueno);
+            return;
+        }
+
+        response.setStatus(respuesta.statusCode());
+        for (Map.Entry<String, List<String>> header : respuesta.headers().map().entrySet()) {
+            if (header.getKey().startsWith(":") || HEADERS_EXCLUIDOS.contains(header.getKey().toLowerCase())) {
+                continue;
+            }
+            for (String valor : header.getValue()) {
+                response.addHeader(header.getKey(), valor);
+            }
+        }
+        response.setContentLength(respuesta.body().length);
+        response.getOutputStream().write(respuesta.body());
+    }
+
+    private static void noDisponible(HttpServletResponse response, NodosCluster.Nodo dueno) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"El nodo dueño del envío (" + dueno.getId() + ") no está disponible\"}");
+    }
+}
@@ -0,0 +1,578 @@
+package com.logiservices.indice;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Conjunto comprimido de IDs de envío (bitmap por tramos, estilo Roaring)
+ *
+ * Los IDs se reparten en tramos de 65536 valores según sus bits altos.
+ * Cada tramo se guarda como un arreglo ordenado de char cuando tiene pocos
+ * valores (hasta 4096) o como un mapa de bits de 8 KB cuando tiene más, así
+ * que ocupa como mucho 2 bytes por ID y las intersecciones de tramos densos
+ * se hacen por palabras de 64 bits.
+ *
+ * Solo admite IDs no negativos. No es thread-safe: lo protege el índice
+ * que lo contiene.
+ */
+final class BitmapCompacto {
+
+    /** Máximo de valores de un tramo guardado como arreglo */
+    private static final int LIMITE_ARREGLO = 4096;
+
+    private long[] claves = new long[4];
+    private Tramo[] tramos = new Tramo[4];
+    private int totalTramos;
+    private long cardinalidad;
+
+    boolean agregar(long valor) {
+        if (valor < 0) {
+            throw new IllegalArgumentException("ID negativo: " + valor);
+        }
+        long clave = valor >>> 16;
+        int i = buscarClave(clave);
+        if (i < 0) {
+            i = -i - 1;
+            insertarTramo(i, clave, new Arreglo());
+        }
+        Tramo tramo = tramos[i];
+        int antes = tramo.cardinalidad();
+        tramo = tramo.agregar((char) valor);
+        tramos[i] = tramo;
+        if (tramo.cardinalidad() == antes) {
+            return false;
+        }
+        cardinalidad++;
+        return true;
+    }
+
+    boolean quitar(long valor) {
+        if (valor < 0) {
+            return false;
+        }
+        int i = buscarClave(valor >>> 16);
+        if (i < 0) {
+            return false;
+        }
+        Tramo tramo = tramos[i];
+        int antes = tramo.cardinalidad();
+        tramo = tramo.quitar((char) valor);
+        if (tramo.cardinalidad() == antes) {
+            return false;
+        }
+        cardinalidad--;
+        if (tramo.cardinalidad() == 0) {
+            eliminarTramo(i);
+        } else {
+            tramos[i] = tramo;
+        }
+        return true;
+    }
+
+    boolean contiene(long valor) {
+        if (valor < 0) {
+            return false;
+        }
+        int i = buscarClave(valor >>> 16);
+        return i >= 0 && tramos[i].contiene((char) valor);
+    }
+
+    long cardinalidad() {
+        return cardinalidad;
+    }
+
+    boolean vacio() {
+        return cardinalidad == 0;
+    }
+
+    /**
+     * Intersección con otro bitmap (nuevo bitmap; ninguno de los dos cambia)
+     */
+    BitmapCompacto y(BitmapCompacto otro) {
+        BitmapCompacto resultado = new BitmapCompacto();
+        int i = 0;
+        int j = 0;
+        while (i < totalTramos && j < otro.totalTramos) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                Tramo tramo = tramos[i].y(otro.tramos[j]);
+                if (tramo.cardinalidad() > 0) {
+                    resultado.anexarTramo(claves[i], tramo);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Unión con otro bitmap (nuevo bitmap; ninguno de los dos cambia)
+     */
+    BitmapCompacto o(BitmapCompacto otro) {
+        BitmapCompacto resultado = new BitmapCompacto();
+        int i = 0;
+        int j = 0;
+        while (i < totalTramos || j < otro.totalTramos) {
+            if (j >= otro.totalTramos || (i < totalTramos && claves[i] < otro.claves[j])) {
+                resultado.anexarTramo(claves[i], tramos[i].copia());
+                i++;
+            } else if (i >= totalTramos || claves[i] > otro.claves[j]) {
+                resultado.anexarTramo(otro.claves[j], otro.tramos[j].copia());
+                j++;
+            } else {
+                resultado.anexarTramo(claves[i], tramos[i].o(otro.tramos[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Recorre los IDs en orden ascendente a partir de desde (inclusive)
+     */
+    PrimitiveIterator.OfLong iterador(long desde) {
+        return new Ascendente(Math.max(0, desde));
+    }
+
+    /**
+     * Recorre los IDs en orden descendente a partir de hasta (inclusive)
+     */
+    PrimitiveIterator.OfLong iteradorDescendente(long hasta) {
+        return new Descendente(hasta);
+    }
+
+    private int buscarClave(long clave) {
+        return Arrays.binarySearch(claves, 0, totalTramos, clave);
+    }
+
+    private void insertarTramo(int posicion, long clave, Tramo tramo) {
+        if (totalTramos == claves.length) {
+            claves = Arrays.copyOf(claves, totalTramos * 2);
+            tramos = Arrays.copyOf(tramos, totalTramos * 2);
+        }
+        System.arraycopy(claves, posicion, claves, posicion + 1, totalTramos - posicion);
+        System.arraycopy(tramos, posicion, tramos, posicion + 1, totalTramos - posicion);
+        claves[posicion] = clave;
+        tramos[posicion] = tramo;
+        totalTramos++;
+    }
+
+    private void anexarTramo(long clave, Tramo tramo) {
+        insertarTramo(totalTramos, clave, tramo);
+        cardinalidad += tramo.cardinalidad();
+    }
+
+    private void eliminarTramo(int posicion) {
+        System.arraycopy(claves, posicion + 1, claves, posicion, totalTramos - posicion - 1);
+        System.arraycopy(tramos, posicion + 1, tramos, posicion, totalTramos - posicion - 1);
+        tramos[--totalTramos] = null;
+    }
+
+    private final class Ascendente implements PrimitiveIterator.OfLong {
+
+        private int tramo;
+        private int bajo;
+        private long siguiente = -1;
+
+        Ascendente(long desde) {
+            tramo = buscarClave(desde >>> 16);
+            if (tramo < 0) {
+                tramo = -tramo - 1;
+                bajo = 0;
+            } else {
+                bajo = (int) (desde & 0xFFFF);
+            }
+            avanzar();
+        }
+
+        private void avanzar() {
+            while (tramo < totalTramos) {
+                int valor = tramos[tramo].siguiente(bajo);
+                if (valor >= 0) {
+                    siguiente = (claves[tramo] << 16) | valor;
+                    bajo = valor + 1;
+                    return;
+                }
+                tramo++;
+                bajo = 0;
+            }
+            siguiente = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente >= 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (siguiente < 0) {
+                throw new NoSuchElementException();
+            }
+            long valor = siguiente;
+            avanzar();
+            return valor;
+        }
+    }
+
+    private final class Descendente implements PrimitiveIterator.OfLong {
+
+        private int tramo;
+        private int alto;
+        private long siguiente = -1;
+
+        Descendente(long hasta) {
+            if (hasta < 0) {
+                tramo = -1;
+                return;
+            }
+            tramo = buscarClave(hasta >>> 16);
+            if (tramo < 0) {
+                tramo = -tramo - 2;
+                alto = 0xFFFF;
+            } else {
+                alto = (int) (hasta & 0xFFFF);
+            }
+            avanzar();
+        }
+
+        private void avanzar() {
+            while (tramo >= 0) {
+                int valor = tramos[tramo].anterior(alto);
+                if (valor >= 0) {
+                    siguiente = (claves[tramo] << 16) | valor;
+                    alto = valor - 1;
+                    return;
+                }
+                tramo--;
+                alto = 0xFFFF;
+            }
+            siguiente = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente >= 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (siguiente < 0) {
+                throw new NoSuchElementException();
+            }
+            long valor = siguiente;
+            avanzar();
+            return valor;
+        }
+    }
+
+    /**
+     * Valores de un tramo (16 bits bajos de los IDs)
+     */
+    private abstract static class Tramo {
+
+        abstract Tramo agregar(char valor);
+
+        abstract Tramo quitar(char valor);
+
+        abstract boolean contiene(char valor);
+
+        abstract int cardinalidad();
+
+        abstract Tramo y(Tramo otro);
+
+        abstract Tramo o(Tramo otro);
+
+        /** Menor valor >= desde, o -1 */
+        abstract int siguiente(int desde);
+
+        /** Mayor valor <= hasta, o -1 */
+        abstract int anterior(int hasta);
+
+        abstract Tramo copia();
+    }
+
+    /**
+     * Tramo disperso: arreglo ordenado de valores
+     */
+    private static final class Arreglo extends Tramo {
+
+        private char[] valores;
+        private int tamano;
+
+        Arreglo() {
+            this(new char[4], 0);
+        }
+
+        Arreglo(char[] valores, int tamano) {
+            this.valores = valores;
+            this.tamano = tamano;
+        }
+
+        @Override
+        Tramo agregar(char valor) {
+            int i = Arrays.binarySearch(valores, 0, tamano, valor);
+            if (i >= 0) {
+                return this;
+            }
+            if (tamano >= LIMITE_ARREGLO) {
+                return aMapa().agregar(valor);
+            }
+            i = -i - 1;
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(LIMITE_ARREGLO, tamano * 2));
+            }
+            System.arraycopy(valores, i, valores, i + 1, tamano - i);
+            valores[i] = valor;
+            tamano++;
+            return this;
+        }
+
+        @Override
+        Tramo quitar(char valor) {
+            int i = Arrays.binarySearch(valores, 0, tamano, valor);
+            if (i >= 0) {
+                System.arraycopy(valores, i + 1, valores, i, tamano - i - 1);
+                tamano--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return Arrays.binarySearch(valores, 0, tamano, valor) >= 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return tamano;
+        }
+
+        @Override
+        Tramo y(Tramo otro) {
+            char[] resultado = new char[Math.min(tamano, otro.cardinalidad())];
+            int total = 0;
+            if (otro instanceof Arreglo arreglo) {
+                int i = 0;
+                int j = 0;
+                while (i < tamano && j < arreglo.tamano) {
+                    if (valores[i] < arreglo.valores[j]) {
+                        i++;
+                    } else if (valores[i] > arreglo.valores[j]) {
+                        j++;
+                    } else {
+                        resultado[total++] = valores[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < tamano; i++) {
+                    if (otro.contiene(valores[i])) {
+                        resultado[total++] = valores[i];
+                    }
+                }
+            }
+            return new Arreglo(resultado, total);
+        }
+
+        @Override
+        Tramo o(Tramo otro) {
+            if (!(otro instanceof Arreglo arreglo)) {
+                return otro.o(this);
+            }
+            char[] resultado = new char[tamano + arreglo.tamano];
+            int total = 0;
+            int i = 0;
+            int j = 0;
+            while (i < tamano || j < arreglo.tamano) {
+                if (j >= arreglo.tamano || (i < tamano && valores[i] < arreglo.valores[j])) {
+                    resultado[total++] = valores[i++];
+                } else if (i >= tamano || valores[i] > arreglo.valores[j]) {
+                    resultado[total++] = arreglo.valores[j++];
+                } else {
+                    resultado[total++] = valores[i];
+                    i++;
+                    j++;
+                }
+            }
+            Arreglo union = new Arreglo(resultado, total);
+            return total > LIMITE_ARREGLO ? union.aMapa() : union;
+        }
+
+        @Override
+        int siguiente(int desde) {
+            if (desde > 0xFFFF) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(valores, 0, tamano, (char) desde);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < tamano ? valores[i] : -1;
+        }
+
+        @Override
+        int anterior(int hasta) {
+            if (hasta < 0) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(valores, 0, tamano, (char) Math.min(hasta, 0xFFFF));
+            if (i < 0) {
+                i = -i - 2;
+            }
+            return i >= 0 ? valores[i] : -1;
+        }
+
+        @Override
+        Tramo copia() {
+            return new Arreglo(Arrays.copyOf(valores, Math.max(4, tamano)), tamano);
+        }
+
+        private Mapa aMapa() {
+            Mapa mapa = new Mapa();
+            for (int i = 0; i < tamano; i++) {
+                mapa.agregar(valores[i]);
+            }
+            return mapa;
+        }
+    }
+
+    /**
+     * Tramo denso: mapa de bits de 65536 posiciones
+     */
+    private static final class Mapa extends Tramo {
+
+        private final long[] palabras = new long[1024];
+        private int cardinalidad;
+
+        @Override
+        Tramo agregar(char valor) {
+            long bit = 1L << valor;
+            if ((palabras[valor >>> 6] & bit) == 0) {
+                palabras[valor >>> 6] |= bit;
+                cardinalidad++;
+            }
+            return this;
+        }
+
+        @Override
+        Tramo quitar(char valor) {
+            long bit = 1L << valor;
+            if ((palabras[valor >>> 6] & bit) != 0) {
+                palabras[valor >>> 6] &= ~bit;
+                cardinalidad--;
+                if (cardinalidad <= LIMITE_ARREGLO / 2) {
+                    return aArreglo();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return (palabras[valor >>> 6] & (1L << valor)) != 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return cardinalidad;
+        }
+
+        @Override
+        Tramo y(Tramo otro) {
+            if (otro instanceof Arreglo) {
+                return otro.y(this);
+            }
+            Mapa mapa = (Mapa) otro;
+            Mapa resultado = new Mapa();
+            for (int i = 0; i < palabras.length; i++) {
+                resultado.palabras[i] = palabras[i] & mapa.palabras[i];
+                resultado.cardinalidad += Long.bitCount(resultado.palabras[i]);
+            }
+            return resultado.cardinalidad <= LIMITE_ARREGLO ? resultado.aArreglo() : resultado;
+        }
+
+        @Override
+        Tramo o(Tramo otro) {
+            Mapa resultado = (Mapa) copia();
+            if (otro instanceof Arreglo arreglo) {
+                for (int i = 0; i < arreglo.tamano; i++) {
+                    resultado.agregar(arreglo.valores[i]);
+                }
+                return resultado;
+            }
+            Mapa mapa = (Mapa) otro;
+            resultado.cardinalidad = 0;
+            for (int i = 0; i < palabras.length; i++) {
+                resultado.palabras[i] |= mapa.palabras[i];
+                resultado.cardinalidad += Long.bitCount(resultado.palabras[i]);
+            }
+            return resultado;
+        }
+
+        @Override
+        int siguiente(int desde) {
+            if (desde > 0xFFFF) {
+                return -1;
+            }
+            int i = desde >>> 6;
+            long palabra = palabras[i] & (-1L << desde);
+            while (true) {
+                if (palabra != 0) {
+                    return i * 64 + Long.numberOfTrailingZeros(palabra);
+                }
+                if (++i == palabras.length) {
+                    return -1;
+                }
+                palabra = palabras[i];
+            }
+        }
+
+        @Override
+        int anterior(int hasta) {
+            if (hasta < 0) {
+                return -1;
+            }
+            int h = Math.min(hasta, 0xFFFF);
+            int i = h >>> 6;
+            long palabra = palabras[i] & (-1L >>> (63 - (h & 63)));
+            while (true) {
+                if (palabra != 0) {
+                    return i * 64 + 63 - Long.numberOfLeadingZeros(palabra);
+                }
+                if (--i < 0) {
+                    return -1;
+                }
+                palabra = palabras[i];
+            }
+        }
+
+        @Override
+        Tramo copia() {
+            Mapa copia = new Mapa();
+            System.arraycopy(palabras, 0, copia.palabras, 0, palabras.length);
+            copia.cardinalidad = cardinalidad;
+            return copia;
+        }
+
+        private Arreglo aArreglo() {
+            char[] valores = new char[Math.max(4, cardinalidad)];
+            int total = 0;
+            for (int i = 0; i < palabras.length; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    valores[total++] = (char) (i * 64 + Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+            return new Arreglo(valores, total);
+        }
+    }
+}
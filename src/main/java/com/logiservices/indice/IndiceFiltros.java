@@ -0,0 +1,421 @@
+package com.logiservices.indice;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.model.EstadoEnvio;
+import com.logiservices.store.EnvioStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Motor de consultas multicriterio sobre índices de bitmaps
+ *
+ * Por cada campo (estado, sistema, origen, destino) y cada valor distinto
+ * se mantiene un bitmap comprimido con los IDs de los envíos que lo tienen.
+ * Los valores se comparan normalizados (sin acentos ni mayúsculas; los
+ * estados conocidos también por su nombre de enum, p. ej. EN_TRANSITO).
+ *
+ * Una consulta combina los filtros con AND entre campos y OR entre los
+ * valores de un mismo campo. El planificador estima la selectividad de
+ * cada filtro por la cardinalidad de su bitmap e intersecta empezando por
+ * el más selectivo, cortando en cuanto el resultado queda vacío. El coste
+ * depende del tamaño de los bitmaps implicados, no de recorrer el almacén.
+ *
+ * Se construye al arrancar recorriendo el EnvioStore por tramos y se
+ * mantiene con los EnvioCambiadoEvent de cada alta, modificación y baja.
+ * El recorrido no retiene el lock del índice mientras lee el almacén; los
+ * cambios que llegan durante la construcción se aplican en el momento y
+ * el recorrido ya no agrega esos envíos.
+ */
+@Component
+public class IndiceFiltros {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceFiltros.class);
+
+    /** Envíos que se agregan al índice con cada toma del lock durante la construcción */
+    private static final int LOTE_CONSTRUCCION = 4096;
+
+    /** Clave de los envíos sin valor en un campo */
+    private static final String SIN_VALOR = "";
+
+    /**
+     * Campos indexados
+     */
+    public enum Campo {
+        ESTADO, SISTEMA, ORIGEN, DESTINO;
+
+        String valorDe(EnvioDto envio) {
+            switch (this) {
+                case ESTADO:
+                    return envio.getEstado();
+                case SISTEMA:
+                    return envio.getSistemaOrigen();
+                case ORIGEN:
+                    return envio.getOrigen();
+                default:
+                    return envio.getDestino();
+            }
+        }
+
+        String clave(String valor) {
+            if (this == ESTADO) {
+                EstadoEnvio conocido = EstadoEnvio.desdeNombre(valor);
+                if (conocido != null) {
+                    valor = conocido.getNombre();
+                }
+            }
+            String normalizado = Normalizacion.normalizar(valor);
+            return normalizado != null ? normalizado : SIN_VALOR;
+        }
+    }
+
+    @Autowired
+    private EnvioStore envioStore;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Campo, TreeMap<String, Valor>> indices = new EnumMap<>(Campo.class);
+
+    private final BitmapCompacto todos = new BitmapCompacto();
+
+    /** IDs cambiados durante la construcción, o null si ya terminó (protegido por lock) */
+    private Set<Long> cambiadosDuranteConstruccion;
+
+    public IndiceFiltros() {
+        for (Campo campo : Campo.values()) {
+            indices.put(campo, new TreeMap<>());
+        }
+    }
+
+    @PostConstruct
+    void construir() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<EnvioDto> lote = new ArrayList<>(LOTE_CONSTRUCCION);
+        envioStore.recorrer(envio -> {
+            lote.add(envio);
+            if (lote.size() >= LOTE_CONSTRUCCION) {
+                agregarLote(lote);
+            }
+        });
+        agregarLote(lote);
+
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = null;
+            log.info("Índice de filtros construido: {} envíos en {} ms", todos.cardinalidad(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega un lote leído del almacén, salvo los envíos con un cambio ya
+     * aplicado (el índice tiene su versión más reciente)
+     */
+    private void agregarLote(List<EnvioDto> lote) {
+        lock.writeLock().lock();
+        try {
+            for (EnvioDto envio : lote) {
+                if (!cambiadosDuranteConstruccion.contains(envio.getId())) {
+                    agregar(envio);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lote.clear();
+    }
+
+    /**
+     * Aplica cada cambio local al índice (las operaciones son idempotentes)
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getTipo() == EnvioCambiadoEvent.Tipo.ESTADO_SISTEMA) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (cambiadosDuranteConstruccion != null) {
+                cambiadosDuranteConstruccion.add(cambio.getId());
+            }
+            if (cambio.getAnterior() != null) {
+                quitar(cambio.getAnterior());
+            }
+            if (cambio.getActual() != null) {
+                agregar(cambio.getActual());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ejecuta una consulta: filtra, ordena y pagina
+     */
+    public Resultado consultar(Consulta consulta) {
+        lock.readLock().lock();
+        try {
+            // 1. Un bitmap candidato por campo filtrado (unión de sus valores)
+            List<Paso> pasos = new ArrayList<>();
+            for (Map.Entry<Campo, List<String>> filtro : consulta.filtros.entrySet()) {
+                TreeMap<String, Valor> indice = indices.get(filtro.getKey());
+                BitmapCompacto candidato = null;
+                for (String valor : filtro.getValue()) {
+                    Valor encontrado = indice.get(filtro.getKey().clave(valor));
+                    if (encontrado != null) {
+                        candidato = candidato == null ? encontrado.ids : candidato.o(encontrado.ids);
+                    }
+                }
+                pasos.add(new Paso(filtro.getKey(), filtro.getValue(),
+                        candidato != null ? candidato : new BitmapCompacto()));
+            }
+
+            // 2. Intersección empezando por el filtro más selectivo
+            pasos.sort(Comparator.comparingLong(paso -> paso.bitmap.cardinalidad()));
+            BitmapCompacto resultado = todos;
+            List<Map<String, Object>> plan = new ArrayList<>(pasos.size());
+            for (int i = 0; i < pasos.size(); i++) {
+                Paso paso = pasos.get(i);
+                boolean omitido = resultado.vacio();
+                if (!omitido) {
+                    resultado = i == 0 ? paso.bitmap : resultado.y(paso.bitmap);
+                }
+                Map<String, Object> detalle = new LinkedHashMap<>();
+                detalle.put("campo", paso.campo.name());
+                detalle.put("valores", paso.valores);
+                detalle.put("cardinalidad", paso.bitmap.cardinalidad());
+                detalle.put("resultado", omitido ? null : resultado.cardinalidad());
+                plan.add(detalle);
+            }
+
+            // 3. Orden y página
+            List<Long> ids = new ArrayList<>(Math.min(consulta.limite, 1024));
+            if (consulta.orden == null) {
+                PrimitiveIterator.OfLong iterador = consulta.descendente
+                        ? resultado.iteradorDescendente(Long.MAX_VALUE)
+                        : resultado.iterador(0);
+                paginar(iterador, consulta.desplazamiento, consulta.limite, ids);
+            } else if (!resultado.vacio()) {
+                NavigableMap<String, Valor> valores = indices.get(consulta.orden);
+                if (consulta.descendente) {
+                    valores = valores.descendingMap();
+                }
+                long saltar = consulta.desplazamiento;
+                for (Valor valor : valores.values()) {
+                    if (ids.size() >= consulta.limite) {
+                        break;
+                    }
+                    BitmapCompacto parte = resultado.y(valor.ids);
+                    if (saltar >= parte.cardinalidad()) {
+                        saltar -= parte.cardinalidad();
+                        continue;
+                    }
+                    paginar(parte.iterador(0), saltar, consulta.limite, ids);
+                    saltar = 0;
+                }
+            }
+
+            // 4. Facetas de estado y sistema sobre el resultado
+            Map<String, Map<String, Long>> facetas = null;
+            if (consulta.facetas) {
+                facetas = new LinkedHashMap<>();
+                facetas.put("estado", faceta(Campo.ESTADO, resultado));
+                facetas.put("sistema", faceta(Campo.SISTEMA, resultado));
+            }
+
+            return new Resultado(ids, resultado.cardinalidad(), plan, facetas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void paginar(PrimitiveIterator.OfLong iterador, long saltar, int limite, List<Long> ids) {
+        while (saltar > 0 && iterador.hasNext()) {
+            iterador.nextLong();
+            saltar--;
+        }
+        while (ids.size() < limite && iterador.hasNext()) {
+            ids.add(iterador.nextLong());
+        }
+    }
+
+    private Map<String, Long> faceta(Campo campo, BitmapCompacto resultado) {
+        Map<String, Long> conteos = new LinkedHashMap<>();
+        for (Valor valor : indices.get(campo).values()) {
+            long total = resultado.y(valor.ids).cardinalidad();
+            if (total > 0) {
+                conteos.put(valor.nombre != null ? valor.nombre : "(sin valor)", total);
+            }
+        }
+        return conteos;
+    }
+
+    private void agregar(EnvioDto envio) {
+        for (Campo campo : Campo.values()) {
+            String original = campo.valorDe(envio);
+            String clave = campo.clave(original);
+            indices.get(campo).computeIfAbsent(clave, k -> new Valor(nombreVisible(campo, original)))
+                    .ids.agregar(envio.getId());
+        }
+        todos.agregar(envio.getId());
+    }
+
+    private void quitar(EnvioDto envio) {
+        for (Campo campo : Campo.values()) {
+            TreeMap<String, Valor> indice = indices.get(campo);
+            String clave = campo.clave(campo.valorDe(envio));
+            Valor valor = indice.get(clave);
+            if (valor != null && valor.ids.quitar(envio.getId()) && valor.ids.vacio()) {
+                indice.remove(clave);
+            }
+        }
+        todos.quitar(envio.getId());
+    }
+
+    private static String nombreVisible(Campo campo, String original) {
+        if (original == null || original.isBlank()) {
+            return null;
+        }
+        if (campo == Campo.ESTADO) {
+            EstadoEnvio conocido = EstadoEnvio.desdeNombre(original);
+            if (conocido != null) {
+                return conocido.getNombre();
+            }
+        }
+        return original.trim();
+    }
+
+    /**
+     * Valor de un campo con los envíos que lo tienen
+     */
+    private static final class Valor {
+
+        final String nombre;
+        final BitmapCompacto ids = new BitmapCompacto();
+
+        Valor(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+
+    /**
+     * Filtro de un campo con su bitmap candidato
+     */
+    private static final class Paso {
+
+        final Campo campo;
+        final List<String> valores;
+        final BitmapCompacto bitmap;
+
+        Paso(Campo campo, List<String> valores, BitmapCompacto bitmap) {
+            this.campo = campo;
+            this.valores = valores;
+            this.bitmap = bitmap;
+        }
+    }
+
+    /**
+     * Consulta: filtros por campo, orden y página
+     */
+    public static final class Consulta {
+
+        private final Map<Campo, List<String>> filtros;
+        private final Campo orden;
+        private final boolean descendente;
+        private final long desplazamiento;
+        private final int limite;
+        private final boolean facetas;
+
+        /**
+         * @param filtros Valores aceptados por campo (AND entre campos, OR dentro de cada campo)
+         * @param orden Campo de orden, o null para ordenar por ID
+         * @param descendente Orden descendente
+         * @param desplazamiento Resultados a saltar
+         * @param limite Tamaño de la página
+         * @param facetas Incluir conteos por estado y sistema del resultado
+         */
+        public Consulta(Map<Campo, List<String>> filtros, Campo orden, boolean descendente,
+                        long desplazamiento, int limite, boolean facetas) {
+            this.filtros = filtros;
+            this.orden = orden;
+            this.descendente = descendente;
+            this.desplazamiento = desplazamiento;
+            this.limite = limite;
+            this.facetas = facetas;
+        }
+    }
+
+    /**
+     * Resultado de una consulta
+     */
+    public static final class Resultado {
+
+        private final List<Long> ids;
+        private final long total;
+        private final List<Map<String, Object>> plan;
+        private final Map<String, Map<String, Long>> facetas;
+
+        Resultado(List<Long> ids, long total, List<Map<String, Object>> plan,
+                  Map<String, Map<String, Long>> facetas) {
+            this.ids = ids;
+            this.total = total;
+            this.plan = plan;
+            this.facetas = facetas;
+        }
+
+        /**
+         * IDs de la página, en el orden pedido
+         */
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        /**
+         * Total de envíos que cumplen los filtros
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Pasos ejecutados por el planificador, en orden
+         */
+        public List<Map<String, Object>> getPlan() {
+            return plan;
+        }
+
+        /**
+         * Conteos por estado y sistema (null si no se pidieron)
+         */
+        public Map<String, Map<String, Long>> getFacetas() {
+            return facetas;
+        }
+    }
+}
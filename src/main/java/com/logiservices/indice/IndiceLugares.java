@@ -0,0 +1,434 @@
+package com.logiservices.indice;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.store.EnvioStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de búsqueda por prefijo sobre origen y destino
+ *
+ * Cada lugar distinto se normaliza (sin acentos ni mayúsculas) y se indexa
+ * en un mapa ordenado por cada palabra en la que empieza, de modo que
+ * "bogota", "Buenav" o "york" encuentran "Bogotá", "Buenaventura" y
+ * "Nueva York". Cada lugar guarda un bitmap con los IDs de los envíos que
+ * salen de él y otro con los que llegan.
+ *
+ * Una búsqueda recorre solo los lugares con ese prefijo (pocos, aunque
+ * haya millones de envíos) y mezcla sus bitmaps en orden de ID hasta
+ * llenar la página; la paginación es por cursor (desdeId).
+ *
+ * Se construye al arrancar recorriendo el EnvioStore por tramos y se
+ * mantiene con los EnvioCambiadoEvent de cada alta, modificación y baja.
+ * El recorrido no retiene el lock del índice mientras lee el almacén; los
+ * cambios que llegan durante la construcción se aplican en el momento y
+ * el recorrido ya no agrega esos envíos.
+ */
+@Component
+public class IndiceLugares {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceLugares.class);
+
+    /** Envíos que se agregan al índice con cada toma del lock durante la construcción */
+    private static final int LOTE_CONSTRUCCION = 4096;
+
+    /** Prefijos con el total de búsqueda por ambos campos guardado */
+    private static final int MAX_TOTALES_GUARDADOS = 1024;
+
+    /**
+     * Campo sobre el que se busca
+     */
+    public enum Campo {
+        ORIGEN, DESTINO, AMBOS
+    }
+
+    @Autowired
+    private EnvioStore envioStore;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Lugares por nombre normalizado */
+    private final Map<String, Lugar> lugares = new HashMap<>();
+
+    /** Lugares por cada sufijo de palabra de su nombre normalizado */
+    private final TreeMap<String, List<Lugar>> prefijos = new TreeMap<>();
+
+    /** IDs cambiados durante la construcción, o null si ya terminó (protegido por lock) */
+    private Set<Long> cambiadosDuranteConstruccion;
+
+    /** Cambia con cada alta, modificación o baja aplicada (protegido por lock) */
+    private long version;
+
+    /** Total de envíos por prefijo en búsquedas por ambos campos: [version, total] */
+    private final Map<String, long[]> totalesAmbos = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void construir() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<EnvioDto> lote = new ArrayList<>(LOTE_CONSTRUCCION);
+        envioStore.recorrer(envio -> {
+            lote.add(envio);
+            if (lote.size() >= LOTE_CONSTRUCCION) {
+                agregarLote(lote);
+            }
+        });
+        agregarLote(lote);
+
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de lugares construido: {} lugares en {} ms", getTotalLugares(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Agrega un lote leído del almacén, salvo los envíos con un cambio ya
+     * aplicado (el índice tiene su versión más reciente)
+     */
+    private void agregarLote(List<EnvioDto> lote) {
+        lock.writeLock().lock();
+        try {
+            for (EnvioDto envio : lote) {
+                if (!cambiadosDuranteConstruccion.contains(envio.getId())) {
+                    agregar(envio);
+                }
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lote.clear();
+    }
+
+    /**
+     * Aplica cada cambio local al índice (las operaciones son idempotentes)
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getTipo() == EnvioCambiadoEvent.Tipo.ESTADO_SISTEMA) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (cambiadosDuranteConstruccion != null) {
+                cambiadosDuranteConstruccion.add(cambio.getId());
+            }
+            if (cambio.getAnterior() != null) {
+                quitar(cambio.getAnterior());
+            }
+            if (cambio.getActual() != null) {
+                agregar(cambio.getActual());
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca envíos cuyo origen y/o destino empieza (en alguna palabra) por el texto
+     *
+     * @param texto Prefijo a buscar (se normaliza)
+     * @param campo Campo sobre el que se busca
+     * @param desdeId Primer ID a devolver (cursor de paginación)
+     * @param limite Máximo de IDs a devolver
+     * @return IDs en orden ascendente, cursor de la página siguiente, total de
+     *         envíos coincidentes (de todas las páginas) y lugares coincidentes
+     */
+    public Resultado buscar(String texto, Campo campo, long desdeId, int limite) {
+        String prefijo = Normalizacion.normalizar(texto);
+        if (prefijo == null) {
+            return new Resultado(List.of(), null, 0, List.of());
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<Lugar> coincidentes = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (List<Lugar> candidatos : prefijos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false).values()) {
+                coincidentes.addAll(candidatos);
+            }
+
+            // Mezcla ordenada de los bitmaps de los lugares coincidentes, sin repetir IDs
+            PriorityQueue<Cursor> cola = new PriorityQueue<>();
+            List<Map<String, Object>> resumen = new ArrayList<>();
+            // Cada envío tiene un solo origen y un solo destino: en un campo los lugares no se solapan
+            long total = 0;
+            for (Lugar lugar : coincidentes) {
+                if (campo != Campo.DESTINO) {
+                    Cursor.encolar(cola, lugar.origen.iterador(desdeId));
+                    total += lugar.origen.cardinalidad();
+                }
+                if (campo != Campo.ORIGEN) {
+                    Cursor.encolar(cola, lugar.destino.iterador(desdeId));
+                    total += lugar.destino.cardinalidad();
+                }
+                Map<String, Object> datos = new LinkedHashMap<>();
+                datos.put("lugar", lugar.nombre);
+                datos.put("comoOrigen", lugar.origen.cardinalidad());
+                datos.put("comoDestino", lugar.destino.cardinalidad());
+                resumen.add(datos);
+            }
+            resumen.sort((a, b) -> ((String) a.get("lugar")).compareToIgnoreCase((String) b.get("lugar")));
+            if (campo == Campo.AMBOS) {
+                total = totalAmbos(prefijo, coincidentes);
+            }
+
+            List<Long> ids = new ArrayList<>(Math.min(limite, 1024));
+            long ultimo = -1;
+            while (!cola.isEmpty() && ids.size() < limite) {
+                Cursor cursor = cola.poll();
+                if (cursor.actual != ultimo) {
+                    ultimo = cursor.actual;
+                    ids.add(ultimo);
+                }
+                if (cursor.avanzar()) {
+                    cola.add(cursor);
+                }
+            }
+            // Descarta los repetidos del último ID para saber si queda algo más
+            while (!cola.isEmpty() && cola.peek().actual == ultimo) {
+                Cursor cursor = cola.poll();
+                if (cursor.avanzar()) {
+                    cola.add(cursor);
+                }
+            }
+            Long siguiente = cola.isEmpty() ? null : cola.peek().actual;
+            return new Resultado(ids, siguiente, total, resumen);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Envíos que salen de o llegan a alguno de los lugares (con el lock de lectura)
+     *
+     * Un envío puede salir de un lugar coincidente y llegar a otro, así que
+     * sumar contaría dos veces; se unen los bitmaps y el total se guarda por
+     * prefijo hasta el siguiente cambio del índice, para no repetir la unión
+     * al paginar.
+     */
+    private long totalAmbos(String prefijo, Collection<Lugar> coincidentes) {
+        long[] guardado = totalesAmbos.get(prefijo);
+        if (guardado != null && guardado[0] == version) {
+            return guardado[1];
+        }
+        BitmapCompacto todos = null;
+        for (Lugar lugar : coincidentes) {
+            todos = todos == null ? lugar.origen.o(lugar.destino) : todos.o(lugar.origen).o(lugar.destino);
+        }
+        long total = todos == null ? 0 : todos.cardinalidad();
+        if (totalesAmbos.size() >= MAX_TOTALES_GUARDADOS) {
+            totalesAmbos.clear();
+        }
+        totalesAmbos.put(prefijo, new long[]{version, total});
+        return total;
+    }
+
+    /**
+     * Número de lugares distintos indexados
+     */
+    public int getTotalLugares() {
+        lock.readLock().lock();
+        try {
+            return lugares.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void agregar(EnvioDto envio) {
+        Lugar origen = lugar(envio.getOrigen(), true);
+        if (origen != null) {
+            origen.origen.agregar(envio.getId());
+        }
+        Lugar destino = lugar(envio.getDestino(), true);
+        if (destino != null) {
+            destino.destino.agregar(envio.getId());
+        }
+    }
+
+    private void quitar(EnvioDto envio) {
+        Lugar origen = lugar(envio.getOrigen(), false);
+        if (origen != null) {
+            origen.origen.quitar(envio.getId());
+            descartarSiVacio(origen);
+        }
+        Lugar destino = lugar(envio.getDestino(), false);
+        if (destino != null) {
+            destino.destino.quitar(envio.getId());
+            descartarSiVacio(destino);
+        }
+    }
+
+    private Lugar lugar(String nombre, boolean crear) {
+        String normalizado = Normalizacion.normalizar(nombre);
+        if (normalizado == null) {
+            return null;
+        }
+        Lugar lugar = lugares.get(normalizado);
+        if (lugar == null && crear) {
+            Lugar nuevo = new Lugar(nombre.trim(), normalizado);
+            lugares.put(normalizado, nuevo);
+            for (String sufijo : sufijosDePalabra(normalizado)) {
+                prefijos.computeIfAbsent(sufijo, k -> new ArrayList<>(1)).add(nuevo);
+            }
+            lugar = nuevo;
+        }
+        return lugar;
+    }
+
+    private void descartarSiVacio(Lugar lugar) {
+        if (!lugar.origen.vacio() || !lugar.destino.vacio()) {
+            return;
+        }
+        lugares.remove(lugar.normalizado);
+        for (String sufijo : sufijosDePalabra(lugar.normalizado)) {
+            List<Lugar> lista = prefijos.get(sufijo);
+            if (lista != null) {
+                lista.remove(lugar);
+                if (lista.isEmpty()) {
+                    prefijos.remove(sufijo);
+                }
+            }
+        }
+    }
+
+    /**
+     * "nueva york" -> ["nueva york", "york"]
+     */
+    private static List<String> sufijosDePalabra(String normalizado) {
+        List<String> sufijos = new ArrayList<>(2);
+        sufijos.add(normalizado);
+        for (int i = 0; i < normalizado.length(); i++) {
+            if (!Character.isLetterOrDigit(normalizado.charAt(i)) && i + 1 < normalizado.length()
+                    && Character.isLetterOrDigit(normalizado.charAt(i + 1))) {
+                sufijos.add(normalizado.substring(i + 1));
+            }
+        }
+        return sufijos;
+    }
+
+    /**
+     * Lugar indexado con los envíos que salen de él y los que llegan
+     */
+    private static final class Lugar {
+
+        final String nombre;
+        final String normalizado;
+        final BitmapCompacto origen = new BitmapCompacto();
+        final BitmapCompacto destino = new BitmapCompacto();
+
+        Lugar(String nombre, String normalizado) {
+            this.nombre = nombre;
+            this.normalizado = normalizado;
+        }
+    }
+
+    /**
+     * Posición actual de un bitmap en la mezcla ordenada
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        final PrimitiveIterator.OfLong iterador;
+        long actual;
+
+        private Cursor(PrimitiveIterator.OfLong iterador) {
+            this.iterador = iterador;
+            this.actual = iterador.nextLong();
+        }
+
+        static void encolar(PriorityQueue<Cursor> cola, PrimitiveIterator.OfLong iterador) {
+            if (iterador.hasNext()) {
+                cola.add(new Cursor(iterador));
+            }
+        }
+
+        boolean avanzar() {
+            if (!iterador.hasNext()) {
+                return false;
+            }
+            actual = iterador.nextLong();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor otro) {
+            return Long.compare(actual, otro.actual);
+        }
+    }
+
+    /**
+     * Página de resultados de una búsqueda
+     */
+    public static final class Resultado {
+
+        private final List<Long> ids;
+        private final Long siguienteDesdeId;
+        private final long total;
+        private final List<Map<String, Object>> lugares;
+
+        Resultado(List<Long> ids, Long siguienteDesdeId, long total, List<Map<String, Object>> lugares) {
+            this.ids = ids;
+            this.siguienteDesdeId = siguienteDesdeId;
+            this.total = total;
+            this.lugares = lugares;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        /**
+         * Envíos que coinciden con la búsqueda en todas las páginas
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Cursor para pedir la página siguiente (null si no hay más)
+         */
+        public Long getSiguienteDesdeId() {
+            return siguienteDesdeId;
+        }
+
+        /**
+         * Lugares coincidentes con su número de envíos como origen y destino
+         */
+        public List<Map<String, Object>> getLugares() {
+            return lugares;
+        }
+    }
+}
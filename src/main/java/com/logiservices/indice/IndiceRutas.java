@@ -0,0 +1,292 @@
+package com.logiservices.indice;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.model.EstadoEnvio;
+import com.logiservices.store.EnvioStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de rutas (origen -> destino) con contadores por estado y sistema
+ *
+ * Cada ruta guarda el bitmap de sus envíos y sus conteos, que se actualizan
+ * en cada escritura; además las rutas se mantienen ordenadas por volumen.
+ * Así el ranking de las N rutas con más envíos, el detalle de una ruta y
+ * sus envíos se responden en tiempo proporcional al resultado, sin recorrer
+ * el almacén.
+ *
+ * Origen y destino se comparan normalizados (sin acentos ni mayúsculas).
+ * Se construye al arrancar recorriendo el EnvioStore por tramos, sin
+ * retener el lock del índice mientras lee el almacén, y se mantiene con los
+ * EnvioCambiadoEvent de cada alta, modificación y baja.
+ */
+@Component
+public class IndiceRutas {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceRutas.class);
+
+    /** Envíos que se agregan al índice con cada toma del lock durante la construcción */
+    private static final int LOTE_CONSTRUCCION = 4096;
+
+    @Autowired
+    private EnvioStore envioStore;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Ruta> rutas = new HashMap<>();
+
+    /** Rutas de mayor a menor número de envíos */
+    private final TreeSet<Ruta> ranking = new TreeSet<>(
+            Comparator.comparingLong((Ruta ruta) -> -ruta.ids.cardinalidad()).thenComparing(ruta -> ruta.clave));
+
+    /** IDs cambiados durante la construcción, o null si ya terminó (protegido por lock) */
+    private Set<Long> cambiadosDuranteConstruccion;
+
+    @PostConstruct
+    void construir() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<EnvioDto> lote = new ArrayList<>(LOTE_CONSTRUCCION);
+        envioStore.recorrer(envio -> {
+            lote.add(envio);
+            if (lote.size() >= LOTE_CONSTRUCCION) {
+                agregarLote(lote);
+            }
+        });
+        agregarLote(lote);
+
+        lock.writeLock().lock();
+        try {
+            cambiadosDuranteConstruccion = null;
+            log.info("Índice de rutas construido: {} rutas en {} ms", rutas.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega un lote leído del almacén, salvo los envíos con un cambio ya
+     * aplicado (el índice tiene su versión más reciente)
+     */
+    private void agregarLote(List<EnvioDto> lote) {
+        lock.writeLock().lock();
+        try {
+            for (EnvioDto envio : lote) {
+                if (!cambiadosDuranteConstruccion.contains(envio.getId())) {
+                    agregar(envio);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lote.clear();
+    }
+
+    /**
+     * Aplica cada cambio local al índice
+     *
+     * Los contadores no son idempotentes: durante la construcción, un envío
+     * cambiado se aplica aquí y el recorrido ya no lo agrega, así que cada
+     * envío se cuenta una sola vez con su versión más reciente.
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getTipo() == EnvioCambiadoEvent.Tipo.ESTADO_SISTEMA) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (cambiadosDuranteConstruccion != null) {
+                cambiadosDuranteConstruccion.add(cambio.getId());
+            }
+            if (cambio.getAnterior() != null) {
+                quitar(cambio.getAnterior());
+            }
+            if (cambio.getActual() != null) {
+                agregar(cambio.getActual());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Las N rutas con más envíos, con sus conteos
+     */
+    public List<Map<String, Object>> principales(int n) {
+        lock.readLock().lock();
+        try {
+            List<Map<String, Object>> resultado = new ArrayList<>(Math.min(n, ranking.size()));
+            Iterator<Ruta> iterador = ranking.iterator();
+            while (resultado.size() < n && iterador.hasNext()) {
+                resultado.add(iterador.next().resumen());
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Conteos de una ruta, o null si no tiene envíos
+     */
+    public Map<String, Object> resumen(String origen, String destino) {
+        lock.readLock().lock();
+        try {
+            Ruta ruta = rutas.get(clave(origen, destino));
+            return ruta != null ? ruta.resumen() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * IDs de los envíos de una ruta en orden ascendente
+     *
+     * @param desdeId Primer ID a devolver (cursor de paginación)
+     * @param limite Máximo de IDs; se devuelve uno más si hay página siguiente
+     * @return IDs (vacío si la ruta no existe)
+     */
+    public List<Long> envios(String origen, String destino, long desdeId, int limite) {
+        lock.readLock().lock();
+        try {
+            Ruta ruta = rutas.get(clave(origen, destino));
+            if (ruta == null) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(limite + 1, 1024));
+            PrimitiveIterator.OfLong iterador = ruta.ids.iterador(desdeId);
+            while (ids.size() <= limite && iterador.hasNext()) {
+                ids.add(iterador.nextLong());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Número de rutas distintas
+     */
+    public int getTotalRutas() {
+        lock.readLock().lock();
+        try {
+            return rutas.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void agregar(EnvioDto envio) {
+        String clave = clave(envio.getOrigen(), envio.getDestino());
+        Ruta ruta = rutas.get(clave);
+        if (ruta == null) {
+            ruta = new Ruta(clave, nombre(envio.getOrigen()), nombre(envio.getDestino()));
+            rutas.put(clave, ruta);
+        } else if (ruta.ids.contiene(envio.getId())) {
+            return;
+        } else {
+            ranking.remove(ruta);
+        }
+        ruta.ids.agregar(envio.getId());
+        ruta.porEstado.merge(estado(envio.getEstado()), 1L, Long::sum);
+        ruta.porSistema.merge(sistema(envio.getSistemaOrigen()), 1L, Long::sum);
+        ranking.add(ruta);
+    }
+
+    private void quitar(EnvioDto envio) {
+        String clave = clave(envio.getOrigen(), envio.getDestino());
+        Ruta ruta = rutas.get(clave);
+        if (ruta == null || !ruta.ids.contiene(envio.getId())) {
+            return;
+        }
+        ranking.remove(ruta);
+        ruta.ids.quitar(envio.getId());
+        ruta.porEstado.computeIfPresent(estado(envio.getEstado()), (k, total) -> total > 1 ? total - 1 : null);
+        ruta.porSistema.computeIfPresent(sistema(envio.getSistemaOrigen()), (k, total) -> total > 1 ? total - 1 : null);
+        if (ruta.ids.vacio()) {
+            rutas.remove(clave);
+        } else {
+            ranking.add(ruta);
+        }
+    }
+
+    private static String clave(String origen, String destino) {
+        String o = Normalizacion.normalizar(origen);
+        String d = Normalizacion.normalizar(destino);
+        // La normalización compacta los espacios en blanco, así que "\n" no aparece en los nombres
+        return (o != null ? o : "") + "\n" + (d != null ? d : "");
+    }
+
+    private static String nombre(String lugar) {
+        return lugar != null && !lugar.isBlank() ? lugar.trim() : null;
+    }
+
+    private static String estado(String estado) {
+        EstadoEnvio conocido = EstadoEnvio.desdeNombre(estado);
+        if (conocido != null) {
+            return conocido.getNombre();
+        }
+        return estado != null && !estado.isBlank() ? estado.trim() : "(sin valor)";
+    }
+
+    private static String sistema(String sistema) {
+        return sistema != null && !sistema.isBlank() ? sistema.trim().toUpperCase() : "(sin valor)";
+    }
+
+    /**
+     * Ruta con sus envíos y conteos
+     */
+    private static final class Ruta {
+
+        final String clave;
+        final String origen;
+        final String destino;
+        final BitmapCompacto ids = new BitmapCompacto();
+        final Map<String, Long> porEstado = new TreeMap<>();
+        final Map<String, Long> porSistema = new TreeMap<>();
+
+        Ruta(String clave, String origen, String destino) {
+            this.clave = clave;
+            this.origen = origen;
+            this.destino = destino;
+        }
+
+        Map<String, Object> resumen() {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("origen", origen);
+            datos.put("destino", destino);
+            datos.put("total", ids.cardinalidad());
+            datos.put("porEstado", new LinkedHashMap<>(porEstado));
+            datos.put("porSistema", new LinkedHashMap<>(porSistema));
+            return datos;
+        }
+    }
+}
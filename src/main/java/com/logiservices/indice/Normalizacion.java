@@ -0,0 +1,29 @@
+package com.logiservices.indice;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de textos para búsquedas: sin acentos, en minúsculas y con
+ * los espacios compactados ("  Bogotá D.C." -> "bogota d.c.")
+ */
+public final class Normalizacion {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private Normalizacion() {}
+
+    /**
+     * @return Texto normalizado, o null si el texto es null o queda vacío
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        String resultado = ESPACIOS.matcher(sinMarcas.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+        return resultado.isEmpty() ? null : resultado;
+    }
+}
@@ -0,0 +1,143 @@
+package com.logiservices.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Entidad Envio para el almacén JPA de envíos locales
+ *
+ * Los IDs se generan con una secuencia con asignación agrupada (pooled):
+ * Hibernate reserva bloques de 50 IDs por cada consulta a la secuencia, lo
+ * que permite agrupar los INSERT en lotes JDBC del mismo tamaño.
+ *
+ * El estado se guarda con el nombre canónico de los estados conocidos (como
+ * en los almacenes en memoria) y, además, con su clave sin mayúsculas
+ * (EstadoEnvio.clave) en estado_clave: la búsqueda por estado compara esa
+ * columna por igualdad y usa su índice.
+ */
+@Entity
+@Table(name = "envios", indexes = {
+    @Index(name = "idx_envios_estado", columnList = "estado_clave"),
+    @Index(name = "idx_envios_sistema_origen", columnList = "sistema_origen"),
+    @Index(name = "idx_envios_origen", columnList = "origen"),
+    @Index(name = "idx_envios_destino", columnList = "destino")
+})
+public class Envio {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "envios_seq")
+    @SequenceGenerator(name = "envios_seq", sequenceName = "envios_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String origen;
+
+    @Column(nullable = false)
+    private String destino;
+
+    @Column(nullable = false)
+    private String estado;
+
+    @Column(name = "estado_clave", nullable = false)
+    private String estadoClave;
+
+    @Column(name = "sistema_origen", nullable = false, length = 10)
+    private String sistemaOrigen;
+
+    /**
+     * Versión para bloqueo optimista: Hibernate emite UPDATE ... WHERE version = ?
+     *
+     * Empieza en 1, como en los almacenes en memoria (ver asignarVersionInicial).
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Hibernate respeta una versión inicial positiva; sin esto sembraría 0
+     */
+    @PrePersist
+    void asignarVersionInicial() {
+        if (version == null) {
+            version = 1L;
+        }
+    }
+
+    // Constructores
+    public Envio() {}
+
+    public Envio(String origen, String destino, String estado, String sistemaOrigen) {
+        this.origen = origen;
+        this.destino = destino;
+        setEstado(estado);
+        this.sistemaOrigen = sistemaOrigen;
+    }
+
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOrigen() {
+        return origen;
+    }
+
+    public void setOrigen(String origen) {
+        this.origen = origen;
+    }
+
+    public String getDestino() {
+        return destino;
+    }
+
+    public void setDestino(String destino) {
+        this.destino = destino;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    /**
+     * Asigna el estado (los conocidos con su nombre canónico) y su clave de búsqueda
+     */
+    public void setEstado(String estado) {
+        EstadoEnvio conocido = EstadoEnvio.desdeNombre(estado);
+        this.estado = conocido != null ? conocido.getNombre() : estado;
+        this.estadoClave = EstadoEnvio.clave(estado);
+    }
+
+    public String getEstadoClave() {
+        return estadoClave;
+    }
+
+    public String getSistemaOrigen() {
+        return sistemaOrigen;
+    }
+
+    public void setSistemaOrigen(String sistemaOrigen) {
+        this.sistemaOrigen = sistemaOrigen;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "Envio{" +
+                "id=" + id +
+                ", origen='" + origen + '\'' +
+                ", destino='" + destino + '\'' +
+                ", estado='" + estado + '\'' +
+                ", sistemaOrigen='" + sistemaOrigen + '\'' +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.logiservices.model;
+
+import java.util.Locale;
+
+/**
+ * Enum que define los estados conocidos de un envío
+ *
+ * El nombre es el texto que se muestra en la API ("En tránsito").
+ */
+public enum EstadoEnvio {
+
+    /**
+     * Registrado, aún no despachado
+     */
+    PENDIENTE("Pendiente"),
+
+    /**
+     * En camino hacia el destino
+     */
+    EN_TRANSITO("En tránsito"),
+
+    /**
+     * Recibido en el destino
+     */
+    ENTREGADO("Entregado"),
+
+    /**
+     * Cancelado antes de la entrega
+     */
+    CANCELADO("Cancelado"),
+
+    /**
+     * Devuelto al origen
+     */
+    DEVUELTO("Devuelto");
+
+    private static final EstadoEnvio[] VALORES = values();
+
+    private final String nombre;
+
+    EstadoEnvio(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Busca el estado por su nombre, sin distinguir mayúsculas
+     *
+     * @param nombre Nombre del estado ("En tránsito", "entregado"...)
+     * @return Estado correspondiente, o null si no es un estado conocido
+     */
+    public static EstadoEnvio desdeNombre(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        String buscado = nombre.trim();
+        for (EstadoEnvio estado : VALORES) {
+            if (estado.nombre.equalsIgnoreCase(buscado) || estado.name().equalsIgnoreCase(buscado)) {
+                return estado;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clave canónica de un texto de estado, para comparar por igualdad sin
+     * distinguir mayúsculas (y poder usar un índice): el nombre del enum si
+     * es un estado conocido y, si no, el texto sin espacios en minúsculas
+     *
+     * @param estado Texto del estado ("En tránsito", "EN_TRANSITO", "en tránsito"...)
+     * @return Clave, o null si el texto es null
+     */
+    public static String clave(String estado) {
+        if (estado == null) {
+            return null;
+        }
+        EstadoEnvio conocido = desdeNombre(estado);
+        return conocido != null ? conocido.name() : estado.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return nombre;
+    }
+}
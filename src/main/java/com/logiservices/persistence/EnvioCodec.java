@@ -0,0 +1,125 @@
+package com.logiservices.persistence;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codificación binaria compacta de envíos
+ *
+ * Formato compartido por el WAL y los snapshots:
+ * [long id][long version][str origen][str destino][str estado][str sistemaOrigen]
+ * donde cada str es [int longitud][bytes UTF-8] y longitud -1 representa null.
+ *
+ * El formato anterior (sin version) se sigue pudiendo leer con leerSinVersion;
+ * esos envíos se cargan con versión 1.
+ */
+final class EnvioCodec {
+
+    private EnvioCodec() {}
+
+    /**
+     * Escribe un envío completo en el flujo de salida
+     */
+    static void escribir(DataOutput salida, EnvioDto envio) throws IOException {
+        salida.writeLong(envio.getId());
+        salida.writeLong(versionDe(envio));
+        escribirTexto(salida, envio.getOrigen());
+        escribirTexto(salida, envio.getDestino());
+        escribirTexto(salida, envio.getEstado());
+        escribirTexto(salida, envio.getSistemaOrigen());
+    }
+
+    /**
+     * Escribe un envío completo en un buffer (debe tener espacio suficiente)
+     */
+    static void escribir(ByteBuffer buffer, EnvioDto envio) {
+        buffer.putLong(envio.getId());
+        buffer.putLong(versionDe(envio));
+        escribirTexto(buffer, envio.getOrigen());
+        escribirTexto(buffer, envio.getDestino());
+        escribirTexto(buffer, envio.getEstado());
+        escribirTexto(buffer, envio.getSistemaOrigen());
+    }
+
+    /**
+     * Calcula el tamaño en bytes que ocupa un envío codificado
+     */
+    static int tamano(EnvioDto envio) {
+        return Long.BYTES * 2
+                + tamanoTexto(envio.getOrigen())
+                + tamanoTexto(envio.getDestino())
+                + tamanoTexto(envio.getEstado())
+                + tamanoTexto(envio.getSistemaOrigen());
+    }
+
+    /**
+     * Lee un envío completo desde un buffer
+     */
+    static EnvioDto leer(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        String origen = leerTexto(buffer);
+        String destino = leerTexto(buffer);
+        String estado = leerTexto(buffer);
+        String sistemaOrigen = leerTexto(buffer);
+        return new EnvioDto(id, origen, destino, estado, sistemaOrigen, version);
+    }
+
+    /**
+     * Lee un envío en el formato anterior, sin versión
+     */
+    static EnvioDto leerSinVersion(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        String origen = leerTexto(buffer);
+        String destino = leerTexto(buffer);
+        String estado = leerTexto(buffer);
+        String sistemaOrigen = leerTexto(buffer);
+        return new EnvioDto(id, origen, destino, estado, sistemaOrigen, 1L);
+    }
+
+    private static long versionDe(EnvioDto envio) {
+        return envio.getVersion() != null ? envio.getVersion() : 1L;
+    }
+
+    static void escribirTexto(DataOutput salida, String texto) throws IOException {
+        if (texto == null) {
+            salida.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    static void escribirTexto(ByteBuffer buffer, String texto) {
+        if (texto == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String leerTexto(ByteBuffer buffer) {
+        int longitud = buffer.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int tamanoTexto(String texto) {
+        if (texto == null) {
+            return Integer.BYTES;
+        }
+        // Cota superior: evita codificar dos veces el texto solo para medirlo
+        return Integer.BYTES + texto.length() * 3;
+    }
+}
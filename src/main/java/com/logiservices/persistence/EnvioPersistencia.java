@@ -0,0 +1,296 @@
+package com.logiservices.persistence;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.exception.PersistenciaException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motor de persistencia del almacén local de envíos
+ *
+ * Combina un WAL de solo anexado (durabilidad de cada escritura) con
+ * snapshots periódicos (recuperación rápida y compactación del log).
+ *
+ * Recuperación al arrancar:
+ * 1. Se carga el snapshot válido más reciente (segmento N)
+ * 2. Se reproducen en orden los segmentos de WAL posteriores a N
+ *
+ * Los registros del WAL son idempotentes (estado completo del envío o baja
+ * por ID), por lo que reproducir un registro ya incluido en el snapshot
+ * deja el mismo resultado.
+ */
+@Component
+public class EnvioPersistencia {
+
+    private static final Logger log = LoggerFactory.getLogger(EnvioPersistencia.class);
+
+    @Value("${envios.persistencia.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${envios.persistencia.directorio:data/envios}")
+    private String directorio;
+
+    @Value("${envios.persistencia.esperar-fsync:true}")
+    private boolean esperarFsync;
+
+    @Value("${envios.persistencia.max-lote:512}")
+    private int maxLote;
+
+    @Value("${envios.persistencia.snapshot-intervalo-segundos:300}")
+    private long intervaloSnapshot;
+
+    private Path rutaDatos;
+    private EnvioWriteAheadLog wal;
+    private ScheduledExecutorService programador;
+    private long ultimoSegmento;
+    private final AtomicLong registrosDesdeSnapshot = new AtomicLong();
+
+    /**
+     * Destino de la recuperación: recibe los cambios en el orden del log
+     */
+    public interface Destino {
+
+        void guardar(EnvioDto envio);
+
+        void eliminar(Long id);
+
+        void vaciar();
+
+        int total();
+    }
+
+    /**
+     * Indica si la persistencia está habilitada
+     */
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Recupera el estado persistido en el destino
+     *
+     * @param destino Almacén donde se cargan los envíos recuperados
+     * @return true si existía estado persistido, false si es un arranque en limpio
+     */
+    public boolean recuperar(Destino destino) {
+        if (!habilitada) {
+            return false;
+        }
+
+        rutaDatos = Paths.get(directorio);
+        try {
+            Files.createDirectories(rutaDatos);
+            long inicio = System.nanoTime();
+
+            long segmentoSnapshot = -1;
+            boolean hayEstado = false;
+            for (Long segmento : EnvioSnapshot.listar(rutaDatos)) {
+                try {
+                    destino.vaciar();
+                    long total = EnvioSnapshot.cargar(EnvioSnapshot.ruta(rutaDatos, segmento), destino::guardar);
+                    segmentoSnapshot = segmento;
+                    hayEstado = true;
+                    log.info("Snapshot {} cargado: {} envíos", segmento, total);
+                    break;
+                } catch (IOException e) {
+                    log.warn("Snapshot {} descartado: {}", segmento, e.getMessage());
+                }
+            }
+            if (!hayEstado) {
+                destino.vaciar();
+            }
+
+            List<Long> segmentos = EnvioWriteAheadLog.listarSegmentos(rutaDatos);
+            ultimoSegmento = Math.max(segmentoSnapshot, segmentos.isEmpty() ? -1 : segmentos.get(segmentos.size() - 1));
+
+            long registros = 0;
+            for (Long segmento : segmentos) {
+                if (segmento <= segmentoSnapshot) {
+                    continue;
+                }
+                boolean esUltimo = segmento == ultimoSegmento;
+                registros += EnvioWriteAheadLog.reproducir(EnvioWriteAheadLog.rutaSegmento(rutaDatos, segmento),
+                        registro -> aplicar(destino, registro), esUltimo);
+                hayEstado = true;
+            }
+            registrosDesdeSnapshot.set(registros);
+
+            if (hayEstado) {
+                log.info("Recuperados {} envíos ({} registros de WAL) en {} ms", destino.total(), registros,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            }
+            return hayEstado;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo recuperar el almacén de envíos", e);
+        }
+    }
+
+    private static void aplicar(Destino destino, Object registro) {
+        if (registro instanceof EnvioDto envio) {
+            destino.guardar(envio);
+        } else {
+            destino.eliminar((Long) registro);
+        }
+    }
+
+    /**
+     * Abre el WAL en un segmento nuevo y programa los snapshots periódicos
+     *
+     * @param tareaSnapshot Tarea que toma el snapshot (la provee el dueño del almacén)
+     */
+    public void iniciar(Runnable tareaSnapshot) {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            wal = new EnvioWriteAheadLog(rutaDatos, ultimoSegmento + 1, maxLote);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el WAL de envíos", e);
+        }
+
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "envios-snapshot");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            if (registrosDesdeSnapshot.get() > 0) {
+                try {
+                    tareaSnapshot.run();
+                } catch (RuntimeException e) {
+                    log.error("Error al tomar snapshot de envíos", e);
+                }
+            }
+        }, intervaloSnapshot, intervaloSnapshot, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registra el alta o actualización de un envío en el WAL
+     *
+     * Debe llamarse en el mismo orden en que se aplican los cambios al almacén.
+     */
+    public CompletableFuture<Void> registrarAlta(EnvioDto envio) {
+        if (wal == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        registrosDesdeSnapshot.incrementAndGet();
+        return wal.registrarAlta(envio);
+    }
+
+    /**
+     * Registra la eliminación de un envío en el WAL
+     */
+    public CompletableFuture<Void> registrarBaja(Long id) {
+        if (wal == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        registrosDesdeSnapshot.incrementAndGet();
+        return wal.registrarBaja(id);
+    }
+
+    /**
+     * Espera a que un registro sea durable, si así está configurado
+     *
+     * Con esperar-fsync=false la escritura vuelve inmediatamente y el
+     * group commit la hará durable en el siguiente lote (un fallo posterior
+     * solo queda en el log).
+     *
+     * Si el registro no se pudo escribir, ejecuta deshacer para que el
+     * almacén revierta el cambio ya aplicado en memoria y lanza la excepción:
+     * memoria y disco no deben divergir.
+     *
+     * @param deshacer Revierte el cambio en el almacén (se ejecuta en el hilo llamante)
+     * @throws PersistenciaException si el registro no se pudo escribir
+     */
+    public void esperar(CompletableFuture<Void> registro, Runnable deshacer) {
+        if (!esperarFsync) {
+            registro.whenComplete((v, e) -> {
+                if (e != null) {
+                    log.error("Cambio de envío no persistido (esperar-fsync=false)", e);
+                }
+            });
+            return;
+        }
+        try {
+            registro.join();
+        } catch (CompletionException e) {
+            deshacer.run();
+            throw new PersistenciaException("No se pudo persistir el cambio del envío", e.getCause());
+        }
+    }
+
+    /**
+     * Rota el segmento del WAL
+     *
+     * Debe invocarse con las escrituras del almacén detenidas, para que el
+     * segmento cerrado contenga exactamente los cambios ya aplicados.
+     *
+     * @return Futuro con el número del segmento cerrado
+     */
+    public CompletableFuture<Long> rotarSegmento() {
+        registrosDesdeSnapshot.set(0);
+        return wal.rotar();
+    }
+
+    /**
+     * Escribe el snapshot y elimina los segmentos y snapshots que quedan obsoletos
+     *
+     * @param segmento Último segmento incluido (devuelto por rotarSegmento)
+     * @param envios Contenido actual del almacén
+     */
+    public void escribirSnapshot(long segmento, Collection<EnvioDto> envios) {
+        try {
+            long inicio = System.nanoTime();
+            long total = EnvioSnapshot.escribir(rutaDatos, segmento, envios);
+            log.info("Snapshot {} escrito: {} envíos en {} ms", segmento, total,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+
+            for (Long anterior : EnvioWriteAheadLog.listarSegmentos(rutaDatos)) {
+                if (anterior <= segmento) {
+                    Files.deleteIfExists(EnvioWriteAheadLog.rutaSegmento(rutaDatos, anterior));
+                }
+            }
+            for (Long anterior : EnvioSnapshot.listar(rutaDatos)) {
+                if (anterior < segmento) {
+                    Files.deleteIfExists(EnvioSnapshot.ruta(rutaDatos, anterior));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el snapshot de envíos", e);
+        }
+    }
+
+    /**
+     * Vacía el WAL y detiene los snapshots al apagar la aplicación
+     */
+    @PreDestroy
+    public void cerrar() {
+        if (programador != null) {
+            programador.shutdown();
+        }
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                log.error("Error al cerrar el WAL de envíos", e);
+            }
+        }
+    }
+}
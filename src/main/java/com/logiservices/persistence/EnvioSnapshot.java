@@ -0,0 +1,211 @@
+package com.logiservices.persistence;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot compacto del almacén local de envíos
+ *
+ * Formato del archivo snapshot-N.bin (N = último segmento de WAL incluido):
+ * [int MAGIC][int VERSION][long segmento]
+ * [int longitud][envío codificado] ... por cada envío
+ * [long total][long crc32 de todo lo anterior]
+ *
+ * La carga se hace con I/O mapeado en memoria (mmap) por ventanas, de modo
+ * que archivos de varios GB se leen sin copias intermedias en el heap.
+ */
+public final class EnvioSnapshot {
+
+    private static final int MAGIC = 0x4C534E50; // "LSNP"
+    private static final int VERSION = 2;
+    private static final int VERSION_SIN_VERSION_ENVIO = 1;
+    private static final int CABECERA = Integer.BYTES * 2 + Long.BYTES;
+    private static final int PIE = Long.BYTES * 2;
+
+    /** Tamaño máximo de cada ventana mapeada */
+    private static final long VENTANA = 256L * 1024 * 1024;
+
+    private static final String PREFIJO = "snapshot-";
+    private static final String SUFIJO = ".bin";
+
+    private EnvioSnapshot() {}
+
+    /**
+     * Escribe un snapshot de forma atómica (archivo temporal + fsync + rename)
+     *
+     * @param directorio Directorio de datos
+     * @param segmento Último segmento de WAL cuyo contenido está incluido
+     * @param envios Envíos a guardar
+     * @return Total de envíos escritos
+     */
+    public static long escribir(Path directorio, long segmento, Collection<EnvioDto> envios) throws IOException {
+        Path temporal = directorio.resolve(PREFIJO + segmento + ".tmp");
+        long total = 0;
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            OutputStream salidaCanal = Channels.newOutputStream(canal);
+            DataOutputStream salida = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(salidaCanal, crc), 1 << 20));
+
+            salida.writeInt(MAGIC);
+            salida.writeInt(VERSION);
+            salida.writeLong(segmento);
+
+            ByteArrayOutputStream registro = new ByteArrayOutputStream(128);
+            DataOutputStream salidaRegistro = new DataOutputStream(registro);
+            for (EnvioDto envio : envios) {
+                registro.reset();
+                EnvioCodec.escribir(salidaRegistro, envio);
+                salida.writeInt(registro.size());
+                registro.writeTo(salida);
+                total++;
+            }
+
+            salida.flush();
+            long checksum = crc.getValue();
+            salida.writeLong(total);
+            salida.writeLong(checksum);
+            salida.flush();
+            canal.force(true);
+        }
+
+        Files.move(temporal, ruta(directorio, segmento),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return total;
+    }
+
+    /**
+     * Carga un snapshot usando mmap y entrega cada envío al consumidor
+     *
+     * @param archivo Snapshot a cargar
+     * @param consumidor Recibe cada envío leído
+     * @return Total de envíos cargados
+     * @throws IOException si el archivo está corrupto o incompleto
+     */
+    public static long cargar(Path archivo, Consumer<EnvioDto> consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < CABECERA + PIE) {
+                throw new IOException("Snapshot incompleto: " + archivo);
+            }
+
+            ByteBuffer pie = ByteBuffer.allocate(PIE);
+            canal.read(pie, tamano - PIE);
+            pie.flip();
+            long total = pie.getLong();
+            long checksum = pie.getLong();
+
+            if (calcularCrc(canal, tamano - PIE) != checksum) {
+                throw new IOException("Checksum inválido en snapshot: " + archivo);
+            }
+
+            LectorMapeado lector = new LectorMapeado(canal, tamano - PIE);
+            ByteBuffer cabecera = lector.siguiente(CABECERA);
+            int magic = cabecera.getInt();
+            int version = cabecera.getInt();
+            if (magic != MAGIC || (version != VERSION && version != VERSION_SIN_VERSION_ENVIO)) {
+                throw new IOException("Formato de snapshot desconocido: " + archivo);
+            }
+            cabecera.getLong();
+
+            for (long i = 0; i < total; i++) {
+                int longitud = lector.siguiente(Integer.BYTES).getInt();
+                ByteBuffer registro = lector.siguiente(longitud);
+                consumidor.accept(version == VERSION
+                        ? EnvioCodec.leer(registro)
+                        : EnvioCodec.leerSinVersion(registro));
+            }
+            return total;
+        }
+    }
+
+    private static long calcularCrc(FileChannel canal, long limite) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long posicion = 0; posicion < limite; posicion += VENTANA) {
+            long longitud = Math.min(VENTANA, limite - posicion);
+            crc.update(canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitud));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Ruta del snapshot que cubre hasta el segmento indicado
+     */
+    public static Path ruta(Path directorio, long segmento) {
+        return directorio.resolve(String.format("%s%020d%s", PREFIJO, segmento, SUFIJO));
+    }
+
+    /**
+     * Lista los segmentos cubiertos por los snapshots existentes, del más reciente al más antiguo
+     */
+    public static List<Long> listar(Path directorio) throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return snapshots;
+        }
+        try (var archivos = Files.list(directorio)) {
+            archivos.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIJO) && n.endsWith(SUFIJO))
+                    .map(n -> n.substring(PREFIJO.length(), n.length() - SUFIJO.length()))
+                    .map(Long::parseLong)
+                    .sorted((a, b) -> Long.compare(b, a))
+                    .forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Lector secuencial sobre ventanas mapeadas del archivo
+     *
+     * Cuando el siguiente bloque no cabe en la ventana actual, se vuelve a
+     * mapear a partir de la posición actual.
+     */
+    private static final class LectorMapeado {
+
+        private final FileChannel canal;
+        private final long limite;
+        private MappedByteBuffer ventana;
+        private long inicioVentana;
+
+        LectorMapeado(FileChannel canal, long limite) {
+            this.canal = canal;
+            this.limite = limite;
+        }
+
+        ByteBuffer siguiente(int longitud) throws IOException {
+            if (ventana == null || ventana.remaining() < longitud) {
+                long posicion = ventana == null ? 0 : inicioVentana + ventana.position();
+                if (posicion + longitud > limite) {
+                    throw new IOException("Snapshot truncado en la posición " + posicion);
+                }
+                long tamanoVentana = Math.min(Math.max(VENTANA, longitud), limite - posicion);
+                ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, tamanoVentana);
+                inicioVentana = posicion;
+            }
+            ByteBuffer bloque = ventana.slice(ventana.position(), longitud);
+            ventana.position(ventana.position() + longitud);
+            return bloque;
+        }
+    }
+}
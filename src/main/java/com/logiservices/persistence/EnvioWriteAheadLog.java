@@ -0,0 +1,403 @@
+package com.logiservices.persistence;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log (WAL) de solo anexado para los envíos locales
+ *
+ * Cada operación se serializa como un registro con checksum:
+ * [int longitud][int crc32][byte tipo][envío codificado en altas | long id en bajas]
+ *
+ * Las escrituras se encolan y un único hilo escritor las agrupa en lotes
+ * (group commit): escribe todos los registros pendientes con una sola llamada
+ * y hace un único fsync por lote, completando después los futuros de cada
+ * operación. Así muchas escrituras concurrentes comparten el coste del fsync.
+ *
+ * El log se divide en segmentos (wal-N.log). Al tomar un snapshot se rota
+ * el segmento para que los anteriores puedan eliminarse.
+ *
+ * Si falla una escritura, el segmento se recorta hasta el último registro
+ * completo para que los siguientes no queden detrás de uno roto (la
+ * reproducción se detiene en el primero inválido). Si tampoco se puede
+ * recortar, el log queda marcado como fallido y rechaza nuevas escrituras.
+ */
+public class EnvioWriteAheadLog implements Closeable {
+
+    /** Registro de alta o actualización en el formato sin versión (solo lectura) */
+    public static final byte TIPO_ALTA = 1;
+
+    /** Registro de eliminación: solo contiene el ID */
+    public static final byte TIPO_BAJA = 2;
+
+    /** Registro de alta o actualización: contiene el envío completo con su versión */
+    public static final byte TIPO_ALTA_VERSIONADA = 3;
+
+    private static final String PREFIJO_SEGMENTO = "wal-";
+    private static final String SUFIJO_SEGMENTO = ".log";
+
+    /** Cabecera de cada registro: longitud + crc32 */
+    private static final int CABECERA = Integer.BYTES * 2;
+
+    /** Tamaño máximo de la carga de un registro (un envío codificado ocupa muy poco) */
+    private static final int MAX_REGISTRO = 1 << 20;
+
+    private final Path directorio;
+    private final int maxLote;
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private final Thread escritor;
+
+    private FileChannel canal;
+    private long segmentoActual;
+    /** Fin del último registro escrito y sincronizado en el segmento actual (solo hilo escritor) */
+    private long posicionValida;
+    private volatile boolean cerrado;
+    /** Error que dejó el log inutilizable, o null */
+    private volatile IOException fallo;
+
+    /**
+     * Abre el WAL escribiendo en un segmento nuevo
+     *
+     * @param directorio Directorio de datos
+     * @param segmentoInicial Número del segmento donde empezar a escribir
+     * @param maxLote Máximo de registros agrupados en un mismo fsync
+     */
+    public EnvioWriteAheadLog(Path directorio, long segmentoInicial, int maxLote) throws IOException {
+        this.directorio = directorio;
+        this.maxLote = Math.max(1, maxLote);
+        this.segmentoActual = segmentoInicial;
+        this.canal = abrirSegmento(segmentoInicial);
+        this.posicionValida = canal.size();
+
+        this.escritor = new Thread(this::bucleEscritor, "envios-wal-escritor");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Registra el alta o actualización de un envío
+     *
+     * @return Futuro que se completa cuando el registro es durable (fsync)
+     */
+    public CompletableFuture<Void> registrarAlta(EnvioDto envio) {
+        ByteBuffer carga = ByteBuffer.allocate(1 + EnvioCodec.tamano(envio));
+        carga.put(TIPO_ALTA_VERSIONADA);
+        EnvioCodec.escribir(carga, envio);
+        return encolar(carga);
+    }
+
+    /**
+     * Registra la eliminación de un envío
+     *
+     * @return Futuro que se completa cuando el registro es durable (fsync)
+     */
+    public CompletableFuture<Void> registrarBaja(Long id) {
+        ByteBuffer carga = ByteBuffer.allocate(1 + Long.BYTES);
+        carga.put(TIPO_BAJA);
+        carga.putLong(id);
+        return encolar(carga);
+    }
+
+    /**
+     * Cierra el segmento actual y continúa en uno nuevo
+     *
+     * La rotación se encola junto con los registros, por lo que todo lo
+     * registrado antes de esta llamada queda en el segmento cerrado.
+     *
+     * @return Futuro con el número del segmento cerrado
+     */
+    public CompletableFuture<Long> rotar() {
+        if (cerrado || fallo != null) {
+            return CompletableFuture.failedFuture(noDisponible());
+        }
+        Pendiente rotacion = new Pendiente(null);
+        CompletableFuture<Long> resultado = rotacion.futuro.thenApply(v -> rotacion.segmentoCerrado);
+        cola.add(rotacion);
+        return resultado;
+    }
+
+    private CompletableFuture<Void> encolar(ByteBuffer carga) {
+        if (cerrado || fallo != null) {
+            return CompletableFuture.failedFuture(noDisponible());
+        }
+        carga.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(carga.duplicate());
+
+        ByteBuffer registro = ByteBuffer.allocate(CABECERA + carga.remaining());
+        registro.putInt(carga.remaining());
+        registro.putInt((int) crc.getValue());
+        registro.put(carga);
+        registro.flip();
+
+        Pendiente pendiente = new Pendiente(registro);
+        cola.add(pendiente);
+        return pendiente.futuro;
+    }
+
+    private IOException noDisponible() {
+        return fallo != null ? new IOException("El WAL quedó inutilizable tras un error de escritura", fallo)
+                : new IOException("El WAL está cerrado");
+    }
+
+    /**
+     * Bucle del hilo escritor: agrupa los registros pendientes y hace
+     * un único fsync por lote
+     */
+    private void bucleEscritor() {
+        List<Pendiente> lote = new ArrayList<>(maxLote);
+        while (true) {
+            try {
+                Pendiente primero = cola.take();
+                lote.add(primero);
+                cola.drainTo(lote, maxLote - 1);
+
+                boolean fin = procesarLote(lote);
+                lote.clear();
+                if (fin) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Escribe un lote de registros respetando el orden de las rotaciones
+     *
+     * @return true si el lote contenía la marca de cierre
+     */
+    private boolean procesarLote(List<Pendiente> lote) {
+        List<Pendiente> escritos = new ArrayList<>(lote.size());
+        try {
+            for (Pendiente pendiente : lote) {
+                if (pendiente == Pendiente.CIERRE) {
+                    sincronizar(escritos);
+                    return true;
+                }
+                if (pendiente.registro == null) {
+                    // Rotación: volcar lo acumulado antes de cambiar de segmento
+                    sincronizar(escritos);
+                    pendiente.segmentoCerrado = segmentoActual;
+                    canal.close();
+                    segmentoActual++;
+                    canal = abrirSegmento(segmentoActual);
+                    posicionValida = 0;
+                    pendiente.futuro.complete(null);
+                    continue;
+                }
+                escritos.add(pendiente);
+            }
+            sincronizar(escritos);
+        } catch (IOException e) {
+            descartarEscrituraFallida(e);
+            for (Pendiente pendiente : lote) {
+                pendiente.futuro.completeExceptionally(e);
+            }
+            return lote.contains(Pendiente.CIERRE);
+        }
+        return false;
+    }
+
+    /**
+     * Recorta el segmento hasta el último registro completo tras un error de escritura
+     *
+     * Los registros del lote fallido se informan como no persistidos, así que
+     * no deben quedar en el log. Si no se puede recortar, el log se marca como
+     * fallido: seguir anexando dejaría los registros nuevos detrás de uno roto.
+     */
+    private void descartarEscrituraFallida(IOException causa) {
+        try {
+            if (canal.isOpen()) {
+                canal.truncate(posicionValida);
+                canal.force(true);
+                return;
+            }
+        } catch (IOException e) {
+            causa.addSuppressed(e);
+        }
+        fallo = causa;
+    }
+
+    private void sincronizar(List<Pendiente> escritos) throws IOException {
+        if (escritos.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[escritos.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = escritos.get(i).registro;
+        }
+        long restante = 0;
+        for (ByteBuffer buffer : buffers) {
+            restante += buffer.remaining();
+        }
+        long bytesLote = restante;
+        while (restante > 0) {
+            restante -= canal.write(buffers);
+        }
+        canal.force(false);
+        posicionValida += bytesLote;
+
+        for (Pendiente pendiente : escritos) {
+            pendiente.futuro.complete(null);
+        }
+        escritos.clear();
+    }
+
+    private FileChannel abrirSegmento(long segmento) throws IOException {
+        return FileChannel.open(rutaSegmento(directorio, segmento),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Vacía los registros pendientes, hace fsync y cierra el segmento actual
+     */
+    @Override
+    public void close() throws IOException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        cola.add(Pendiente.CIERRE);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+    }
+
+    /**
+     * Ruta del archivo de un segmento
+     */
+    public static Path rutaSegmento(Path directorio, long segmento) {
+        return directorio.resolve(String.format("%s%020d%s", PREFIJO_SEGMENTO, segmento, SUFIJO_SEGMENTO));
+    }
+
+    /**
+     * Lista los números de segmento existentes en el directorio, en orden
+     */
+    public static List<Long> listarSegmentos(Path directorio) throws IOException {
+        List<Long> segmentos = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return segmentos;
+        }
+        try (var archivos = Files.list(directorio)) {
+            archivos.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIJO_SEGMENTO) && n.endsWith(SUFIJO_SEGMENTO))
+                    .map(n -> n.substring(PREFIJO_SEGMENTO.length(), n.length() - SUFIJO_SEGMENTO.length()))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .forEach(segmentos::add);
+        }
+        return segmentos;
+    }
+
+    /**
+     * Reproduce los registros válidos de un segmento
+     *
+     * La lectura se detiene en el primer registro truncado, con checksum
+     * inválido (escritura interrumpida por una caída) o con una longitud
+     * imposible (mayor que el máximo o que lo que queda del archivo). Si truncarCola es true,
+     * el archivo se recorta hasta el último registro válido.
+     *
+     * @param archivo Segmento a reproducir
+     * @param consumidor Recibe cada registro: un EnvioDto para altas o un Long para bajas
+     * @param truncarCola Recortar la cola corrupta del archivo
+     * @return Número de registros reproducidos
+     */
+    public static long reproducir(Path archivo, Consumer<Object> consumidor, boolean truncarCola) throws IOException {
+        long registros = 0;
+        long posicionValida = 0;
+        long tamanoArchivo = Files.size(archivo);
+        CRC32 crc = new CRC32();
+
+        try (InputStream entrada = Files.newInputStream(archivo);
+             DataInputStream datos = new DataInputStream(new BufferedInputStream(entrada, 1 << 20))) {
+            while (true) {
+                int longitud;
+                int checksum;
+                byte[] carga;
+                try {
+                    longitud = datos.readInt();
+                    checksum = datos.readInt();
+                    if (longitud <= 0 || longitud > MAX_REGISTRO
+                            || longitud > tamanoArchivo - posicionValida - CABECERA) {
+                        break;
+                    }
+                    carga = new byte[longitud];
+                    datos.readFully(carga);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(carga);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(carga);
+                byte tipo = buffer.get();
+                if (tipo == TIPO_ALTA_VERSIONADA) {
+                    consumidor.accept(EnvioCodec.leer(buffer));
+                } else if (tipo == TIPO_ALTA) {
+                    consumidor.accept(EnvioCodec.leerSinVersion(buffer));
+                } else if (tipo == TIPO_BAJA) {
+                    consumidor.accept(buffer.getLong());
+                } else {
+                    break;
+                }
+
+                registros++;
+                posicionValida += CABECERA + longitud;
+            }
+        }
+
+        if (truncarCola && posicionValida < tamanoArchivo) {
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                canal.truncate(posicionValida);
+                canal.force(true);
+            }
+        }
+        return registros;
+    }
+
+    /**
+     * Operación pendiente de escribir en el log
+     */
+    private static final class Pendiente {
+
+        /** Marca que detiene el hilo escritor */
+        static final Pendiente CIERRE = new Pendiente(null);
+
+        final ByteBuffer registro;
+        final CompletableFuture<Void> futuro = new CompletableFuture<>();
+        long segmentoCerrado;
+
+        Pendiente(ByteBuffer registro) {
+            this.registro = registro;
+        }
+    }
+}
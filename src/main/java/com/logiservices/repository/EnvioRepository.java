@@ -0,0 +1,100 @@
+package com.logiservices.repository;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.model.Envio;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad Envio
+ *
+ * Las consultas de lectura usan proyecciones (constructor de EnvioDto o
+ * interfaces) para no cargar entidades gestionadas por el contexto de
+ * persistencia. Las búsquedas por sistema y por estado comparan por
+ * igualdad para aprovechar el índice de su columna; la de estado usa la
+ * clave canónica (estado_clave), así que ignora mayúsculas como la de los
+ * almacenes en memoria.
+ */
+@Repository
+public interface EnvioRepository extends JpaRepository<Envio, Long> {
+
+    /**
+     * Obtiene un envío por ID como DTO
+     *
+     * @param id ID del envío
+     * @return Optional con el envío encontrado
+     */
+    @Query("SELECT new com.logiservices.dto.EnvioDto(e.id, e.origen, e.destino, e.estado, e.sistemaOrigen, e.version) " +
+           "FROM Envio e WHERE e.id = :id")
+    Optional<EnvioDto> findDtoById(@Param("id") Long id);
+
+    /**
+     * Lista todos los envíos como DTO
+     *
+     * @return Lista de envíos
+     */
+    @Query("SELECT new com.logiservices.dto.EnvioDto(e.id, e.origen, e.destino, e.estado, e.sistemaOrigen, e.version) " +
+           "FROM Envio e")
+    List<EnvioDto> findAllDtos();
+
+    /**
+     * Página de envíos con ID mayor que el indicado, en orden de ID (paginación por clave)
+     *
+     * @param desdeId Último ID de la página anterior (0 para la primera)
+     * @param pagina Tamaño de la página (solo se usa el tamaño)
+     * @return Envíos de la página
+     */
+    @Query("SELECT new com.logiservices.dto.EnvioDto(e.id, e.origen, e.destino, e.estado, e.sistemaOrigen, e.version) " +
+           "FROM Envio e WHERE e.id > :desdeId ORDER BY e.id")
+    List<EnvioDto> findDtosDesdeId(@Param("desdeId") Long desdeId, Pageable pagina);
+
+    /**
+     * Busca envíos por la clave de su estado (usa idx_envios_estado)
+     *
+     * @param estadoClave Clave del estado buscado, de EstadoEnvio.clave
+     * @return Lista de envíos con el estado indicado
+     */
+    @Query("SELECT new com.logiservices.dto.EnvioDto(e.id, e.origen, e.destino, e.estado, e.sistemaOrigen, e.version) " +
+           "FROM Envio e WHERE e.estadoClave = :estadoClave")
+    List<EnvioDto> findDtosByEstadoClave(@Param("estadoClave") String estadoClave);
+
+    /**
+     * Busca envíos por sistema de origen (usa idx_envios_sistema_origen)
+     *
+     * @param sistemaOrigen Sistema en mayúsculas (TMS, ACMS, SMCS)
+     * @return Lista de envíos del sistema indicado
+     */
+    @Query("SELECT new com.logiservices.dto.EnvioDto(e.id, e.origen, e.destino, e.estado, e.sistemaOrigen, e.version) " +
+           "FROM Envio e WHERE e.sistemaOrigen = :sistemaOrigen")
+    List<EnvioDto> findDtosBySistemaOrigen(@Param("sistemaOrigen") String sistemaOrigen);
+
+    /**
+     * Conteo de envíos por sistema de origen
+     *
+     * @return Una fila por sistema con su total
+     */
+    @Query("SELECT e.sistemaOrigen AS valor, COUNT(e) AS total FROM Envio e GROUP BY e.sistemaOrigen")
+    List<ConteoPorValor> contarPorSistemaOrigen();
+
+    /**
+     * Conteo de envíos por estado
+     *
+     * @return Una fila por estado con su total
+     */
+    @Query("SELECT e.estado AS valor, COUNT(e) AS total FROM Envio e GROUP BY e.estado")
+    List<ConteoPorValor> contarPorEstado();
+
+    /**
+     * Proyección para consultas agregadas (valor agrupado + total)
+     */
+    interface ConteoPorValor {
+        String getValor();
+        Long getTotal();
+    }
+}
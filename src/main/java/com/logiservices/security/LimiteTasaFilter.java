@@ -0,0 +1,241 @@
+package com.logiservices.security;
+
+import com.logiservices.model.Rol;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de limitación de tasa por usuario y rol
+ *
+ * Se ejecuta después de JwtAuthenticationFilter, cuando ya se conoce el
+ * usuario. Cada usuario autenticado tiene un token bucket con la cuota de
+ * su rol (si tiene varios, el de mayor cuota). El bucket se implementa con
+ * GCRA: todo su estado es un único long (el "tiempo teórico de llegada")
+ * que se actualiza con CAS, sin locks. Los usuarios están repartidos en un
+ * ConcurrentHashMap, de modo que usuarios distintos no compiten entre sí.
+ *
+ * Las respuestas incluyen X-RateLimit-Limit, X-RateLimit-Remaining y
+ * X-RateLimit-Reset; al superar la cuota se responde 429 con Retry-After.
+ * Los buckets inactivos (ya llenos) se eliminan periódicamente.
+ */
+@Component
+public class LimiteTasaFilter extends OncePerRequestFilter {
+
+    private static final long NANOS_POR_SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<Rol, Cuota> cuotas = new EnumMap<>(Rol.class);
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Rol, LongAdder> permitidas = new EnumMap<>(Rol.class);
+    private final Map<Rol, LongAdder> rechazadas = new EnumMap<>(Rol.class);
+    private boolean habilitado;
+    private ScheduledExecutorService limpieza;
+
+    @PostConstruct
+    void iniciar() {
+        habilitado = environment.getProperty("envios.limite-tasa.habilitado", Boolean.class, true);
+        for (Rol rol : Rol.values()) {
+            String prefijo = "envios.limite-tasa." + rol.name().toLowerCase();
+            long porSegundo = environment.getProperty(prefijo + ".por-segundo", Long.class, porSegundoPorDefecto(rol));
+            long rafaga = environment.getProperty(prefijo + ".rafaga", Long.class, porSegundo * 2);
+            cuotas.put(rol, new Cuota(rol, porSegundo, rafaga));
+            permitidas.put(rol, new LongAdder());
+            rechazadas.put(rol, new LongAdder());
+        }
+
+        limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "limite-tasa-limpieza");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        limpieza.scheduleWithFixedDelay(this::eliminarInactivos, 60, 60, TimeUnit.SECONDS);
+    }
+
+    private static long porSegundoPorDefecto(Rol rol) {
+        switch (rol) {
+            case ADMIN: return 200;
+            case OPERADOR: return 100;
+            case CONSULTOR: return 50;
+            default: return 10;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        Cuota cuota = habilitado ? cuotaDe(autenticacion) : null;
+        if (cuota == null) {
+            // Peticiones anónimas: las resuelve la cadena de seguridad
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Bucket bucket = buckets.computeIfAbsent(autenticacion.getName() + "|" + cuota.rol.name(), k -> new Bucket());
+        long ahora = System.nanoTime();
+        long resultado = bucket.consumir(cuota, ahora);
+
+        response.setHeader("X-RateLimit-Limit", String.valueOf(cuota.porSegundo));
+        if (resultado >= 0) {
+            permitidas.get(cuota.rol).increment();
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(resultado));
+            response.setHeader("X-RateLimit-Reset", String.valueOf(segundos(bucket.pendiente(ahora))));
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        rechazadas.get(cuota.rol).increment();
+        long espera = segundos(-resultado);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("X-RateLimit-Remaining", "0");
+        response.setHeader("X-RateLimit-Reset", String.valueOf(espera));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(espera));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"Límite de peticiones excedido para el rol " + cuota.rol.name() + "\"}");
+    }
+
+    /**
+     * Cuota del rol más generoso del usuario, o null si no está autenticado
+     */
+    private Cuota cuotaDe(Authentication autenticacion) {
+        if (autenticacion == null || !autenticacion.isAuthenticated()) {
+            return null;
+        }
+        Cuota mejor = null;
+        for (GrantedAuthority autoridad : autenticacion.getAuthorities()) {
+            String nombre = autoridad.getAuthority();
+            if (!nombre.startsWith("ROLE_")) {
+                continue;
+            }
+            Cuota cuota;
+            try {
+                cuota = cuotas.get(Rol.valueOf(nombre.substring(5)));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (mejor == null || cuota.porSegundo > mejor.porSegundo) {
+                mejor = cuota;
+            }
+        }
+        return mejor;
+    }
+
+    private static long segundos(long nanos) {
+        return Math.max(1, (nanos + NANOS_POR_SEGUNDO - 1) / NANOS_POR_SEGUNDO);
+    }
+
+    private void eliminarInactivos() {
+        long ahora = System.nanoTime();
+        buckets.entrySet().removeIf(e -> e.getValue().lleno(ahora));
+    }
+
+    /**
+     * Cuotas configuradas y contadores por rol
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("habilitado", habilitado);
+        metricas.put("usuariosActivos", buckets.size());
+        for (Cuota cuota : cuotas.values()) {
+            metricas.put(cuota.rol.name(), Map.of(
+                "porSegundo", cuota.porSegundo,
+                "rafaga", cuota.rafaga,
+                "permitidas", permitidas.get(cuota.rol).sum(),
+                "rechazadas", rechazadas.get(cuota.rol).sum()
+            ));
+        }
+        return metricas;
+    }
+
+    @PreDestroy
+    void detener() {
+        if (limpieza != null) {
+            limpieza.shutdownNow();
+        }
+    }
+
+    /**
+     * Cuota de un rol: peticiones por segundo sostenidas y ráfaga máxima
+     */
+    private static final class Cuota {
+
+        final Rol rol;
+        final long porSegundo;
+        final long rafaga;
+        final long intervalo;
+        final long tolerancia;
+
+        Cuota(Rol rol, long porSegundo, long rafaga) {
+            this.rol = rol;
+            this.porSegundo = Math.max(1, porSegundo);
+            this.rafaga = Math.max(1, rafaga);
+            this.intervalo = NANOS_POR_SEGUNDO / this.porSegundo;
+            this.tolerancia = this.intervalo * this.rafaga;
+        }
+    }
+
+    /**
+     * Token bucket GCRA de un usuario
+     *
+     * tat es el instante en que el bucket volvería a estar lleno. Consumir
+     * un token lo adelanta un intervalo; si queda más de "ráfaga" intervalos
+     * por delante del instante actual, no hay tokens disponibles.
+     */
+    private static final class Bucket {
+
+        private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+        /**
+         * @return Tokens restantes (>= 0), o -(nanos de espera) si se rechaza
+         */
+        long consumir(Cuota cuota, long ahora) {
+            while (true) {
+                long actual = tat.get();
+                long nuevo = Math.max(actual, ahora) + cuota.intervalo;
+                long adelanto = nuevo - ahora;
+                if (adelanto > cuota.tolerancia) {
+                    return -(adelanto - cuota.tolerancia);
+                }
+                if (tat.compareAndSet(actual, nuevo)) {
+                    return (cuota.tolerancia - adelanto) / cuota.intervalo;
+                }
+            }
+        }
+
+        long pendiente(long ahora) {
+            return Math.max(0, tat.get() - ahora);
+        }
+
+        boolean lleno(long ahora) {
+            return tat.get() <= ahora;
+        }
+    }
+}
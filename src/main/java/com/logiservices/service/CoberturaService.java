@@ -0,0 +1,297 @@
+package com.logiservices.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Peticiones con cobertura (hedged requests) hacia TMS, ACMS y SMCS
+ *
+ * Solo para lecturas idempotentes. Si el primer intento no responde antes
+ * del p95 de latencia observado para esa operación, se lanza un segundo
+ * intento idéntico y gana la primera respuesta correcta. El balanceador de
+ * Spring Cloud reparte las llamadas en round-robin, por lo que el segundo
+ * intento normalmente va a otra instancia.
+ *
+ * Las coberturas están limitadas por un presupuesto: cada petición aporta
+ * un porcentaje de una cobertura, y cada cobertura enviada lo consume. Así
+ * una degradación general del sistema no duplica la carga que recibe.
+ */
+@Service
+public class CoberturaService {
+
+    /** Latencias guardadas por operación para estimar el p95 */
+    private static final int MUESTRAS = 512;
+
+    /** Cada cuántas muestras nuevas se recalcula el p95 */
+    private static final int RECALCULO = 64;
+
+    /** Unidades de presupuesto que cuesta una cobertura */
+    private static final long COSTE_COBERTURA = 100;
+
+    @Value("${envios.cobertura.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${envios.cobertura.presupuesto-porcentaje:10}")
+    private long presupuestoPorcentaje;
+
+    @Value("${envios.cobertura.rafaga-max:20}")
+    private long rafagaMax;
+
+    @Value("${envios.cobertura.min-muestras:50}")
+    private int minMuestras;
+
+    @Value("${envios.cobertura.min-retraso-ms:5}")
+    private long minRetraso;
+
+    private final ConcurrentHashMap<String, Operacion> operaciones = new ConcurrentHashMap<>();
+    private final AtomicLong presupuesto = new AtomicLong();
+
+    private final ThreadPoolExecutor intentos = new ThreadPoolExecutor(0, 64, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread hilo = new Thread(r, "cobertura");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+
+    @Value("${envios.cobertura.hilos-max:64}")
+    void setHilosMax(int hilosMax) {
+        intentos.setMaximumPoolSize(Math.max(1, hilosMax));
+    }
+
+    /**
+     * Ejecuta una lectura idempotente con cobertura
+     *
+     * @param operacion Nombre "SISTEMA.método" de la llamada, p. ej. "TMS.consultarEnvio"; cada
+     *                  operación lleva sus propias latencias y su propio p95
+     * @param llamada Llamada al Feign client
+     * @return Primera respuesta correcta
+     * @throws RuntimeException la excepción del intento si todos fallan
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> llamada) {
+        Operacion estado = operaciones.computeIfAbsent(operacion, o -> new Operacion());
+        estado.solicitudes.increment();
+        acreditarPresupuesto();
+
+        long retraso = habilitada ? estado.retrasoCobertura(minMuestras, minRetraso) : -1;
+        if (retraso < 0) {
+            return medir(estado, llamada);
+        }
+
+        CompletableFuture<T> primario;
+        try {
+            primario = lanzar(estado, llamada);
+        } catch (RejectedExecutionException e) {
+            // Pool saturado: se llama directamente, sin cobertura
+            return medir(estado, llamada);
+        }
+
+        try {
+            return primario.get(retraso, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // El primer intento supera el p95: se evalúa la cobertura
+        } catch (ExecutionException e) {
+            throw propagar(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta " + operacion + " interrumpida", e);
+        }
+
+        CompletableFuture<T> cobertura = null;
+        if (consumirPresupuesto()) {
+            try {
+                cobertura = lanzar(estado, llamada);
+                estado.coberturasEnviadas.increment();
+            } catch (RejectedExecutionException e) {
+                devolverPresupuesto();
+            }
+        }
+        if (cobertura == null) {
+            estado.coberturasDenegadas.increment();
+            return esperar(primario);
+        }
+        return esperar(primeroCorrecto(primario, cobertura, estado));
+    }
+
+    /**
+     * Métricas de cobertura por sistema y operación
+     */
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("habilitada", habilitada);
+        metricas.put("presupuestoDisponible", presupuesto.get() / (double) COSTE_COBERTURA);
+        operaciones.forEach((nombre, estado) -> {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            long enviadas = estado.coberturasEnviadas.sum();
+            long ganadas = estado.coberturasGanadas.sum();
+            datos.put("solicitudes", estado.solicitudes.sum());
+            datos.put("p95Ms", estado.p95Nanos < 0 ? null : TimeUnit.NANOSECONDS.toMillis(estado.p95Nanos));
+            datos.put("coberturasEnviadas", enviadas);
+            datos.put("coberturasGanadas", ganadas);
+            datos.put("coberturasDenegadas", estado.coberturasDenegadas.sum());
+            datos.put("tasaVictoria", enviadas == 0 ? 0.0 : (double) ganadas / enviadas);
+            metricas.put(nombre, datos);
+        });
+        return metricas;
+    }
+
+    private <T> CompletableFuture<T> lanzar(Operacion estado, Supplier<T> llamada) {
+        CompletableFuture<T> intento = new CompletableFuture<>();
+        intentos.execute(() -> {
+            try {
+                intento.complete(medir(estado, llamada));
+            } catch (Throwable e) {
+                intento.completeExceptionally(e);
+            }
+        });
+        return intento;
+    }
+
+    private static <T> T medir(Operacion estado, Supplier<T> llamada) {
+        long inicio = System.nanoTime();
+        T resultado = llamada.get();
+        estado.registrar(System.nanoTime() - inicio);
+        return resultado;
+    }
+
+    /**
+     * Futuro que completa con la primera respuesta correcta, o con error si ambos fallan
+     */
+    private static <T> CompletableFuture<T> primeroCorrecto(CompletableFuture<T> primario,
+                                                            CompletableFuture<T> cobertura, Operacion estado) {
+        CompletableFuture<T> ganador = new CompletableFuture<>();
+        AtomicInteger fallidos = new AtomicInteger();
+        primario.whenComplete((resultado, error) -> {
+            if (error == null) {
+                ganador.complete(resultado);
+            } else if (fallidos.incrementAndGet() == 2) {
+                ganador.completeExceptionally(error);
+            }
+        });
+        cobertura.whenComplete((resultado, error) -> {
+            if (error == null) {
+                if (ganador.complete(resultado)) {
+                    estado.coberturasGanadas.increment();
+                }
+            } else if (fallidos.incrementAndGet() == 2) {
+                ganador.completeExceptionally(error);
+            }
+        });
+        return ganador;
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            throw propagar(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta interrumpida", e);
+        }
+    }
+
+    private static RuntimeException propagar(Throwable causa) {
+        if (causa instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (causa instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(causa);
+    }
+
+    private void acreditarPresupuesto() {
+        long maximo = rafagaMax * COSTE_COBERTURA;
+        long actual;
+        do {
+            actual = presupuesto.get();
+            if (actual >= maximo) {
+                return;
+            }
+        } while (!presupuesto.compareAndSet(actual, Math.min(maximo, actual + presupuestoPorcentaje)));
+    }
+
+    private boolean consumirPresupuesto() {
+        long actual;
+        do {
+            actual = presupuesto.get();
+            if (actual < COSTE_COBERTURA) {
+                return false;
+            }
+        } while (!presupuesto.compareAndSet(actual, actual - COSTE_COBERTURA));
+        return true;
+    }
+
+    private void devolverPresupuesto() {
+        presupuesto.addAndGet(COSTE_COBERTURA);
+    }
+
+    @PreDestroy
+    void detener() {
+        intentos.shutdownNow();
+    }
+
+    /**
+     * Latencias y contadores de una operación de un sistema
+     *
+     * Las latencias se guardan en un buffer circular sin locks; el p95 se
+     * recalcula cada RECALCULO muestras por el hilo que completa el bloque.
+     */
+    private static final class Operacion {
+
+        final AtomicLongArray latencias = new AtomicLongArray(MUESTRAS);
+        final AtomicLong registradas = new AtomicLong();
+        volatile long p95Nanos = -1;
+
+        final LongAdder solicitudes = new LongAdder();
+        final LongAdder coberturasEnviadas = new LongAdder();
+        final LongAdder coberturasGanadas = new LongAdder();
+        final LongAdder coberturasDenegadas = new LongAdder();
+
+        void registrar(long nanos) {
+            long n = registradas.getAndIncrement();
+            latencias.set((int) (n % MUESTRAS), nanos);
+            if ((n + 1) % RECALCULO == 0) {
+                recalcular(Math.min(n + 1, MUESTRAS));
+            }
+        }
+
+        private void recalcular(long total) {
+            long[] copia = new long[(int) total];
+            for (int i = 0; i < copia.length; i++) {
+                copia[i] = latencias.get(i);
+            }
+            Arrays.sort(copia);
+            p95Nanos = copia[(int) Math.min(copia.length - 1, Math.ceil(copia.length * 0.95) - 1)];
+        }
+
+        /**
+         * Retraso antes de la cobertura en ms, o -1 si aún no hay muestras suficientes
+         */
+        long retrasoCobertura(int minMuestras, long minRetraso) {
+            long p95 = p95Nanos;
+            if (p95 < 0 || registradas.get() < minMuestras) {
+                return -1;
+            }
+            return Math.max(minRetraso, TimeUnit.NANOSECONDS.toMillis(p95));
+        }
+    }
+}
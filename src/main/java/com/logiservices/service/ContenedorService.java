@@ -0,0 +1,208 @@
+package com.logiservices.service;
+
+import com.logiservices.cache.CacheTtl;
+import com.logiservices.cache.CacheVolcable;
+import com.logiservices.client.SmcsServiceClient;
+import feign.FeignException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rastreo de contenedores en SMCS
+ *
+ * Las consultas a SMCS se ejecutan en un pool de tamaño fijo, que limita
+ * cuántas llamadas simultáneas recibe SMCS aunque un lote tenga miles de
+ * contenedores. Las respuestas se guardan en una cache por número de
+ * contenedor con TTL, y las consultas simultáneas del mismo contenedor
+ * (por ejemplo, dos manifiestos que lo comparten) se agrupan en una sola
+ * llamada.
+ */
+@Service
+public class ContenedorService implements CacheVolcable {
+
+    /** Error de un contenedor que SMCS no tiene */
+    public static final String ERROR_NO_ENCONTRADO = "Contenedor no encontrado";
+
+    /** Error de una consulta que SMCS no respondió (caído, error o timeout) */
+    public static final String ERROR_NO_DISPONIBLE = "SMCS no disponible";
+
+    @Autowired
+    private SmcsServiceClient smcsServiceClient;
+
+    @Autowired
+    private CoberturaService coberturaService;
+
+    @Value("${envios.contenedores.paralelismo:32}")
+    private int paralelismo;
+
+    @Value("${envios.contenedores.ttl-segundos:120}")
+    private long ttlSegundos;
+
+    @Value("${envios.contenedores.max-entradas:100000}")
+    private int maxEntradas;
+
+    @Value("${envios.contenedores.timeout-ms:5000}")
+    private long timeout;
+
+    @Value("${envios.contenedores.max-lote:10000}")
+    private int maxLote;
+
+    private CacheTtl<String, Map<String, Object>> cache;
+    private ExecutorService consultas;
+
+    @PostConstruct
+    void iniciar() {
+        cache = new CacheTtl<>(TimeUnit.SECONDS.toMillis(ttlSegundos), maxEntradas);
+        consultas = Executors.newFixedThreadPool(Math.max(1, paralelismo), r -> {
+            Thread hilo = new Thread(r, "contenedores-smcs");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    public int getMaxLote() {
+        return maxLote;
+    }
+
+    /**
+     * Normaliza un número de contenedor (ISO 6346: sin espacios, en mayúsculas)
+     */
+    public static String normalizar(String numeroContenedor) {
+        return numeroContenedor.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Consulta un contenedor
+     *
+     * @param numeroContenedor Número del contenedor
+     * @return Información del contenedor, o Map con "error" si no se pudo consultar
+     */
+    public Map<String, Object> consultar(String numeroContenedor) {
+        return consultarAsync(normalizar(numeroContenedor)).join();
+    }
+
+    /**
+     * Consulta varios contenedores en paralelo (acotado por el pool)
+     *
+     * Los números repetidos se consultan una sola vez.
+     *
+     * @param numerosContenedor Números de contenedor
+     * @return Resultado por número de contenedor, en el orden recibido
+     */
+    public Map<String, Map<String, Object>> consultarLote(List<String> numerosContenedor) {
+        Set<String> numeros = new LinkedHashSet<>();
+        for (String numero : numerosContenedor) {
+            if (numero != null && !numero.isBlank()) {
+                numeros.add(normalizar(numero));
+            }
+        }
+
+        List<CompletableFuture<Map<String, Object>>> futuros = new ArrayList<>(numeros.size());
+        for (String numero : numeros) {
+            futuros.add(consultarAsync(numero));
+        }
+
+        Map<String, Map<String, Object>> resultados = new LinkedHashMap<>();
+        int i = 0;
+        for (String numero : numeros) {
+            resultados.put(numero, futuros.get(i++).join());
+        }
+        return resultados;
+    }
+
+    /**
+     * Estadísticas de uso de la cache de contenedores
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return Map.of(
+            "entradas", cache.getTamano(),
+            "aciertos", cache.getAciertos(),
+            "fallos", cache.getFallos()
+        );
+    }
+
+    @Override
+    public String getNombreVolcado() {
+        return "contenedores";
+    }
+
+    @Override
+    public List<List<Object>> volcar() {
+        List<List<Object>> entradas = new ArrayList<>(cache.getTamano());
+        cache.recorrerVigentes((clave, valor, edad) -> entradas.add(List.of(clave, edad, valor)));
+        return entradas;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int cargar(List<List<Object>> entradas) {
+        int cargadas = 0;
+        for (List<Object> entrada : entradas) {
+            if (entrada.get(0) instanceof String && entrada.get(2) instanceof Map) {
+                Map<String, Object> valor = (Map<String, Object>) entrada.get(2);
+                cache.poner((String) entrada.get(0), valor, ((Number) entrada.get(1)).longValue());
+                cargadas++;
+            }
+        }
+        return cargadas;
+    }
+
+    private CompletableFuture<Map<String, Object>> consultarAsync(String numero) {
+        return cache.obtenerAsync(numero, this::llamarSmcs, resultado -> !resultado.containsKey("error"));
+    }
+
+    /**
+     * Encola la llamada a SMCS en el pool acotado
+     *
+     * El timeout empieza a contar cuando la llamada sale de la cola, no al
+     * encolarla: en un lote grande los últimos contenedores esperan su turno
+     * sin agotar su tiempo.
+     */
+    private CompletableFuture<Map<String, Object>> llamarSmcs(String numero) {
+        CompletableFuture<Map<String, Object>> llamada = new CompletableFuture<>();
+        consultas.execute(() -> {
+            llamada.orTimeout(timeout, TimeUnit.MILLISECONDS);
+            try {
+                llamada.complete(coberturaService.ejecutar("SMCS.consultarContenedor", () -> smcsServiceClient.consultarContenedor(numero)));
+            } catch (Exception e) {
+                llamada.completeExceptionally(e);
+            }
+        });
+        return llamada
+                .exceptionally(e -> Map.of("error", esNoEncontrado(e) ? ERROR_NO_ENCONTRADO : ERROR_NO_DISPONIBLE,
+                        "numeroContenedor", numero))
+                .thenApply(r -> r != null ? r : Map.of("error", ERROR_NO_ENCONTRADO, "numeroContenedor", numero));
+    }
+
+    /**
+     * SMCS respondió 404: el contenedor no existe, SMCS sí está disponible
+     */
+    private static boolean esNoEncontrado(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof FeignException.NotFound) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    void detener() {
+        consultas.shutdownNow();
+    }
+}
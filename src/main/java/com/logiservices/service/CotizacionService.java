@@ -0,0 +1,290 @@
+package com.logiservices.service;
+
+import com.logiservices.cache.CacheTtl;
+import com.logiservices.cache.CacheVolcable;
+import com.logiservices.client.AcmsServiceClient;
+import com.logiservices.client.SmcsServiceClient;
+import com.logiservices.client.TmsServiceClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cotizaciones multimodales (terrestre, aérea y marítima)
+ *
+ * Para cada par origen-destino se consultan en paralelo las rutas de TMS,
+ * los vuelos de ACMS y los buques de SMCS, y se combinan en una única
+ * lista de opciones ordenada por precio y tiempo estimado.
+ *
+ * El resultado se guarda en una cache por par origen-destino con TTL, de
+ * modo que las cotizaciones repetidas de los corredores más consultados
+ * se sirven desde memoria sin llamar a los sistemas. Las consultas
+ * simultáneas de un mismo par sin cachear comparten una única llamada.
+ *
+ * Solo se guardan con el TTL completo las cotizaciones en las que
+ * respondieron los tres sistemas. Las parciales (algún sistema caído o
+ * sin responder a tiempo) van a una cache aparte con un TTL corto: evita
+ * repetir las llamadas mientras dura la caída, sin servir una cotización
+ * incompleta durante minutos cuando el sistema ya se recuperó.
+ */
+@Service
+public class CotizacionService implements CacheVolcable {
+
+    /** Campos de precio reconocidos en las respuestas de los sistemas, por prioridad */
+    private static final List<String> CAMPOS_PRECIO = List.of("precio", "costo", "tarifa", "costoEstimado");
+
+    /** Campos de tiempo estimado (en horas) reconocidos, por prioridad */
+    private static final List<String> CAMPOS_TIEMPO = List.of("tiempoEstimadoHoras", "duracionHoras",
+            "tiempoHoras", "tiempoEstimado", "duracion", "tiempoTransito");
+
+    @Autowired
+    private TmsServiceClient tmsServiceClient;
+
+    @Autowired
+    private AcmsServiceClient acmsServiceClient;
+
+    @Autowired
+    private SmcsServiceClient smcsServiceClient;
+
+    @Autowired
+    private CoberturaService coberturaService;
+
+    @Value("${envios.cotizaciones.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    @Value("${envios.cotizaciones.ttl-parcial-segundos:15}")
+    private long ttlParcialSegundos;
+
+    @Value("${envios.cotizaciones.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${envios.cotizaciones.timeout-ms:5000}")
+    private long timeout;
+
+    @Value("${envios.cotizaciones.hilos:12}")
+    private int hilos;
+
+    private CacheTtl<String, Map<String, Object>> cache;
+    private CacheTtl<String, Map<String, Object>> parciales;
+    private ExecutorService consultas;
+
+    @PostConstruct
+    void iniciar() {
+        cache = new CacheTtl<>(TimeUnit.SECONDS.toMillis(ttlSegundos), maxEntradas);
+        parciales = new CacheTtl<>(TimeUnit.SECONDS.toMillis(ttlParcialSegundos), maxEntradas);
+        consultas = Executors.newFixedThreadPool(Math.max(3, hilos), r -> {
+            Thread hilo = new Thread(r, "cotizaciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Indica si la cotización del par ya está en cache
+     */
+    public boolean enCache(String origen, String destino) {
+        String clave = clave(origen, destino);
+        return cache.obtenerSiPresente(clave) != null || parciales.obtenerSiPresente(clave) != null;
+    }
+
+    /**
+     * Obtiene la cotización combinada para un par origen-destino
+     *
+     * @param origen Ciudad o código de origen
+     * @param destino Ciudad o código de destino
+     * @return Map inmutable con las opciones ordenadas y el estado de cada sistema
+     */
+    public Map<String, Object> cotizar(String origen, String destino) {
+        String clave = clave(origen, destino);
+        Map<String, Object> parcial = parciales.obtenerSiPresente(clave);
+        if (parcial != null) {
+            return parcial;
+        }
+
+        Map<String, Object> cotizacion = cache.obtener(clave, k -> consultarSistemas(origen.trim(), destino.trim()),
+                c -> tieneOpciones(c) && esCompleta(c));
+        if (tieneOpciones(cotizacion) && !esCompleta(cotizacion)) {
+            parciales.poner(clave, cotizacion);
+        }
+        return cotizacion;
+    }
+
+    private static boolean tieneOpciones(Map<String, Object> cotizacion) {
+        return !((List<?>) cotizacion.get("opciones")).isEmpty();
+    }
+
+    /**
+     * Indica si respondieron todos los sistemas
+     */
+    private static boolean esCompleta(Map<String, Object> cotizacion) {
+        for (Object estado : ((Map<?, ?>) cotizacion.get("sistemas")).values()) {
+            if (!"OK".equals(estado)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getNombreVolcado() {
+        return "cotizaciones";
+    }
+
+    @Override
+    public List<List<Object>> volcar() {
+        List<List<Object>> entradas = new ArrayList<>(cache.getTamano());
+        cache.recorrerVigentes((clave, valor, edad) -> entradas.add(List.of(clave, edad, valor)));
+        return entradas;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int cargar(List<List<Object>> entradas) {
+        int cargadas = 0;
+        for (List<Object> entrada : entradas) {
+            if (entrada.get(0) instanceof String && entrada.get(2) instanceof Map) {
+                Map<String, Object> valor = (Map<String, Object>) entrada.get(2);
+                cache.poner((String) entrada.get(0), Collections.unmodifiableMap(valor), ((Number) entrada.get(1)).longValue());
+                cargadas++;
+            }
+        }
+        return cargadas;
+    }
+
+    /**
+     * Estadísticas de uso de la cache de cotizaciones
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return Map.of(
+            "entradas", cache.getTamano(),
+            "aciertos", cache.getAciertos(),
+            "fallos", cache.getFallos()
+        );
+    }
+
+    private static String clave(String origen, String destino) {
+        return origen.trim().toUpperCase(Locale.ROOT) + "|" + destino.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Consulta los tres sistemas en paralelo y combina sus opciones
+     */
+    private Map<String, Object> consultarSistemas(String origen, String destino) {
+        CompletableFuture<Map<String, Object>> rutas = consultar("TMS.consultarRuta", () -> tmsServiceClient.consultarRuta(origen, destino));
+        CompletableFuture<Map<String, Object>> vuelos = consultar("ACMS.consultarVuelos", () -> acmsServiceClient.consultarVuelos(origen, destino));
+        CompletableFuture<Map<String, Object>> buques = consultar("SMCS.consultarBuques", () -> smcsServiceClient.consultarBuques(origen, destino));
+
+        List<Map<String, Object>> opciones = new ArrayList<>();
+        Map<String, Object> sistemas = new LinkedHashMap<>();
+        agregarOpciones(opciones, sistemas, "TMS", "TERRESTRE", rutas.join());
+        agregarOpciones(opciones, sistemas, "ACMS", "AEREO", vuelos.join());
+        agregarOpciones(opciones, sistemas, "SMCS", "MARITIMO", buques.join());
+
+        opciones.sort(Comparator
+                .comparing((Map<String, Object> o) -> (Double) o.get("precio"), Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(o -> (Double) o.get("tiempoEstimado"), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Map<String, Object>> ordenadas = new ArrayList<>(opciones.size());
+        for (int i = 0; i < opciones.size(); i++) {
+            Map<String, Object> opcion = opciones.get(i);
+            opcion.put("ranking", i + 1);
+            ordenadas.add(Collections.unmodifiableMap(opcion));
+        }
+
+        Map<String, Object> cotizacion = new LinkedHashMap<>();
+        cotizacion.put("origen", origen);
+        cotizacion.put("destino", destino);
+        cotizacion.put("total", ordenadas.size());
+        cotizacion.put("opciones", List.copyOf(ordenadas));
+        cotizacion.put("sistemas", Collections.unmodifiableMap(sistemas));
+        cotizacion.put("cotizadoEn", Instant.now().toString());
+        return Collections.unmodifiableMap(cotizacion);
+    }
+
+    private CompletableFuture<Map<String, Object>> consultar(String operacion, Supplier<Map<String, Object>> llamada) {
+        return CompletableFuture.supplyAsync(() -> coberturaService.ejecutar(operacion, llamada), consultas)
+                .orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> Map.of("error", "Servicio no disponible"))
+                .thenApply(respuesta -> respuesta != null ? respuesta : Map.of("error", "Servicio no disponible"));
+    }
+
+    /**
+     * Extrae las opciones de la respuesta de un sistema
+     *
+     * Si la respuesta contiene una lista (rutas, vuelos, buques...) cada
+     * elemento es una opción; si no, la respuesta completa es una opción.
+     */
+    @SuppressWarnings("unchecked")
+    private static void agregarOpciones(List<Map<String, Object>> opciones, Map<String, Object> sistemas,
+                                        String sistema, String modo, Map<String, Object> respuesta) {
+        if (respuesta.containsKey("error")) {
+            sistemas.put(sistema, respuesta.get("error"));
+            return;
+        }
+
+        List<Map<String, Object>> elementos = null;
+        for (Object valor : respuesta.values()) {
+            if (valor instanceof List<?> lista) {
+                elementos = new ArrayList<>();
+                for (Object elemento : lista) {
+                    if (elemento instanceof Map<?, ?> mapa) {
+                        elementos.add((Map<String, Object>) mapa);
+                    }
+                }
+                break;
+            }
+        }
+        if (elementos == null) {
+            elementos = List.of(respuesta);
+        }
+
+        for (Map<String, Object> elemento : elementos) {
+            Map<String, Object> opcion = new LinkedHashMap<>();
+            opcion.put("modo", modo);
+            opcion.put("sistema", sistema);
+            opcion.put("precio", numero(elemento, CAMPOS_PRECIO));
+            opcion.put("tiempoEstimado", numero(elemento, CAMPOS_TIEMPO));
+            opcion.put("detalle", elemento);
+            opciones.add(opcion);
+        }
+        sistemas.put(sistema, "OK");
+    }
+
+    private static Double numero(Map<String, Object> elemento, List<String> campos) {
+        for (String campo : campos) {
+            Object valor = elemento.get(campo);
+            if (valor instanceof Number n) {
+                return n.doubleValue();
+            }
+            if (valor instanceof String texto) {
+                try {
+                    return Double.parseDouble(texto.trim());
+                } catch (NumberFormatException e) {
+                    // No es numérico, se prueba el siguiente campo
+                }
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    void detener() {
+        consultas.shutdownNow();
+    }
+}
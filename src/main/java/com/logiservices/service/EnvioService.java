@@ -1,25 +1,66 @@
 package com.logiservices.service;
 
 import com.logiservices.dto.EnvioDto;
+import com.logiservices.dto.EnvioSistemaResponse;
+import com.logiservices.dto.EstadoSistemaResponse;
 import com.logiservices.client.TmsServiceClient;
 import com.logiservices.client.AcmsServiceClient;
 import com.logiservices.client.SmcsServiceClient;
+import com.logiservices.cache.CacheTtl;
+import com.logiservices.cache.CacheVolcable;
+import com.logiservices.config.FormatosBinariosConfig;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.event.InvalidacionRemotaEvent;
+import com.logiservices.exception.ConflictoVersionException;
+import com.logiservices.exception.ResourceNotFoundException;
+import com.logiservices.indice.IndiceFiltros;
+import com.logiservices.indice.IndiceLugares;
+import com.logiservices.indice.IndiceRutas;
+import com.logiservices.store.EnvioStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Service Layer para manejo de envíos
  *
  * Esta implementación integra con los servicios TMS, ACMS y SMCS
- * registrados en Eureka Server usando Feign Clients.
+ * registrados en Eureka Server usando Feign Clients. Los envíos locales
+ * se delegan al EnvioStore configurado (memoria o JPA).
  *
  * @Service: Marca la clase como servicio de Spring Boot
  */
 @Service
-public class EnvioService {
+public class EnvioService implements CacheVolcable {
+
+    /** Orden en que se consultan los sistemas cuando no se sabe cuál tiene el envío */
+    private static final List<String> SISTEMAS = List.of("TMS", "ACMS", "SMCS");
+
+    /** Intentos de una actualización sin If-Match que pierde la carrera de versión (almacén JPA) */
+    private static final int REINTENTOS_SIN_VERSION = 3;
 
     @Autowired
     private TmsServiceClient tmsServiceClient;
@@ -30,31 +71,104 @@ public class EnvioService {
     @Autowired
     private SmcsServiceClient smcsServiceClient;
 
-    /**
-     * Map que mantiene datos de envíos en memoria para operaciones CRUD
-     * En producción, esto sería reemplazado por una base de datos
-     */
-    private final Map<Long, EnvioDto> enviosMock = new HashMap<>();
+    @Autowired
+    private EnvioStore envioStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InfoSistemasService infoSistemasService;
+
+    @Autowired
+    private CoberturaService coberturaService;
+
+    @Autowired
+    private IndiceLugares indiceLugares;
+
+    @Autowired
+    private IndiceFiltros indiceFiltros;
+
+    @Autowired
+    private IndiceRutas indiceRutas;
+
+    @Autowired
+    private HistorialEstadosService historialEstadosService;
+
+    @Value("${envios.busqueda.limite-max:500}")
+    private int limiteMaxBusqueda;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    private final AtomicLong versionCambios = new AtomicLong();
+
+    @Value("${envios.sistemas.propietario-ttl-segundos:3600}")
+    private long propietarioTtlSegundos;
+
+    @Value("${envios.sistemas.propietario-max-entradas:500000}")
+    private int propietarioMaxEntradas;
+
+    /** Sistema que tuvo cada envío la última vez que se consultó */
+    private CacheTtl<Long, String> sistemaPorId;
+
+    @Value("${envios.listados.hilos:24}")
+    private int hilosListados;
+
+    @Value("${envios.listados.cola:48}")
+    private int colaListados;
 
     /**
-     * Constructor que inicializa datos simulados
-     * Simulamos datos que en el futuro vendrán de TMS / ACMS / SMCS
+     * Abre en paralelo las respuestas de listarEnvios de los tres sistemas
+     *
+     * Pool acotado: con el pool y la cola llenos, la apertura se hace en el
+     * hilo de la petición (CallerRunsPolicy); ese listado pierde el
+     * paralelismo en lugar de crear un hilo más por cada llamada.
      */
-    public EnvioService() {
-        // Datos simulados de TMS (Transport Management System)
-        enviosMock.put(123L, new EnvioDto(123L, "Bogotá", "Medellín", "En tránsito", "TMS"));
-        enviosMock.put(124L, new EnvioDto(124L, "Cali", "Pereira", "En tránsito", "TMS"));
-        enviosMock.put(125L, new EnvioDto(125L, "Bucaramanga", "Cartagena", "Pendiente", "TMS"));
+    private ThreadPoolExecutor listados;
+
+    @PostConstruct
+    void iniciar() {
+        sistemaPorId = new CacheTtl<>(TimeUnit.SECONDS.toMillis(propietarioTtlSegundos), propietarioMaxEntradas);
+        int hilos = Math.max(3, hilosListados);
+        listados = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, colaListados)), r -> {
+                    Thread hilo = new Thread(r, "envios-listados");
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        listados.allowCoreThreadTimeOut(true);
+    }
 
-        // Datos simulados de ACMS (Air Cargo Management System)
-        enviosMock.put(456L, new EnvioDto(456L, "Cali", "Cartagena", "Entregado", "ACMS"));
-        enviosMock.put(457L, new EnvioDto(457L, "Bogotá", "Miami", "En tránsito", "ACMS"));
-        enviosMock.put(458L, new EnvioDto(458L, "Medellín", "Panamá", "Entregado", "ACMS"));
+    @Override
+    public String getNombreVolcado() {
+        return "sistemaPorEnvio";
+    }
+
+    @Override
+    public List<List<Object>> volcar() {
+        List<List<Object>> entradas = new ArrayList<>(sistemaPorId.getTamano());
+        sistemaPorId.recorrerVigentes((id, sistema, edad) -> entradas.add(List.of(id, edad, sistema)));
+        return entradas;
+    }
 
-        // Datos simulados de SMCS (Sea Management Cargo System)
-        enviosMock.put(789L, new EnvioDto(789L, "Barranquilla", "Buenaventura", "Pendiente", "SMCS"));
-        enviosMock.put(790L, new EnvioDto(790L, "Cartagena", "Valencia", "En tránsito", "SMCS"));
-        enviosMock.put(791L, new EnvioDto(791L, "Buenaventura", "Shanghai", "Entregado", "SMCS"));
+    @Override
+    public int cargar(List<List<Object>> entradas) {
+        int cargadas = 0;
+        for (List<Object> entrada : entradas) {
+            if (entrada.get(0) instanceof Number && SISTEMAS.contains(entrada.get(2))) {
+                sistemaPorId.poner(((Number) entrada.get(0)).longValue(), (String) entrada.get(2),
+                        ((Number) entrada.get(1)).longValue());
+                cargadas++;
+            }
+        }
+        return cargadas;
     }
 
     /**
@@ -64,7 +178,7 @@ public class EnvioService {
      * @return EnvioDto con la información del envío, o null si no existe
      */
     public EnvioDto getEnvioById(Long id) {
-        return enviosMock.get(id);
+        return envioStore.buscarPorId(id);
     }
 
     /**
@@ -73,7 +187,11 @@ public class EnvioService {
      * @return Map con todos los envíos
      */
     public Map<Long, EnvioDto> getAllEnvios() {
-        return new HashMap<>(enviosMock);
+        Map<Long, EnvioDto> envios = new HashMap<>();
+        for (EnvioDto envio : envioStore.listar()) {
+            envios.put(envio.getId(), envio);
+        }
+        return envios;
     }
 
     /**
@@ -83,7 +201,7 @@ public class EnvioService {
      * @return true si existe, false en caso contrario
      */
     public boolean existsEnvio(Long id) {
-        return enviosMock.containsKey(id);
+        return envioStore.existe(id);
     }
 
     /**
@@ -91,30 +209,19 @@ public class EnvioService {
      *
      * @param envioDto Datos del envío a crear (sin ID)
      * @return EnvioDto creado con ID asignado
-     * @throws RuntimeException si el envío ya existe
      */
     public EnvioDto crearEnvio(EnvioDto envioDto) {
-        // Generar un nuevo ID único
-        Long nuevoId = generarNuevoId();
-
-        // Verificar que no exista un envío con ese ID (por seguridad)
-        if (enviosMock.containsKey(nuevoId)) {
-            throw new RuntimeException("Error interno: ID duplicado generado");
-        }
-
-        // Crear el nuevo envío con el ID generado
-        EnvioDto nuevoEnvio = new EnvioDto(
-            nuevoId,
-            envioDto.getOrigen(),
-            envioDto.getDestino(),
-            envioDto.getEstado(),
-            envioDto.getSistemaOrigen()
-        );
-
-        // Guardar en el map
-        enviosMock.put(nuevoId, nuevoEnvio);
+        return envioStore.crear(envioDto);
+    }
 
-        return nuevoEnvio;
+    /**
+     * CREAR EN LOTE - Crea varios envíos en una sola operación
+     *
+     * @param envios Datos de los envíos a crear (sin ID)
+     * @return Envíos creados con sus IDs asignados
+     */
+    public List<EnvioDto> crearEnvios(List<EnvioDto> envios) {
+        return envioStore.crearLote(envios);
     }
 
     /**
@@ -126,23 +233,44 @@ public class EnvioService {
      * @throws RuntimeException si el envío no existe
      */
     public EnvioDto actualizarEnvio(Long id, EnvioDto envioDto) {
-        // Verificar que el envío exista
-        if (!enviosMock.containsKey(id)) {
-            throw new RuntimeException("No se encontró el envío con ID " + id);
-        }
-
-        // Crear el envío actualizado con el mismo ID
-        EnvioDto envioActualizado = new EnvioDto(
-            id, // Mantener el ID original
-            envioDto.getOrigen(),
-            envioDto.getDestino(),
-            envioDto.getEstado(),
-            envioDto.getSistemaOrigen()
-        );
-
-        // Actualizar en el map
-        enviosMock.put(id, envioActualizado);
+        return actualizarEnvio(id, envioDto, null);
+    }
 
+    /**
+     * ACTUALIZAR CONDICIONAL - Actualiza un envío solo si su versión coincide
+     *
+     * @param id ID del envío a actualizar
+     * @param envioDto Datos nuevos del envío
+     * @param versionEsperada Versión esperada (If-Match), o null para no comprobarla
+     * @return EnvioDto actualizado con su nueva versión
+     * @throws ConflictoVersionException si el envío cambió desde esa versión, o
+     *         si sin versión esperada se agotaron los reintentos por escrituras concurrentes
+     * @throws ResourceNotFoundException si el envío no existe
+     * @throws com.logiservices.exception.PersistenciaException si el cambio no se pudo persistir
+     */
+    public EnvioDto actualizarEnvio(Long id, EnvioDto envioDto, Long versionEsperada) {
+        EnvioDto envioActualizado = null;
+        for (int intento = 1; ; intento++) {
+            try {
+                envioActualizado = envioStore.actualizar(id, envioDto, versionEsperada);
+                break;
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // Otra transacción actualizó el envío entre la lectura y el UPDATE.
+                // Sin If-Match la petición no fija versión: se reintenta sobre la
+                // versión nueva hasta REINTENTOS_SIN_VERSION veces
+                if (versionEsperada != null) {
+                    EnvioDto actual = envioStore.buscarPorId(id);
+                    throw new ConflictoVersionException(id, versionEsperada,
+                            actual != null ? actual.getVersion() : null);
+                }
+                if (intento >= REINTENTOS_SIN_VERSION) {
+                    throw new ConflictoVersionException(id);
+                }
+            }
+        }
+        if (envioActualizado == null) {
+            throw new ResourceNotFoundException("No se encontró el envío con ID " + id);
+        }
         return envioActualizado;
     }
 
@@ -151,20 +279,14 @@ public class EnvioService {
      *
      * @param id ID del envío a eliminar
      * @return EnvioDto eliminado
-     * @throws RuntimeException si el envío no existe
+     * @throws ResourceNotFoundException si el envío no existe
+     * @throws com.logiservices.exception.PersistenciaException si el cambio no se pudo persistir
      */
     public EnvioDto eliminarEnvio(Long id) {
-        // Verificar que el envío exista
-        if (!enviosMock.containsKey(id)) {
-            throw new RuntimeException("No se encontró el envío con ID " + id);
+        EnvioDto envioEliminado = envioStore.eliminar(id);
+        if (envioEliminado == null) {
+            throw new ResourceNotFoundException("No se encontró el envío con ID " + id);
         }
-
-        // Obtener el envío antes de eliminarlo
-        EnvioDto envioEliminado = enviosMock.get(id);
-
-        // Eliminar del map
-        enviosMock.remove(id);
-
         return envioEliminado;
     }
 
@@ -174,7 +296,7 @@ public class EnvioService {
      * @return Lista de todos los envíos
      */
     public List<EnvioDto> getAllEnviosList() {
-        return new ArrayList<>(enviosMock.values());
+        return envioStore.listar();
     }
 
     /**
@@ -184,9 +306,7 @@ public class EnvioService {
      * @return Lista de envíos del sistema especificado
      */
     public List<EnvioDto> buscarPorSistemaOrigen(String sistemaOrigen) {
-        return enviosMock.values().stream()
-                .filter(envio -> envio.getSistemaOrigen().equalsIgnoreCase(sistemaOrigen))
-                .collect(Collectors.toList());
+        return envioStore.buscarPorSistemaOrigen(sistemaOrigen);
     }
 
     /**
@@ -196,26 +316,167 @@ public class EnvioService {
      * @return Lista de envíos con el estado especificado
      */
     public List<EnvioDto> buscarPorEstado(String estado) {
-        return enviosMock.values().stream()
-                .filter(envio -> envio.getEstado().equalsIgnoreCase(estado))
-                .collect(Collectors.toList());
+        return envioStore.buscarPorEstado(estado);
+    }
+
+    /**
+     * Busca envíos locales por prefijo de origen y/o destino, sin acentos ni mayúsculas
+     *
+     * @param texto Prefijo de alguna palabra del lugar ("bogota", "Buenav")
+     * @param campo Campo sobre el que se busca
+     * @param desdeId Cursor de paginación (primer ID a devolver)
+     * @param limite Tamaño de la página
+     * @return Página con los envíos, el cursor siguiente y los lugares coincidentes
+     */
+    public Map<String, Object> buscarPorLugar(String texto, IndiceLugares.Campo campo, long desdeId, int limite) {
+        IndiceLugares.Resultado resultado = indiceLugares.buscar(texto, campo, desdeId, limite);
+
+        List<EnvioDto> envios = new ArrayList<>(resultado.getIds().size());
+        for (Long id : resultado.getIds()) {
+            EnvioDto envio = envioStore.buscarPorId(id);
+            if (envio != null) {
+                envios.add(envio);
+            }
+        }
+
+        Map<String, Object> pagina = new LinkedHashMap<>();
+        pagina.put("q", texto);
+        pagina.put("campo", campo.name());
+        pagina.put("lugares", resultado.getLugares());
+        pagina.put("envios", envios);
+        pagina.put("total", resultado.getTotal());
+        pagina.put("siguienteDesdeId", resultado.getSiguienteDesdeId());
+        return pagina;
+    }
+
+    /**
+     * Consulta multicriterio sobre los envíos locales (índices de bitmaps)
+     *
+     * @param consulta Filtros, orden y página
+     * @return Página con los envíos, el total, el plan ejecutado y las facetas pedidas
+     */
+    public Map<String, Object> consultar(IndiceFiltros.Consulta consulta) {
+        IndiceFiltros.Resultado resultado = indiceFiltros.consultar(consulta);
+
+        List<EnvioDto> envios = new ArrayList<>(resultado.getIds().size());
+        for (Long id : resultado.getIds()) {
+            EnvioDto envio = envioStore.buscarPorId(id);
+            if (envio != null) {
+                envios.add(envio);
+            }
+        }
+
+        Map<String, Object> pagina = new LinkedHashMap<>();
+        pagina.put("total", resultado.getTotal());
+        pagina.put("envios", envios);
+        pagina.put("plan", resultado.getPlan());
+        if (resultado.getFacetas() != null) {
+            pagina.put("facetas", resultado.getFacetas());
+        }
+        return pagina;
+    }
+
+    /**
+     * Las N rutas (origen -> destino) con más envíos locales
+     */
+    public List<Map<String, Object>> obtenerRutasPrincipales(int n) {
+        return indiceRutas.principales(n);
+    }
+
+    /**
+     * Conteos por estado y sistema de una ruta, o null si no tiene envíos
+     */
+    public Map<String, Object> obtenerRuta(String origen, String destino) {
+        return indiceRutas.resumen(origen, destino);
     }
 
     /**
-     * Genera un nuevo ID único para envíos
-     * En un sistema real, esto sería manejado por la base de datos
+     * Envíos locales de una ruta, paginados por cursor
      *
-     * @return Nuevo ID único
+     * @param desdeId Primer ID de la página
+     * @param limite Tamaño de la página
+     * @return Página con los envíos y el cursor de la siguiente (null si no hay más)
      */
-    private Long generarNuevoId() {
-        // Obtener el ID más alto actual
-        Long maxId = enviosMock.keySet().stream()
-                .mapToLong(Long::longValue)
-                .max()
-                .orElse(0L);
+    public Map<String, Object> listarEnviosDeRuta(String origen, String destino, long desdeId, int limite) {
+        List<Long> ids = indiceRutas.envios(origen, destino, desdeId, limite);
+        Long siguiente = ids.size() > limite ? ids.get(limite) : null;
+
+        List<EnvioDto> envios = new ArrayList<>(Math.min(ids.size(), limite));
+        for (Long id : ids.subList(0, Math.min(ids.size(), limite))) {
+            EnvioDto envio = envioStore.buscarPorId(id);
+            if (envio != null) {
+                envios.add(envio);
+            }
+        }
+
+        Map<String, Object> pagina = new LinkedHashMap<>();
+        pagina.put("origen", origen);
+        pagina.put("destino", destino);
+        pagina.put("envios", envios);
+        pagina.put("total", envios.size());
+        pagina.put("siguienteDesdeId", siguiente);
+        return pagina;
+    }
+
+    /**
+     * Transiciones de estado registradas de un envío local o de un sistema
+     *
+     * @param sistema TMS, ACMS o SMCS para un envío de ese sistema; null para uno local
+     * @return Historial, o null si el envío no tiene transiciones registradas
+     */
+    public Map<String, Object> obtenerHistorial(String sistema, Long id) {
+        return historialEstadosService.obtenerHistorial(sistema, id);
+    }
 
-        // Devolver el siguiente ID
-        return maxId + 1;
+    /**
+     * Percentiles de tiempo de permanencia por estado y por sistema
+     */
+    public Map<String, Object> obtenerPermanencias() {
+        return historialEstadosService.obtenerPermanencias();
+    }
+
+    /**
+     * Tamaño máximo de página de las búsquedas
+     */
+    public int getLimiteMaxBusqueda() {
+        return limiteMaxBusqueda;
+    }
+
+    /**
+     * Versión de los datos locales: aumenta con cada cambio de envío
+     *
+     * Las respuestas cacheadas ya serializadas (CacheRespuestas) son
+     * válidas mientras esta versión no cambie.
+     */
+    public long getVersionCambios() {
+        return versionCambios.get();
+    }
+
+    /**
+     * Los almacenes publican el evento cuando el cambio ya es visible para
+     * otras lecturas (el JPA, tras el commit), así que una respuesta
+     * generada con la versión anterior queda invalidada
+     *
+     * Los ESTADO_SISTEMA no cambian los datos locales: no invalidan nada.
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getTipo() == EnvioCambiadoEvent.Tipo.ESTADO_SISTEMA) {
+            return;
+        }
+        versionCambios.incrementAndGet();
+    }
+
+    /**
+     * Cambios en otra instancia del Service Facade: las respuestas cacheadas
+     * de este nodo también dejan de ser válidas
+     *
+     * Es lo único que invalida el bus: los índices y el historial solo
+     * reflejan el almacén local.
+     */
+    @EventListener
+    public void onInvalidacionRemota(InvalidacionRemotaEvent invalidacion) {
+        versionCambios.incrementAndGet();
     }
 
     /**
@@ -227,23 +488,13 @@ public class EnvioService {
         Map<String, Object> stats = new HashMap<>();
 
         // Total de envíos
-        stats.put("totalEnvios", enviosMock.size());
+        stats.put("totalEnvios", envioStore.contar());
 
         // Conteo por sistema
-        Map<String, Long> porSistema = enviosMock.values().stream()
-                .collect(Collectors.groupingBy(
-                    EnvioDto::getSistemaOrigen,
-                    Collectors.counting()
-                ));
-        stats.put("porSistema", porSistema);
+        stats.put("porSistema", envioStore.contarPorSistema());
 
         // Conteo por estado
-        Map<String, Long> porEstado = enviosMock.values().stream()
-                .collect(Collectors.groupingBy(
-                    EnvioDto::getEstado,
-                    Collectors.counting()
-                ));
-        stats.put("porEstado", porEstado);
+        stats.put("porEstado", envioStore.contarPorEstado());
 
         return stats;
     }
@@ -256,90 +507,191 @@ public class EnvioService {
     /**
      * Consulta un envío en el sistema correspondiente (TMS, ACMS, SMCS)
      *
+     * Si ya se sabe qué sistema tiene el envío se le pregunta primero a él,
+     * con una sola llamada en lugar de hasta tres. Si ya no lo tiene, se
+     * olvida y se prueba el resto en el orden habitual.
+     *
      * @param id ID del envío
-     * @return Información del envío desde el sistema correspondiente
+     * @return Envío normalizado con el sistema que lo tiene, o null si no está en ningún sistema
      */
-    public Map<String, Object> consultarEnvioEnSistema(Long id) {
-        try {
-            // Intentar consultar en TMS
-            Map<String, Object> resultado = tmsServiceClient.consultarEnvio(id);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+    public EnvioDto consultarEnvioEnSistema(Long id) {
+        String conocido = sistemaPorId.obtenerSiPresente(id);
+        if (conocido != null) {
+            EnvioDto envio = consultarEnvioEn(conocido, id);
+            if (envio != null) {
+                return envio;
             }
-        } catch (Exception e) {
-            // TMS no disponible o envío no encontrado, continuar con ACMS
+            sistemaPorId.invalidar(id);
         }
 
-        try {
-            // Intentar consultar en ACMS
-            Map<String, Object> resultado = acmsServiceClient.consultarEnvio(id);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+        for (String sistema : SISTEMAS) {
+            if (sistema.equals(conocido)) {
+                continue;
+            }
+            EnvioDto envio = consultarEnvioEn(sistema, id);
+            if (envio != null) {
+                sistemaPorId.poner(id, sistema);
+                return envio;
             }
-        } catch (Exception e) {
-            // ACMS no disponible o envío no encontrado, continuar con SMCS
         }
 
+        // Si no se encuentra en ningún sistema
+        return null;
+    }
+
+    private EnvioDto consultarEnvioEn(String sistema, Long id) {
         try {
-            // Intentar consultar en SMCS
-            Map<String, Object> resultado = smcsServiceClient.consultarEnvio(id);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+            EnvioSistemaResponse resultado = coberturaService.ejecutar(sistema + ".consultarEnvio", () -> {
+                switch (sistema) {
+                    case "TMS":
+                        return tmsServiceClient.consultarEnvio(id);
+                    case "ACMS":
+                        return acmsServiceClient.consultarEnvio(id);
+                    default:
+                        return smcsServiceClient.consultarEnvio(id);
+                }
+            });
+            if (resultado != null && resultado.esValido()) {
+                return resultado.aEnvioDto(sistema);
             }
         } catch (Exception e) {
-            // SMCS no disponible o envío no encontrado
+            // Sistema no disponible o envío no encontrado: se continúa con el siguiente
         }
-
-        // Si no se encuentra en ningún sistema
-        return Map.of("error", "Envío no encontrado en ningún sistema", "id", id);
+        return null;
     }
 
     /**
-     * Lista todos los envíos de todos los sistemas
+     * Lista todos los envíos de todos los sistemas escribiéndolos como flujo
      *
-     * @return Lista consolidada de envíos de todos los sistemas
+     * Cada respuesta de listarEnvios se lee token a token y cada envío se
+     * normaliza y se escribe en la salida en cuanto se lee, sin materializar
+     * las listas: la memoria usada no depende del número de envíos.
+     * Las tres peticiones se abren en paralelo y sus cuerpos se copian en
+     * orden (TMS, ACMS, SMCS).
+     *
+     * Formato: {"envios": [...], "total": N, "sistemas": ["TMS", "ACMS", "SMCS"]}
+     * Un sistema no disponible se omite; si falla a mitad del flujo, se
+     * conservan los envíos ya escritos y se continúa con el siguiente.
+     *
+     * @param salida Flujo de salida de la respuesta HTTP
+     * @param formato Formato de la respuesta: JSON, CBOR o Smile (mismo contenido)
      */
-    public Map<String, Object> listarTodosLosEnvios() {
-        List<Map<String, Object>> todosLosEnvios = new ArrayList<>();
+    public void escribirEnviosDeSistemas(OutputStream salida, MediaType formato) throws IOException {
+        CompletableFuture<Response> tms = abrirListado(tmsServiceClient::listarEnvios);
+        CompletableFuture<Response> acms = abrirListado(acmsServiceClient::listarEnvios);
+        CompletableFuture<Response> smcs = abrirListado(smcsServiceClient::listarEnvios);
+
+        long total = 0;
+        try (JsonGenerator generador = mapperDeSalida(formato).getFactory().createGenerator(salida)) {
+            generador.writeStartObject();
+            generador.writeArrayFieldStart("envios");
+            total += copiarEnvios(tms, "TMS", generador);
+            total += copiarEnvios(acms, "ACMS", generador);
+            total += copiarEnvios(smcs, "SMCS", generador);
+            generador.writeEndArray();
+            generador.writeNumberField("total", total);
+            generador.writeArrayFieldStart("sistemas");
+            generador.writeString("TMS");
+            generador.writeString("ACMS");
+            generador.writeString("SMCS");
+            generador.writeEndArray();
+            generador.writeEndObject();
+        } finally {
+            cerrarListado(tms);
+            cerrarListado(acms);
+            cerrarListado(smcs);
+        }
+    }
 
-        try {
-            // Obtener envíos de TMS
-            Map<String, Object> enviosTms = tmsServiceClient.listarEnvios();
-            if (enviosTms != null && enviosTms.containsKey("envios")) {
-                List<Map<String, Object>> envios = (List<Map<String, Object>>) enviosTms.get("envios");
-                todosLosEnvios.addAll(envios);
-            }
-        } catch (Exception e) {
-            // TMS no disponible
+    /**
+     * ObjectMapper del formato de respuesta (JSON, CBOR o Smile)
+     */
+    private ObjectMapper mapperDeSalida(MediaType formato) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(formato)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (FormatosBinariosConfig.APPLICATION_SMILE.equalsTypeAndSubtype(formato)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    private CompletableFuture<Response> abrirListado(Supplier<Response> llamada) {
+        return CompletableFuture.supplyAsync(llamada, listados)
+                .exceptionally(e -> null);
+    }
+
+    /**
+     * Copia los envíos de una respuesta de listarEnvios al generador
+     *
+     * @return Envíos copiados
+     * @throws IOException solo si falla la escritura hacia el cliente
+     */
+    private long copiarEnvios(CompletableFuture<Response> listado, String sistema, JsonGenerator generador)
+            throws IOException {
+        Response respuesta = listado.join();
+        if (respuesta == null || respuesta.body() == null || respuesta.status() / 100 != 2) {
+            return 0; // Sistema no disponible
         }
 
+        long copiados = 0;
+        JsonParser parser;
         try {
-            // Obtener envíos de ACMS
-            Map<String, Object> enviosAcms = acmsServiceClient.listarEnvios();
-            if (enviosAcms != null && enviosAcms.containsKey("envios")) {
-                List<Map<String, Object>> envios = (List<Map<String, Object>>) enviosAcms.get("envios");
-                todosLosEnvios.addAll(envios);
+            parser = objectMapper.getFactory().createParser(respuesta.body().asInputStream());
+        } catch (IOException e) {
+            return 0;
+        }
+        try (parser) {
+            if (!buscarCampoEnvios(parser)) {
+                return 0;
             }
-        } catch (Exception e) {
-            // ACMS no disponible
+            while (true) {
+                EnvioSistemaResponse envio;
+                try {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        break; // Fin del array
+                    }
+                    envio = objectMapper.readValue(parser, EnvioSistemaResponse.class);
+                } catch (IOException e) {
+                    break; // Respuesta cortada o inválida: se conserva lo ya escrito
+                }
+                generador.writeObject(envio.aEnvioDto(sistema));
+                copiados++;
+            }
+        } catch (IOException e) {
+            // Error al cerrar el parser: los envíos ya están escritos
         }
+        return copiados;
+    }
 
+    /**
+     * Avanza el parser hasta el array "envios" del objeto raíz
+     */
+    private static boolean buscarCampoEnvios(JsonParser parser) {
         try {
-            // Obtener envíos de SMCS
-            Map<String, Object> enviosSmcs = smcsServiceClient.listarEnvios();
-            if (enviosSmcs != null && enviosSmcs.containsKey("envios")) {
-                List<Map<String, Object>> envios = (List<Map<String, Object>>) enviosSmcs.get("envios");
-                todosLosEnvios.addAll(envios);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
             }
-        } catch (Exception e) {
-            // SMCS no disponible
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.getCurrentName();
+                JsonToken valor = parser.nextToken();
+                if ("envios".equals(campo) && valor == JsonToken.START_ARRAY) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Respuesta inválida
         }
+        return false;
+    }
 
-        return Map.of(
-            "total", todosLosEnvios.size(),
-            "envios", todosLosEnvios,
-            "sistemas", Arrays.asList("TMS", "ACMS", "SMCS")
-        );
+    private static void cerrarListado(CompletableFuture<Response> listado) {
+        listado.thenAccept(respuesta -> {
+            if (respuesta != null) {
+                respuesta.close();
+            }
+        });
     }
 
     /**
@@ -354,9 +706,11 @@ public class EnvioService {
 
         try {
             // Intentar actualizar en TMS
-            Map<String, Object> resultado = tmsServiceClient.actualizarEstado(id, request);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+            EstadoSistemaResponse resultado = tmsServiceClient.actualizarEstado(id, request);
+            if (resultado != null && resultado.esValido()) {
+                eventPublisher.publishEvent(EnvioCambiadoEvent.estadoEnSistema(id, "TMS", estado));
+                sistemaPorId.poner(id, "TMS");
+                return resultadoEstado(id, estado, "TMS", resultado);
             }
         } catch (Exception e) {
             // TMS no disponible o envío no encontrado, continuar con ACMS
@@ -364,9 +718,11 @@ public class EnvioService {
 
         try {
             // Intentar actualizar en ACMS
-            Map<String, Object> resultado = acmsServiceClient.actualizarEstado(id, request);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+            EstadoSistemaResponse resultado = acmsServiceClient.actualizarEstado(id, request);
+            if (resultado != null && resultado.esValido()) {
+                eventPublisher.publishEvent(EnvioCambiadoEvent.estadoEnSistema(id, "ACMS", estado));
+                sistemaPorId.poner(id, "ACMS");
+                return resultadoEstado(id, estado, "ACMS", resultado);
             }
         } catch (Exception e) {
             // ACMS no disponible o envío no encontrado, continuar con SMCS
@@ -374,9 +730,11 @@ public class EnvioService {
 
         try {
             // Intentar actualizar en SMCS
-            Map<String, Object> resultado = smcsServiceClient.actualizarEstado(id, request);
-            if (resultado != null && !resultado.containsKey("error")) {
-                return resultado;
+            EstadoSistemaResponse resultado = smcsServiceClient.actualizarEstado(id, request);
+            if (resultado != null && resultado.esValido()) {
+                eventPublisher.publishEvent(EnvioCambiadoEvent.estadoEnSistema(id, "SMCS", estado));
+                sistemaPorId.poner(id, "SMCS");
+                return resultadoEstado(id, estado, "SMCS", resultado);
             }
         } catch (Exception e) {
             // SMCS no disponible o envío no encontrado
@@ -385,41 +743,41 @@ public class EnvioService {
         return Map.of("error", "Envío no encontrado en ningún sistema para actualizar", "id", id);
     }
 
+    private static Map<String, Object> resultadoEstado(Long id, String estado, String sistema,
+                                                       EstadoSistemaResponse resultado) {
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("id", id);
+        respuesta.put("estado", resultado.getEstado() != null ? resultado.getEstado() : estado);
+        respuesta.put("sistema", sistema);
+        if (resultado.getMensaje() != null) {
+            respuesta.put("mensaje", resultado.getMensaje());
+        }
+        return respuesta;
+    }
+
     /**
      * Obtiene información de todos los sistemas registrados
      *
      * @return Información consolidada de todos los sistemas
      */
     public Map<String, Object> obtenerInfoSistemas() {
-        Map<String, Object> infoSistemas = new HashMap<>();
-
-        try {
-            Map<String, Object> infoTms = tmsServiceClient.obtenerInfo();
-            infoSistemas.put("TMS", infoTms);
-        } catch (Exception e) {
-            infoSistemas.put("TMS", Map.of("error", "Servicio no disponible"));
-        }
-
-        try {
-            Map<String, Object> infoAcms = acmsServiceClient.obtenerInfo();
-            infoSistemas.put("ACMS", infoAcms);
-        } catch (Exception e) {
-            infoSistemas.put("ACMS", Map.of("error", "Servicio no disponible"));
-        }
-
-        try {
-            Map<String, Object> infoSmcs = smcsServiceClient.obtenerInfo();
-            infoSistemas.put("SMCS", infoSmcs);
-        } catch (Exception e) {
-            infoSistemas.put("SMCS", Map.of("error", "Servicio no disponible"));
-        }
+        // Se sirve la instantánea refrescada en segundo plano, sin consultar los sistemas
+        InfoSistemasService.Instantanea instantanea = infoSistemasService.getInstantanea();
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("serviceFacade", "LogiServices Service Facade");
+        info.put("version", "1.0.0");
+        info.put("descripcion", "Integración unificada de sistemas TMS, ACMS y SMCS");
+        info.put("sistemas", instantanea.getSistemas());
+        info.put("eurekaServer", "http://localhost:8761");
+        info.put("actualizadoEn", instantanea.getActualizadoEn() != null
+                ? instantanea.getActualizadoEn().toString() : null);
+        info.put("edadSegundos", instantanea.getEdadSegundos());
+        return info;
+    }
 
-        return Map.of(
-            "serviceFacade", "LogiServices Service Facade",
-            "version", "1.0.0",
-            "descripcion", "Integración unificada de sistemas TMS, ACMS y SMCS",
-            "sistemas", infoSistemas,
-            "eurekaServer", "http://localhost:8761"
-        );
+    @PreDestroy
+    void detener() {
+        listados.shutdownNow();
     }
 }
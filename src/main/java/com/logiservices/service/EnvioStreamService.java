@@ -0,0 +1,414 @@
+package com.logiservices.service;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Servicio de difusión de cambios de envíos por Server-Sent Events
+ *
+ * Cada cambio recibe un ID secuencial y se guarda en un buffer circular
+ * acotado para permitir reanudar la suscripción con Last-Event-ID. La
+ * secuencia de cada arranque empieza en la hora de inicio desplazada 20
+ * bits, así que los IDs de arranques anteriores son menores que el primero
+ * de este: un Last-Event-ID fuera de [primer ID, último ID] recibe REINICIO.
+ *
+ * Cada suscriptor tiene su propia cola acotada. El envío a los clientes se
+ * hace en un pool de hilos, nunca en el hilo que escribe el envío. Un
+ * cliente se queda atrás si su cola se llena o si un send lleva más de
+ * envio-max-ms bloqueado (socket lleno): se le deja de repartir eventos y
+ * se cierra su conexión en cuanto el hilo que lo atiende queda libre. El
+ * hilo bloqueado no se recupera hasta que el contenedor corta la escritura,
+ * por lo que el pool crece temporalmente un hilo por cada uno de ellos
+ * para que el resto de clientes siga recibiendo eventos. El cliente puede
+ * reconectar con su último ID y recuperar lo perdido mientras siga dentro
+ * del buffer.
+ */
+@Service
+public class EnvioStreamService {
+
+    @Value("${envios.stream.buffer:1024}")
+    private int capacidadBuffer;
+
+    @Value("${envios.stream.cola-max:1024}")
+    private int capacidadCola;
+
+    @Value("${envios.stream.timeout-ms:1800000}")
+    private long timeout;
+
+    @Value("${envios.stream.hilos:2}")
+    private int hilos;
+
+    @Value("${envios.stream.envio-max-ms:5000}")
+    private long envioMaxMs;
+
+    /** Primer ID de este arranque (los de arranques anteriores son menores) */
+    private final long primerId = System.currentTimeMillis() << 20;
+
+    /** Buffer circular con los últimos eventos (protegido por su propio monitor) */
+    private final ArrayDeque<EventoStream> buffer = new ArrayDeque<>();
+    private long ultimoId = primerId;
+
+    private final CopyOnWriteArrayList<Suscriptor> suscriptores = new CopyOnWriteArrayList<>();
+    private ThreadPoolExecutor despachador;
+    private ScheduledExecutorService vigilante;
+
+    /** Hilos añadidos al pool por envíos bloqueados de clientes descartados */
+    private int hilosBloqueados;
+
+    private synchronized ThreadPoolExecutor despachador() {
+        if (despachador == null) {
+            int tamano = Math.max(1, hilos);
+            despachador = new ThreadPoolExecutor(tamano, tamano, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread hilo = new Thread(r, "envios-stream");
+                        hilo.setDaemon(true);
+                        return hilo;
+                    });
+        }
+        return despachador;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        vigilante = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "envios-stream-vigilante");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(100, envioMaxMs / 2);
+        vigilante.scheduleWithFixedDelay(this::descartarBloqueados, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registra un nuevo suscriptor
+     *
+     * @param ids IDs a seguir (null o vacío = todos)
+     * @param estado Estado a seguir (null = todos)
+     * @param sistema Sistema a seguir (null = todos)
+     * @param ultimoIdRecibido Valor de Last-Event-ID para reanudar (null = solo eventos nuevos)
+     * @return SseEmitter asociado al suscriptor
+     */
+    public SseEmitter suscribir(Set<Long> ids, String estado, String sistema, Long ultimoIdRecibido) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Suscriptor suscriptor = new Suscriptor(emitter, new Filtro(ids, estado, sistema), capacidadCola);
+
+        emitter.onCompletion(() -> suscriptores.remove(suscriptor));
+        emitter.onTimeout(() -> cerrar(suscriptor));
+        emitter.onError(e -> cerrar(suscriptor));
+
+        // Reproducción y alta bajo el mismo monitor que la publicación:
+        // no se pierde ni se duplica ningún evento entre ambas
+        synchronized (buffer) {
+            if (ultimoIdRecibido != null && (ultimoIdRecibido < primerId || ultimoIdRecibido > ultimoId)) {
+                // ID de un arranque anterior: el buffer no sirve para reanudar
+                suscriptor.cola.offer(EventoStream.reinicio(ultimoId));
+            } else if (ultimoIdRecibido != null) {
+                EventoStream primero = buffer.peekFirst();
+                if (primero != null && ultimoIdRecibido < primero.id - 1) {
+                    // Parte del historial ya salió del buffer: el cliente debe resincronizar
+                    suscriptor.cola.offer(EventoStream.reinicio(ultimoId));
+                }
+                for (EventoStream evento : buffer) {
+                    if (evento.id > ultimoIdRecibido && suscriptor.filtro.acepta(evento)
+                            && !suscriptor.cola.offer(evento)) {
+                        suscriptor.cola.clear();
+                        suscriptor.cola.offer(EventoStream.reinicio(ultimoId));
+                        break;
+                    }
+                }
+            }
+            suscriptores.add(suscriptor);
+        }
+
+        programar(suscriptor);
+        return emitter;
+    }
+
+    /**
+     * Recibe los cambios de envíos y los reparte a los suscriptores
+     *
+     * Las transferencias entre nodos no se emiten: el nodo que recibe el
+     * envío publica su alta.
+     */
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getTipo() == EnvioCambiadoEvent.Tipo.TRANSFERIDO) {
+            return; // El envío no cambió: lo notifica el nodo que lo recibe
+        }
+        synchronized (buffer) {
+            EventoStream evento = new EventoStream(++ultimoId, cambio);
+            if (buffer.size() >= capacidadBuffer) {
+                buffer.pollFirst();
+            }
+            buffer.addLast(evento);
+
+            for (Suscriptor suscriptor : suscriptores) {
+                if (suscriptor.descartado || !suscriptor.filtro.acepta(evento)) {
+                    continue;
+                }
+                if (suscriptor.cola.offer(evento)) {
+                    programar(suscriptor);
+                } else {
+                    // Cliente lento: se libera su cola y se cierra la conexión
+                    descartar(suscriptor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Número de suscriptores conectados
+     */
+    public int getSuscriptoresActivos() {
+        return suscriptores.size();
+    }
+
+    private void programar(Suscriptor suscriptor) {
+        if (suscriptor.programado.compareAndSet(false, true)) {
+            despachador().execute(() -> vaciar(suscriptor));
+        }
+    }
+
+    /**
+     * Envía al cliente los eventos pendientes de su cola
+     */
+    private void vaciar(Suscriptor suscriptor) {
+        try {
+            EventoStream evento;
+            while (!suscriptor.descartado && (evento = suscriptor.cola.poll()) != null) {
+                suscriptor.enviandoDesde = System.nanoTime();
+                suscriptor.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(evento.id))
+                        .name(evento.nombre)
+                        .data(evento.datos, MediaType.APPLICATION_JSON));
+                suscriptor.enviandoDesde = 0;
+            }
+        } catch (IOException | IllegalStateException e) {
+            suscriptor.descartado = true;
+        } finally {
+            suscriptor.enviandoDesde = 0;
+            suscriptor.programado.set(false);
+            if (suscriptor.compensado) {
+                retirarHiloExtra(suscriptor);
+            }
+        }
+        if (suscriptor.descartado) {
+            cerrar(suscriptor);
+            return;
+        }
+        // Un evento pudo llegar entre el último poll y la liberación del flag
+        if (!suscriptor.cola.isEmpty()) {
+            programar(suscriptor);
+        }
+    }
+
+    /**
+     * Deja de repartir eventos al suscriptor y cierra su conexión
+     *
+     * El emitter no se toca desde aquí: send y complete comparten monitor y
+     * un send bloqueado retendría a quien llama. Si no hay un envío en curso
+     * se programa un vaciado, que ve la marca y cierra; si lo hay, lo cierra
+     * el propio hilo del envío al terminar. Sigue en la lista de suscriptores
+     * hasta entonces para que el vigilante vea su envío bloqueado.
+     */
+    private void descartar(Suscriptor suscriptor) {
+        suscriptor.descartado = true;
+        suscriptor.cola.clear();
+        programar(suscriptor);
+    }
+
+    /**
+     * Descarta los suscriptores con un envío bloqueado más de envioMaxMs
+     */
+    private void descartarBloqueados() {
+        long limite = TimeUnit.MILLISECONDS.toNanos(envioMaxMs);
+        long ahora = System.nanoTime();
+        for (Suscriptor suscriptor : suscriptores) {
+            long desde = suscriptor.enviandoDesde;
+            if (desde != 0 && ahora - desde > limite) {
+                descartar(suscriptor);
+                anadirHiloExtra(suscriptor);
+            }
+        }
+    }
+
+    /**
+     * Añade un hilo al pool mientras dure el envío bloqueado del suscriptor
+     * (como mucho 3 veces los hilos configurados)
+     */
+    private synchronized void anadirHiloExtra(Suscriptor suscriptor) {
+        int base = Math.max(1, hilos);
+        if (suscriptor.compensado || suscriptor.enviandoDesde == 0 || hilosBloqueados >= 3 * base) {
+            return;
+        }
+        suscriptor.compensado = true;
+        hilosBloqueados++;
+        ThreadPoolExecutor pool = despachador();
+        pool.setMaximumPoolSize(base + hilosBloqueados);
+        pool.setCorePoolSize(base + hilosBloqueados);
+    }
+
+    /**
+     * Quita el hilo añadido por anadirHiloExtra al terminar el envío
+     */
+    private synchronized void retirarHiloExtra(Suscriptor suscriptor) {
+        if (!suscriptor.compensado) {
+            return;
+        }
+        suscriptor.compensado = false;
+        hilosBloqueados--;
+        int base = Math.max(1, hilos);
+        ThreadPoolExecutor pool = despachador();
+        pool.setCorePoolSize(base + hilosBloqueados);
+        pool.setMaximumPoolSize(base + hilosBloqueados);
+    }
+
+    private void cerrar(Suscriptor suscriptor) {
+        suscriptores.remove(suscriptor);
+        suscriptor.cola.clear();
+        try {
+            suscriptor.emitter.complete();
+        } catch (IllegalStateException e) {
+            // Ya estaba completado
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (vigilante != null) {
+            vigilante.shutdownNow();
+        }
+        for (Suscriptor suscriptor : suscriptores) {
+            cerrar(suscriptor);
+        }
+        if (despachador != null) {
+            despachador.shutdownNow();
+        }
+    }
+
+    /**
+     * Evento ya numerado y listo para enviar
+     */
+    private static final class EventoStream {
+
+        final long id;
+        final String nombre;
+        final Long envioId;
+        final String estado;
+        final String sistema;
+        final Map<String, Object> datos;
+
+        private EventoStream(long id, String nombre, Long envioId, String estado, String sistema,
+                             Map<String, Object> datos) {
+            this.id = id;
+            this.nombre = nombre;
+            this.envioId = envioId;
+            this.estado = estado;
+            this.sistema = sistema;
+            this.datos = datos;
+        }
+
+        EventoStream(long id, EnvioCambiadoEvent cambio) {
+            this(id, cambio.getTipo().name(), cambio.getId(), cambio.getEstado(), cambio.getSistema(),
+                    datos(cambio));
+        }
+
+        static EventoStream reinicio(long ultimoId) {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("mensaje", "Eventos perdidos: volver a consultar el estado completo");
+            datos.put("ultimoId", ultimoId);
+            return new EventoStream(ultimoId, "REINICIO", null, null, null, datos);
+        }
+
+        private static Map<String, Object> datos(EnvioCambiadoEvent cambio) {
+            EnvioDto envio = cambio.getActual() != null ? cambio.getActual() : cambio.getAnterior();
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("tipo", cambio.getTipo().name());
+            datos.put("id", cambio.getId());
+            datos.put("sistema", cambio.getSistema());
+            datos.put("estado", cambio.getEstado());
+            datos.put("timestamp", cambio.getTimestamp());
+            if (envio != null) {
+                datos.put("envio", envio);
+            }
+            return datos;
+        }
+    }
+
+    /**
+     * Filtro de suscripción por IDs, estado y sistema
+     */
+    private static final class Filtro {
+
+        final Set<Long> ids;
+        final String estado;
+        final String sistema;
+
+        Filtro(Set<Long> ids, String estado, String sistema) {
+            this.ids = ids == null || ids.isEmpty() ? null : Set.copyOf(ids);
+            this.estado = estado;
+            this.sistema = sistema;
+        }
+
+        boolean acepta(EventoStream evento) {
+            if (evento.envioId == null) {
+                return true;
+            }
+            if (ids != null && !ids.contains(evento.envioId)) {
+                return false;
+            }
+            if (estado != null && !estado.equalsIgnoreCase(evento.estado)) {
+                return false;
+            }
+            return sistema == null || sistema.equalsIgnoreCase(evento.sistema);
+        }
+    }
+
+    /**
+     * Cliente conectado con su cola acotada de eventos pendientes
+     */
+    private static final class Suscriptor {
+
+        final SseEmitter emitter;
+        final Filtro filtro;
+        final BlockingQueue<EventoStream> cola;
+        final AtomicBoolean programado = new AtomicBoolean();
+
+        /** Inicio (nanoTime) del send en curso, o 0 si no hay ninguno */
+        volatile long enviandoDesde;
+
+        /** Se dejó de repartirle eventos; el hilo que lo atienda cierra la conexión */
+        volatile boolean descartado;
+
+        /** Su envío bloqueado tiene un hilo extra en el pool (protegido por el servicio) */
+        volatile boolean compensado;
+
+        Suscriptor(SseEmitter emitter, Filtro filtro, int capacidadCola) {
+            this.emitter = emitter;
+            this.filtro = filtro;
+            this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidadCola));
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.logiservices.service;
+
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.model.EstadoEnvio;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Historial de cambios de estado de los envíos y tiempos de permanencia
+ *
+ * Cada envío guarda sus últimas transiciones en un buffer circular acotado
+ * de longs: [timestamp en ms | código de estado | código de sistema], con
+ * los textos codificados contra diccionarios pequeños.
+ *
+ * Al registrar una transición se calcula cuánto tiempo estuvo el envío en
+ * el estado anterior y se suma a un histograma logarítmico de ese estado y
+ * de su sistema. Los percentiles se leen del histograma (tamaño fijo), sin
+ * recalcular nada a partir de los historiales.
+ *
+ * Se alimenta de los EnvioCambiadoEvent: altas y modificaciones locales y
+ * cambios de estado confirmados por TMS, ACMS o SMCS. Los IDs de los envíos
+ * locales y los de cada sistema son espacios distintos, así que cada
+ * historial se identifica por su origen (LOCAL o el sistema) y su ID. El
+ * historial vive en memoria y empieza vacío en cada arranque.
+ */
+@Service
+public class HistorialEstadosService {
+
+    private static final int BITS_SISTEMA = 8;
+    private static final int BITS_ESTADO = 12;
+    private static final int BITS_CODIGOS = BITS_SISTEMA + BITS_ESTADO;
+
+    /** Origen de los historiales de envíos locales */
+    private static final String LOCAL = "LOCAL";
+
+    @Value("${envios.historial.max-transiciones:16}")
+    private int maxTransiciones;
+
+    @Value("${envios.historial.max-envios:1000000}")
+    private int maxEnvios;
+
+    private final ConcurrentHashMap<Clave, Historial> historiales = new ConcurrentHashMap<>();
+
+    private final Diccionario estados = new Diccionario((1 << BITS_ESTADO) - 1);
+    private final Diccionario sistemas = new Diccionario((1 << BITS_SISTEMA) - 1);
+
+    private final ConcurrentHashMap<String, Histograma> permanenciaPorEstado = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histograma> permanenciaPorSistema = new ConcurrentHashMap<>();
+
+    private final LongAdder descartados = new LongAdder();
+
+    @EventListener
+    public void onEnvioCambiado(EnvioCambiadoEvent cambio) {
+        if (cambio.getId() == null) {
+            return;
+        }
+        switch (cambio.getTipo()) {
+            case ELIMINADO:
+            case TRANSFERIDO:
+                // Un envío transferido se consulta en su nuevo dueño (ReenvioClusterFilter):
+                // aquí su historial ya no se alcanzaría y solo ocuparía hueco en maxEnvios
+                historiales.remove(new Clave(LOCAL, cambio.getId()));
+                break;
+            case ACTUALIZADO:
+                if (cambio.getAnterior() != null
+                        && textoEstado(cambio.getAnterior().getEstado()).equals(textoEstado(cambio.getEstado()))) {
+                    break; // Sin cambio de estado
+                }
+                registrar(new Clave(LOCAL, cambio.getId()), cambio.getEstado(), cambio.getSistema(),
+                        cambio.getTimestamp());
+                break;
+            case ESTADO_SISTEMA:
+                registrar(new Clave(textoSistema(cambio.getSistema()), cambio.getId()), cambio.getEstado(),
+                        cambio.getSistema(), cambio.getTimestamp());
+                break;
+            default:
+                registrar(new Clave(LOCAL, cambio.getId()), cambio.getEstado(), cambio.getSistema(),
+                        cambio.getTimestamp());
+        }
+    }
+
+    private void registrar(Clave clave, String estado, String sistema, long timestamp) {
+        Historial historial = historiales.get(clave);
+        if (historial == null) {
+            if (historiales.size() >= maxEnvios) {
+                descartados.increment();
+                return;
+            }
+            historial = historiales.computeIfAbsent(clave, k -> new Historial());
+        }
+
+        int codigoEstado = estados.codificar(textoEstado(estado));
+        int codigoSistema = sistemas.codificar(textoSistema(sistema));
+        long entrada = (timestamp << BITS_CODIGOS) | ((long) codigoEstado << BITS_SISTEMA) | codigoSistema;
+
+        synchronized (historial) {
+            if (historial.tamano > 0) {
+                long ultima = historial.ultima();
+                if (estadoDe(ultima) == codigoEstado) {
+                    return; // Mismo estado (p. ej. confirmación repetida de un sistema)
+                }
+                long permanencia = Math.max(0, timestamp - timestampDe(ultima));
+                histograma(permanenciaPorEstado, estados.texto(estadoDe(ultima))).registrar(permanencia);
+                histograma(permanenciaPorSistema, sistemas.texto(sistemaDe(ultima))).registrar(permanencia);
+            }
+            historial.agregar(entrada, maxTransiciones);
+        }
+    }
+
+    /**
+     * Transiciones registradas de un envío, de la más antigua a la más reciente
+     *
+     * @param sistema Sistema del envío (TMS, ACMS, SMCS), o null para un envío local
+     * @param id ID del envío en ese sistema
+     * @return Historial, o null si no hay transiciones registradas
+     */
+    public Map<String, Object> obtenerHistorial(String sistema, Long id) {
+        String origen = sistema != null && !sistema.isBlank() ? textoSistema(sistema) : LOCAL;
+        Historial historial = historiales.get(new Clave(origen, id));
+        if (historial == null) {
+            return null;
+        }
+        long[] entradas;
+        long total;
+        synchronized (historial) {
+            entradas = historial.copiar();
+            total = historial.total;
+        }
+
+        long ahora = System.currentTimeMillis();
+        List<Map<String, Object>> transiciones = new ArrayList<>(entradas.length);
+        for (int i = 0; i < entradas.length; i++) {
+            long desde = timestampDe(entradas[i]);
+            long hasta = i + 1 < entradas.length ? timestampDe(entradas[i + 1]) : ahora;
+            Map<String, Object> transicion = new LinkedHashMap<>();
+            transicion.put("estado", estados.texto(estadoDe(entradas[i])));
+            transicion.put("sistema", sistemas.texto(sistemaDe(entradas[i])));
+            transicion.put("desde", Instant.ofEpochMilli(desde).toString());
+            transicion.put("permanenciaMs", hasta - desde);
+            transicion.put("actual", i + 1 == entradas.length);
+            transiciones.add(transicion);
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("id", id);
+        resultado.put("origen", origen);
+        resultado.put("transiciones", transiciones);
+        resultado.put("totalRegistradas", total);
+        resultado.put("completo", total == entradas.length);
+        return resultado;
+    }
+
+    /**
+     * Percentiles de permanencia (ms) por estado y por sistema
+     */
+    public Map<String, Object> obtenerPermanencias() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("porEstado", resumir(permanenciaPorEstado));
+        resultado.put("porSistema", resumir(permanenciaPorSistema));
+        resultado.put("enviosConHistorial", historiales.size());
+        resultado.put("enviosDescartados", descartados.sum());
+        return resultado;
+    }
+
+    private static Map<String, Object> resumir(Map<String, Histograma> histogramas) {
+        Map<String, Object> resumen = new TreeMap<>();
+        histogramas.forEach((clave, histograma) -> resumen.put(clave, histograma.resumen()));
+        return resumen;
+    }
+
+    private static Histograma histograma(ConcurrentHashMap<String, Histograma> histogramas, String clave) {
+        return histogramas.computeIfAbsent(clave, k -> new Histograma());
+    }
+
+    private static String textoEstado(String estado) {
+        EstadoEnvio conocido = EstadoEnvio.desdeNombre(estado);
+        if (conocido != null) {
+            return conocido.getNombre();
+        }
+        return estado != null && !estado.isBlank() ? estado.trim() : "(sin valor)";
+    }
+
+    private static String textoSistema(String sistema) {
+        return sistema != null && !sistema.isBlank() ? sistema.trim().toUpperCase() : "(sin valor)";
+    }
+
+    private static long timestampDe(long entrada) {
+        return entrada >>> BITS_CODIGOS;
+    }
+
+    private static int estadoDe(long entrada) {
+        return (int) (entrada >>> BITS_SISTEMA) & ((1 << BITS_ESTADO) - 1);
+    }
+
+    private static int sistemaDe(long entrada) {
+        return (int) entrada & ((1 << BITS_SISTEMA) - 1);
+    }
+
+    /**
+     * Identificador de un historial: origen (LOCAL o sistema) e ID en ese origen
+     */
+    private record Clave(String origen, long id) {
+    }
+
+    /**
+     * Buffer circular de transiciones de un envío (protegido por su propio monitor)
+     *
+     * Empieza pequeño y crece hasta el máximo; a partir de ahí cada
+     * transición nueva reemplaza a la más antigua.
+     */
+    private static final class Historial {
+
+        private long[] entradas = new long[2];
+        private int inicio;
+        private int tamano;
+        private long total;
+
+        void agregar(long entrada, int maximo) {
+            if (tamano == entradas.length && entradas.length < maximo) {
+                long[] nuevas = new long[Math.min(maximo, entradas.length * 2)];
+                System.arraycopy(copiar(), 0, nuevas, 0, tamano);
+                entradas = nuevas;
+                inicio = 0;
+            }
+            if (tamano < entradas.length) {
+                entradas[(inicio + tamano) % entradas.length] = entrada;
+                tamano++;
+            } else {
+                entradas[inicio] = entrada;
+                inicio = (inicio + 1) % entradas.length;
+            }
+            total++;
+        }
+
+        long ultima() {
+            return entradas[(inicio + tamano - 1) % entradas.length];
+        }
+
+        long[] copiar() {
+            long[] copia = new long[tamano];
+            for (int i = 0; i < tamano; i++) {
+                copia[i] = entradas[(inicio + i) % entradas.length];
+            }
+            return copia;
+        }
+    }
+
+    /**
+     * Diccionario de textos pequeño y de solo anexado; el código 0 es el
+     * comodín para los textos que ya no caben
+     */
+    private static final class Diccionario {
+
+        private final int maximo;
+        private final ConcurrentHashMap<String, Integer> codigos = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<String> textos = new CopyOnWriteArrayList<>(List.of("(otro)"));
+
+        Diccionario(int maximo) {
+            this.maximo = maximo;
+        }
+
+        int codificar(String texto) {
+            Integer codigo = codigos.get(texto);
+            if (codigo != null) {
+                return codigo;
+            }
+            synchronized (this) {
+                codigo = codigos.get(texto);
+                if (codigo == null) {
+                    if (textos.size() > maximo) {
+                        return 0;
+                    }
+                    codigo = textos.size();
+                    textos.add(texto);
+                    codigos.put(texto, codigo);
+                }
+                return codigo;
+            }
+        }
+
+        String texto(int codigo) {
+            return codigo < textos.size() ? textos.get(codigo) : textos.get(0);
+        }
+    }
+
+    /**
+     * Histograma logarítmico concurrente de duraciones en ms
+     *
+     * Valores hasta 15 ms exactos; a partir de ahí 8 cubetas por potencia de
+     * dos (error relativo menor del 12,5 %). Ocupa lo mismo con 10 muestras
+     * que con 10 millones.
+     */
+    private static final class Histograma {
+
+        private static final int EXACTOS = 16;
+        private static final int SUBCUBETAS = 8;
+        private static final int CUBETAS = EXACTOS + (63 - 4) * SUBCUBETAS;
+
+        private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+        private final LongAdder muestras = new LongAdder();
+        private final LongAdder suma = new LongAdder();
+        private final AtomicLong maximo = new AtomicLong();
+
+        void registrar(long valor) {
+            cubetas.incrementAndGet(cubeta(valor));
+            muestras.increment();
+            suma.add(valor);
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+
+        static int cubeta(long valor) {
+            if (valor < EXACTOS) {
+                return (int) Math.max(0, valor);
+            }
+            int exponente = 63 - Long.numberOfLeadingZeros(valor);
+            int sub = (int) (valor >>> (exponente - 3)) & (SUBCUBETAS - 1);
+            return EXACTOS + (exponente - 4) * SUBCUBETAS + sub;
+        }
+
+        /** Mayor valor que cae en la cubeta */
+        static long limiteSuperior(int cubeta) {
+            if (cubeta < EXACTOS) {
+                return cubeta;
+            }
+            int exponente = (cubeta - EXACTOS) / SUBCUBETAS + 4;
+            int sub = (cubeta - EXACTOS) % SUBCUBETAS;
+            long ancho = 1L << (exponente - 3);
+            return ((SUBCUBETAS + sub) * ancho) + ancho - 1;
+        }
+
+        long percentil(double p, long[] copia, long total) {
+            long objetivo = (long) Math.ceil(p * total);
+            long acumulado = 0;
+            for (int i = 0; i < copia.length; i++) {
+                acumulado += copia[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(limiteSuperior(i), maximo.get());
+                }
+            }
+            return maximo.get();
+        }
+
+        Map<String, Object> resumen() {
+            long[] copia = new long[CUBETAS];
+            long total = 0;
+            for (int i = 0; i < CUBETAS; i++) {
+                copia[i] = cubetas.get(i);
+                total += copia[i];
+            }
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("muestras", total);
+            if (total == 0) {
+                return resumen;
+            }
+            resumen.put("mediaMs", suma.sum() / Math.max(1, muestras.sum()));
+            resumen.put("p50Ms", percentil(0.50, copia, total));
+            resumen.put("p90Ms", percentil(0.90, copia, total));
+            resumen.put("p99Ms", percentil(0.99, copia, total));
+            resumen.put("maximoMs", maximo.get());
+            return resumen;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.logiservices.service;
+
+import com.logiservices.cache.CacheVolcable;
+import com.logiservices.client.AcmsServiceClient;
+import com.logiservices.client.SmcsServiceClient;
+import com.logiservices.client.TmsServiceClient;
+import feign.Request;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Información de los sistemas TMS, ACMS y SMCS refrescada en segundo plano
+ *
+ * /api/v1/envios/sistemas/info es público: en lugar de consultar los tres
+ * sistemas en cada petición, un programador los consulta en paralelo cada
+ * cierto intervalo y guarda el resultado como una instantánea inmutable.
+ * Las peticiones solo leen la instantánea actual (O(1)), por lo que la
+ * carga sobre los sistemas es constante sin importar el tráfico.
+ *
+ * Cada consulta lleva sus propios tiempos de conexión y lectura
+ * (envios.sistemas-info.timeout-ms): orTimeout solo deja de esperar el
+ * resultado, y sin ellos un sistema colgado retendría un hilo de consulta
+ * durante el timeout de lectura de Feign (60 s) y bloquearía los
+ * refrescos siguientes.
+ *
+ * La instantánea se conserva entre reinicios (ver ArranqueEnCaliente): si
+ * el primer refresco aún no ha terminado, se publica la del volcado con
+ * su antigüedad real en lugar de "Información aún no disponible".
+ */
+@Service
+public class InfoSistemasService implements CacheVolcable {
+
+    @Autowired
+    private TmsServiceClient tmsServiceClient;
+
+    @Autowired
+    private AcmsServiceClient acmsServiceClient;
+
+    @Autowired
+    private SmcsServiceClient smcsServiceClient;
+
+    @Value("${envios.sistemas-info.intervalo-segundos:30}")
+    private long intervalo;
+
+    @Value("${envios.sistemas-info.timeout-ms:5000}")
+    private long timeout;
+
+    private ScheduledExecutorService programador;
+    private ExecutorService consultas;
+    private Request.Options opciones;
+
+    /** Última instantánea publicada (se reemplaza completa, nunca se modifica) */
+    private volatile Instantanea actual = Instantanea.pendiente();
+
+    @PostConstruct
+    void iniciar() {
+        opciones = new Request.Options(timeout, TimeUnit.MILLISECONDS, timeout, TimeUnit.MILLISECONDS, true);
+        consultas = Executors.newFixedThreadPool(3, r -> {
+            Thread hilo = new Thread(r, "sistemas-info");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sistemas-info-refresco");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::refrescar, 0, intervalo, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Obtiene la última instantánea disponible
+     */
+    public Instantanea getInstantanea() {
+        return actual;
+    }
+
+    /**
+     * Consulta los tres sistemas en paralelo y publica una nueva instantánea
+     */
+    void refrescar() {
+        CompletableFuture<Map<String, Object>> tms = consultar(() -> tmsServiceClient.obtenerInfo(opciones));
+        CompletableFuture<Map<String, Object>> acms = consultar(() -> acmsServiceClient.obtenerInfo(opciones));
+        CompletableFuture<Map<String, Object>> smcs = consultar(() -> smcsServiceClient.obtenerInfo(opciones));
+
+        Map<String, Object> sistemas = new LinkedHashMap<>();
+        sistemas.put("TMS", tms.join());
+        sistemas.put("ACMS", acms.join());
+        sistemas.put("SMCS", smcs.join());
+
+        synchronized (this) {
+            actual = new Instantanea(Map.copyOf(sistemas), Instant.now());
+        }
+    }
+
+    @Override
+    public String getNombreVolcado() {
+        return "sistemasInfo";
+    }
+
+    @Override
+    public List<List<Object>> volcar() {
+        Instantanea instantanea = actual;
+        if (instantanea.getActualizadoEn() == null) {
+            return List.of();
+        }
+        long edad = Math.max(0, Instant.now().toEpochMilli() - instantanea.getActualizadoEn().toEpochMilli());
+        return List.of(List.of("instantanea", edad, instantanea.getSistemas()));
+    }
+
+    /**
+     * Publica la instantánea del volcado solo si todavía no hay una más reciente
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized int cargar(List<List<Object>> entradas) {
+        for (List<Object> entrada : entradas) {
+            if ("instantanea".equals(entrada.get(0)) && entrada.get(2) instanceof Map && actual.getActualizadoEn() == null) {
+                long edad = ((Number) entrada.get(1)).longValue();
+                actual = new Instantanea(Map.copyOf((Map<String, Object>) entrada.get(2)), Instant.now().minusMillis(edad));
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private CompletableFuture<Map<String, Object>> consultar(Supplier<Map<String, Object>> llamada) {
+        return CompletableFuture.supplyAsync(llamada, consultas)
+                .orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> Map.of("error", "Servicio no disponible"))
+                .thenApply(info -> info != null ? info : Map.of("error", "Servicio no disponible"));
+    }
+
+    @PreDestroy
+    void detener() {
+        programador.shutdownNow();
+        consultas.shutdownNow();
+    }
+
+    /**
+     * Instantánea inmutable de la información de los sistemas
+     */
+    public static final class Instantanea {
+
+        private final Map<String, Object> sistemas;
+        private final Instant actualizadoEn;
+
+        Instantanea(Map<String, Object> sistemas, Instant actualizadoEn) {
+            this.sistemas = sistemas;
+            this.actualizadoEn = actualizadoEn;
+        }
+
+        static Instantanea pendiente() {
+            Map<String, Object> pendiente = Map.of("error", "Información aún no disponible");
+            return new Instantanea(Map.of("TMS", pendiente, "ACMS", pendiente, "SMCS", pendiente), null);
+        }
+
+        public Map<String, Object> getSistemas() {
+            return sistemas;
+        }
+
+        /**
+         * Momento de la última actualización (null si aún no se ha completado ninguna)
+         */
+        public Instant getActualizadoEn() {
+            return actualizadoEn;
+        }
+
+        /**
+         * Antigüedad de la instantánea en segundos (-1 si aún no hay datos)
+         */
+        public long getEdadSegundos() {
+            if (actualizadoEn == null) {
+                return -1;
+            }
+            return Math.max(0, Instant.now().getEpochSecond() - actualizadoEn.getEpochSecond());
+        }
+    }
+}
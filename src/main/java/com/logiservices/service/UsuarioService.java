@@ -12,10 +12,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Servicio para gestión de usuarios
@@ -174,55 +177,57 @@ public class UsuarioService implements UserDetailsService {
     }
 
     /**
-     * Crea usuarios de ejemplo para testing
+     * Indica si ya hay algún usuario registrado
      */
-    public void crearUsuariosEjemplo() {
-        // Solo crear si no existen usuarios
-        if (usuarioRepository.count() == 0) {
-
-            // Usuario Administrador
-            Usuario admin = new Usuario();
-            admin.setUsername("admin");
-            admin.setEmail("admin@logiservices.com");
-            admin.setPassword("admin123");
-            admin.setNombreCompleto("Administrador del Sistema");
-            Set<Rol> rolesAdmin = new HashSet<>();
-            rolesAdmin.add(Rol.ADMIN);
-            admin.setRoles(rolesAdmin);
-            crearUsuario(admin);
-
-            // Usuario Operador
-            Usuario operador = new Usuario();
-            operador.setUsername("operador");
-            operador.setEmail("operador@logiservices.com");
-            operador.setPassword("operador123");
-            operador.setNombreCompleto("Operador de Logística");
-            Set<Rol> rolesOperador = new HashSet<>();
-            rolesOperador.add(Rol.OPERADOR);
-            operador.setRoles(rolesOperador);
-            crearUsuario(operador);
-
-            // Usuario Consultor
-            Usuario consultor = new Usuario();
-            consultor.setUsername("consultor");
-            consultor.setEmail("consultor@logiservices.com");
-            consultor.setPassword("consultor123");
-            consultor.setNombreCompleto("Consultor de Envíos");
-            Set<Rol> rolesConsultor = new HashSet<>();
-            rolesConsultor.add(Rol.CONSULTOR);
-            consultor.setRoles(rolesConsultor);
-            crearUsuario(consultor);
-
-            // Usuario Cliente
-            Usuario cliente = new Usuario();
-            cliente.setUsername("cliente");
-            cliente.setEmail("cliente@logiservices.com");
-            cliente.setPassword("cliente123");
-            cliente.setNombreCompleto("Cliente Empresarial");
-            Set<Rol> rolesCliente = new HashSet<>();
-            rolesCliente.add(Rol.CLIENTE);
-            cliente.setRoles(rolesCliente);
-            crearUsuario(cliente);
+    public boolean hayUsuarios() {
+        return usuarioRepository.count() > 0;
+    }
+
+    /**
+     * Crea varios usuarios en una sola operación
+     *
+     * BCrypt es deliberadamente lento, así que las contraseñas se encriptan
+     * en paralelo en el executor indicado; después todos los usuarios se
+     * guardan con un único saveAll (inserciones agrupadas por JDBC).
+     *
+     * @param usuarios Usuarios a crear, con la contraseña en claro
+     * @param executor Executor en el que se encriptan las contraseñas
+     * @return Usuarios creados, en el mismo orden
+     */
+    public List<Usuario> crearUsuariosLote(List<Usuario> usuarios, Executor executor) {
+        List<CompletableFuture<String>> passwords = new ArrayList<>(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            String password = usuario.getPassword();
+            passwords.add(CompletableFuture.supplyAsync(() -> passwordEncoder.encode(password), executor));
         }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < usuarios.size(); i++) {
+            Usuario usuario = usuarios.get(i);
+            usuario.setPassword(passwords.get(i).join());
+            usuario.setFechaCreacion(ahora);
+            usuario.setActivo(true);
+        }
+        return usuarioRepository.saveAll(usuarios);
+    }
+
+    /**
+     * Usuarios de ejemplo para testing (sin guardar, con la contraseña en claro)
+     */
+    public List<Usuario> usuariosEjemplo() {
+        return List.of(
+            usuarioEjemplo("admin", "admin123", "Administrador del Sistema", Rol.ADMIN),
+            usuarioEjemplo("operador", "operador123", "Operador de Logística", Rol.OPERADOR),
+            usuarioEjemplo("consultor", "consultor123", "Consultor de Envíos", Rol.CONSULTOR),
+            usuarioEjemplo("cliente", "cliente123", "Cliente Empresarial", Rol.CLIENTE)
+        );
+    }
+
+    private static Usuario usuarioEjemplo(String username, String password, String nombreCompleto, Rol rol) {
+        Usuario usuario = new Usuario(username, username + "@logiservices.com", password, nombreCompleto);
+        Set<Rol> roles = new HashSet<>();
+        roles.add(rol);
+        usuario.setRoles(roles);
+        return usuario;
     }
 }
@@ -0,0 +1,107 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.model.EstadoEnvio;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Convierte envíos entre EnvioDto y EnvioCompacto
+ *
+ * Usa tres diccionarios compartidos:
+ * - lugares: orígenes y destinos (las mismas ciudades aparecen en ambos)
+ * - estados: los primeros códigos son los de EstadoEnvio, en su orden, de
+ *   modo que el código de un estado conocido es su ordinal; los estados
+ *   de texto libre reciben los códigos siguientes
+ * - sistemas: TMS, ACMS, SMCS
+ */
+final class CodificadorEnvios {
+
+    private final Diccionario lugares = new Diccionario();
+    private final Diccionario estados;
+    private final Diccionario sistemas = new Diccionario("TMS", "ACMS", "SMCS");
+
+    CodificadorEnvios() {
+        EstadoEnvio[] conocidos = EstadoEnvio.values();
+        String[] nombres = new String[conocidos.length];
+        for (int i = 0; i < conocidos.length; i++) {
+            nombres[i] = conocidos[i].getNombre();
+        }
+        estados = new Diccionario(nombres);
+    }
+
+    EnvioCompacto codificar(long id, EnvioDto datos, long version) {
+        return new EnvioCompacto(id, version,
+                codigoLugar(datos.getOrigen()),
+                codigoLugar(datos.getDestino()),
+                codigoEstado(datos.getEstado()),
+                codigoSistema(datos.getSistemaOrigen()));
+    }
+
+    EnvioDto decodificar(EnvioCompacto envio) {
+        return decodificar(envio.id, envio.version, envio.origen, envio.destino, envio.estado, envio.sistema);
+    }
+
+    EnvioDto decodificar(long id, long version, int origen, int destino, int estado, int sistema) {
+        return new EnvioDto(
+            id,
+            lugares.decodificar(origen),
+            lugares.decodificar(destino),
+            estados.decodificar(estado),
+            sistemas.decodificar(sistema),
+            version
+        );
+    }
+
+    int codigoLugar(String lugar) {
+        return lugares.codificar(lugar);
+    }
+
+    short codigoEstado(String estado) {
+        int codigo = estados.codificar(normalizarEstado(estado));
+        if (codigo > Short.MAX_VALUE) {
+            throw new IllegalStateException("Demasiados valores distintos de estado");
+        }
+        return (short) codigo;
+    }
+
+    byte codigoSistema(String sistema) {
+        int codigo = sistemas.codificar(sistema);
+        if (codigo > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Demasiados valores distintos de sistema");
+        }
+        return (byte) codigo;
+    }
+
+    String estadoTexto(int codigo) {
+        return estados.decodificar(codigo);
+    }
+
+    String sistemaTexto(int codigo) {
+        return sistemas.decodificar(codigo);
+    }
+
+    /**
+     * Códigos de estado que coinciden con el texto (sin distinguir mayúsculas)
+     */
+    void codigosEstado(String estado, IntConsumer consumidor) {
+        EstadoEnvio conocido = EstadoEnvio.desdeNombre(estado);
+        if (conocido != null) {
+            consumidor.accept(conocido.ordinal());
+        } else {
+            estados.buscarIgnorandoMayusculas(estado, consumidor);
+        }
+    }
+
+    /**
+     * Códigos de sistema que coinciden con el texto (sin distinguir mayúsculas)
+     */
+    void codigosSistema(String sistema, IntConsumer consumidor) {
+        sistemas.buscarIgnorandoMayusculas(sistema, consumidor);
+    }
+
+    private static String normalizarEstado(String estado) {
+        EstadoEnvio conocido = EstadoEnvio.desdeNombre(estado);
+        return conocido != null ? conocido.getNombre() : estado;
+    }
+}
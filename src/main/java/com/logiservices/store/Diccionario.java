@@ -0,0 +1,92 @@
+package com.logiservices.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Diccionario de textos compartidos (solo crece)
+ *
+ * Asigna un código entero a cada texto distinto. Los envíos guardan el
+ * código en lugar del String, de modo que todos los envíos con origen
+ * "Bogotá" comparten una única instancia del texto. El código -1
+ * representa null.
+ *
+ * La codificación de un texto ya conocido y la decodificación no toman
+ * locks; solo el alta de un texto nuevo se serializa.
+ */
+final class Diccionario {
+
+    static final int NULO = -1;
+
+    private final ConcurrentHashMap<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[] textos = new String[16];
+    private int tamano;
+
+    /**
+     * @param iniciales Textos que reciben los primeros códigos, en orden
+     */
+    Diccionario(String... iniciales) {
+        for (String texto : iniciales) {
+            codificar(texto);
+        }
+    }
+
+    /**
+     * Obtiene el código del texto, dándolo de alta si es nuevo
+     */
+    int codificar(String texto) {
+        if (texto == null) {
+            return NULO;
+        }
+        Integer codigo = codigos.get(texto);
+        if (codigo != null) {
+            return codigo;
+        }
+        synchronized (this) {
+            codigo = codigos.get(texto);
+            if (codigo != null) {
+                return codigo;
+            }
+            String[] actuales = textos;
+            if (tamano == actuales.length) {
+                actuales = Arrays.copyOf(actuales, tamano * 2);
+            }
+            actuales[tamano] = texto;
+            // Se publica el array antes que el código: quien lee el código ve el texto
+            textos = actuales;
+            codigos.put(texto, tamano);
+            return tamano++;
+        }
+    }
+
+    /**
+     * Obtiene el código de un texto ya conocido, o NULO si no existe
+     */
+    int buscar(String texto) {
+        Integer codigo = texto == null ? null : codigos.get(texto);
+        return codigo != null ? codigo : NULO;
+    }
+
+    /**
+     * Entrega los códigos de todos los textos iguales al dado sin distinguir mayúsculas
+     */
+    void buscarIgnorandoMayusculas(String texto, IntConsumer consumidor) {
+        if (texto == null) {
+            return;
+        }
+        codigos.forEach((conocido, codigo) -> {
+            if (conocido.equalsIgnoreCase(texto)) {
+                consumidor.accept(codigo);
+            }
+        });
+    }
+
+    String decodificar(int codigo) {
+        return codigo == NULO ? null : textos[codigo];
+    }
+
+    int tamano() {
+        return codigos.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.logiservices.store;
+
+/**
+ * Representación compacta e inmutable de un envío en memoria
+ *
+ * En lugar de cuatro String (y dos Long) por envío, guarda códigos de los
+ * diccionarios compartidos del almacén. Con oops comprimidos ocupa 40
+ * bytes, frente a ~250 de un {@link com.logiservices.dto.EnvioDto} con sus
+ * textos propios. Solo se convierte a EnvioDto al salir del almacén.
+ */
+final class EnvioCompacto {
+
+    final long id;
+    final long version;
+    final int origen;
+    final int destino;
+    final short estado;
+    final byte sistema;
+
+    EnvioCompacto(long id, long version, int origen, int destino, short estado, byte sistema) {
+        this.id = id;
+        this.version = version;
+        this.origen = origen;
+        this.destino = destino;
+        this.estado = estado;
+        this.sistema = sistema;
+    }
+}
@@ -0,0 +1,150 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de envíos locales del Service Facade
+ *
+ * Abstrae dónde viven los envíos locales para que EnvioService pueda
+ * trabajar con distintas implementaciones (memoria + WAL, JPA, ...).
+ * La implementación activa se elige con la propiedad envios.almacen.
+ */
+public interface EnvioStore {
+
+    /**
+     * Busca un envío por su ID
+     *
+     * @param id ID del envío
+     * @return EnvioDto encontrado, o null si no existe
+     */
+    EnvioDto buscarPorId(Long id);
+
+    /**
+     * Verifica si existe un envío con el ID dado
+     */
+    boolean existe(Long id);
+
+    /**
+     * Crea un envío asignándole un ID nuevo
+     *
+     * @param datos Datos del envío (el ID se ignora)
+     * @return Envío creado con su ID
+     */
+    EnvioDto crear(EnvioDto datos);
+
+    /**
+     * Crea varios envíos en una sola operación
+     *
+     * @param datos Datos de los envíos (los IDs se ignoran)
+     * @return Envíos creados, en el mismo orden
+     */
+    List<EnvioDto> crearLote(List<EnvioDto> datos);
+
+    /**
+     * Reemplaza los datos de un envío existente
+     *
+     * @return Envío actualizado, o null si no existe
+     */
+    default EnvioDto actualizar(Long id, EnvioDto datos) {
+        return actualizar(id, datos, null);
+    }
+
+    /**
+     * Reemplaza los datos de un envío solo si su versión coincide (compare-and-set)
+     *
+     * Cada actualización incrementa la versión del envío.
+     *
+     * @param versionEsperada Versión que debe tener el envío, o null para no comprobarla
+     * @return Envío actualizado con su nueva versión, o null si no existe
+     * @throws com.logiservices.exception.ConflictoVersionException si la versión no coincide
+     */
+    EnvioDto actualizar(Long id, EnvioDto datos, Long versionEsperada);
+
+    /**
+     * Elimina un envío
+     *
+     * @return Envío eliminado, o null si no existía
+     */
+    EnvioDto eliminar(Long id);
+
+    /**
+     * Lista todos los envíos
+     */
+    List<EnvioDto> listar();
+
+    /**
+     * Recorre todos los envíos sin reunirlos en una lista
+     *
+     * Para recorridos completos (construcción de índices): las
+     * implementaciones leen por tramos o páginas, de modo que la memoria no
+     * crece con el tamaño del almacén. No es una foto consistente: los
+     * cambios concurrentes pueden verse o no.
+     *
+     * @param visitante Recibe cada envío
+     */
+    default void recorrer(Consumer<EnvioDto> visitante) {
+        listar().forEach(visitante);
+    }
+
+    /**
+     * Busca envíos por sistema de origen (TMS, ACMS, SMCS)
+     */
+    List<EnvioDto> buscarPorSistemaOrigen(String sistemaOrigen);
+
+    /**
+     * Busca envíos por estado
+     */
+    List<EnvioDto> buscarPorEstado(String estado);
+
+    /**
+     * Total de envíos almacenados
+     */
+    long contar();
+
+    /**
+     * Conteo de envíos agrupados por sistema de origen
+     */
+    Map<String, Long> contarPorSistema();
+
+    /**
+     * Conteo de envíos agrupados por estado
+     */
+    Map<String, Long> contarPorEstado();
+
+    /**
+     * Indica si el almacén puede repartirse entre nodos (modo cluster): asigna
+     * los IDs de las altas según {@link PropiedadIds} e implementa {@link #importar}
+     */
+    default boolean admiteParticionado() {
+        return false;
+    }
+
+    /**
+     * Guarda un envío recibido de otro nodo conservando su ID y su versión
+     *
+     * Si ya existe con una versión igual o mayor no se modifica.
+     *
+     * @return true si se guardó
+     */
+    default boolean importar(EnvioDto envio) {
+        throw new UnsupportedOperationException("El almacén no admite particionado");
+    }
+
+    /**
+     * Retira un envío que otro nodo confirmó haber recibido, si sigue en la
+     * versión transferida
+     *
+     * Publica TRANSFERIDO, no ELIMINADO: el envío no se borró, solo cambió
+     * de nodo. La comparación de versión y la retirada son atómicas respecto
+     * al resto de escrituras del almacén.
+     *
+     * @return true si se retiró; false si ya no existe o cambió después de transferirlo
+     */
+    default boolean retirarTransferido(Long id, long version) {
+        throw new UnsupportedOperationException("El almacén no admite particionado");
+    }
+}
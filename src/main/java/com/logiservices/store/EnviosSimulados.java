@@ -0,0 +1,34 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+
+import java.util.List;
+
+/**
+ * Datos simulados iniciales del almacén local
+ *
+ * Simulamos datos que en el futuro vendrán de TMS / ACMS / SMCS
+ */
+final class EnviosSimulados {
+
+    private EnviosSimulados() {}
+
+    static List<EnvioDto> crear() {
+        return List.of(
+            // Datos simulados de TMS (Transport Management System)
+            new EnvioDto(123L, "Bogotá", "Medellín", "En tránsito", "TMS"),
+            new EnvioDto(124L, "Cali", "Pereira", "En tránsito", "TMS"),
+            new EnvioDto(125L, "Bucaramanga", "Cartagena", "Pendiente", "TMS"),
+
+            // Datos simulados de ACMS (Air Cargo Management System)
+            new EnvioDto(456L, "Cali", "Cartagena", "Entregado", "ACMS"),
+            new EnvioDto(457L, "Bogotá", "Miami", "En tránsito", "ACMS"),
+            new EnvioDto(458L, "Medellín", "Panamá", "Entregado", "ACMS"),
+
+            // Datos simulados de SMCS (Sea Management Cargo System)
+            new EnvioDto(789L, "Barranquilla", "Buenaventura", "Pendiente", "SMCS"),
+            new EnvioDto(790L, "Cartagena", "Valencia", "En tránsito", "SMCS"),
+            new EnvioDto(791L, "Buenaventura", "Shanghai", "Entregado", "SMCS")
+        );
+    }
+}
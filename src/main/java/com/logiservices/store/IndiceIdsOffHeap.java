@@ -0,0 +1,142 @@
+package com.logiservices.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Índice primitivo ID -> posición fuera del heap
+ *
+ * Tabla hash de direccionamiento abierto (sondeo lineal) sobre un único
+ * ByteBuffer directo: cada celda es [long id][int posicion]. Las bajas
+ * usan borrado con desplazamiento hacia atrás, sin marcas de borrado, de
+ * modo que la tabla no se degrada con altas y bajas repetidas.
+ *
+ * El ID 0 marca una celda vacía (los IDs de envío empiezan en 1).
+ * No es thread-safe: lo protege el lock del almacén. buscar se usa también
+ * en lecturas optimistas sin lock; por eso la tabla es volatile y buscar
+ * deriva la máscara del propio buffer que lee, nunca de los campos que
+ * crecer cambia por separado.
+ */
+final class IndiceIdsOffHeap {
+
+    private static final int CELDA = Long.BYTES + Integer.BYTES;
+    private static final long VACIO = 0L;
+
+    private volatile ByteBuffer tabla;
+    private int capacidad;
+    private int mascara;
+    private int tamano;
+
+    IndiceIdsOffHeap(int capacidadInicial) {
+        asignar(Integer.highestOneBit(Math.max(16, capacidadInicial * 2 - 1)));
+    }
+
+    private void asignar(int nuevaCapacidad) {
+        long bytes = (long) nuevaCapacidad * CELDA;
+        if (nuevaCapacidad <= 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("El índice de IDs no puede crecer a " + nuevaCapacidad + " celdas");
+        }
+        capacidad = nuevaCapacidad;
+        mascara = nuevaCapacidad - 1;
+        tabla = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Posición del ID, o -1 si no está
+     */
+    int buscar(long id) {
+        ByteBuffer t = tabla;
+        int m = t.capacity() / CELDA - 1;
+        int celda = hash(id) & m;
+        while (true) {
+            long actual = t.getLong(celda * CELDA);
+            if (actual == id) {
+                return t.getInt(celda * CELDA + Long.BYTES);
+            }
+            if (actual == VACIO) {
+                return -1;
+            }
+            celda = (celda + 1) & m;
+        }
+    }
+
+    void poner(long id, int posicion) {
+        if ((tamano + 1) * 2 > capacidad) {
+            crecer();
+        }
+        int celda = hash(id) & mascara;
+        while (true) {
+            long actual = tabla.getLong(celda * CELDA);
+            if (actual == VACIO || actual == id) {
+                if (actual == VACIO) {
+                    tamano++;
+                }
+                tabla.putLong(celda * CELDA, id);
+                tabla.putInt(celda * CELDA + Long.BYTES, posicion);
+                return;
+            }
+            celda = (celda + 1) & mascara;
+        }
+    }
+
+    void quitar(long id) {
+        int celda = hash(id) & mascara;
+        while (true) {
+            long actual = tabla.getLong(celda * CELDA);
+            if (actual == VACIO) {
+                return;
+            }
+            if (actual == id) {
+                break;
+            }
+            celda = (celda + 1) & mascara;
+        }
+        tamano--;
+
+        // Desplaza hacia atrás las celdas siguientes que ya no serían alcanzables
+        int hueco = celda;
+        int siguiente = (celda + 1) & mascara;
+        while (true) {
+            long clave = tabla.getLong(siguiente * CELDA);
+            if (clave == VACIO) {
+                break;
+            }
+            int ideal = hash(clave) & mascara;
+            // La celda se mueve si su posición ideal no está entre el hueco y ella (circularmente)
+            if (((siguiente - ideal) & mascara) >= ((siguiente - hueco) & mascara)) {
+                tabla.putLong(hueco * CELDA, clave);
+                tabla.putInt(hueco * CELDA + Long.BYTES, tabla.getInt(siguiente * CELDA + Long.BYTES));
+                hueco = siguiente;
+            }
+            siguiente = (siguiente + 1) & mascara;
+        }
+        tabla.putLong(hueco * CELDA, VACIO);
+    }
+
+    void vaciar() {
+        asignar(capacidad);
+        tamano = 0;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    private void crecer() {
+        ByteBuffer anterior = tabla;
+        int capacidadAnterior = capacidad;
+        asignar(capacidad * 2);
+        tamano = 0;
+        for (int celda = 0; celda < capacidadAnterior; celda++) {
+            long id = anterior.getLong(celda * CELDA);
+            if (id != VACIO) {
+                poner(id, anterior.getInt(celda * CELDA + Long.BYTES));
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
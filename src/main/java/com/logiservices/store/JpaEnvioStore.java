@@ -0,0 +1,229 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.exception.ConflictoVersionException;
+import com.logiservices.model.Envio;
+import com.logiservices.model.EstadoEnvio;
+import com.logiservices.repository.EnvioRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de envíos respaldado por JPA (envios.almacen=jpa)
+ *
+ * Las altas en lote se hacen en una única transacción para que Hibernate
+ * las agrupe en batches JDBC (ver hibernate.jdbc.batch_size). Las lecturas
+ * usan las proyecciones de EnvioRepository.
+ *
+ * Los EnvioCambiadoEvent se publican después del commit: los listeners
+ * (cachés, índices, SSE, historial) no deben ver cambios que luego se
+ * deshacen, ni invalidar una respuesta antes de que el nuevo estado sea
+ * visible para otras transacciones.
+ */
+@Component
+@ConditionalOnProperty(name = "envios.almacen", havingValue = "jpa")
+public class JpaEnvioStore implements EnvioStore {
+
+    /** Envíos por página en los recorridos completos */
+    private static final int PAGINA_RECORRIDO = 1000;
+
+    @Autowired
+    private EnvioRepository envioRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Carga los datos simulados si la tabla está vacía
+     *
+     * Los IDs los asigna la secuencia, por lo que no coinciden con los del
+     * almacén en memoria.
+     */
+    @PostConstruct
+    void inicializar() {
+        if (envioRepository.count() == 0) {
+            crearLote(EnviosSimulados.crear());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EnvioDto buscarPorId(Long id) {
+        return envioRepository.findDtoById(id).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existe(Long id) {
+        return envioRepository.existsById(id);
+    }
+
+    @Override
+    @Transactional
+    public EnvioDto crear(EnvioDto datos) {
+        EnvioDto creado = aDto(envioRepository.save(aEntidad(datos)));
+        publicar(EnvioCambiadoEvent.creado(creado));
+        return creado;
+    }
+
+    @Override
+    @Transactional
+    public List<EnvioDto> crearLote(List<EnvioDto> datos) {
+        List<Envio> entidades = new ArrayList<>(datos.size());
+        for (EnvioDto dato : datos) {
+            entidades.add(aEntidad(dato));
+        }
+
+        List<EnvioDto> creados = new ArrayList<>(datos.size());
+        for (Envio envio : envioRepository.saveAll(entidades)) {
+            EnvioDto creado = aDto(envio);
+            publicar(EnvioCambiadoEvent.creado(creado));
+            creados.add(creado);
+        }
+        return creados;
+    }
+
+    @Override
+    @Transactional
+    public EnvioDto actualizar(Long id, EnvioDto datos, Long versionEsperada) {
+        Envio envio = envioRepository.findById(id).orElse(null);
+        if (envio == null) {
+            return null;
+        }
+        if (versionEsperada != null && !versionEsperada.equals(envio.getVersion())) {
+            throw new ConflictoVersionException(id, versionEsperada, envio.getVersion());
+        }
+        EnvioDto anterior = aDto(envio);
+
+        // El UPDATE se emite con flush (dirty checking) y lleva la condición
+        // de versión: si otra transacción ganó la carrera falla con
+        // ObjectOptimisticLockingFailureException
+        envio.setOrigen(datos.getOrigen());
+        envio.setDestino(datos.getDestino());
+        envio.setEstado(datos.getEstado());
+        envio.setSistemaOrigen(datos.getSistemaOrigen());
+        envioRepository.flush();
+
+        EnvioDto actualizado = aDto(envio);
+        publicar(EnvioCambiadoEvent.actualizado(anterior, actualizado));
+        return actualizado;
+    }
+
+    @Override
+    @Transactional
+    public EnvioDto eliminar(Long id) {
+        Envio envio = envioRepository.findById(id).orElse(null);
+        if (envio == null) {
+            return null;
+        }
+        envioRepository.delete(envio);
+
+        EnvioDto eliminado = aDto(envio);
+        publicar(EnvioCambiadoEvent.eliminado(eliminado));
+        return eliminado;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<EnvioDto> listar() {
+        return envioRepository.findAllDtos();
+    }
+
+    /**
+     * Recorre la tabla por páginas de PAGINA_RECORRIDO, cada una en su propia
+     * transacción de lectura (paginación por ID, sin OFFSET)
+     */
+    @Override
+    public void recorrer(Consumer<EnvioDto> visitante) {
+        long desdeId = 0;
+        while (true) {
+            List<EnvioDto> pagina = envioRepository.findDtosDesdeId(desdeId, PageRequest.of(0, PAGINA_RECORRIDO));
+            for (EnvioDto envio : pagina) {
+                visitante.accept(envio);
+            }
+            if (pagina.size() < PAGINA_RECORRIDO) {
+                return;
+            }
+            desdeId = pagina.get(pagina.size() - 1).getId();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<EnvioDto> buscarPorSistemaOrigen(String sistemaOrigen) {
+        return envioRepository.findDtosBySistemaOrigen(sistemaOrigen.toUpperCase());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<EnvioDto> buscarPorEstado(String estado) {
+        return envioRepository.findDtosByEstadoClave(EstadoEnvio.clave(estado));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long contar() {
+        return envioRepository.count();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> contarPorSistema() {
+        return aMapa(envioRepository.contarPorSistemaOrigen());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> contarPorEstado() {
+        return aMapa(envioRepository.contarPorEstado());
+    }
+
+    /**
+     * Publica el evento al confirmar la transacción en curso (o ya, si no hay)
+     *
+     * Si la transacción se revierte el evento se descarta.
+     */
+    private void publicar(EnvioCambiadoEvent evento) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(evento);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eventPublisher.publishEvent(evento);
+            }
+        });
+    }
+
+    private static Map<String, Long> aMapa(List<EnvioRepository.ConteoPorValor> filas) {
+        Map<String, Long> conteo = new HashMap<>();
+        for (EnvioRepository.ConteoPorValor fila : filas) {
+            conteo.put(fila.getValor(), fila.getTotal());
+        }
+        return conteo;
+    }
+
+    private static Envio aEntidad(EnvioDto datos) {
+        return new Envio(datos.getOrigen(), datos.getDestino(), datos.getEstado(), datos.getSistemaOrigen());
+    }
+
+    private static EnvioDto aDto(Envio envio) {
+        return new EnvioDto(envio.getId(), envio.getOrigen(), envio.getDestino(),
+                envio.getEstado(), envio.getSistemaOrigen(), envio.getVersion());
+    }
+}
@@ -0,0 +1,450 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.exception.ConflictoVersionException;
+import com.logiservices.persistence.EnvioPersistencia;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de envíos en memoria, durable mediante WAL + snapshots
+ *
+ * Es la implementación por defecto (envios.almacen=memoria). Los envíos se
+ * guardan como EnvioCompacto (textos codificados contra diccionarios
+ * compartidos) y se convierten a EnvioDto solo al salir del almacén.
+ */
+@Component
+@ConditionalOnProperty(name = "envios.almacen", havingValue = "memoria", matchIfMissing = true)
+public class MemoriaEnvioStore implements EnvioStore {
+
+    /** Envíos leídos con cada toma del monitor en recorrer */
+    private static final int TRAMO_RECORRIDO = 4096;
+
+    @Autowired
+    private EnvioPersistencia persistencia;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectProvider<PropiedadIds> propiedadIds;
+
+    /**
+     * Map que mantiene datos de envíos en memoria para operaciones CRUD
+     *
+     * Las lecturas no toman locks; las escrituras se serializan en este
+     * almacén para que el orden del WAL coincida con el orden aplicado.
+     */
+    private final Map<Long, EnvioCompacto> envios = new ConcurrentHashMap<>();
+
+    private final CodificadorEnvios codificador = new CodificadorEnvios();
+
+    /**
+     * Último ID asignado (se recalcula al recuperar el estado persistido)
+     */
+    private final AtomicLong secuenciaIds = new AtomicLong();
+
+    /**
+     * Recupera el estado persistido (snapshot + WAL) o, en un arranque en
+     * limpio, carga y persiste los datos simulados iniciales
+     */
+    @PostConstruct
+    void inicializar() {
+        boolean hayEstado = persistencia.recuperar(new EnvioPersistencia.Destino() {
+            @Override
+            public void guardar(EnvioDto envio) {
+                envios.put(envio.getId(), codificador.codificar(envio.getId(), envio,
+                        envio.getVersion() != null ? envio.getVersion() : 1L));
+            }
+
+            @Override
+            public void eliminar(Long id) {
+                envios.remove(id);
+            }
+
+            @Override
+            public void vaciar() {
+                envios.clear();
+            }
+
+            @Override
+            public int total() {
+                return envios.size();
+            }
+        });
+        if (!hayEstado) {
+            for (EnvioDto envio : EnviosSimulados.crear()) {
+                envios.put(envio.getId(), codificador.codificar(envio.getId(), envio, 1L));
+            }
+        }
+
+        secuenciaIds.set(envios.keySet().stream()
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0L));
+
+        persistencia.iniciar(this::tomarSnapshot);
+
+        if (!hayEstado) {
+            for (EnvioCompacto envio : envios.values()) {
+                persistencia.registrarAlta(codificador.decodificar(envio));
+            }
+        }
+    }
+
+    /**
+     * Toma un snapshot del almacén y compacta el WAL
+     *
+     * Solo la rotación del segmento se hace con las escrituras detenidas;
+     * el recorrido del mapa se hace en paralelo con ellas. Los cambios
+     * concurrentes quedan en el segmento nuevo y se reaplican al recuperar.
+     */
+    private void tomarSnapshot() {
+        CompletableFuture<Long> rotacion;
+        synchronized (this) {
+            rotacion = persistencia.rotarSegmento();
+        }
+        persistencia.escribirSnapshot(rotacion.join(), vistaDecodificada());
+    }
+
+    /**
+     * Vista de los envíos como EnvioDto, decodificados al recorrerla
+     */
+    private Collection<EnvioDto> vistaDecodificada() {
+        Collection<EnvioCompacto> valores = envios.values();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<EnvioDto> iterator() {
+                Iterator<EnvioCompacto> iterador = valores.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterador.hasNext();
+                    }
+
+                    @Override
+                    public EnvioDto next() {
+                        return codificador.decodificar(iterador.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return valores.size();
+            }
+        };
+    }
+
+    @Override
+    public EnvioDto buscarPorId(Long id) {
+        EnvioCompacto envio = envios.get(id);
+        return envio != null ? codificador.decodificar(envio) : null;
+    }
+
+    @Override
+    public boolean existe(Long id) {
+        return envios.containsKey(id);
+    }
+
+    @Override
+    public EnvioDto crear(EnvioDto datos) {
+        EnvioCompacto compacto;
+        EnvioDto nuevoEnvio;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            compacto = codificador.codificar(siguienteId(), datos, 1L);
+            nuevoEnvio = codificador.decodificar(compacto);
+            registro = persistencia.registrarAlta(nuevoEnvio);
+            envios.put(compacto.id, compacto);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.creado(nuevoEnvio));
+        }
+
+        // Esperar el fsync fuera del lock para que el group commit agrupe escrituras
+        persistencia.esperar(registro, () -> deshacer(compacto, null));
+        return nuevoEnvio;
+    }
+
+    @Override
+    public List<EnvioDto> crearLote(List<EnvioDto> datos) {
+        List<EnvioDto> creados = new ArrayList<>(datos.size());
+        List<EnvioCompacto> compactos = new ArrayList<>(datos.size());
+        List<CompletableFuture<Void>> registros = new ArrayList<>(datos.size());
+
+        synchronized (this) {
+            for (EnvioDto dato : datos) {
+                EnvioCompacto compacto = codificador.codificar(siguienteId(), dato, 1L);
+                EnvioDto nuevoEnvio = codificador.decodificar(compacto);
+                registros.add(persistencia.registrarAlta(nuevoEnvio));
+                envios.put(compacto.id, compacto);
+                eventPublisher.publishEvent(EnvioCambiadoEvent.creado(nuevoEnvio));
+                compactos.add(compacto);
+                creados.add(nuevoEnvio);
+            }
+        }
+
+        // El WAL completa los registros en orden: basta esperar el último.
+        // Si falla, se deshacen las altas cuyo registro no llegó al log
+        CompletableFuture<Void> ultimo = registros.isEmpty()
+                ? CompletableFuture.completedFuture(null) : registros.get(registros.size() - 1);
+        persistencia.esperar(ultimo, () -> {
+            for (int i = 0; i < registros.size(); i++) {
+                if (registros.get(i).isCompletedExceptionally()) {
+                    deshacer(compactos.get(i), null);
+                }
+            }
+        });
+        return creados;
+    }
+
+    /**
+     * Siguiente ID libre que pertenece a este nodo (debe llamarse con el monitor del almacén)
+     */
+    private long siguienteId() {
+        PropiedadIds propiedad = propiedadIds.getIfAvailable();
+        long ultimo = secuenciaIds.get();
+        long id = propiedad != null ? propiedad.siguienteId(ultimo) : ultimo + 1;
+        secuenciaIds.set(id);
+        return id;
+    }
+
+    @Override
+    public boolean admiteParticionado() {
+        return true;
+    }
+
+    @Override
+    public boolean importar(EnvioDto envio) {
+        EnvioCompacto existente;
+        EnvioCompacto compacto;
+        EnvioDto importado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            existente = envios.get(envio.getId());
+            long version = envio.getVersion() != null ? envio.getVersion() : 1L;
+            if (existente != null && existente.version >= version) {
+                return false;
+            }
+            compacto = codificador.codificar(envio.getId(), envio, version);
+            importado = codificador.decodificar(compacto);
+            registro = persistencia.registrarAlta(importado);
+            envios.put(compacto.id, compacto);
+            // Las altas locales siguen por encima de cualquier ID importado
+            secuenciaIds.accumulateAndGet(compacto.id, Math::max);
+            eventPublisher.publishEvent(existente == null
+                    ? EnvioCambiadoEvent.creado(importado)
+                    : EnvioCambiadoEvent.actualizado(codificador.decodificar(existente), importado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(compacto, existente));
+        return true;
+    }
+
+    @Override
+    public boolean retirarTransferido(Long id, long version) {
+        EnvioCompacto anterior;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            anterior = envios.get(id);
+            if (anterior == null || anterior.version != version) {
+                return false;
+            }
+            registro = persistencia.registrarBaja(id);
+            envios.remove(id);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.transferido(codificador.decodificar(anterior)));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(null, anterior));
+        return true;
+    }
+
+    @Override
+    public EnvioDto actualizar(Long id, EnvioDto datos, Long versionEsperada) {
+        EnvioCompacto anterior;
+        EnvioCompacto compacto;
+        EnvioDto envioActualizado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            anterior = envios.get(id);
+            if (anterior == null) {
+                return null;
+            }
+            // Compare-and-set: la comprobación y el reemplazo son atómicos
+            // respecto al resto de escrituras del almacén
+            if (versionEsperada != null && versionEsperada != anterior.version) {
+                throw new ConflictoVersionException(id, versionEsperada, anterior.version);
+            }
+            compacto = codificador.codificar(id, datos, anterior.version + 1);
+            envioActualizado = codificador.decodificar(compacto);
+            registro = persistencia.registrarAlta(envioActualizado);
+            envios.put(id, compacto);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.actualizado(codificador.decodificar(anterior), envioActualizado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(compacto, anterior));
+        return envioActualizado;
+    }
+
+    @Override
+    public EnvioDto eliminar(Long id) {
+        EnvioCompacto anterior;
+        EnvioDto envioEliminado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            anterior = envios.get(id);
+            if (anterior == null) {
+                return null;
+            }
+            envioEliminado = codificador.decodificar(anterior);
+            registro = persistencia.registrarBaja(id);
+            envios.remove(id);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.eliminado(envioEliminado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(null, anterior));
+        return envioEliminado;
+    }
+
+    /**
+     * Revierte un cambio cuyo registro no llegó al WAL
+     *
+     * Solo se revierte si el envío sigue tal como lo dejó ese cambio: si otra
+     * escritura posterior ya lo reemplazó, su registro (con el estado
+     * completo) es el que cuenta. Se publica el evento inverso para que
+     * caches e índices vuelvan al estado anterior.
+     *
+     * @param aplicado Estado que dejó el cambio (null en una baja)
+     * @param anterior Estado previo al cambio (null en un alta)
+     */
+    private synchronized void deshacer(EnvioCompacto aplicado, EnvioCompacto anterior) {
+        long id = aplicado != null ? aplicado.id : anterior.id;
+        EnvioCompacto actual = envios.get(id);
+        if (actual != aplicado) {
+            return;
+        }
+        if (anterior == null) {
+            envios.remove(id);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.eliminado(codificador.decodificar(aplicado)));
+        } else if (aplicado == null) {
+            envios.put(id, anterior);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.creado(codificador.decodificar(anterior)));
+        } else {
+            envios.put(id, anterior);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.actualizado(codificador.decodificar(aplicado),
+                    codificador.decodificar(anterior)));
+        }
+    }
+
+    @Override
+    public List<EnvioDto> listar() {
+        List<EnvioDto> lista = new ArrayList<>(envios.size());
+        for (EnvioCompacto envio : envios.values()) {
+            lista.add(codificador.decodificar(envio));
+        }
+        return lista;
+    }
+
+    /**
+     * Lee los envíos por tramos con el monitor del almacén: cada envío se ve
+     * antes o después de un cambio y de su evento, nunca entre ambos
+     */
+    @Override
+    public void recorrer(Consumer<EnvioDto> visitante) {
+        Iterator<EnvioCompacto> iterador = envios.values().iterator();
+        List<EnvioDto> tramo = new ArrayList<>(TRAMO_RECORRIDO);
+        while (true) {
+            synchronized (this) {
+                while (tramo.size() < TRAMO_RECORRIDO && iterador.hasNext()) {
+                    tramo.add(codificador.decodificar(iterador.next()));
+                }
+            }
+            if (tramo.isEmpty()) {
+                return;
+            }
+            tramo.forEach(visitante);
+            tramo.clear();
+        }
+    }
+
+    @Override
+    public List<EnvioDto> buscarPorSistemaOrigen(String sistemaOrigen) {
+        BitSet codigos = new BitSet();
+        codificador.codigosSistema(sistemaOrigen, codigos::set);
+        return filtrar(codigos, false);
+    }
+
+    @Override
+    public List<EnvioDto> buscarPorEstado(String estado) {
+        BitSet codigos = new BitSet();
+        codificador.codigosEstado(estado, codigos::set);
+        return filtrar(codigos, true);
+    }
+
+    /**
+     * Recorre los envíos comparando códigos, sin decodificar los descartados
+     */
+    private List<EnvioDto> filtrar(BitSet codigos, boolean porEstado) {
+        List<EnvioDto> resultado = new ArrayList<>();
+        if (codigos.isEmpty()) {
+            return resultado;
+        }
+        for (EnvioCompacto envio : envios.values()) {
+            int codigo = porEstado ? envio.estado : envio.sistema;
+            if (codigo >= 0 && codigos.get(codigo)) {
+                resultado.add(codificador.decodificar(envio));
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public long contar() {
+        return envios.size();
+    }
+
+    @Override
+    public Map<String, Long> contarPorSistema() {
+        return contarPorCodigo(false);
+    }
+
+    @Override
+    public Map<String, Long> contarPorEstado() {
+        return contarPorCodigo(true);
+    }
+
+    private Map<String, Long> contarPorCodigo(boolean porEstado) {
+        Map<Integer, long[]> conteos = new HashMap<>();
+        for (EnvioCompacto envio : envios.values()) {
+            int codigo = porEstado ? envio.estado : envio.sistema;
+            conteos.computeIfAbsent(codigo, c -> new long[1])[0]++;
+        }
+        Map<String, Long> resultado = new HashMap<>();
+        conteos.forEach((codigo, total) -> resultado.merge(
+                porEstado ? codificador.estadoTexto(codigo) : codificador.sistemaTexto(codigo),
+                total[0], Long::sum));
+        return resultado;
+    }
+}
@@ -0,0 +1,724 @@
+package com.logiservices.store;
+
+import com.logiservices.dto.EnvioDto;
+import com.logiservices.event.EnvioCambiadoEvent;
+import com.logiservices.exception.ConflictoVersionException;
+import com.logiservices.persistence.EnvioPersistencia;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de envíos columnar fuera del heap (envios.almacen=offheap)
+ *
+ * Pensado para decenas de millones de envíos: los datos viven en
+ * ByteBuffers directos, así que el heap (y el trabajo del GC) no crece con
+ * el número de envíos.
+ *
+ * - Las columnas se reservan por bloques de posiciones; cada bloque guarda
+ *   seguidas las columnas id, version, origen, destino, estado, sistema y
+ *   ocupado. Los textos son códigos de los diccionarios compartidos.
+ * - Un índice primitivo fuera del heap traduce ID -> posición.
+ * - Las posiciones liberadas por las bajas se reutilizan (lista libre).
+ * - Las búsquedas y estadísticas recorren directamente las columnas.
+ *
+ * Las escrituras se serializan y se registran en el WAL como en el almacén
+ * en memoria. Las lecturas por ID son optimistas (StampedLock) y los
+ * recorridos toman el lock de lectura por tramos.
+ */
+@Component
+@ConditionalOnProperty(name = "envios.almacen", havingValue = "offheap")
+public class OffHeapEnvioStore implements EnvioStore {
+
+    /** Posiciones recorridas por cada toma del lock de lectura en los recorridos largos */
+    private static final int TRAMO = 4096;
+
+    @Autowired
+    private EnvioPersistencia persistencia;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectProvider<PropiedadIds> propiedadIds;
+
+    @Value("${envios.offheap.posiciones-por-bloque:1048576}")
+    private int posicionesPorBloque;
+
+    private final CodificadorEnvios codificador = new CodificadorEnvios();
+    private final StampedLock lock = new StampedLock();
+
+    private Columnas columnas;
+    private IndiceIdsOffHeap indice;
+
+    /** Posiciones libres para reutilizar */
+    private int[] libres = new int[64];
+    private int totalLibres;
+
+    /** Primera posición nunca usada */
+    private int limite;
+
+    private long ultimoId;
+
+    @PostConstruct
+    void inicializar() {
+        columnas = new Columnas(Integer.highestOneBit(Math.min(1 << 24, Math.max(1024, posicionesPorBloque))));
+        indice = new IndiceIdsOffHeap(posicionesPorBloque);
+
+        boolean hayEstado = persistencia.recuperar(new EnvioPersistencia.Destino() {
+            @Override
+            public void guardar(EnvioDto envio) {
+                guardarSinLock(envio.getId(), envio, envio.getVersion() != null ? envio.getVersion() : 1L);
+            }
+
+            @Override
+            public void eliminar(Long id) {
+                eliminarSinLock(id);
+            }
+
+            @Override
+            public void vaciar() {
+                vaciarSinLock();
+            }
+
+            @Override
+            public int total() {
+                return indice.tamano();
+            }
+        });
+        if (!hayEstado) {
+            for (EnvioDto envio : EnviosSimulados.crear()) {
+                guardarSinLock(envio.getId(), envio, 1L);
+            }
+        }
+
+        persistencia.iniciar(this::tomarSnapshot);
+
+        if (!hayEstado) {
+            for (EnvioDto envio : listar()) {
+                persistencia.registrarAlta(envio);
+            }
+        }
+    }
+
+    private void tomarSnapshot() {
+        CompletableFuture<Long> rotacion;
+        synchronized (this) {
+            rotacion = persistencia.rotarSegmento();
+        }
+        persistencia.escribirSnapshot(rotacion.join(), new AbstractCollection<>() {
+            @Override
+            public Iterator<EnvioDto> iterator() {
+                return new IteradorPorTramos();
+            }
+
+            @Override
+            public int size() {
+                return (int) contar();
+            }
+        });
+    }
+
+    // ===== Escritura (con el monitor del almacén y el lock de escritura) =====
+
+    /**
+     * Guarda o reemplaza un envío; debe llamarse con el lock de escritura o durante la inicialización
+     */
+    private void guardarSinLock(long id, EnvioDto datos, long version) {
+        int posicion = indice.buscar(id);
+        if (posicion < 0) {
+            posicion = totalLibres > 0 ? libres[--totalLibres] : limite++;
+            columnas.asegurar(posicion);
+            indice.poner(id, posicion);
+        }
+        columnas.escribir(posicion, id, version,
+                codificador.codigoLugar(datos.getOrigen()),
+                codificador.codigoLugar(datos.getDestino()),
+                codificador.codigoEstado(datos.getEstado()),
+                codificador.codigoSistema(datos.getSistemaOrigen()));
+        ultimoId = Math.max(ultimoId, id);
+    }
+
+    private void eliminarSinLock(long id) {
+        int posicion = indice.buscar(id);
+        if (posicion < 0) {
+            return;
+        }
+        indice.quitar(id);
+        columnas.liberar(posicion);
+        if (totalLibres == libres.length) {
+            libres = Arrays.copyOf(libres, libres.length * 2);
+        }
+        libres[totalLibres++] = posicion;
+    }
+
+    private void vaciarSinLock() {
+        indice.vaciar();
+        columnas.vaciar(limite);
+        limite = 0;
+        totalLibres = 0;
+        ultimoId = 0;
+    }
+
+    @Override
+    public EnvioDto crear(EnvioDto datos) {
+        EnvioDto nuevoEnvio;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            nuevoEnvio = insertar(datos);
+            registro = persistencia.registrarAlta(nuevoEnvio);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.creado(nuevoEnvio));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(nuevoEnvio, null));
+        return nuevoEnvio;
+    }
+
+    @Override
+    public List<EnvioDto> crearLote(List<EnvioDto> datos) {
+        List<EnvioDto> creados = new ArrayList<>(datos.size());
+        List<CompletableFuture<Void>> registros = new ArrayList<>(datos.size());
+
+        synchronized (this) {
+            for (EnvioDto dato : datos) {
+                EnvioDto nuevoEnvio = insertar(dato);
+                registros.add(persistencia.registrarAlta(nuevoEnvio));
+                eventPublisher.publishEvent(EnvioCambiadoEvent.creado(nuevoEnvio));
+                creados.add(nuevoEnvio);
+            }
+        }
+
+        CompletableFuture<Void> ultimo = registros.isEmpty()
+                ? CompletableFuture.completedFuture(null) : registros.get(registros.size() - 1);
+        persistencia.esperar(ultimo, () -> {
+            for (int i = 0; i < registros.size(); i++) {
+                if (registros.get(i).isCompletedExceptionally()) {
+                    deshacer(creados.get(i), null);
+                }
+            }
+        });
+        return creados;
+    }
+
+    private EnvioDto insertar(EnvioDto datos) {
+        long stamp = lock.writeLock();
+        try {
+            // Solo IDs de este nodo (en modo cluster); los saltados quedan para sus dueños
+            PropiedadIds propiedad = propiedadIds.getIfAvailable();
+            long id = propiedad != null ? propiedad.siguienteId(ultimoId) : ultimoId + 1;
+            guardarSinLock(id, datos, 1L);
+            return leerSinLock(indice.buscar(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean admiteParticionado() {
+        return true;
+    }
+
+    @Override
+    public boolean importar(EnvioDto envio) {
+        EnvioDto anterior;
+        EnvioDto importado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            long stamp = lock.writeLock();
+            try {
+                long version = envio.getVersion() != null ? envio.getVersion() : 1L;
+                int posicion = indice.buscar(envio.getId());
+                anterior = posicion >= 0 ? leerSinLock(posicion) : null;
+                if (anterior != null && anterior.getVersion() >= version) {
+                    return false;
+                }
+                guardarSinLock(envio.getId(), envio, version);
+                importado = leerSinLock(indice.buscar(envio.getId()));
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            registro = persistencia.registrarAlta(importado);
+            eventPublisher.publishEvent(anterior == null
+                    ? EnvioCambiadoEvent.creado(importado)
+                    : EnvioCambiadoEvent.actualizado(anterior, importado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(importado, anterior));
+        return true;
+    }
+
+    @Override
+    public boolean retirarTransferido(Long id, long version) {
+        EnvioDto retirado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            long stamp = lock.writeLock();
+            try {
+                int posicion = indice.buscar(id);
+                if (posicion < 0 || columnas.version(posicion) != version) {
+                    return false;
+                }
+                retirado = leerSinLock(posicion);
+                eliminarSinLock(id);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            registro = persistencia.registrarBaja(id);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.transferido(retirado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(null, retirado));
+        return true;
+    }
+
+    @Override
+    public EnvioDto actualizar(Long id, EnvioDto datos, Long versionEsperada) {
+        EnvioDto anterior;
+        EnvioDto envioActualizado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            long stamp = lock.writeLock();
+            try {
+                int posicion = indice.buscar(id);
+                if (posicion < 0) {
+                    return null;
+                }
+                anterior = leerSinLock(posicion);
+                if (versionEsperada != null && !versionEsperada.equals(anterior.getVersion())) {
+                    throw new ConflictoVersionException(id, versionEsperada, anterior.getVersion());
+                }
+                guardarSinLock(id, datos, anterior.getVersion() + 1);
+                envioActualizado = leerSinLock(posicion);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            registro = persistencia.registrarAlta(envioActualizado);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.actualizado(anterior, envioActualizado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(envioActualizado, anterior));
+        return envioActualizado;
+    }
+
+    @Override
+    public EnvioDto eliminar(Long id) {
+        EnvioDto envioEliminado;
+        CompletableFuture<Void> registro;
+
+        synchronized (this) {
+            long stamp = lock.writeLock();
+            try {
+                int posicion = indice.buscar(id);
+                if (posicion < 0) {
+                    return null;
+                }
+                envioEliminado = leerSinLock(posicion);
+                eliminarSinLock(id);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            registro = persistencia.registrarBaja(id);
+            eventPublisher.publishEvent(EnvioCambiadoEvent.eliminado(envioEliminado));
+        }
+
+        persistencia.esperar(registro, () -> deshacer(null, envioEliminado));
+        return envioEliminado;
+    }
+
+    /**
+     * Revierte un cambio cuyo registro no llegó al WAL
+     *
+     * Solo se revierte si el envío sigue en la versión que dejó ese cambio
+     * (o sigue sin existir, en una baja): si otra escritura posterior ya lo
+     * reemplazó, su registro con el estado completo es el que cuenta. Se
+     * publica el evento inverso para que caches e índices vuelvan atrás.
+     *
+     * @param aplicado Estado que dejó el cambio (null en una baja)
+     * @param anterior Estado previo al cambio (null en un alta)
+     */
+    private synchronized void deshacer(EnvioDto aplicado, EnvioDto anterior) {
+        long id = aplicado != null ? aplicado.getId() : anterior.getId();
+        long stamp = lock.writeLock();
+        try {
+            int posicion = indice.buscar(id);
+            if (aplicado == null ? posicion >= 0
+                    : posicion < 0 || columnas.version(posicion) != aplicado.getVersion()) {
+                return;
+            }
+            if (anterior == null) {
+                eliminarSinLock(id);
+            } else {
+                guardarSinLock(id, anterior, anterior.getVersion());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (anterior == null) {
+            eventPublisher.publishEvent(EnvioCambiadoEvent.eliminado(aplicado));
+        } else if (aplicado == null) {
+            eventPublisher.publishEvent(EnvioCambiadoEvent.creado(anterior));
+        } else {
+            eventPublisher.publishEvent(EnvioCambiadoEvent.actualizado(aplicado, anterior));
+        }
+    }
+
+    // ===== Lectura =====
+
+    @Override
+    public EnvioDto buscarPorId(Long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int posicion = indice.buscar(id);
+                EnvioDto envio = null;
+                if (posicion >= 0) {
+                    long version = columnas.version(posicion);
+                    int origen = columnas.origen(posicion);
+                    int destino = columnas.destino(posicion);
+                    int estado = columnas.estado(posicion);
+                    int sistema = columnas.sistema(posicion);
+                    if (lock.validate(stamp)) {
+                        envio = codificador.decodificar(id, version, origen, destino, estado, sistema);
+                    }
+                }
+                if (lock.validate(stamp)) {
+                    return envio;
+                }
+            } catch (RuntimeException e) {
+                // Lectura de un índice o bloque a medio crecer (o de una
+                // posición ya liberada): se repite con el lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            int posicion = indice.buscar(id);
+            return posicion >= 0 ? leerSinLock(posicion) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean existe(Long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                boolean existe = indice.buscar(id) >= 0;
+                if (lock.validate(stamp)) {
+                    return existe;
+                }
+            } catch (RuntimeException e) {
+                // Se repite con el lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return indice.buscar(id) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private EnvioDto leerSinLock(int posicion) {
+        return codificador.decodificar(columnas.id(posicion), columnas.version(posicion),
+                columnas.origen(posicion), columnas.destino(posicion),
+                columnas.estado(posicion), columnas.sistema(posicion));
+    }
+
+    @Override
+    public List<EnvioDto> listar() {
+        List<EnvioDto> lista = new ArrayList<>((int) contar());
+        new IteradorPorTramos().forEachRemaining(lista::add);
+        return lista;
+    }
+
+    /**
+     * Lee los envíos por tramos con el monitor del almacén: cada envío se ve
+     * antes o después de un cambio y de su evento, nunca entre ambos
+     */
+    @Override
+    public void recorrer(Consumer<EnvioDto> visitante) {
+        IteradorPorTramos iterador = new IteradorPorTramos();
+        List<EnvioDto> tramo = new ArrayList<>(TRAMO);
+        while (true) {
+            synchronized (this) {
+                while (tramo.size() < TRAMO && iterador.hasNext()) {
+                    tramo.add(iterador.next());
+                }
+            }
+            if (tramo.isEmpty()) {
+                return;
+            }
+            tramo.forEach(visitante);
+            tramo.clear();
+        }
+    }
+
+    @Override
+    public List<EnvioDto> buscarPorSistemaOrigen(String sistemaOrigen) {
+        BitSet codigos = new BitSet();
+        codificador.codigosSistema(sistemaOrigen, codigos::set);
+        return filtrar(codigos, false);
+    }
+
+    @Override
+    public List<EnvioDto> buscarPorEstado(String estado) {
+        BitSet codigos = new BitSet();
+        codificador.codigosEstado(estado, codigos::set);
+        return filtrar(codigos, true);
+    }
+
+    /**
+     * Recorre la columna de estado o de sistema y decodifica solo las coincidencias
+     */
+    private List<EnvioDto> filtrar(BitSet codigos, boolean porEstado) {
+        List<EnvioDto> resultado = new ArrayList<>();
+        if (codigos.isEmpty()) {
+            return resultado;
+        }
+        for (int inicio = 0; ; inicio += TRAMO) {
+            long stamp = lock.readLock();
+            try {
+                if (inicio >= limite) {
+                    return resultado;
+                }
+                int fin = Math.min(limite, inicio + TRAMO);
+                for (int posicion = inicio; posicion < fin; posicion++) {
+                    if (!columnas.ocupada(posicion)) {
+                        continue;
+                    }
+                    int codigo = porEstado ? columnas.estado(posicion) : columnas.sistema(posicion);
+                    if (codigo >= 0 && codigos.get(codigo)) {
+                        resultado.add(leerSinLock(posicion));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public long contar() {
+        long stamp = lock.readLock();
+        try {
+            return indice.tamano();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Map<String, Long> contarPorSistema() {
+        return contarPorCodigo(false);
+    }
+
+    @Override
+    public Map<String, Long> contarPorEstado() {
+        return contarPorCodigo(true);
+    }
+
+    /**
+     * Cuenta por código recorriendo una sola columna; los códigos nulos (-1) van en la última celda
+     */
+    private Map<String, Long> contarPorCodigo(boolean porEstado) {
+        long[] conteos = new long[porEstado ? Short.MAX_VALUE + 2 : Byte.MAX_VALUE + 2];
+        int nulo = conteos.length - 1;
+        for (int inicio = 0; ; inicio += TRAMO) {
+            long stamp = lock.readLock();
+            try {
+                if (inicio >= limite) {
+                    break;
+                }
+                int fin = Math.min(limite, inicio + TRAMO);
+                for (int posicion = inicio; posicion < fin; posicion++) {
+                    if (columnas.ocupada(posicion)) {
+                        int codigo = porEstado ? columnas.estado(posicion) : columnas.sistema(posicion);
+                        conteos[codigo < 0 ? nulo : codigo]++;
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Map<String, Long> resultado = new HashMap<>();
+        for (int codigo = 0; codigo < conteos.length; codigo++) {
+            if (conteos[codigo] > 0) {
+                int real = codigo == nulo ? -1 : codigo;
+                resultado.merge(porEstado ? codificador.estadoTexto(real) : codificador.sistemaTexto(real),
+                        conteos[codigo], Long::sum);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Recorre los envíos tomando el lock de lectura por tramos de posiciones,
+     * para no bloquear las escrituras durante recorridos largos (snapshots)
+     */
+    private final class IteradorPorTramos implements Iterator<EnvioDto> {
+
+        private final List<EnvioDto> tramo = new ArrayList<>(TRAMO);
+        private int indiceTramo;
+        private int siguientePosicion;
+        private boolean terminado;
+
+        @Override
+        public boolean hasNext() {
+            while (indiceTramo >= tramo.size() && !terminado) {
+                cargarTramo();
+            }
+            return indiceTramo < tramo.size();
+        }
+
+        @Override
+        public EnvioDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return tramo.get(indiceTramo++);
+        }
+
+        private void cargarTramo() {
+            tramo.clear();
+            indiceTramo = 0;
+            long stamp = lock.readLock();
+            try {
+                int fin = Math.min(limite, siguientePosicion + TRAMO);
+                for (int posicion = siguientePosicion; posicion < fin; posicion++) {
+                    if (columnas.ocupada(posicion)) {
+                        tramo.add(leerSinLock(posicion));
+                    }
+                }
+                siguientePosicion = fin;
+                terminado = fin >= limite;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Columnas fuera del heap, reservadas por bloques de posiciones
+     *
+     * Dentro de cada bloque las columnas van seguidas, de modo que un
+     * recorrido sobre una columna lee memoria contigua.
+     */
+    private static final class Columnas {
+
+        private final int porBloque;
+        private final int desplazamiento;
+        private final int mascara;
+
+        private final int offVersion;
+        private final int offOrigen;
+        private final int offDestino;
+        private final int offEstado;
+        private final int offSistema;
+        private final int offOcupada;
+        private final int tamanoBloque;
+
+        /** volatile: las lecturas optimistas la leen sin lock mientras asegurar la sustituye */
+        private volatile ByteBuffer[] bloques = new ByteBuffer[0];
+
+        Columnas(int porBloque) {
+            this.porBloque = porBloque;
+            this.desplazamiento = Integer.numberOfTrailingZeros(porBloque);
+            this.mascara = porBloque - 1;
+            this.offVersion = porBloque * Long.BYTES;
+            this.offOrigen = offVersion + porBloque * Long.BYTES;
+            this.offDestino = offOrigen + porBloque * Integer.BYTES;
+            this.offEstado = offDestino + porBloque * Integer.BYTES;
+            this.offSistema = offEstado + porBloque * Short.BYTES;
+            this.offOcupada = offSistema + porBloque;
+            this.tamanoBloque = offOcupada + porBloque;
+        }
+
+        void asegurar(int posicion) {
+            int bloque = posicion >>> desplazamiento;
+            if (bloque >= bloques.length) {
+                ByteBuffer[] nuevos = Arrays.copyOf(bloques, bloque + 1);
+                for (int i = bloques.length; i < nuevos.length; i++) {
+                    nuevos[i] = ByteBuffer.allocateDirect(tamanoBloque).order(ByteOrder.nativeOrder());
+                }
+                bloques = nuevos;
+            }
+        }
+
+        void escribir(int posicion, long id, long version, int origen, int destino, short estado, byte sistema) {
+            ByteBuffer b = bloques[posicion >>> desplazamiento];
+            int i = posicion & mascara;
+            b.putLong(i * Long.BYTES, id);
+            b.putLong(offVersion + i * Long.BYTES, version);
+            b.putInt(offOrigen + i * Integer.BYTES, origen);
+            b.putInt(offDestino + i * Integer.BYTES, destino);
+            b.putShort(offEstado + i * Short.BYTES, estado);
+            b.put(offSistema + i, sistema);
+            b.put(offOcupada + i, (byte) 1);
+        }
+
+        void liberar(int posicion) {
+            bloques[posicion >>> desplazamiento].put(offOcupada + (posicion & mascara), (byte) 0);
+        }
+
+        void vaciar(int limite) {
+            for (int posicion = 0; posicion < limite; posicion++) {
+                liberar(posicion);
+            }
+        }
+
+        boolean ocupada(int posicion) {
+            return bloques[posicion >>> desplazamiento].get(offOcupada + (posicion & mascara)) != 0;
+        }
+
+        long id(int posicion) {
+            return bloques[posicion >>> desplazamiento].getLong((posicion & mascara) * Long.BYTES);
+        }
+
+        long version(int posicion) {
+            return bloques[posicion >>> desplazamiento].getLong(offVersion + (posicion & mascara) * Long.BYTES);
+        }
+
+        int origen(int posicion) {
+            return bloques[posicion >>> desplazamiento].getInt(offOrigen + (posicion & mascara) * Integer.BYTES);
+        }
+
+        int destino(int posicion) {
+            return bloques[posicion >>> desplazamiento].getInt(offDestino + (posicion & mascara) * Integer.BYTES);
+        }
+
+        int estado(int posicion) {
+            return bloques[posicion >>> desplazamiento].getShort(offEstado + (posicion & mascara) * Short.BYTES);
+        }
+
+        int sistema(int posicion) {
+            return bloques[posicion >>> desplazamiento].get(offSistema + (posicion & mascara));
+        }
+    }
+}
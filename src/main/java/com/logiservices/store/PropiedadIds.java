@@ -0,0 +1,26 @@
+package com.logiservices.store;
+
+/**
+ * Decide qué IDs de envío puede asignar este nodo
+ *
+ * En modo cluster cada ID pertenece a un único nodo; los almacenes que
+ * admiten particionado piden aquí el ID de cada alta. La propiedad de un ID
+ * cambia con el anillo, así que no basta para evitar que dos nodos generen
+ * el mismo: además cada nodo asigna solo IDs de su propio espacio, que no
+ * depende del anillo. Sin implementación registrada todos los IDs son
+ * propios y se asignan consecutivos.
+ */
+@FunctionalInterface
+public interface PropiedadIds {
+
+    boolean esPropio(long id);
+
+    /**
+     * Primer ID mayor que ultimo que este nodo puede asignar a un alta
+     *
+     * @param ultimo Mayor ID que conoce el almacén (propio o importado)
+     */
+    default long siguienteId(long ultimo) {
+        return ultimo + 1;
+    }
+}